@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.PatientFlatWriter;
+import com.imsweb.naaccrxml.PatientXmlReader;
+import com.imsweb.naaccrxml.PatientXmlWriter;
+import com.imsweb.naaccrxml.entity.AbstractEntity;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryItem;
+
+/**
+ * The synthetic data used by the benchmarks.
+ * <br/><br/>
+ * The patients are drawn, using a fixed seed, from the samples created with the data-generator (docs/samples), so the values look like real data and two
+ * runs (on two different versions of the library) always work on the exact same patients.
+ */
+public final class BenchmarkData {
+
+    // the seed used for all the generated data
+    public static final long SEED = 20210401L;
+
+    // the record type used for all the generated data
+    public static final String RECORD_TYPE = NaaccrFormat.NAACCR_REC_TYPE_INCIDENCE;
+
+    private static final String _PATIENT_ID_NUMBER = "patientIdNumber";
+
+    private final String _naaccrVersion;
+
+    private final NaaccrData _data;
+
+    private final byte[] _xml;
+
+    private final byte[] _flat;
+
+    private final int _numTumors;
+
+    /**
+     * Generates the data for the requested version.
+     * @param naaccrVersion NAACCR version
+     * @param numPatients number of patients to generate
+     * @throws IOException if the data cannot be written in the XML or flat format
+     */
+    public BenchmarkData(String naaccrVersion, int numPatients) throws IOException {
+        _naaccrVersion = naaccrVersion;
+        _data = generate(naaccrVersion, numPatients);
+        _numTumors = _data.getPatients().stream().mapToInt(p -> p.getTumors().size()).sum();
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        try (PatientXmlWriter writer = new PatientXmlWriter(new OutputStreamWriter(xml, StandardCharsets.UTF_8), _data)) {
+            for (Patient patient : _data.getPatients())
+                writer.writePatient(patient);
+        }
+        _xml = xml.toByteArray();
+
+        // some versions don't define a flat file
+        Integer lineLength = createDictionary(naaccrVersion).getLineLength();
+        if (lineLength != null && lineLength != -1) {
+            ByteArrayOutputStream flat = new ByteArrayOutputStream();
+            try (PatientFlatWriter writer = new PatientFlatWriter(new OutputStreamWriter(flat, StandardCharsets.UTF_8), _data)) {
+                for (Patient patient : _data.getPatients())
+                    writer.writePatient(patient);
+            }
+            _flat = flat.toByteArray();
+        }
+        else
+            _flat = null;
+    }
+
+    public String getNaaccrVersion() {
+        return _naaccrVersion;
+    }
+
+    public String getFormat() {
+        return NaaccrFormat.getInstance(_naaccrVersion, RECORD_TYPE).toString();
+    }
+
+    public NaaccrData getData() {
+        return _data;
+    }
+
+    public List<Patient> getPatients() {
+        return _data.getPatients();
+    }
+
+    public int getNumPatients() {
+        return _data.getPatients().size();
+    }
+
+    public int getNumTumors() {
+        return _numTumors;
+    }
+
+    public byte[] getXml() {
+        return _xml;
+    }
+
+    /**
+     * Returns the flat representation of the generated data.
+     * @return the flat representation, null if the version doesn't support flat files
+     */
+    public byte[] getFlat() {
+        return _flat;
+    }
+
+    public Reader createXmlReader() {
+        return new InputStreamReader(new ByteArrayInputStream(_xml), StandardCharsets.UTF_8);
+    }
+
+    public Reader createFlatReader() {
+        return new InputStreamReader(new ByteArrayInputStream(_flat), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a writer that discards everything it receives.
+     * @return a new writer, never null
+     */
+    public static Writer createNullWriter() {
+        return new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                // nothing to do
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+                // nothing to do
+            }
+
+            @Override
+            public void flush() {
+                // nothing to do
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+    }
+
+    private static RuntimeNaaccrDictionary createDictionary(String naaccrVersion) throws NaaccrIOException {
+        NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(naaccrVersion);
+        NaaccrDictionary userDictionary = NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(naaccrVersion);
+        return RuntimeNaaccrDictionary.create(RECORD_TYPE, baseDictionary, userDictionary == null ? null : Collections.singletonList(userDictionary));
+    }
+
+    private static NaaccrData generate(String naaccrVersion, int numPatients) throws IOException {
+        RuntimeNaaccrDictionary dictionary = createDictionary(naaccrVersion);
+        List<Patient> samples = readSamplePatients(naaccrVersion);
+
+        Random random = new Random(SEED + Integer.parseInt(naaccrVersion));
+        NaaccrData data = new NaaccrData(NaaccrFormat.getInstance(naaccrVersion, RECORD_TYPE).toString());
+        for (int i = 0; i < numPatients; i++) {
+            Patient sample = samples.get(random.nextInt(samples.size()));
+            Patient patient = new Patient();
+            copyItems(sample, patient, dictionary, NaaccrXmlUtils.NAACCR_XML_TAG_PATIENT);
+            patient.addItem(new Item(_PATIENT_ID_NUMBER, String.format("%08d", i + 1)));
+            for (Tumor sampleTumor : sample.getTumors()) {
+                Tumor tumor = new Tumor();
+                copyItems(sampleTumor, tumor, dictionary, NaaccrXmlUtils.NAACCR_XML_TAG_TUMOR);
+                patient.addTumor(tumor);
+            }
+            data.addPatient(patient);
+        }
+
+        return data;
+    }
+
+    /**
+     * Reads the patients of the sample file created with the data-generator for the closest NAACCR version (the checked-in samples don't change when a
+     * new version of the generator is released, so the baselines of the benchmarks stay comparable).
+     */
+    private static List<Patient> readSamplePatients(String naaccrVersion) throws IOException {
+        String sampleVersion = Integer.parseInt(naaccrVersion) < 210 ? "180" : "210";
+        String resource = "naaccr-xml-sample-v" + sampleVersion + "-incidence-1000.xml.gz";
+        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource);
+        if (is == null)
+            throw new IOException("Unable to find sample file " + resource);
+
+        List<Patient> result = new ArrayList<>();
+        try (PatientXmlReader reader = new PatientXmlReader(new InputStreamReader(new GZIPInputStream(is), StandardCharsets.UTF_8))) {
+            Patient patient = reader.readPatient();
+            while (patient != null) {
+                result.add(patient);
+                patient = reader.readPatient();
+            }
+        }
+        return result;
+    }
+
+    // only the items the requested version defines at the same level (and with values that fit their length) are copied
+    private static void copyItems(AbstractEntity source, AbstractEntity target, RuntimeNaaccrDictionary dictionary, String parentXmlElement) {
+        for (Item item : source.getItems()) {
+            if (item.getNaaccrId().equals(_PATIENT_ID_NUMBER) || item.getValue() == null)
+                continue;
+            RuntimeNaaccrDictionaryItem itemDef = dictionary.getItemByNaaccrId(item.getNaaccrId());
+            if (itemDef != null && parentXmlElement.equals(itemDef.getParentXmlElement()) && item.getValue().length() <= itemDef.getLength())
+                target.addItem(new Item(item.getNaaccrId(), item.getValue()));
+        }
+    }
+}
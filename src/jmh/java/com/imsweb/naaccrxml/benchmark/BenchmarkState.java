@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The state shared by the benchmarks working on generated data; the data is generated once per trial, for each NAACCR version.
+ * <br/><br/>
+ * Use XmlState for the benchmarks that can run on all the versions and FlatState for the ones requiring a flat file (the flat files have been retired in NAACCR 21).
+ */
+@State(Scope.Benchmark)
+public abstract class BenchmarkState {
+
+    // JMH parameters need to be public (and their name is used in the report)
+    @Param("1000")
+    public int numPatients;
+
+    private BenchmarkData _data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        _data = new BenchmarkData(getNaaccrVersion(), numPatients);
+        initialize();
+    }
+
+    /**
+     * Called once the data has been generated; sub-classes can override this method to prepare their own state (JMH doesn't guarantee the order of the
+     * setup methods of a class hierarchy).
+     * @throws IOException if the state cannot be prepared
+     */
+    protected void initialize() throws IOException {
+        // nothing to do by default
+    }
+
+    public abstract String getNaaccrVersion();
+
+    public BenchmarkData getData() {
+        return _data;
+    }
+
+    @State(Scope.Benchmark)
+    public static class XmlState extends BenchmarkState {
+
+        @Param({"160", "180", "210", "220"})
+        public String naaccrVersion;
+
+        @Override
+        public String getNaaccrVersion() {
+            return naaccrVersion;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FlatState extends BenchmarkState {
+
+        @Param({"160", "180"})
+        public String naaccrVersion;
+
+        @Override
+        public String getNaaccrVersion() {
+            return naaccrVersion;
+        }
+
+        @Override
+        protected void initialize() throws IOException {
+            if (getData().getFlat() == null)
+                throw new IllegalStateException("NAACCR " + naaccrVersion + " doesn't define a flat file");
+        }
+    }
+}
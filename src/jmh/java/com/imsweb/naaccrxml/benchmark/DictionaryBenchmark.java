@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+
+/**
+ * Measures the creation of a runtime dictionary from already-loaded base and user dictionaries (without going through the pre-compiled dictionaries),
+ * and the parsing of the XML base dictionary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DictionaryBenchmark {
+
+    // JMH parameters need to be public (and their name is used in the report)
+    @Param({"160", "180", "210", "220"})
+    public String naaccrVersion;
+
+    private NaaccrDictionary _baseDictionary;
+
+    private List<NaaccrDictionary> _userDictionaries;
+
+    private byte[] _baseDictionaryXml;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        _baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(naaccrVersion);
+        NaaccrDictionary userDictionary = NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(naaccrVersion);
+        _userDictionaries = userDictionary == null ? Collections.emptyList() : Collections.singletonList(userDictionary);
+
+        try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream("naaccr-dictionary-" + naaccrVersion + ".xml")) {
+            if (is == null)
+                throw new IOException("Unable to find base dictionary for version " + naaccrVersion);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n = is.read(buffer);
+            while (n != -1) {
+                os.write(buffer, 0, n);
+                n = is.read(buffer);
+            }
+            _baseDictionaryXml = os.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public RuntimeNaaccrDictionary createRuntimeDictionary() throws IOException {
+        return new RuntimeNaaccrDictionary(BenchmarkData.RECORD_TYPE, _baseDictionary, _userDictionaries);
+    }
+
+    @Benchmark
+    public NaaccrDictionary readXmlDictionary() throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(_baseDictionaryXml), StandardCharsets.UTF_8)) {
+            return NaaccrXmlDictionaryUtils.readDictionary(reader);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal JSON parser, used to read the baseline of the regression gate (the library doesn't depend on any JSON library, and the benchmarks shouldn't
+ * add one just for that file).
+ * <br/><br/>
+ * The objects are returned as maps (keeping the order of their members), the arrays as lists, the numbers as doubles, and the literals as booleans
+ * (or null); any syntax error results in an IllegalArgumentException.
+ */
+final class JsonParser {
+
+    private final String _content;
+
+    private int _pos;
+
+    private JsonParser(String content) {
+        _content = content;
+    }
+
+    /**
+     * Parses the provided JSON content.
+     * @param content JSON content, cannot be null
+     * @return the parsed value (a map, a list, a string, a double, a boolean or null)
+     */
+    static Object parse(String content) {
+        JsonParser parser = new JsonParser(content);
+        Object value = parser.readValue();
+        parser.skipWhitespaces();
+        if (parser._pos < content.length())
+            throw parser.error("unexpected content after the value");
+        return value;
+    }
+
+    private Object readValue() {
+        skipWhitespaces();
+        if (_pos >= _content.length())
+            throw error("unexpected end of content");
+        char c = _content.charAt(_pos);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return readNumber();
+                throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        _pos++;
+        skipWhitespaces();
+        if (peek() == '}') {
+            _pos++;
+            return result;
+        }
+        while (true) {
+            skipWhitespaces();
+            if (peek() != '"')
+                throw error("expected a member name");
+            String name = readString();
+            skipWhitespaces();
+            expect(':');
+            result.put(name, readValue());
+            skipWhitespaces();
+            if (peek() == ',')
+                _pos++;
+            else {
+                expect('}');
+                return result;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> result = new ArrayList<>();
+        _pos++;
+        skipWhitespaces();
+        if (peek() == ']') {
+            _pos++;
+            return result;
+        }
+        while (true) {
+            result.add(readValue());
+            skipWhitespaces();
+            if (peek() == ',')
+                _pos++;
+            else {
+                expect(']');
+                return result;
+            }
+        }
+    }
+
+    private String readString() {
+        StringBuilder buf = new StringBuilder();
+        _pos++;
+        while (true) {
+            if (_pos >= _content.length())
+                throw error("unterminated string");
+            char c = _content.charAt(_pos++);
+            if (c == '"')
+                return buf.toString();
+            if (c < 0x20)
+                throw error("control character in string");
+            if (c != '\\') {
+                buf.append(c);
+                continue;
+            }
+            if (_pos >= _content.length())
+                throw error("unterminated string");
+            char escaped = _content.charAt(_pos++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    buf.append(escaped);
+                    break;
+                case 'b':
+                    buf.append('\b');
+                    break;
+                case 'f':
+                    buf.append('\f');
+                    break;
+                case 'n':
+                    buf.append('\n');
+                    break;
+                case 'r':
+                    buf.append('\r');
+                    break;
+                case 't':
+                    buf.append('\t');
+                    break;
+                case 'u':
+                    if (_pos + 4 > _content.length())
+                        throw error("invalid unicode escape");
+                    try {
+                        buf.append((char)Integer.parseInt(_content.substring(_pos, _pos + 4), 16));
+                    }
+                    catch (NumberFormatException e) {
+                        throw error("invalid unicode escape");
+                    }
+                    _pos += 4;
+                    break;
+                default:
+                    throw error("invalid escape '\\" + escaped + "'");
+            }
+        }
+    }
+
+    private Double readNumber() {
+        int start = _pos;
+        if (peek() == '-')
+            _pos++;
+        if (peek() == '0')
+            _pos++;
+        else if (!skipDigits())
+            throw error("invalid number");
+        if (peek() == '.') {
+            _pos++;
+            if (!skipDigits())
+                throw error("invalid number");
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            _pos++;
+            if (peek() == '+' || peek() == '-')
+                _pos++;
+            if (!skipDigits())
+                throw error("invalid number");
+        }
+        return Double.valueOf(_content.substring(start, _pos));
+    }
+
+    private boolean skipDigits() {
+        int start = _pos;
+        while (peek() >= '0' && peek() <= '9')
+            _pos++;
+        return _pos > start;
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!_content.startsWith(literal, _pos))
+            throw error("unexpected literal");
+        _pos += literal.length();
+        return value;
+    }
+
+    private void skipWhitespaces() {
+        while (_pos < _content.length() && (peek() == ' ' || peek() == '\t' || peek() == '\n' || peek() == '\r'))
+            _pos++;
+    }
+
+    // returns 0 at the end of the content (that character is never valid outside of a string anyway)
+    private char peek() {
+        return _pos < _content.length() ? _content.charAt(_pos) : 0;
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw error("expected '" + c + "'");
+        _pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON at position " + _pos + ": " + message);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.imsweb.naaccrxml.NaaccrContext;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * Translates all the generated flat lines into patients, and all the single-tumor patients into flat lines, using a shared context (like the
+ * documentation of those methods recommends).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LineConversionBenchmark {
+
+    public static class LineState extends BenchmarkState.FlatState {
+
+        private NaaccrContext _context;
+
+        private List<String> _lines;
+
+        private List<Patient> _patients;
+
+        private long _numBytes;
+
+        @Override
+        protected void initialize() throws IOException {
+            super.initialize();
+            _context = new NaaccrContext(getData().getFormat());
+            _lines = new ArrayList<>();
+            _patients = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(getData().createFlatReader())) {
+                String line = reader.readLine();
+                while (line != null) {
+                    _lines.add(line);
+                    _patients.add(NaaccrXmlUtils.lineToPatient(line, _context));
+                    _numBytes += line.length() + 1;
+                    line = reader.readLine();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void lineToPatient(LineState state, ThroughputCounters counters, Blackhole blackhole) throws IOException {
+        for (String line : state._lines)
+            blackhole.consume(NaaccrXmlUtils.lineToPatient(line, state._context));
+        counters.add(state._lines.size(), state._lines.size(), state._numBytes);
+    }
+
+    @Benchmark
+    public void patientToLine(LineState state, ThroughputCounters counters, Blackhole blackhole) throws IOException {
+        for (Patient patient : state._patients)
+            blackhole.consume(NaaccrXmlUtils.patientToLine(patient, state._context));
+        counters.add(state._patients.size(), state._patients.size(), state._numBytes);
+    }
+}
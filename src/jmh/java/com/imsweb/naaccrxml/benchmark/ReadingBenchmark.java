@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.imsweb.naaccrxml.PatientFlatReader;
+import com.imsweb.naaccrxml.PatientXmlReader;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * Reads an entire generated data file (kept in memory) with the XML and the flat readers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadingBenchmark {
+
+    @Benchmark
+    public void readXml(BenchmarkState.XmlState state, ThroughputCounters counters, Blackhole blackhole) throws IOException {
+        BenchmarkData data = state.getData();
+        try (PatientXmlReader reader = new PatientXmlReader(data.createXmlReader())) {
+            Patient patient = reader.readPatient();
+            while (patient != null) {
+                blackhole.consume(patient);
+                patient = reader.readPatient();
+            }
+        }
+        counters.add(data.getNumPatients(), data.getNumTumors(), data.getXml().length);
+    }
+
+    @Benchmark
+    public void readFlat(BenchmarkState.FlatState state, ThroughputCounters counters, Blackhole blackhole) throws IOException {
+        BenchmarkData data = state.getData();
+        try (PatientFlatReader reader = new PatientFlatReader(data.createFlatReader())) {
+            Patient patient = reader.readPatient();
+            while (patient != null) {
+                blackhole.consume(patient);
+                patient = reader.readPatient();
+            }
+        }
+        counters.add(data.getNumPatients(), data.getNumTumors(), data.getFlat().length);
+    }
+}
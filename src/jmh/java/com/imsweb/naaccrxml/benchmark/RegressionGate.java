@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the reading and writing benchmarks and compares their results with a baseline; fails (with a non-zero exit code) if the number of bytes allocated
+ * per tumor increased by more than the allowed threshold for any of them.
+ * <br/><br/>
+ * The throughput is compared too, but only reported: it depends too much on the machine running the benchmarks to be used as a gate, while the
+ * allocations (as measured by the GC profiler) are almost deterministic for a given JVM.
+ * <br/><br/>
+ * Usage: RegressionGate baseline-file [allocation-threshold] [-update]; the threshold is a ratio (0.10 means 10% more allocations are allowed); use -update
+ * to replace the baseline with the current results.
+ */
+public final class RegressionGate {
+
+    public static final double DEFAULT_ALLOCATION_THRESHOLD = 0.10;
+
+    // the benchmarks used by the gate; keep that list small, the gate is meant to run on every release
+    private static final String _BENCHMARKS = "com\\.imsweb\\.naaccrxml\\.benchmark\\.(Reading|Writing)Benchmark\\..*";
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        if (args.length < 1)
+            throw new IllegalArgumentException("Usage: RegressionGate baseline-file [allocation-threshold] [-update]");
+
+        File baselineFile = new File(args[0]);
+        double threshold = DEFAULT_ALLOCATION_THRESHOLD;
+        boolean update = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("-update".equals(args[i]))
+                update = true;
+            else
+                threshold = Double.parseDouble(args[i]);
+        }
+
+        Map<String, Measure> current = runBenchmarks();
+
+        if (update || !baselineFile.exists()) {
+            Files.write(baselineFile.toPath(), createBaseline(System.getProperty("java.version"), current).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Baseline written to " + baselineFile.getPath());
+            return;
+        }
+
+        Baseline baseline = readBaseline(new String(Files.readAllBytes(baselineFile.toPath()), StandardCharsets.UTF_8));
+        if (baseline._jvmVersion != null && !baseline._jvmVersion.equals(System.getProperty("java.version")))
+            System.out.println("WARNING: the baseline was created with Java " + baseline._jvmVersion + ", the allocations might not be comparable");
+
+        int numFailures = compare(baseline._measures, current, threshold, System.out);
+        if (numFailures > 0) {
+            System.out.printf(Locale.US, "%nFAILED: %d benchmark(s) allocate more than %.0f%% above the baseline%n", numFailures, threshold * 100);
+            System.exit(1);
+        }
+        System.out.printf(Locale.US, "%nPASSED: no benchmark allocates more than %.0f%% above the baseline%n", threshold * 100);
+    }
+
+    /**
+     * Compares the current results with the baseline and prints the comparison; a benchmark that is not in the baseline is reported but never fails.
+     * @param baseline the measures of the baseline
+     * @param current the current measures
+     * @param threshold the allowed allocation increase, as a ratio
+     * @param out where the comparison is printed
+     * @return the number of benchmarks allocating more than the threshold above the baseline
+     */
+    static int compare(Map<String, Measure> baseline, Map<String, Measure> current, double threshold, PrintStream out) {
+        int numFailures = 0;
+        out.println();
+        out.printf(Locale.US, "%-40s %15s %15s %9s %15s %15s %9s%n", "Benchmark", "Base B/tumor", "B/tumor", "Change", "Base tumors/s", "tumors/s", "Change");
+        for (Entry<String, Measure> entry : current.entrySet()) {
+            Measure base = baseline.get(entry.getKey());
+            Measure measure = entry.getValue();
+            if (base == null) {
+                out.printf(Locale.US, "%-40s %15s %15.1f %9s %15s %15.1f %9s%n", entry.getKey(), "N/A", measure._bytesPerTumor, "", "N/A", measure._tumorsPerSecond, "");
+                continue;
+            }
+            double allocationChange = computeChange(base._bytesPerTumor, measure._bytesPerTumor);
+            double throughputChange = computeChange(base._tumorsPerSecond, measure._tumorsPerSecond);
+            boolean failed = allocationChange > threshold;
+            if (failed)
+                numFailures++;
+            out.printf(Locale.US, "%-40s %15.1f %15.1f %+8.1f%% %15.1f %15.1f %+8.1f%%%s%n", entry.getKey(), base._bytesPerTumor, measure._bytesPerTumor, allocationChange * 100,
+                    base._tumorsPerSecond, measure._tumorsPerSecond, throughputChange * 100, failed ? "   <-- ALLOCATION REGRESSION" : "");
+        }
+        for (String key : baseline.keySet())
+            if (!current.containsKey(key))
+                out.println("WARNING: " + key + " is in the baseline but wasn't run");
+        return numFailures;
+    }
+
+    private static Map<String, Measure> runBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(_BENCHMARKS)
+                .param("numPatients", "1000")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .build();
+
+        Map<String, Measure> measures = new TreeMap<>();
+        for (RunResult result : new Runner(options).run()) {
+            String benchmark = result.getParams().getBenchmark();
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1) + ":" + result.getParams().getParam("naaccrVersion");
+
+            double operationsPerSecond = result.getPrimaryResult().getScore();
+            double tumorsPerSecond = getSecondaryScore(result, "tumors");
+            double bytesPerOperation = getSecondaryScore(result, "gc.alloc.rate.norm");
+            measures.put(name, new Measure(bytesPerOperation / (tumorsPerSecond / operationsPerSecond), tumorsPerSecond));
+        }
+        return measures;
+    }
+
+    // the names of the profiler results start with a special character, so only the end of the name is compared
+    private static double getSecondaryScore(RunResult result, String name) {
+        for (Entry<String, Result> entry : result.getSecondaryResults().entrySet())
+            if (entry.getKey().endsWith(name))
+                return entry.getValue().getScore();
+        throw new IllegalStateException("Unable to find result " + name + " for " + result.getParams().getBenchmark());
+    }
+
+    private static double computeChange(double base, double value) {
+        return base == 0 ? 0 : (value - base) / base;
+    }
+
+    /**
+     * Reads the content of a baseline file (see createBaseline()).
+     * @param content JSON content
+     * @return the baseline, never null
+     */
+    static Baseline readBaseline(String content) {
+        Object root = JsonParser.parse(content);
+        if (!(root instanceof Map))
+            throw new IllegalArgumentException("Invalid baseline: the root value must be an object");
+        Object jvmVersion = ((Map<?, ?>)root).get("jvmVersion");
+        if (jvmVersion != null && !(jvmVersion instanceof String))
+            throw new IllegalArgumentException("Invalid baseline: jvmVersion must be a string");
+        Object benchmarks = ((Map<?, ?>)root).get("benchmarks");
+        if (!(benchmarks instanceof Map))
+            throw new IllegalArgumentException("Invalid baseline: benchmarks must be an object");
+
+        Map<String, Measure> measures = new TreeMap<>();
+        for (Entry<?, ?> entry : ((Map<?, ?>)benchmarks).entrySet()) {
+            if (!(entry.getValue() instanceof Map))
+                throw new IllegalArgumentException("Invalid baseline: the value of " + entry.getKey() + " must be an object");
+            Map<?, ?> values = (Map<?, ?>)entry.getValue();
+            measures.put((String)entry.getKey(), new Measure(getNumber(values, "allocatedBytesPerTumor", entry.getKey()), getNumber(values, "tumorsPerSecond", entry.getKey())));
+        }
+        return new Baseline((String)jvmVersion, measures);
+    }
+
+    private static double getNumber(Map<?, ?> values, String name, Object benchmark) {
+        Object value = values.get(name);
+        if (!(value instanceof Double))
+            throw new IllegalArgumentException("Invalid baseline: " + name + " must be a number for " + benchmark);
+        return (Double)value;
+    }
+
+    /**
+     * Creates the content of a baseline file.
+     * @param jvmVersion the version of the JVM that ran the benchmarks
+     * @param measures the measures, keyed by benchmark
+     * @return the JSON content
+     */
+    static String createBaseline(String jvmVersion, Map<String, Measure> measures) {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\n");
+        buf.append("  \"jvmVersion\": ").append(quote(jvmVersion)).append(",\n");
+        buf.append("  \"benchmarks\": {\n");
+        int count = 0;
+        for (Entry<String, Measure> entry : measures.entrySet()) {
+            buf.append(String.format(Locale.US, "    %s: {\"allocatedBytesPerTumor\": %.1f, \"tumorsPerSecond\": %.1f}", quote(entry.getKey()), entry.getValue()._bytesPerTumor,
+                    entry.getValue()._tumorsPerSecond));
+            buf.append(++count < measures.size() ? ",\n" : "\n");
+        }
+        buf.append("  }\n");
+        buf.append("}\n");
+        return buf.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder buf = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                buf.append('\\').append(c);
+            else if (c < 0x20)
+                buf.append(String.format("\\u%04x", (int)c));
+            else
+                buf.append(c);
+        }
+        return buf.append('"').toString();
+    }
+
+    static final class Baseline {
+
+        private final String _jvmVersion;
+
+        private final Map<String, Measure> _measures;
+
+        private Baseline(String jvmVersion, Map<String, Measure> measures) {
+            _jvmVersion = jvmVersion;
+            _measures = measures;
+        }
+
+        String getJvmVersion() {
+            return _jvmVersion;
+        }
+
+        Map<String, Measure> getMeasures() {
+            return _measures;
+        }
+    }
+
+    static final class Measure {
+
+        private final double _bytesPerTumor;
+
+        private final double _tumorsPerSecond;
+
+        Measure(double bytesPerTumor, double tumorsPerSecond) {
+            _bytesPerTumor = bytesPerTumor;
+            _tumorsPerSecond = tumorsPerSecond;
+        }
+
+        double getBytesPerTumor() {
+            return _bytesPerTumor;
+        }
+
+        double getTumorsPerSecond() {
+            return _tumorsPerSecond;
+        }
+    }
+}
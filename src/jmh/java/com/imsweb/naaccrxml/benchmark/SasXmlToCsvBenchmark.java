@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.imsweb.naaccrxml.sas.SasFieldInfo;
+import com.imsweb.naaccrxml.sas.SasUtils;
+import com.imsweb.naaccrxml.sas.SasXmlByteReader;
+import com.imsweb.naaccrxml.sas.SasXmlReader;
+import com.imsweb.naaccrxml.sas.SasXmlToCsv;
+
+/**
+ * Converts a generated XML file into a CSV file using the SAS library; unlike the other benchmarks, this one goes through the file system since that's
+ * the only thing the SAS library supports.
+ * <br/><br/>
+ * The readWideExtract benchmark isolates the SAS XML reader: it reads the generated data from memory and requests the value of every field of the
+ * record type for every tumor (a wide extract), without writing anything; readWideExtractBytes does the same with the byte reader.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SasXmlToCsvBenchmark {
+
+    public static class SasState extends BenchmarkState.XmlState {
+
+        private File _xmlFile;
+
+        private File _csvFile;
+
+        private List<SasFieldInfo> _fields;
+
+        @Override
+        protected void initialize() throws IOException {
+            _xmlFile = File.createTempFile("sas-benchmark-", ".xml");
+            _csvFile = new File(_xmlFile.getPath().replace(".xml", ".csv"));
+            Files.write(_xmlFile.toPath(), getData().getXml());
+            _fields = SasUtils.getFields(naaccrVersion, BenchmarkData.RECORD_TYPE, null);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteFiles() throws IOException {
+            Files.deleteIfExists(_xmlFile.toPath());
+            Files.deleteIfExists(_csvFile.toPath());
+        }
+    }
+
+    @Benchmark
+    public void xmlToCsv(SasState state, ThroughputCounters counters) throws IOException {
+        new SasXmlToCsv(state._xmlFile.getPath(), state._csvFile.getPath(), state.naaccrVersion, BenchmarkData.RECORD_TYPE).convert();
+        counters.add(state.getData().getNumPatients(), state.getData().getNumTumors(), state.getData().getXml().length);
+    }
+
+    @Benchmark
+    public void readWideExtract(SasState state, ThroughputCounters counters, Blackhole blackhole) throws IOException {
+        int numFields = state._fields.size();
+        SasXmlReader reader = new SasXmlReader(new BufferedReader(state.getData().createXmlReader()), state._fields);
+        try {
+            while (reader.nextRecord() > 0)
+                for (int i = 0; i < numFields; i++)
+                    blackhole.consume(reader.getValue(i));
+        }
+        finally {
+            reader.close();
+        }
+        counters.add(state.getData().getNumPatients(), state.getData().getNumTumors(), state.getData().getXml().length);
+    }
+
+    @Benchmark
+    public void readWideExtractBytes(SasState state, ThroughputCounters counters, Blackhole blackhole) throws IOException {
+        int numFields = state._fields.size();
+        SasXmlByteReader reader = new SasXmlByteReader(new ByteArrayInputStream(state.getData().getXml()), state._fields);
+        try {
+            while (reader.nextRecord() > 0)
+                for (int i = 0; i < numFields; i++)
+                    blackhole.consume(reader.getValue(i));
+        }
+        finally {
+            reader.close();
+        }
+        counters.add(state.getData().getNumPatients(), state.getData().getNumTumors(), state.getData().getXml().length);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary counters reported by the benchmarks processing data files; JMH reports them as patients, tumors and megabytes per second, which are easier
+ * to compare across NAACCR versions than the number of operations (files) per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounters {
+
+    private long _patients;
+
+    private long _tumors;
+
+    private long _bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        _patients = 0;
+        _tumors = 0;
+        _bytes = 0;
+    }
+
+    /**
+     * Records the processing of the provided number of patients, tumors and bytes.
+     */
+    public void add(long patients, long tumors, long bytes) {
+        _patients += patients;
+        _tumors += tumors;
+        _bytes += bytes;
+    }
+
+    public long patients() {
+        return _patients;
+    }
+
+    public long tumors() {
+        return _tumors;
+    }
+
+    public double megabytes() {
+        return _bytes / 1024.0 / 1024.0;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.imsweb.naaccrxml.PatientFlatWriter;
+import com.imsweb.naaccrxml.PatientXmlWriter;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * Writes all the generated patients with the XML and the flat writers; the written characters are discarded, so only the library's work is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WritingBenchmark {
+
+    @Benchmark
+    public void writeXml(BenchmarkState.XmlState state, ThroughputCounters counters) throws IOException {
+        BenchmarkData data = state.getData();
+        try (PatientXmlWriter writer = new PatientXmlWriter(BenchmarkData.createNullWriter(), data.getData())) {
+            for (Patient patient : data.getPatients())
+                writer.writePatient(patient);
+        }
+        counters.add(data.getNumPatients(), data.getNumTumors(), data.getXml().length);
+    }
+
+    @Benchmark
+    public void writeFlat(BenchmarkState.FlatState state, ThroughputCounters counters) throws IOException {
+        BenchmarkData data = state.getData();
+        try (PatientFlatWriter writer = new PatientFlatWriter(BenchmarkData.createNullWriter(), data.getData())) {
+            for (Patient patient : data.getPatients())
+                writer.writePatient(patient);
+        }
+        counters.add(data.getNumPatients(), data.getNumTumors(), data.getFlat().length);
+    }
+}
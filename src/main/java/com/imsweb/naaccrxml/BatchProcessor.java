@@ -8,36 +8,53 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.LineNumberReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.internal.BatchManifest;
+import com.imsweb.naaccrxml.internal.HeaderSniffer;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
+import com.imsweb.naaccrxml.internal.NaaccrXmLPrettyPrintWriter;
+import com.imsweb.naaccrxml.management.BatchMonitor;
+import com.imsweb.naaccrxml.management.NaaccrManagement;
+import com.imsweb.naaccrxml.sink.ValidationErrorStatistics;
 
 /**
  * This class can be called on the command line to process an entire folder of files.
  * <br/>
  * Usage: java -cp naaccr-xml-x.x-all.jar BatchProcessor options.properties
+ * <br/>
+ * The progress of the batch can be monitored with any JMX tool by adding -Dnaaccrxml.jmx.enabled=true to the command (see NaaccrManagement).
  */
 public final class BatchProcessor {
 
@@ -50,15 +67,25 @@ public final class BatchProcessor {
     // file name exclusion regex (optional)
     private static final String _OPTION_INPUT_REGEX_EXCLUDE = "input.regex-exclude";
 
-    // processing mode: flat-to-xml or xml-to-flat (required)
+    // processing mode: flat-to-xml, xml-to-flat, xml-to-xml or validate (required); the validate mode reads the files (XML or flat) without creating any file
     private static final String _OPTION_PROCESSING_MODE = "processing.mode";
 
+    // the supported processing modes
+    private static final String _MODE_FLAT_TO_XML = "flat-to-xml";
+    private static final String _MODE_XML_TO_FLAT = "xml-to-flat";
+    private static final String _MODE_XML_TO_XML = "xml-to-xml";
+    private static final String _MODE_VALIDATE = "validate";
+
     // the list of error codes (comma separated) to process (optional, if not provided, all codes are processed)
     private static final String _OPTION_PROCESSING_ERROR_CODES = "processing.error-codes";
 
-    // the number of threads to use (optional, defaults to Min(num-processors + 1, 5))
+    // the number of threads to use (optional, defaults to the number of processors)
     private static final String _OPTION_PROCESSING_NUM_THREADS = "processing.num-threads";
 
+    // the number of lines per chunk when splitting the flat files to process them in parallel; 0 means no splitting (optional, defaults to 1000); the number
+    // of chunks in memory is bounded for the entire batch (twice the number of threads), whatever the number of files processed at the same time
+    private static final String _OPTION_PROCESSING_CHUNK_SIZE = "processing.chunk-size";
+
     // compression for the created data files; gz, xz, none, as-input (optional, defaults to as-input)
     private static final String _OPTION_PROCESSING_COMPRESSION = "processing.compression";
 
@@ -77,6 +104,15 @@ public final class BatchProcessor {
     // whether or not the file names should be de-identified (defaults to false)
     private static final String _OPTION_OUTPUT_DEIDENTIFY_FILES = "output.de-identify-files";
 
+    // the name of the manifest keeping track of the processed files (optional, defaults to batch-manifest.txt)
+    private static final String _OPTION_OUTPUT_MANIFEST_NAME = "output.manifest-name";
+
+    // whether or not the files completed by a previous run (with the same options) should be skipped if they didn't change: true or false (defaults to true)
+    private static final String _OPTION_PROCESSING_RESUME = "processing.resume";
+
+    // the prefix of the files being created (they are renamed once they are complete)
+    private static final String _TMP_FILE_PREFIX = ".tmp-";
+
     /**
      * Main method, entry point.
      */
@@ -98,8 +134,8 @@ public final class BatchProcessor {
         String mode = opt.getProperty(_OPTION_PROCESSING_MODE);
         if (mode == null)
             throw new RuntimeException("Option " + _OPTION_PROCESSING_MODE + " is required.");
-        if (!"flat-to-xml".equals(mode) && !"xml-to-flat".equals(mode))
-            throw new RuntimeException("Invalid mode (must be flat-to-xml or xml-to-flat).");
+        if (!_MODE_FLAT_TO_XML.equals(mode) && !_MODE_XML_TO_FLAT.equals(mode) && !_MODE_XML_TO_XML.equals(mode) && !_MODE_VALIDATE.equals(mode))
+            throw new RuntimeException("Invalid mode (must be flat-to-xml, xml-to-flat, xml-to-xml or validate).");
         String rawErrorCodes = opt.getProperty(_OPTION_PROCESSING_ERROR_CODES);
         List<String> errorCodes = null;
         if (rawErrorCodes != null && !rawErrorCodes.isEmpty()) {
@@ -107,9 +143,14 @@ public final class BatchProcessor {
             for (String s : StringUtils.split(rawErrorCodes, ','))
                 errorCodes.add(s.trim());
         }
-        int numThreads = Math.min(Runtime.getRuntime().availableProcessors() + 1, 5);
+        int numThreads = Runtime.getRuntime().availableProcessors();
         if (opt.getProperty(_OPTION_PROCESSING_NUM_THREADS) != null && !opt.getProperty(_OPTION_PROCESSING_NUM_THREADS).isEmpty())
             numThreads = Integer.parseInt(opt.getProperty(_OPTION_PROCESSING_NUM_THREADS));
+        int chunkSize = 1000;
+        if (opt.getProperty(_OPTION_PROCESSING_CHUNK_SIZE) != null && !opt.getProperty(_OPTION_PROCESSING_CHUNK_SIZE).isEmpty())
+            chunkSize = Integer.parseInt(opt.getProperty(_OPTION_PROCESSING_CHUNK_SIZE));
+        if (chunkSize < 0)
+            throw new RuntimeException("Invalid chunk size (must be 0 or more).");
         if (opt.getProperty(_OPTION_OUTPUT_FOLDER) == null || opt.getProperty(_OPTION_OUTPUT_FOLDER).isEmpty())
             throw new RuntimeException("Option " + _OPTION_OUTPUT_FOLDER + " is required.");
         String compression = opt.getProperty(_OPTION_PROCESSING_COMPRESSION);
@@ -122,13 +163,20 @@ public final class BatchProcessor {
         boolean createReport = opt.getProperty(_OPTION_OUTPUT_CREATE_REPORT) == null ? false : Boolean.valueOf(opt.getProperty(_OPTION_OUTPUT_CREATE_REPORT));
         String reportName = opt.getProperty(_OPTION_OUTPUT_REPORT_NAME) == null ? "report.txt" : opt.getProperty(_OPTION_OUTPUT_REPORT_NAME);
         boolean deidentify = opt.getProperty(_OPTION_OUTPUT_DEIDENTIFY_FILES) == null ? false : Boolean.valueOf(opt.getProperty(_OPTION_OUTPUT_DEIDENTIFY_FILES));
+        String manifestName = opt.getProperty(_OPTION_OUTPUT_MANIFEST_NAME) == null ? "batch-manifest.txt" : opt.getProperty(_OPTION_OUTPUT_MANIFEST_NAME);
+        boolean resume = opt.getProperty(_OPTION_PROCESSING_RESUME) == null ? true : Boolean.valueOf(opt.getProperty(_OPTION_PROCESSING_RESUME));
+        File manifestFile = new File(outputDir, manifestName);
 
         // gather the files to process
         List<File> toProcess = new ArrayList<>();
         File[] files = inputDir.listFiles();
         if (files != null) {
+            // when the input folder is also the output folder, the manifest and the temporary files left by a crashed run are not inputs
+            boolean inOutputDir = inputDir.getCanonicalFile().equals(outputDir.getCanonicalFile());
             for (File file : files) {
-                if (file.isDirectory())
+                if (file.isDirectory() || file.equals(manifestFile))
+                    continue;
+                if (inOutputDir && (file.getName().startsWith(_TMP_FILE_PREFIX) || file.getName().equals(BatchManifest.getTemporaryFile(manifestFile).getName())))
                     continue;
                 boolean add = true;
                 if (incRegex != null || excRegex != null) {
@@ -142,31 +190,55 @@ public final class BatchProcessor {
             }
         }
 
+        // the largest files are processed first, so they don't end up running alone at the end of the batch
+        toProcess.sort(Comparator.comparingLong(File::length).reversed());
+
         // we will report the information in this collection
         Map<String, List<String>> reportData = new TreeMap<>();
-        Map<String, AtomicInteger> globalCounts = new HashMap<>();
-        Map<String, Set<String>> globalDetails = new HashMap<>();
-        AtomicInteger globalTumorCount = new AtomicInteger();
+        BatchContext context = new BatchContext();
+        context._mode = mode;
+        context._chunkSize = chunkSize;
+        context._chunkPermits = new Semaphore(numThreads * 2);
+        context._deleteOutputFiles = cleanCreatedFiles;
+        context._errorCodes = errorCodes;
+        context._resume = resume;
+
+        // the options that have an impact on the created files; if any of those change, the files need to be re-processed
+        context._optionsHash = BatchManifest.computeHash("mode=" + mode + "|compression=" + compression + "|specs=" + NaaccrXmlUtils.CURRENT_SPECIFICATION_VERSION);
+        if (!_MODE_VALIDATE.equals(mode))
+            context._manifest = BatchManifest.load(manifestFile);
 
         // create the work
         long start = System.currentTimeMillis();
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        context._monitor = NaaccrManagement.registerBatchMonitor();
+        if (context._monitor != null)
+            context._monitor.setPool(pool);
         for (File inputFile : toProcess) {
-            String outputFilename = invertFilename(inputFile, compression);
-            @SuppressWarnings("ConstantConditions")
-            File outputFile = new File(outputDir, outputFilename);
-            if (inputFile.equals(outputFile))
-                throw new RuntimeException("Was about to write output file into the input file, this can't be good!");
-            if (cleanCreatedFiles)
-                outputFile.deleteOnExit();
+            File outputFile = null;
+            if (!_MODE_VALIDATE.equals(mode)) {
+                String outputFilename = createOutputFilename(inputFile, mode, compression);
+                outputFile = new File(outputDir, outputFilename);
+                if (inputFile.equals(outputFile))
+                    throw new RuntimeException("Was about to write output file into the input file, this can't be good!");
+                if (cleanCreatedFiles)
+                    outputFile.deleteOnExit();
+            }
             List<String> data = new ArrayList<>();
             reportData.put(inputFile.getName(), data);
-            executor.execute(new FileProcessor(inputFile, outputFile, data, cleanCreatedFiles, "flat-to-xml".equals(mode), globalCounts, globalDetails, globalTumorCount, errorCodes));
+            if (context._monitor != null)
+                context._monitor.fileQueued();
+            pool.execute(new FileProcessor(inputFile, outputFile, data, context));
         }
-        executor.shutdown();
+        pool.shutdown();
 
         // wait for the work to be completed
-        executor.awaitTermination(1, TimeUnit.DAYS);
+        pool.awaitTermination(1, TimeUnit.DAYS);
+        if (context._monitor != null)
+            context._monitor.unregister();
+        if (context._manifest != null)
+            context._manifest.close();
+        ValidationErrorStatistics globalStats = context._globalStats;
 
         // write the report
         if (createReport) {
@@ -174,22 +246,24 @@ public final class BatchProcessor {
 
             reportWriter.write("Report created on " + new Date() + "\n\n");
             reportWriter.write("total number of files: " + formatNumber(toProcess.size()) + "\n");
+            if (context._skippedFileCount.get() > 0)
+                reportWriter.write("total number of skipped files (completed by a previous run): " + formatNumber(context._skippedFileCount.get()) + "\n");
             reportWriter.write("total processing time: " + formatTime(System.currentTimeMillis() - start) + "\n");
-            reportWriter.write("total number of processed tumors: " + formatNumber(globalTumorCount.get()) + "\n");
+            reportWriter.write("total number of processed patients: " + formatNumber(context._globalPatientCount.get()) + "\n");
+            reportWriter.write("total number of processed tumors: " + formatNumber(context._globalTumorCount.get()) + "\n");
+            reportWriter.write("total throughput: " + formatThroughput(context._globalPatientCount.get(), System.currentTimeMillis() - start) + "\n");
             reportWriter.write("combined warnings:\n");
 
-            int globalCount = 0;
+            long globalCount = 0;
             for (String code : NaaccrErrorUtils.getAllValidationErrors().keySet()) {
                 if (errorCodes != null && !errorCodes.contains(code))
                     continue;
-                int count = globalCounts.containsKey(code) ? globalCounts.get(code).get() : 0;
+                long count = globalStats.getCount(code);
                 if (count > 0) {
                     reportWriter.write("      " + code + ": " + formatNumber(count) + " cases\n");
-                    if (globalDetails.containsKey(code)) {
-                        List<String> list = new ArrayList<>(globalDetails.get(code));
-                        Collections.sort(list);
+                    List<String> list = globalStats.getNaaccrIds(code);
+                    if (!list.isEmpty())
                         reportWriter.write("         involved item(s): " + list.size() + " " + list + "\n");
-                    }
                 }
                 globalCount += count;
             }
@@ -226,23 +300,23 @@ public final class BatchProcessor {
         return opt;
     }
 
-    private static String invertFilename(File file, String compression) {
-        // first invert the filename
+    private static String createOutputFilename(File file, String mode, String compression) {
+        // first invert the filename (XML files stay XML files in xml-to-xml mode)
         String[] name = StringUtils.split(file.getName(), '.');
         if (name.length < 2)
             return null;
         String extension = name[name.length - 1];
-        boolean compressed = false;
-        if (extension.equalsIgnoreCase("gz")) {
+        String compressedExtension = null;
+        if ((extension.equalsIgnoreCase("gz") || extension.equalsIgnoreCase("xz")) && name.length > 2) {
+            compressedExtension = extension.toLowerCase();
             extension = name[name.length - 2];
-            compressed = true;
         }
         StringBuilder result = new StringBuilder();
-        for (int i = 0; i < (compressed ? name.length - 2 : name.length - 1); i++)
+        for (int i = 0; i < (compressedExtension != null ? name.length - 2 : name.length - 1); i++)
             result.append(name[i]).append(".");
-        result.append(extension.equalsIgnoreCase("xml") ? "txt" : "xml");
-        if (compressed)
-            result.append(".gz");
+        result.append(_MODE_XML_TO_XML.equals(mode) || !extension.equalsIgnoreCase("xml") ? "xml" : "txt");
+        if (compressedExtension != null)
+            result.append(".").append(compressedExtension);
 
         // then update the extension using the requested compression
         String newName = result.toString();
@@ -268,140 +342,547 @@ public final class BatchProcessor {
         return new File(file.getParentFile(), newName).getName();
     }
 
-    private static final class FileProcessor implements Runnable {
+    /**
+     * The state shared by all the files of a batch run.
+     */
+    private static final class BatchContext {
+
+        private String _mode;
+        private boolean _deleteOutputFiles, _resume;
+        private int _chunkSize;
+        // the chunks in memory (forked but not written yet), shared by all the files so the memory used doesn't depend on the number of files
+        private Semaphore _chunkPermits;
+        private List<String> _errorCodes;
+        private BatchManifest _manifest;
+        private String _optionsHash;
+        private final ValidationErrorStatistics _globalStats = new ValidationErrorStatistics();
+        private final AtomicLong _globalPatientCount = new AtomicLong();
+        private final AtomicLong _globalTumorCount = new AtomicLong();
+        private final AtomicInteger _skippedFileCount = new AtomicInteger();
+        private BatchMonitor _monitor;
+    }
+
+    /**
+     * Creates the options to use for reading and writing the files.
+     * @param stats statistics receiving the errors in validate mode (ignored otherwise); if null, the errors are attached to the entities
+     * @param validateOnly whether the files are only read (validate mode)
+     */
+    private static NaaccrOptions createOptions(ValidationErrorStatistics.Accumulator stats, boolean validateOnly) {
+        NaaccrOptions options = new NaaccrOptions();
+        options.setReportLevelMismatch(true);
+        if (validateOnly) {
+            // nothing is written, so there is no need to attach the errors to the entities or to keep track of the line numbers of the items
+            options.setValidationErrorSink(stats);
+            options.setReadItemLineNumbers(false);
+        }
+        return options;
+    }
+
+    private static final class FileProcessor extends RecursiveAction {
 
         private File _inputFile;
         private File _outputFile;
         private List<String> _reportData;
-        private boolean _deleteOutputFiles, _flatToXml;
-        private Map<String, AtomicInteger> _globalCounts;
-        private Map<String, Set<String>> _globalDetails;
-        private AtomicInteger _globalTumorCount;
-        private List<String> _errorCodes;
+        private BatchContext _context;
+        private boolean _validateOnly;
+
+        // CPU time used by this file (including its chunks), in nanoseconds
+        private long _cpuTime;
+        private int _numChunks;
 
-        public FileProcessor(File inputFile, File outputFile, List<String> reportData, boolean deleteOutputFiles, boolean flatToXml, Map<String, AtomicInteger> globalCounts, Map<String, Set<String>> globalDetails, AtomicInteger globalTumorCount, List<String> errorCodes) {
+        public FileProcessor(File inputFile, File outputFile, List<String> reportData, BatchContext context) {
             _inputFile = inputFile;
             _outputFile = outputFile;
             _reportData = reportData;
-            _deleteOutputFiles = deleteOutputFiles;
-            _flatToXml = flatToXml;
-            _globalCounts = globalCounts;
-            _globalDetails = globalDetails;
-            _globalTumorCount = globalTumorCount;
-            _errorCodes = errorCodes;
+            _context = context;
+            _validateOnly = _MODE_VALIDATE.equals(context._mode);
         }
 
         @Override
         @SuppressWarnings("ResultOfMethodCallIgnored")
-        public void run() {
+        protected void compute() {
+
+            // check the manifest first, the file might have been processed by a previous run (there is no manifest in validate mode)
+            BatchManifest.Entry entry = null;
+            if (_context._manifest != null) {
+                try {
+                    entry = createManifestEntry();
+                    if (entry.isComplete()) {
+                        _reportData.add("   skipped: already processed by a previous run");
+                        _context._skippedFileCount.incrementAndGet();
+                        if (_context._monitor != null)
+                            _context._monitor.fileSkipped();
+                        return;
+                    }
+                    _context._manifest.update(entry);
+                }
+                catch (IOException e) {
+                    _reportData.add("   processing error: unable to update the manifest: " + e.getMessage());
+                    return;
+                }
+            }
 
-            Map<String, AtomicInteger> warningCounts = new HashMap<>();
-            Map<String, Set<String>> warningDetails = new HashMap<>();
-            AtomicInteger tumorCount = new AtomicInteger();
+            // the statistics are accumulated locally and merged into the global ones once the file is done
+            ValidationErrorStatistics.Accumulator fileStats = _context._globalStats.createAccumulator();
 
-            NaaccrOptions options = new NaaccrOptions();
-            options.setReportLevelMismatch(true);
-            NaaccrObserver observer = new FileObserver(warningCounts, warningDetails, tumorCount, _globalCounts, _globalDetails, _globalTumorCount);
+            NaaccrOptions options = createOptions(fileStats, _validateOnly);
+            FileObserver observer = new FileObserver(fileStats, _validateOnly);
 
-            try {
-                long start = System.currentTimeMillis();
+            // the file is created under a temporary name (keeping the extension, it defines the compression) and renamed once it's complete
+            File tmpFile = _outputFile == null ? null : new File(_outputFile.getParentFile(), _TMP_FILE_PREFIX + _outputFile.getName());
 
-                if (_flatToXml)
-                    NaaccrXmlUtils.flatToXml(_inputFile, _outputFile, options, null, observer);
+            long start = System.currentTimeMillis();
+            long cpuStart = getCurrentThreadCpuTime();
+            boolean success = false;
+            if (_context._monitor != null)
+                _context._monitor.fileStarted(_inputFile.getName());
+            try {
+                if (_validateOnly)
+                    validate(options, fileStats, observer);
+                else if (_MODE_FLAT_TO_XML.equals(_context._mode) && _context._chunkSize > 0)
+                    processFlatInChunks(tmpFile, options, fileStats, observer);
                 else
-                    NaaccrXmlUtils.xmlToFlat(_inputFile, _outputFile, options, null, observer);
+                    convert(tmpFile, options, fileStats, observer);
+                if (Thread.currentThread().isInterrupted())
+                    throw new NaaccrIOException("processing was interrupted");
+                if (tmpFile != null) {
+                    BatchManifest.moveAtomically(tmpFile, _outputFile);
+                    _context._manifest.update(entry.withStatus(BatchManifest.STATUS_COMPLETE));
+                }
+                success = true;
+                _cpuTime += getCurrentThreadCpuTime() - cpuStart;
+                long time = System.currentTimeMillis() - start;
 
                 _reportData.add("   original size: " + formatFileSize(_inputFile.length()));
-                _reportData.add("   created size: " + formatFileSize(_outputFile.length()));
-                _reportData.add("   processing time: " + formatTime(System.currentTimeMillis() - start));
-                _reportData.add("   number of processed tumors: " + formatNumber(tumorCount.get()));
+                if (_outputFile != null)
+                    _reportData.add("   created size: " + formatFileSize(_outputFile.length()));
+                _reportData.add("   processing time: " + formatTime(time));
+                _reportData.add("   CPU time: " + (isCpuTimeSupported() ? formatTime(TimeUnit.NANOSECONDS.toMillis(_cpuTime)) : "not available"));
+                if (_numChunks > 0)
+                    _reportData.add("   number of processed chunks: " + formatNumber(_numChunks));
+                _reportData.add("   number of processed patients: " + formatNumber(observer.getPatientCount()));
+                _reportData.add("   number of processed tumors: " + formatNumber(observer.getTumorCount()));
+                _reportData.add("   throughput: " + formatThroughput(observer.getPatientCount(), time));
                 _reportData.add("   warnings:");
 
-                int globalCount = 0;
+                long fileCount = 0;
                 for (String code : NaaccrErrorUtils.getAllValidationErrors().keySet()) {
-                    if (_errorCodes != null && !_errorCodes.contains(code))
+                    if (_context._errorCodes != null && !_context._errorCodes.contains(code))
                         continue;
-                    int count = warningCounts.containsKey(code) ? warningCounts.get(code).get() : 0;
+                    long count = fileStats.getCount(code);
                     if (count > 0) {
                         _reportData.add("      " + code + ": " + formatNumber(count) + " cases");
-                        if (warningDetails.containsKey(code)) {
-                            List<String> list = new ArrayList<>(warningDetails.get(code));
-                            Collections.sort(list);
+                        List<String> list = fileStats.getNaaccrIds(code);
+                        if (!list.isEmpty())
                             _reportData.add("         involved item(s): " + list.size() + " " + list);
-                        }
                     }
-                    globalCount += count;
+                    fileCount += count;
                 }
-                if (globalCount == 0)
+                if (fileCount == 0)
                     _reportData.add("      no warning found");
             }
-            catch (NaaccrIOException e) {
+            catch (IOException e) {
                 _reportData.add("   processing error: " + e.getMessage());
             }
+            catch (RuntimeException e) {
+                // an unexpected error is reported like any other error; it shouldn't leave the file without any information in the report
+                _reportData.add("   processing error: " + (e.getMessage() != null ? e.getMessage() : e.getClass().getName()));
+            }
+            finally {
+                fileStats.merge();
+                _context._globalPatientCount.addAndGet(observer.getPatientCount());
+                _context._globalTumorCount.addAndGet(observer.getTumorCount());
+                if (_context._monitor != null)
+                    _context._monitor.fileFinished(_inputFile.getName(), success, observer.getPatientCount(), observer.getTumorCount());
+                if (!success && tmpFile != null) {
+                    tmpFile.delete();
+                    try {
+                        _context._manifest.update(entry.withStatus(BatchManifest.STATUS_FAILED));
+                    }
+                    catch (IOException e) {
+                        // the file will be re-processed by the next run anyway since it's not marked as complete
+                    }
+                }
+            }
 
-            if (_deleteOutputFiles)
+            if (_context._deleteOutputFiles && _outputFile != null)
                 if (!_outputFile.delete())
                     System.err.println("Unable to delete " + _outputFile.getPath());
         }
-    }
 
-    private static final class FileObserver implements NaaccrObserver {
+        /**
+         * Returns the manifest entry for the input file; the returned entry is complete if (and only if) the file can be skipped. The content of the
+         * file is hashed only when it's needed: a complete file with the same size and modification time is considered unchanged.
+         */
+        private BatchManifest.Entry createManifestEntry() throws IOException {
+            String name = _inputFile.getName();
+            long size = _inputFile.length();
+            long lastModified = _inputFile.lastModified();
+
+            String hash = null;
+            BatchManifest.Entry previous = _context._manifest.getEntry(name);
+            if (_context._resume && previous != null && previous.isComplete() && _outputFile.exists() && _context._optionsHash.equals(previous.getOptionsHash())
+                    && previous.getSize() == size) {
+                if (previous.getLastModified() == lastModified)
+                    return previous;
+                hash = BatchManifest.computeHash(_inputFile);
+                if (hash.equals(previous.getContentHash())) {
+                    // same content, the file was only touched; let's record the new modification time
+                    BatchManifest.Entry entry = new BatchManifest.Entry(name, size, lastModified, hash, _context._optionsHash, BatchManifest.STATUS_COMPLETE);
+                    _context._manifest.update(entry);
+                    return entry;
+                }
+            }
+
+            return new BatchManifest.Entry(name, size, lastModified, hash != null ? hash : BatchManifest.computeHash(_inputFile), _context._optionsHash, BatchManifest.STATUS_IN_PROGRESS);
+        }
+
+        /**
+         * Reads the entire file (XML or flat, determined from its content) without writing anything; the errors are sent directly to the statistics.
+         */
+        private void validate(NaaccrOptions options, ValidationErrorStatistics.Accumulator fileStats, FileObserver observer) throws IOException {
+            boolean xml = HeaderSniffer.sniff(_inputFile).isXml();
+            if (!xml && _context._chunkSize > 0) {
+                processFlatInChunks(null, options, fileStats, observer);
+                return;
+            }
+
+            Reader source = NaaccrXmlUtils.createReader(_inputFile, options);
+            try (PatientReader reader = xml ? new PatientXmlReader(source, options) : new PatientFlatReader(source, options)) {
+                Patient patient = reader.readPatient();
+                while (patient != null && !Thread.currentThread().isInterrupted()) {
+                    observer.patientRead(patient);
+                    patient = reader.readPatient();
+                }
+                addRootErrors(reader.getRootData(), fileStats);
+            }
+        }
+
+        /**
+         * Converts the file (flat to XML, XML to flat, or XML to XML which normalizes the XML and applies the requested compression); the errors of the
+         * patients are counted once they are written, the ones of the root data once the entire file is written.
+         */
+        private void convert(File targetFile, NaaccrOptions options, ValidationErrorStatistics.Accumulator fileStats, FileObserver observer) throws IOException {
+            boolean xmlSource = !_MODE_FLAT_TO_XML.equals(_context._mode);
+            boolean xmlTarget = !_MODE_XML_TO_FLAT.equals(_context._mode);
+            if (!_inputFile.exists())
+                throw new NaaccrIOException("Source " + (xmlSource ? "XML" : "flat") + " file must exist");
+
+            NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation(xmlSource ? (xmlTarget ? "xmlToXml" : "xmlToFlat") : "flatToXml");
+            NaaccrData rootData = null;
+            try {
+                Reader source = NaaccrXmlUtils.createReader(_inputFile, options);
+                try (PatientReader reader = xmlSource ? new PatientXmlReader(source, options) : new PatientFlatReader(source, options)) {
+                    rootData = reader.getRootData();
+                    Writer target = NaaccrXmlUtils.createWriter(targetFile);
+                    try (PatientWriter writer = xmlTarget ? new PatientXmlWriter(target, rootData, options) : new PatientFlatWriter(target, rootData, options)) {
+                        Patient patient = reader.readPatient();
+                        while (patient != null && !Thread.currentThread().isInterrupted()) {
+                            observer.patientRead(patient);
+                            writer.writePatient(patient);
+                            observer.patientWritten(patient);
+                            patient = reader.readPatient();
+                        }
+                    }
+                }
+            }
+            finally {
+                // the event is also emitted when the conversion fails
+                if (recording != null)
+                    recording.end(_inputFile, targetFile, rootData, observer.getPatientCount());
+            }
 
-        private Map<String, AtomicInteger> _warningCounts, _globalCounts;
-        private Map<String, Set<String>> _warningDetails, _globalDetails;
-        private AtomicInteger _tumorCount, _globalTumorCount;
+            // the root data might also get errors when it's written
+            addRootErrors(rootData, fileStats);
+        }
 
-        public FileObserver(Map<String, AtomicInteger> warningCounts, Map<String, Set<String>> warningDetails, AtomicInteger tumorCount, Map<String, AtomicInteger> globalCounts, Map<String, Set<String>> globalDetails, AtomicInteger globalTumorCount) {
-            _warningCounts = warningCounts;
-            _warningDetails = warningDetails;
-            _tumorCount = tumorCount;
-            _globalCounts = globalCounts;
-            _globalDetails = globalDetails;
-            _globalTumorCount = globalTumorCount;
+        /**
+         * Splits the flat file into chunks of lines (never splitting the tumors of a given patient) and processes the chunks in parallel in the pool;
+         * if a target file is provided, the XML of the patients created by each chunk is written to it in the original order (the header and footer
+         * are written once, by the writer of the file). The number of chunks in memory is bounded for the entire batch (see BatchContext), so the memory used
+         * doesn't depend on the size of the file.
+         */
+        private void processFlatInChunks(File targetFile, NaaccrOptions options, ValidationErrorStatistics.Accumulator fileStats, FileObserver observer) throws NaaccrIOException {
+            if (!_inputFile.exists())
+                throw new NaaccrIOException("Source flat file must exist");
+
+            Deque<ChunkProcessor> pendingChunks = new ArrayDeque<>();
+            try (LineNumberReader reader = new LineNumberReader(NaaccrXmlUtils.createReader(_inputFile, options))) {
+
+                // the first line defines the root data for the entire file (this fails the same way the regular reader would if the line is invalid)
+                String firstLine = reader.readLine();
+                PatientFlatReader headerReader = new PatientFlatReader(new StringReader(firstLine == null ? "" : firstLine), options);
+                NaaccrData rootData = headerReader.getRootData();
+                rootData.setTimeGenerated(new Date());
+
+                try (PatientXmlWriter writer = targetFile == null ? null : new PatientXmlWriter(NaaccrXmlUtils.createWriter(targetFile), rootData, options)) {
+                    String line = firstLine;
+                    Map<String, String> previousGroupingValues = null;
+                    StringBuilder chunk = new StringBuilder();
+                    int chunkFirstLineNumber = 1, chunkNumLines = 0;
+                    while (line != null && !Thread.currentThread().isInterrupted()) {
+                        Map<String, String> groupingValues = headerReader.extractGroupingValues(line, reader.getLineNumber(), headerReader._groupingItems);
+                        boolean samePatient = previousGroupingValues != null && !previousGroupingValues.isEmpty() && previousGroupingValues.equals(groupingValues);
+                        if (chunkNumLines >= _context._chunkSize && !samePatient) {
+                            acquireChunkPermit(pendingChunks, writer, fileStats, observer);
+                            pendingChunks.add(forkChunk(firstLine, chunk.toString(), chunkFirstLineNumber, rootData));
+                            chunk.setLength(0);
+                            chunkFirstLineNumber = reader.getLineNumber();
+                            chunkNumLines = 0;
+                            // on top of the limit of the batch, a single file doesn't read further ahead than what the pool can process
+                            while (pendingChunks.size() > getPool().getParallelism())
+                                completeChunk(pendingChunks.poll(), writer, fileStats, observer);
+                        }
+                        chunk.append(line).append('\n');
+                        chunkNumLines++;
+                        previousGroupingValues = groupingValues;
+                        line = reader.readLine();
+                    }
+                    if (chunkNumLines > 0) {
+                        acquireChunkPermit(pendingChunks, writer, fileStats, observer);
+                        pendingChunks.add(forkChunk(firstLine, chunk.toString(), chunkFirstLineNumber, rootData));
+                    }
+
+                    while (!pendingChunks.isEmpty())
+                        completeChunk(pendingChunks.poll(), writer, fileStats, observer);
+                }
+                addRootErrors(rootData, fileStats);
+            }
+            catch (IOException e) {
+                throw new NaaccrIOException(e.getMessage());
+            }
+            finally {
+                for (ChunkProcessor chunk : pendingChunks) {
+                    chunk.cancel(true);
+                    _context._chunkPermits.release();
+                }
+            }
+        }
+
+        /**
+         * Acquires the permit required to fork a new chunk; while none is available, the pending chunks of this file are completed (which releases
+         * their permits). This thread only waits when it doesn't have any pending chunk, so the permits are always held by threads that can release them.
+         */
+        private void acquireChunkPermit(Deque<ChunkProcessor> pendingChunks, PatientXmlWriter writer, ValidationErrorStatistics.Accumulator fileStats, FileObserver observer)
+                throws IOException {
+            while (!_context._chunkPermits.tryAcquire()) {
+                if (!pendingChunks.isEmpty())
+                    completeChunk(pendingChunks.poll(), writer, fileStats, observer);
+                else {
+                    try {
+                        _context._chunkPermits.acquire();
+                        return;
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new NaaccrIOException("processing was interrupted");
+                    }
+                }
+            }
+        }
+
+        private ChunkProcessor forkChunk(String firstLine, String lines, int firstLineNumber, NaaccrData rootData) {
+            _numChunks++;
+            ChunkProcessor chunk = new ChunkProcessor(firstLine, lines, firstLineNumber, rootData, _validateOnly);
+            chunk.fork();
+            return chunk;
+        }
+
+        private void completeChunk(ChunkProcessor chunk, PatientXmlWriter writer, ValidationErrorStatistics.Accumulator fileStats, FileObserver observer) throws IOException {
+
+            // while joining, this thread might execute other tasks; their CPU time is not part of this file...
+            long cpuStart = getCurrentThreadCpuTime();
+            try {
+                chunk.join();
+            }
+            finally {
+                _context._chunkPermits.release();
+            }
+            _cpuTime -= getCurrentThreadCpuTime() - cpuStart;
+
+            if (chunk._exception != null)
+                throw chunk._exception;
+
+            _cpuTime += chunk._cpuTime;
+            fileStats.add(chunk._stats);
+            observer._patientCount += chunk._patientCount;
+            observer._tumorCount += chunk._tumorCount;
+
+            if (writer != null)
+                writer._writer.writeRawXml(chunk._xml);
+        }
+    }
+
+    /**
+     * Processes a chunk of flat lines; unless the file is only validated, the lines are converted into the XML of their patients (see ChunkXmlWriter),
+     * which is kept in memory.
+     */
+    private static final class ChunkProcessor extends RecursiveAction {
+
+        private String _firstLine;
+        private String _lines;
+        private int _firstLineNumber;
+        private NaaccrData _rootData;
+        private boolean _validateOnly;
+
+        private String _xml;
+        private ValidationErrorStatistics.Accumulator _stats;
+        private long _patientCount;
+        private long _tumorCount;
+        private long _cpuTime;
+        private NaaccrIOException _exception;
+
+        public ChunkProcessor(String firstLine, String lines, int firstLineNumber, NaaccrData rootData, boolean validateOnly) {
+            _firstLine = firstLine;
+            _lines = lines;
+            _firstLineNumber = firstLineNumber;
+            _rootData = rootData;
+            _validateOnly = validateOnly;
         }
 
         @Override
-        public void patientRead(Patient patient) {
-            handlePatient(patient);
+        protected void compute() {
+            long cpuStart = getCurrentThreadCpuTime();
+
+            // the accumulator is never merged directly, it is added to the statistics of the file
+            _stats = new ValidationErrorStatistics().createAccumulator();
+            NaaccrOptions options = createOptions(_stats, _validateOnly);
+            FileObserver observer = new FileObserver(_stats, _validateOnly);
+
+            StringWriter buffer = _validateOnly ? null : new StringWriter();
+            try (PatientFlatReader reader = new ChunkFlatReader(_firstLine, _lines, _firstLineNumber, options);
+                 PatientXmlWriter writer = buffer == null ? null : new ChunkXmlWriter(buffer, _rootData, options)) {
+                Patient patient = reader.readPatient();
+                while (patient != null && !Thread.currentThread().isInterrupted()) {
+                    observer.patientRead(patient);
+                    if (writer != null) {
+                        writer.writePatient(patient);
+                        observer.patientWritten(patient);
+                    }
+                    patient = reader.readPatient();
+                }
+            }
+            catch (NaaccrIOException e) {
+                _exception = e;
+            }
+            if (buffer != null)
+                _xml = buffer.toString();
+
+            _patientCount = observer.getPatientCount();
+            _tumorCount = observer.getTumorCount();
+            _lines = null;
+            _cpuTime = getCurrentThreadCpuTime() - cpuStart;
+        }
+    }
+
+    /**
+     * A flat reader for a chunk of lines: the root data comes from the first line of the file, and the line numbers are the ones of the entire file.
+     */
+    private static final class ChunkFlatReader extends PatientFlatReader {
+
+        public ChunkFlatReader(String firstLine, String lines, int firstLineNumber, NaaccrOptions options) throws NaaccrIOException {
+            // the errors of the root items are reported by the file itself, not by every chunk
+            super(new StringReader(firstLine), createOptions(null, false));
+            _options = options;
+            _reader = new LineNumberReader(new StringReader(lines));
+            _reader.setLineNumber(firstLineNumber - 1);
+            _previousLine = null;
+        }
+    }
+
+    /**
+     * An XML writer creating only the patients of a chunk; their XML is the one the writer of the entire file would create (see
+     * NaaccrXmLPrettyPrintWriter.writeRawXml()), the header and footer being written once by that writer.
+     */
+    private static final class ChunkXmlWriter extends PatientXmlWriter {
+
+        public ChunkXmlWriter(Writer writer, NaaccrData rootData, NaaccrOptions options) throws NaaccrIOException {
+            // the header is required to initialize the writer but it's not kept; the root items are not needed to write the patients
+            super(new StringWriter(), createHeaderData(rootData), options);
+            _writer = new NaaccrXmLPrettyPrintWriter(writer, _newLine, 1);
+        }
+
+        private static NaaccrData createHeaderData(NaaccrData rootData) {
+            NaaccrData headerData = new NaaccrData();
+            headerData.setBaseDictionaryUri(rootData.getBaseDictionaryUri());
+            headerData.setUserDictionaryUri(rootData.getUserDictionaryUri());
+            headerData.setRecordType(rootData.getRecordType());
+            return headerData;
         }
 
         @Override
-        public void patientWritten(Patient patient) {
-            handlePatient(patient);
-            _tumorCount.addAndGet(patient.getTumors().size());
-            _globalTumorCount.addAndGet(patient.getTumors().size());
+        public void closeAndKeepAlive() {
+            // there is no root node to close
+            _writer.flush();
         }
+    }
 
-        private void handlePatient(Patient patient) {
-            for (NaaccrValidationError error : patient.getAllValidationErrors()) {
+    /**
+     * Adds the validation errors of the provided root data (including the ones of its items); those errors are not part of any patient, so they are
+     * never counted by the observer. In validate mode, the errors are sent directly to the statistics and there is nothing to add.
+     */
+    private static void addRootErrors(NaaccrData rootData, ValidationErrorStatistics.Accumulator stats) {
+        for (NaaccrValidationError error : rootData.getValidationErrors())
+            stats.errorReported(error);
+        for (Item item : rootData.getItems())
+            if (item.getValidationError() != null)
+                stats.errorReported(item.getValidationError());
+    }
 
-                // file count
-                AtomicInteger count = _warningCounts.get(error.getCode());
-                if (count == null)
-                    _warningCounts.put(error.getCode(), new AtomicInteger(1));
-                else
-                    count.incrementAndGet();
+    private static final class FileObserver implements NaaccrObserver {
 
-                // global count
-                AtomicInteger globalCount = _globalCounts.get(error.getCode());
-                if (globalCount == null)
-                    _globalCounts.put(error.getCode(), new AtomicInteger(1));
-                else
-                    globalCount.incrementAndGet();
+        private ValidationErrorStatistics.Accumulator _fileStats;
+        private boolean _validateOnly;
+        private long _patientCount;
+        private long _tumorCount;
 
-                if (error.getNaaccrId() != null) {
+        public FileObserver(ValidationErrorStatistics.Accumulator fileStats, boolean validateOnly) {
+            _fileStats = fileStats;
+            _validateOnly = validateOnly;
+        }
 
-                    // file properties
-                    _warningDetails.computeIfAbsent(error.getCode(), k -> new HashSet<>()).add(error.getNaaccrId());
+        @Override
+        public void patientRead(Patient patient) {
+            // in validate mode, the errors are sent directly to the statistics; otherwise they are counted once the patient is written (at that
+            // point it contains both the reading and the writing errors)
+            if (_validateOnly) {
+                _patientCount++;
+                _tumorCount += patient.getTumors().size();
+            }
+        }
 
-                    // global properties
-                    _globalDetails.computeIfAbsent(error.getCode(), k -> new HashSet<>()).add(error.getNaaccrId());
-                }
+        @Override
+        public void patientWritten(Patient patient) {
+            if (!_validateOnly) {
+                _fileStats.addErrors(patient);
+                _patientCount++;
+                _tumorCount += patient.getTumors().size();
             }
         }
+
+        public long getPatientCount() {
+            return _patientCount;
+        }
+
+        public long getTumorCount() {
+            return _tumorCount;
+        }
+    }
+
+    private static boolean isCpuTimeSupported() {
+        return ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported();
+    }
+
+    private static long getCurrentThreadCpuTime() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : 0;
     }
 
     public static String formatNumber(int num) {
+        return formatNumber((long)num);
+    }
+
+    public static String formatNumber(long num) {
         DecimalFormat format = new DecimalFormat();
         format.setDecimalSeparatorAlwaysShown(false);
         return format.format(num);
@@ -447,6 +928,10 @@ public final class BatchProcessor {
         return "< 1 second";
     }
 
+    public static String formatThroughput(long numPatients, long timeInMilli) {
+        return formatNumber(numPatients * 1000 / Math.max(timeInMilli, 1)) + " patients/second";
+    }
+
     public static String formatFileSize(long size) {
         if (size < 1024)
             return size + " B";
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryGroupedItem;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryItem;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryItem;
+
+/**
+ * This utility class provides a compact binary format for dictionaries and runtime dictionaries.
+ * <br/><br/>
+ * Loading a dictionary from that format doesn't require XStream nor reflection and is much faster than parsing the XML; the internal dictionaries are
+ * pre-compiled into that format at build time (see the "generateBinaryDictionaries" Gradle task), and user-defined dictionaries can be cached on disk
+ * using {@link #readDictionary(File, File)}.
+ * <br/><br/>
+ * The format is an internal format; it's versioned and any file written by a different version of the format is simply ignored.
+ */
+public final class NaaccrBinaryDictionaryUtils {
+
+    // "NXDB" as an integer
+    private static final int _MAGIC_NUMBER = 0x4E584442;
+
+    // needs to be increased every time the format changes
+    private static final int _FORMAT_VERSION = 1;
+
+    // the different types of content
+    private static final byte _TYPE_DICTIONARY = 1;
+    private static final byte _TYPE_RUNTIME_DICTIONARY = 2;
+
+    // the different types of items
+    private static final byte _ITEM_REGULAR = 1;
+    private static final byte _ITEM_GROUPED = 2;
+
+    private NaaccrBinaryDictionaryUtils() {
+        // no instances of this class allowed!
+    }
+
+    /**
+     * Returns the name of the resource containing the binary version of the provided XML dictionary resource.
+     * @param xmlResourceName name of the XML resource (like "naaccr-dictionary-210.xml")
+     * @return the binary resource name (like "naaccr-dictionary-210.bin")
+     */
+    public static String getBinaryResourceName(String xmlResourceName) {
+        return xmlResourceName.replaceAll("\\.xml$", "") + ".bin";
+    }
+
+    /**
+     * Returns the name of the resource containing the pre-compiled runtime dictionary for the provided version and record type
+     * (using the internal base dictionary and the internal default user dictionary).
+     * @param naaccrVersion NAACCR version
+     * @param recordType record type
+     * @return the binary resource name
+     */
+    public static String getRuntimeResourceName(String naaccrVersion, String recordType) {
+        return "runtime-naaccr-dictionary-" + naaccrVersion + "-" + recordType + ".bin";
+    }
+
+    /**
+     * Writes the provided dictionary to the provided stream using the binary format. The stream is not closed.
+     * @param dictionary dictionary to write, cannot be null
+     * @param os target stream, cannot be null
+     * @throws IOException if the dictionary cannot be written
+     */
+    public static void writeDictionary(NaaccrDictionary dictionary, OutputStream os) throws IOException {
+        writeContent(os, _TYPE_DICTIONARY, getDictionaryContent(dictionary));
+    }
+
+    /**
+     * Computes a fingerprint (SHA-256, in hexadecimal) of the content of the provided dictionary.
+     * <br/><br/>
+     * Two dictionaries with the same fingerprint have the same attributes and the same items, regardless of where they come from.
+     * @param dictionary dictionary, cannot be null
+     * @return the fingerprint, never null
+     */
+    public static String computeDictionaryFingerprint(NaaccrDictionary dictionary) {
+        try {
+            return computeContentHash(getDictionaryContent(dictionary));
+        }
+        catch (IOException e) {
+            // can't happen, the content is written in memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a dictionary from the provided stream using the binary format. The stream is not closed.
+     * @param is source stream, cannot be null
+     * @return the dictionary, never null
+     * @throws IOException if the dictionary cannot be read (including when the content was written by a different version of the format)
+     */
+    public static NaaccrDictionary readDictionary(InputStream is) throws IOException {
+        DataInputStream in = startReading(is, _TYPE_DICTIONARY);
+        NaaccrDictionary dictionary = new NaaccrDictionary();
+        dictionary.setDictionaryUri(readString(in));
+        dictionary.setNaaccrVersion(readString(in));
+        dictionary.setSpecificationVersion(readString(in));
+        dictionary.setDescription(readString(in));
+        int numItems = in.readInt();
+        List<NaaccrDictionaryItem> items = new ArrayList<>(numItems);
+        for (int i = 0; i < numItems; i++)
+            items.add(readDictionaryItem(in));
+        dictionary.setItems(items);
+        int numGroupedItems = in.readInt();
+        if (numGroupedItems >= 0) {
+            List<NaaccrDictionaryGroupedItem> groupedItems = new ArrayList<>(numGroupedItems);
+            for (int i = 0; i < numGroupedItems; i++)
+                groupedItems.add((NaaccrDictionaryGroupedItem)readDictionaryItem(in));
+            dictionary.setGroupedItems(groupedItems);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Writes the provided runtime dictionary to the provided stream using the binary format. The stream is not closed.
+     * @param dictionary runtime dictionary to write, cannot be null
+     * @param os target stream, cannot be null
+     * @throws IOException if the dictionary cannot be written
+     */
+    public static void writeRuntimeDictionary(RuntimeNaaccrDictionary dictionary, OutputStream os) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeString(out, dictionary.getId());
+        writeString(out, dictionary.getNaaccrVersion());
+        writeString(out, dictionary.getRecordType());
+        out.writeInt(dictionary.getItems().size());
+        for (RuntimeNaaccrDictionaryItem item : dictionary.getItems()) {
+            writeString(out, item.getNaaccrId());
+            writeInteger(out, item.getNaaccrNum());
+            writeInteger(out, item.getStartColumn());
+            writeInteger(out, item.getLength());
+            writeBoolean(out, item.getAllowUnlimitedText());
+            writeString(out, item.getParentXmlElement());
+            writeString(out, item.getRegexValidation() == null ? null : item.getRegexValidation().pattern());
+            writeString(out, item.getDataType());
+            writeString(out, item.getTrim());
+            writeString(out, item.getPadding());
+        }
+        writeContent(os, _TYPE_RUNTIME_DICTIONARY, content.toByteArray());
+    }
+
+    /**
+     * Reads a runtime dictionary from the provided stream using the binary format. The stream is not closed.
+     * <br/><br/>
+     * The runtime dictionary is not re-validated; only content written by {@link #writeRuntimeDictionary(RuntimeNaaccrDictionary, OutputStream)} should be read with this method.
+     * @param is source stream, cannot be null
+     * @return the runtime dictionary, never null
+     * @throws IOException if the dictionary cannot be read (including when the content was written by a different version of the format)
+     */
+    public static RuntimeNaaccrDictionary readRuntimeDictionary(InputStream is) throws IOException {
+        DataInputStream in = startReading(is, _TYPE_RUNTIME_DICTIONARY);
+        String id = readString(in);
+        String naaccrVersion = readString(in);
+        String recordType = readString(in);
+        int numItems = in.readInt();
+        List<RuntimeNaaccrDictionaryItem> items = new ArrayList<>(numItems);
+        for (int i = 0; i < numItems; i++) {
+            String naaccrId = readString(in);
+            Integer naaccrNum = readInteger(in);
+            Integer startColumn = readInteger(in);
+            Integer length = readInteger(in);
+            Boolean allowUnlimitedText = readBoolean(in);
+            String parentXmlElement = readString(in);
+            String regexValidation = readString(in);
+            String dataType = readString(in);
+            String trim = readString(in);
+            String padding = readString(in);
+            items.add(new RuntimeNaaccrDictionaryItem(naaccrId, naaccrNum, startColumn, length, allowUnlimitedText, parentXmlElement, regexValidation, dataType, trim, padding));
+        }
+        return new RuntimeNaaccrDictionary(id, naaccrVersion, recordType, items);
+    }
+
+    /**
+     * Reads the provided XML dictionary file, using a binary copy of it kept in the provided cache directory when available.
+     * <br/><br/>
+     * The binary copies are keyed by a hash of the XML content, so modifying the XML file automatically invalidates its cached copy.
+     * @param xmlFile XML dictionary file, must exist
+     * @param cacheDir cache directory, will be created if it doesn't exist
+     * @return the corresponding dictionary
+     * @throws IOException if the dictionary cannot be read
+     */
+    public static NaaccrDictionary readDictionary(File xmlFile, File cacheDir) throws IOException {
+        if (xmlFile == null || !xmlFile.exists())
+            throw new IOException("File must exist to load dictionary.");
+        if (cacheDir == null)
+            throw new IOException("Cache directory is required.");
+
+        byte[] content = Files.readAllBytes(xmlFile.toPath());
+        File cachedFile = new File(cacheDir, "dictionary-" + computeContentHash(content) + ".bin");
+
+        if (cachedFile.exists()) {
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(cachedFile.toPath()))) {
+                return readDictionary(is);
+            }
+            catch (IOException e) {
+                // the cached file is invalid (probably written by a different version of the format), it will be re-created
+            }
+        }
+
+        NaaccrDictionary dictionary;
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+            dictionary = NaaccrXmlDictionaryUtils.readDictionary(reader);
+        }
+
+        // write to a temp file and rename it so concurrent processes never see a partial file
+        if (!cacheDir.exists() && !cacheDir.mkdirs() && !cacheDir.exists())
+            throw new IOException("Unable to create cache directory " + cacheDir.getPath());
+        File tmpFile = File.createTempFile("dictionary-", ".tmp", cacheDir);
+        try {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath()))) {
+                writeDictionary(dictionary, os);
+            }
+            Files.move(tmpFile.toPath(), cachedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Computes a hash (SHA-256, in hexadecimal) for the provided content.
+     * @param content content to hash
+     * @return the hash, never null
+     */
+    public static String computeContentHash(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder buf = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return buf.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the binary version of an internal dictionary from the classpath.
+     * @param xmlResourceName name of the XML resource
+     * @return the dictionary, null if the binary resource is not available or cannot be read
+     */
+    static NaaccrDictionary readInternalDictionary(String xmlResourceName) {
+        try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(getBinaryResourceName(xmlResourceName))) {
+            return is == null ? null : readDictionary(new BufferedInputStream(is));
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a pre-compiled runtime dictionary from the classpath.
+     * @param naaccrVersion NAACCR version
+     * @param recordType record type
+     * @return the runtime dictionary, null if the binary resource is not available or cannot be read
+     */
+    public static RuntimeNaaccrDictionary readInternalRuntimeDictionary(String naaccrVersion, String recordType) {
+        try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(getRuntimeResourceName(naaccrVersion, recordType))) {
+            return is == null ? null : readRuntimeDictionary(new BufferedInputStream(is));
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] getDictionaryContent(NaaccrDictionary dictionary) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeString(out, dictionary.getDictionaryUri());
+        writeString(out, dictionary.getNaaccrVersion());
+        writeString(out, dictionary.getSpecificationVersion());
+        writeString(out, dictionary.getDescription());
+        out.writeInt(dictionary.getItems().size());
+        for (NaaccrDictionaryItem item : dictionary.getItems())
+            writeDictionaryItem(out, item);
+        // the grouped items are null when the XML doesn't define them (the getter returns the shared empty list in that case), that needs to be preserved
+        List<NaaccrDictionaryGroupedItem> groupedItems = dictionary.getGroupedItems();
+        out.writeInt(groupedItems == Collections.<NaaccrDictionaryGroupedItem>emptyList() ? -1 : groupedItems.size());
+        for (NaaccrDictionaryGroupedItem item : groupedItems)
+            writeDictionaryItem(out, item);
+        return content.toByteArray();
+    }
+
+    private static void writeContent(OutputStream os, byte type, byte[] content) throws IOException {
+        DataOutputStream header = new DataOutputStream(os);
+        header.writeInt(_MAGIC_NUMBER);
+        header.writeInt(_FORMAT_VERSION);
+        header.writeByte(type);
+        // finish the compression without closing the target stream
+        DeflaterOutputStream deflater = new DeflaterOutputStream(os);
+        deflater.write(content);
+        deflater.finish();
+        os.flush();
+    }
+
+    private static DataInputStream startReading(InputStream is, byte expectedType) throws IOException {
+        DataInputStream header = new DataInputStream(is);
+        if (header.readInt() != _MAGIC_NUMBER)
+            throw new IOException("Not a binary dictionary");
+        int version = header.readInt();
+        if (version != _FORMAT_VERSION)
+            throw new IOException("Unsupported binary dictionary format version: " + version);
+        if (header.readByte() != expectedType)
+            throw new IOException("Unexpected binary dictionary content");
+        return new DataInputStream(new BufferedInputStream(new InflaterInputStream(is)));
+    }
+
+    private static void writeDictionaryItem(DataOutputStream out, NaaccrDictionaryItem item) throws IOException {
+        out.writeByte(item instanceof NaaccrDictionaryGroupedItem ? _ITEM_GROUPED : _ITEM_REGULAR);
+        writeString(out, item.getNaaccrId());
+        writeInteger(out, item.getNaaccrNum());
+        writeString(out, item.getNaaccrName());
+        writeInteger(out, item.getStartColumn());
+        writeInteger(out, item.getLength());
+        writeBoolean(out, item.getAllowUnlimitedText());
+        writeString(out, item.getRecordTypes());
+        writeString(out, item.getSourceOfStandard());
+        writeString(out, item.getParentXmlElement());
+        writeString(out, item.getDataType());
+        writeString(out, item.getRegexValidation());
+        writeString(out, item.getPadding());
+        writeString(out, item.getTrim());
+        if (item instanceof NaaccrDictionaryGroupedItem)
+            writeString(out, ((NaaccrDictionaryGroupedItem)item).getContains());
+    }
+
+    private static NaaccrDictionaryItem readDictionaryItem(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        NaaccrDictionaryItem item = type == _ITEM_GROUPED ? new NaaccrDictionaryGroupedItem() : new NaaccrDictionaryItem();
+        item.setNaaccrId(readString(in));
+        item.setNaaccrNum(readInteger(in));
+        item.setNaaccrName(readString(in));
+        item.setStartColumn(readInteger(in));
+        item.setLength(readInteger(in));
+        item.setAllowUnlimitedText(readBoolean(in));
+        item.setRecordTypes(readString(in));
+        item.setSourceOfStandard(readString(in));
+        item.setParentXmlElement(readString(in));
+        item.setDataType(readString(in));
+        item.setRegexValidation(readString(in));
+        item.setPadding(readString(in));
+        item.setTrim(readString(in));
+        if (type == _ITEM_GROUPED)
+            ((NaaccrDictionaryGroupedItem)item).setContains(readString(in));
+        return item;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null)
+            out.writeInt(-1);
+        else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeInt(value);
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : (value ? 1 : 0));
+    }
+
+    private static Boolean readBoolean(DataInputStream in) throws IOException {
+        byte value = in.readByte();
+        return value == -1 ? null : value == 1;
+    }
+}
@@ -7,7 +7,8 @@ import java.util.List;
 
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
-import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfigurationFactory;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryCache;
 
 /**
  * A NaaccrContext is used in NaaccrXmlUtils when translating a single line into a patient and vice-versa.
@@ -60,13 +61,13 @@ public class NaaccrContext {
         _userDictionaries = userDictionaries;
         _options = options;
 
-        _streamConfiguration = NaaccrStreamConfiguration.getDefault();
+        _streamConfiguration = NaaccrStreamConfigurationFactory.getDefault().createConfiguration();
 
         // let's create and cache the runtime dictionary corresponding to the format and user dictionaries...
         NaaccrFormat nf = NaaccrFormat.getInstance(format);
         NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(nf.getNaaccrVersion());
         try {
-            _streamConfiguration.setCachedDictionary(new RuntimeNaaccrDictionary(nf.getRecordType(), baseDictionary, userDictionaries));
+            _streamConfiguration.setCachedDictionary(RuntimeNaaccrDictionaryCache.getDictionary(nf.getRecordType(), baseDictionary, userDictionaries));
         }
         catch (NaaccrIOException e) {
             throw new RuntimeException(e);
@@ -85,6 +86,11 @@ public class NaaccrContext {
         return _userDictionaries;
     }
 
+    /**
+     * Returns the stream configuration used by this context. It shares its XStream instance with the other default configurations, but it can still be
+     * customized (registering namespaces, tags, etc... makes it create its own XStream instance).
+     * @return the stream configuration, never null
+     */
     public NaaccrStreamConfiguration getStreamConfiguration() {
         return _streamConfiguration;
     }
@@ -62,12 +62,50 @@ public class NaaccrErrorUtils {
         return Collections.unmodifiableMap(_MESSAGES);
     }
 
+    /**
+     * Returns true if the provided code corresponds to a known validation error, false otherwise.
+     * @param code error code
+     * @return true if the code is known
+     */
+    public static boolean isValidationErrorCode(String code) {
+        return _MESSAGES.containsKey(code);
+    }
+
+    // replaces the ${i} placeholders in a single pass
     private static String fillMessage(String msg, Object... values) {
-        String result = msg;
-        if (values != null)
-            for (int i = 0; i < values.length; i++)
-                result = result.replace("${" + i + "}", values[i] == null ? "{blank}" : values[i].toString());
-        return result;
+        if (values == null || values.length == 0)
+            return msg;
+
+        StringBuilder buf = new StringBuilder(msg.length() + 32);
+        int pos = 0;
+        int idx = msg.indexOf("${");
+        while (idx != -1) {
+            int end = msg.indexOf('}', idx + 2);
+            if (end == -1)
+                break;
+            buf.append(msg, pos, idx);
+            int valueIdx = parsePlaceholder(msg, idx + 2, end);
+            if (valueIdx >= 0 && valueIdx < values.length)
+                buf.append(values[valueIdx] == null ? "{blank}" : values[valueIdx].toString());
+            else
+                buf.append(msg, idx, end + 1);
+            pos = end + 1;
+            idx = msg.indexOf("${", pos);
+        }
+        buf.append(msg, pos, msg.length());
+        return buf.toString();
+    }
 
+    private static int parsePlaceholder(String msg, int start, int end) {
+        if (start == end)
+            return -1;
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = msg.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
     }
 }
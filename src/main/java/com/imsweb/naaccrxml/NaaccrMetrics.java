@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * This class can be used to collect metrics about the reading and writing of NAACCR data (number of patients, tumors, items, characters and errors, time
+ * spent parsing, validating and writing).
+ * <br/><br/>
+ * The metrics are provided through the NaaccrOptions; they can be shared by several streams, in which case they need to be thread-safe. The streams check
+ * isEnabled() once, when they are created; if it returns false, no metrics are reported and the clock is never read.
+ * <br/><br/>
+ * The times are in nanoseconds. The parsing time of a patient includes the time spent validating its values (which is also reported separately).
+ * The characters are counted after decoding (and decompression), so they usually correspond to bytes only for ASCII data.
+ */
+public interface NaaccrMetrics {
+
+    /**
+     * Returns true if the streams should report their metrics to this instance.
+     * @return true if the metrics are enabled, false otherwise
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * A patient has been read.
+     * @param patient the read patient (the implementations should not keep a reference to it)
+     * @param parsingNanos time spent reading the patient
+     */
+    void patientRead(Patient patient, long parsingNanos);
+
+    /**
+     * A patient has been written.
+     * @param patient the written patient (the implementations should not keep a reference to it)
+     * @param writingNanos time spent writing the patient
+     */
+    void patientWritten(Patient patient, long writingNanos);
+
+    /**
+     * Some characters have been read from the underlying reader.
+     * @param count number of characters
+     */
+    void charactersRead(long count);
+
+    /**
+     * Some characters have been written to the underlying writer.
+     * @param count number of characters
+     */
+    void charactersWritten(long count);
+
+    /**
+     * A value has been validated.
+     * @param validationNanos time spent validating the value
+     */
+    void valueValidated(long validationNanos);
+
+    /**
+     * A validation error has been reported.
+     * @param code error code
+     */
+    void errorReported(String code);
+}
@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import com.imsweb.naaccrxml.metrics.NoOpNaaccrMetrics;
+
 /**
  * This class encapsulates the options that a reader/writer can use to customize its operations.
  */
@@ -112,6 +114,38 @@ public class NaaccrOptions {
      */
     private Boolean _allowMissingDictionary;
 
+    /**
+     * When reading data from a file, whether the decompression and character decoding should happen on a separate thread, feeding large buffers to the parsing
+     * thread through a bounded queue. This applies only to the readers created with NaaccrXmlUtils.createReader(File, NaaccrOptions). Defaults to false.
+     */
+    private Boolean _useReadAheadThread;
+
+    /**
+     * When reading data, whether the values of the low-cardinality (code) items should be interned so all the patients and tumors of the stream share a
+     * single String instance per distinct value; this reduces the memory used when many patients are kept in memory. Defaults to false.
+     */
+    private Boolean _useValueInterning;
+
+    /**
+     * When reading data, whether the line number of each item should be captured; the line numbers of the patients and tumors (and of the validation errors)
+     * are always captured. Turning this off makes the reading slightly faster. Defaults to true.
+     */
+    private Boolean _readItemLineNumbers;
+
+    /**
+     * When reading or writing data, an optional sink receiving the validation errors as they are reported; when provided, the errors are sent to the sink
+     * instead of being attached to the patients, tumors and items (which means getAllValidationErrors() will always return an empty list). See the
+     * com.imsweb.naaccrxml.sink package for some implementations. Default is null, which means the errors are attached to the entities.
+     */
+    private NaaccrValidationErrorSink _validationErrorSink;
+
+    /**
+     * When reading or writing data, the metrics the streams report to (number of patients, tumors, items, characters and errors, parsing, validation and
+     * writing times). See the com.imsweb.naaccrxml.metrics package for an in-memory implementation. Defaults to a no-op instance; the streams don't read
+     * the clock at all when the metrics are disabled.
+     */
+    private NaaccrMetrics _metrics;
+
     /**
      * Convenience method to make the code look nicer, but it really just calls the default constructor!
      * @return an instance of the options with all default values.
@@ -140,6 +174,10 @@ public class NaaccrOptions {
         _dictionaryIdsToTranslate = null;
         _newLine = NEW_LINE_OS;
         _allowMissingDictionary = true;
+        _useReadAheadThread = false;
+        _useValueInterning = false;
+        _readItemLineNumbers = true;
+        _metrics = NoOpNaaccrMetrics.INSTANCE;
     }
 
     public Boolean getValidateReadValues() {
@@ -278,6 +316,54 @@ public class NaaccrOptions {
         _allowMissingDictionary = allowMissingDictionary;
     }
 
+    public Boolean getUseReadAheadThread() {
+        return _useReadAheadThread;
+    }
+
+    public void setUseReadAheadThread(Boolean useReadAheadThread) {
+        _useReadAheadThread = useReadAheadThread;
+    }
+
+    public Boolean getUseValueInterning() {
+        return _useValueInterning;
+    }
+
+    public void setUseValueInterning(Boolean useValueInterning) {
+        _useValueInterning = useValueInterning;
+    }
+
+    public Boolean getReadItemLineNumbers() {
+        return _readItemLineNumbers;
+    }
+
+    public void setReadItemLineNumbers(Boolean readItemLineNumbers) {
+        _readItemLineNumbers = readItemLineNumbers;
+    }
+
+    public NaaccrValidationErrorSink getValidationErrorSink() {
+        return _validationErrorSink;
+    }
+
+    public void setValidationErrorSink(NaaccrValidationErrorSink validationErrorSink) {
+        _validationErrorSink = validationErrorSink;
+    }
+
+    public NaaccrMetrics getMetrics() {
+        return _metrics;
+    }
+
+    public void setMetrics(NaaccrMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * Convenience method that returns the metrics the streams need to report to.
+     * @return the metrics, null if they are not provided or disabled
+     */
+    public NaaccrMetrics getEnabledMetrics() {
+        return _metrics != null && _metrics.isEnabled() ? _metrics : null;
+    }
+
     /**
      * Convenience method that computes if a given item needs to be ignored, based on the include/exclude lists.
      * @param naaccrId NAACCR ID
@@ -0,0 +1,21 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.UncheckedIOException;
+
+/**
+ * An unchecked wrapper of a NaaccrIOException; used when an exception needs to go through an API that doesn't allow checked exceptions (like the streams).
+ */
+public class NaaccrUncheckedIOException extends UncheckedIOException {
+
+    public NaaccrUncheckedIOException(NaaccrIOException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public NaaccrIOException getCause() {
+        return (NaaccrIOException)super.getCause();
+    }
+}
@@ -3,13 +3,24 @@
  */
 package com.imsweb.naaccrxml;
 
+/**
+ * A validation error reported when reading or writing data.
+ * <br/><br/>
+ * The message is only rendered (from the code and the message values) the first time it is requested; files with systemic data quality problems can
+ * produce a very large number of errors, and most of them are usually only counted by code.
+ */
 public class NaaccrValidationError {
     
     protected String _code;
 
+    // the rendered message, computed the first time it's requested
     protected String _message;
 
-    protected Integer _lineNumber;
+    // the values used to render the message
+    protected Object[] _msgValues;
+
+    // 0 means not available
+    protected int _lineNumber;
 
     protected String _path;
     
@@ -20,8 +31,10 @@ public class NaaccrValidationError {
     protected String _value;
     
     public NaaccrValidationError(String code, Object... msgValues) {
+        if (!NaaccrErrorUtils.isValidationErrorCode(code))
+            throw new RuntimeException("Unknown code: " + code);
         _code = code;
-        _message = NaaccrErrorUtils.getValidationError(code, msgValues);
+        _msgValues = msgValues;
     }
 
     public String getCode() {
@@ -29,14 +42,20 @@ public class NaaccrValidationError {
     }
 
     public String getMessage() {
+        if (_message == null)
+            _message = NaaccrErrorUtils.getValidationError(_code, _msgValues);
         return _message;
     }
 
     public Integer getLineNumber() {
-        return _lineNumber;
+        return _lineNumber == 0 ? null : _lineNumber;
     }
 
     public void setLineNumber(Integer lineNumber) {
+        _lineNumber = lineNumber == null ? 0 : lineNumber;
+    }
+
+    public void setLineNumber(int lineNumber) {
         _lineNumber = lineNumber;
     }
 
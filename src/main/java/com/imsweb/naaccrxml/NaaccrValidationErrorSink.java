@@ -0,0 +1,19 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+/**
+ * This class can be used to receive the validation errors as they are reported, instead of having them attached to the patients, tumors and items.
+ * <br/><br/>
+ * A sink is provided through the NaaccrOptions; it can be shared by several streams, in which case it needs to be thread-safe.
+ */
+@FunctionalInterface
+public interface NaaccrValidationErrorSink {
+
+    /**
+     * A validation error has been reported.
+     * @param error the reported error
+     */
+    void errorReported(NaaccrValidationError error);
+}
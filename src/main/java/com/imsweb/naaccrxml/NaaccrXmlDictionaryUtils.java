@@ -58,6 +58,7 @@ import com.thoughtworks.xstream.security.WildcardTypePermission;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryGroupedItem;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryItem;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
 
 /**
  * This utility class can be used to read/write dictionaries, whether they are internal to the library, or provided by the user...
@@ -251,6 +252,17 @@ public final class NaaccrXmlDictionaryUtils {
         NaaccrDictionary result = _INTERNAL_DICTIONARIES.get("base_" + naaccrVersion);
         if (result == null) {
             String resName = "naaccr-dictionary-" + naaccrVersion + ".xml";
+
+            // use the pre-compiled binary version if it's available, it's much faster to load than the XML
+            NaaccrFlightRecorder.DictionaryLoadingRecording recording = NaaccrFlightRecorder.getInstance().beginDictionaryLoading("binary");
+            result = NaaccrBinaryDictionaryUtils.readInternalDictionary(resName);
+            if (recording != null && result != null)
+                recording.end(result);
+            if (result != null) {
+                _INTERNAL_DICTIONARIES.put("base_" + naaccrVersion, result);
+                return result;
+            }
+
             try (Reader reader = new InputStreamReader(Thread.currentThread().getContextClassLoader().getResource(resName).openStream(), StandardCharsets.UTF_8)) {
                 result = readDictionary(reader);
                 _INTERNAL_DICTIONARIES.put("base_" + naaccrVersion, result);
@@ -292,6 +304,17 @@ public final class NaaccrXmlDictionaryUtils {
         NaaccrDictionary result = _INTERNAL_DICTIONARIES.get("user_" + naaccrVersion);
         if (result == null) {
             String resName = "user-defined-naaccr-dictionary-" + naaccrVersion + ".xml";
+
+            // use the pre-compiled binary version if it's available, it's much faster to load than the XML
+            NaaccrFlightRecorder.DictionaryLoadingRecording recording = NaaccrFlightRecorder.getInstance().beginDictionaryLoading("binary");
+            result = NaaccrBinaryDictionaryUtils.readInternalDictionary(resName);
+            if (recording != null && result != null)
+                recording.end(result);
+            if (result != null) {
+                _INTERNAL_DICTIONARIES.put("user_" + naaccrVersion, result);
+                return result;
+            }
+
             try (Reader reader = new InputStreamReader(Thread.currentThread().getContextClassLoader().getResource(resName).openStream(), StandardCharsets.UTF_8)) {
                 result = readDictionary(reader);
                 _INTERNAL_DICTIONARIES.put("user_" + naaccrVersion, result);
@@ -351,6 +374,7 @@ public final class NaaccrXmlDictionaryUtils {
      * @throws IOException if the dictionary could not be read
      */
     public static NaaccrDictionary readDictionary(Reader reader) throws IOException {
+        NaaccrFlightRecorder.DictionaryLoadingRecording recording = NaaccrFlightRecorder.getInstance().beginDictionaryLoading("xml");
         try {
             NaaccrDictionary dictionary = (NaaccrDictionary)instanciateXStream().fromXML(reader);
 
@@ -386,6 +410,9 @@ public final class NaaccrXmlDictionaryUtils {
                     throw new IOException(errors.get(0));
             }
 
+            if (recording != null)
+                recording.end(dictionary);
+
             return dictionary;
         }
         catch (XStreamException ex) {
@@ -3,33 +3,41 @@
  */
 package com.imsweb.naaccrxml;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 
+import com.imsweb.naaccrxml.columnar.ColumnarNaaccrData;
+import com.imsweb.naaccrxml.compression.CompressionCodecRegistry;
 import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
-import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+import com.imsweb.naaccrxml.internal.HeaderSniffer;
+import com.imsweb.naaccrxml.internal.MonitoredFileReader;
+import com.imsweb.naaccrxml.internal.MonitoredFileWriter;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
+import com.imsweb.naaccrxml.internal.ReadAheadReader;
+import com.imsweb.naaccrxml.management.NaaccrManagement;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfigurationFactory;
 
 /**
  * This utility class provides static methods for reading, writing and translating to/from XML and flat file NAACCR files.
@@ -83,8 +91,13 @@ public class NaaccrXmlUtils {
         if (!xmlFile.getParentFile().exists())
             throw new NaaccrIOException("Target folder must exist");
 
+        NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation("flatToXml");
+        NaaccrData rootData = null;
+        long numPatients = 0;
+
         // create the reader and writer and let them do all the work!
-        try (PatientFlatReader reader = new PatientFlatReader(createReader(flatFile), options, userDictionaries)) {
+        try (PatientFlatReader reader = new PatientFlatReader(createReader(flatFile, options), options, userDictionaries)) {
+            rootData = reader.getRootData();
             try (PatientXmlWriter writer = new PatientXmlWriter(createWriter(xmlFile), reader.getRootData(), options, userDictionaries)) {
                 Patient patient = reader.readPatient();
                 while (patient != null && !Thread.currentThread().isInterrupted()) {
@@ -93,10 +106,16 @@ public class NaaccrXmlUtils {
                     writer.writePatient(patient);
                     if (observer != null)
                         observer.patientWritten(patient);
+                    numPatients++;
                     patient = reader.readPatient();
                 }
             }
         }
+        finally {
+            // the event is also emitted when the operation fails
+            if (recording != null)
+                recording.end(flatFile, xmlFile, rootData, numPatients);
+        }
     }
 
     /**
@@ -116,8 +135,13 @@ public class NaaccrXmlUtils {
         if (!flatFile.getParentFile().exists())
             throw new NaaccrIOException("Target folder must exist");
 
+        NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation("xmlToFlat");
+        NaaccrData rootData = null;
+        long numPatients = 0;
+
         // create the reader and writer and let them do all the work!
-        try (PatientXmlReader reader = new PatientXmlReader(createReader(xmlFile), options, userDictionaries)) {
+        try (PatientXmlReader reader = new PatientXmlReader(createReader(xmlFile, options), options, userDictionaries)) {
+            rootData = reader.getRootData();
             try (PatientFlatWriter writer = new PatientFlatWriter(createWriter(flatFile), reader.getRootData(), options, userDictionaries)) {
                 Patient patient = reader.readPatient();
                 while (patient != null && !Thread.currentThread().isInterrupted()) {
@@ -126,10 +150,16 @@ public class NaaccrXmlUtils {
                     writer.writePatient(patient);
                     if (observer != null)
                         observer.patientWritten(patient);
+                    numPatients++;
                     patient = reader.readPatient();
                 }
             }
         }
+        finally {
+            // the event is also emitted when the operation fails
+            if (recording != null)
+                recording.end(xmlFile, flatFile, rootData, numPatients);
+        }
     }
 
     /**
@@ -148,8 +178,10 @@ public class NaaccrXmlUtils {
         if (!xmlFile.exists())
             throw new NaaccrIOException("Source XML file must exist");
 
-        try (PatientXmlReader reader = new PatientXmlReader(createReader(xmlFile), options, userDictionaries)) {
-            NaaccrData rootData = reader.getRootData();
+        NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation("readXmlFile");
+        NaaccrData rootData = null;
+        try (PatientXmlReader reader = new PatientXmlReader(createReader(xmlFile, options), options, userDictionaries)) {
+            rootData = reader.getRootData();
             Patient patient = reader.readPatient();
             while (patient != null && !Thread.currentThread().isInterrupted()) {
                 if (observer != null)
@@ -157,8 +189,14 @@ public class NaaccrXmlUtils {
                 rootData.addPatient(patient);
                 patient = reader.readPatient();
             }
-            return rootData;
         }
+        finally {
+            // the event is also emitted when the operation fails
+            if (recording != null)
+                recording.end(xmlFile, null, rootData, rootData == null ? 0 : rootData.getPatients().size());
+        }
+
+        return rootData;
     }
 
     /**
@@ -178,15 +216,23 @@ public class NaaccrXmlUtils {
         if (!xmlFile.getParentFile().exists())
             throw new NaaccrIOException("Target folder must exist");
 
+        NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation("writeXmlFile");
+        long numPatients = 0;
         try (PatientXmlWriter writer = new PatientXmlWriter(createWriter(xmlFile), data, options, userDictionaries)) {
             for (Patient patient : data.getPatients()) {
                 writer.writePatient(patient);
                 if (observer != null)
                     observer.patientWritten(patient);
+                numPatients++;
                 if (Thread.currentThread().isInterrupted())
                     break;
             }
         }
+        finally {
+            // the event is also emitted when the operation fails
+            if (recording != null)
+                recording.end(null, xmlFile, data, numPatients);
+        }
     }
 
     /**
@@ -205,8 +251,10 @@ public class NaaccrXmlUtils {
         if (!flatFile.exists())
             throw new NaaccrIOException("Source flat file must exist");
 
-        try (PatientFlatReader reader = new PatientFlatReader(createReader(flatFile), options, userDictionaries)) {
-            NaaccrData data = reader.getRootData();
+        NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation("readFlatFile");
+        NaaccrData data = null;
+        try (PatientFlatReader reader = new PatientFlatReader(createReader(flatFile, options), options, userDictionaries)) {
+            data = reader.getRootData();
             Patient patient = reader.readPatient();
             while (patient != null && !Thread.currentThread().isInterrupted()) {
                 if (observer != null)
@@ -214,8 +262,14 @@ public class NaaccrXmlUtils {
                 data.addPatient(patient);
                 patient = reader.readPatient();
             }
-            return data;
         }
+        finally {
+            // the event is also emitted when the operation fails
+            if (recording != null)
+                recording.end(flatFile, null, data, data == null ? 0 : data.getPatients().size());
+        }
+
+        return data;
     }
 
     /**
@@ -235,15 +289,208 @@ public class NaaccrXmlUtils {
         if (!flatFile.getParentFile().exists())
             throw new NaaccrIOException("Target folder must exist");
 
+        NaaccrFlightRecorder.FileRecording recording = NaaccrFlightRecorder.getInstance().beginFileOperation("writeFlatFile");
+        long numPatients = 0;
         try (PatientFlatWriter writer = new PatientFlatWriter(createWriter(flatFile), data, options, userDictionaries)) {
             for (Patient patient : data.getPatients()) {
                 writer.writePatient(patient);
                 if (observer != null)
                     observer.patientWritten(patient);
+                numPatients++;
                 if (Thread.currentThread().isInterrupted())
                     break;
             }
         }
+        finally {
+            // the event is also emitted when the operation fails
+            if (recording != null)
+                recording.end(null, flatFile, data, numPatients);
+        }
+    }
+
+    /**
+     * Reads an NAACCR XML data file and returns the corresponding data using a compact columnar representation.
+     * <br/>
+     * This uses much less memory than readXmlFile() but the validation errors, line numbers and extensions of the patients and tumors are not kept.
+     * @param xmlFile source XML data file, must exists
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @param observer an optional observer, useful to keep track of the progress
+     * @throws NaaccrIOException if there is problem reading/writing the file
+     */
+    public static ColumnarNaaccrData readXmlFileAsColumnar(File xmlFile, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrObserver observer)
+            throws NaaccrIOException {
+        if (xmlFile == null)
+            throw new NaaccrIOException("Source XML file is required");
+        if (!xmlFile.exists())
+            throw new NaaccrIOException("Source XML file must exist");
+
+        try (PatientXmlReader reader = new PatientXmlReader(createReader(xmlFile, options), options, userDictionaries)) {
+            return ColumnarNaaccrData.read(reader, userDictionaries, observer);
+        }
+    }
+
+    /**
+     * Writes the provided columnar data to the requested XML file.
+     * @param data a <code>ColumnarNaaccrData</code> object, cannot be null
+     * @param xmlFile target XML data file
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @param observer an optional observer, useful to keep track of the progress
+     * @throws NaaccrIOException if there is problem reading/writing the file
+     */
+    public static void writeXmlFile(ColumnarNaaccrData data, File xmlFile, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrObserver observer)
+            throws NaaccrIOException {
+        if (data == null)
+            throw new NaaccrIOException("Data is required");
+        if (!xmlFile.getParentFile().exists())
+            throw new NaaccrIOException("Target folder must exist");
+
+        try (PatientXmlWriter writer = new PatientXmlWriter(createWriter(xmlFile), data.getRootData(), options, userDictionaries)) {
+            data.write(writer, observer);
+        }
+    }
+
+    /**
+     * Reads an NAACCR flat file data file and returns the corresponding data using a compact columnar representation.
+     * <br/>
+     * This uses much less memory than readFlatFile() but the validation errors and line numbers of the patients and tumors are not kept.
+     * @param flatFile source flat file, must exists
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @param observer an optional observer, useful to keep track of the progress
+     * @throws NaaccrIOException if there is problem reading/writing the file
+     */
+    public static ColumnarNaaccrData readFlatFileAsColumnar(File flatFile, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrObserver observer)
+            throws NaaccrIOException {
+        if (flatFile == null)
+            throw new NaaccrIOException("Source flat file is required");
+        if (!flatFile.exists())
+            throw new NaaccrIOException("Source flat file must exist");
+
+        try (PatientFlatReader reader = new PatientFlatReader(createReader(flatFile, options), options, userDictionaries)) {
+            return ColumnarNaaccrData.read(reader, userDictionaries, observer);
+        }
+    }
+
+    /**
+     * Writes the provided columnar data to the requested flat file.
+     * @param data a <code>ColumnarNaaccrData</code> object, cannot be null
+     * @param flatFile target flat data file
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @param observer an optional observer, useful to keep track of the progress
+     * @throws NaaccrIOException if there is problem reading/writing the file
+     */
+    public static void writeFlatFile(ColumnarNaaccrData data, File flatFile, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrObserver observer)
+            throws NaaccrIOException {
+        if (data == null)
+            throw new NaaccrIOException("Data is required");
+        if (!flatFile.getParentFile().exists())
+            throw new NaaccrIOException("Target folder must exist");
+
+        try (PatientFlatWriter writer = new PatientFlatWriter(createWriter(flatFile), data.getRootData(), options, userDictionaries)) {
+            data.write(writer, observer);
+        }
+    }
+
+    /**
+     * Returns a stream of the patients of the provided NAACCR XML data file.
+     * <br/><br/>
+     * The stream must be closed (it closes the underlined reader), and the reading errors are thrown as NaaccrUncheckedIOException. The parsing is always
+     * sequential, but if the stream is made parallel, the downstream operations are spread over several threads (see PatientSpliterator).
+     * @param xmlFile source XML data file, must exists
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @return a stream of patients, never null
+     * @throws NaaccrIOException if the file cannot be opened
+     */
+    public static Stream<Patient> streamXmlFile(File xmlFile, NaaccrOptions options, List<NaaccrDictionary> userDictionaries) throws NaaccrIOException {
+        if (xmlFile == null)
+            throw new NaaccrIOException("Source XML file is required");
+        if (!xmlFile.exists())
+            throw new NaaccrIOException("Source XML file must exist");
+
+        return streamXmlReader(createReader(xmlFile, options), options, userDictionaries);
+    }
+
+    /**
+     * Returns a stream of the patients of the provided NAACCR flat data file (see streamXmlFile() for more information about the stream).
+     * @param flatFile source flat data file, must exists
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @return a stream of patients, never null
+     * @throws NaaccrIOException if the file cannot be opened
+     */
+    public static Stream<Patient> streamFlatFile(File flatFile, NaaccrOptions options, List<NaaccrDictionary> userDictionaries) throws NaaccrIOException {
+        if (flatFile == null)
+            throw new NaaccrIOException("Source flat file is required");
+        if (!flatFile.exists())
+            throw new NaaccrIOException("Source flat file must exist");
+
+        return streamFlatReader(createReader(flatFile, options), options, userDictionaries);
+    }
+
+    /**
+     * Returns a stream of the patients of the provided NAACCR XML reader (see streamXmlFile() for more information about the stream).
+     * @param reader XML reader, cannot be null; it is closed when the stream is closed
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @return a stream of patients, never null
+     * @throws NaaccrIOException if the root data cannot be read
+     */
+    public static Stream<Patient> streamXmlReader(Reader reader, NaaccrOptions options, List<NaaccrDictionary> userDictionaries) throws NaaccrIOException {
+        try {
+            return streamPatients(new PatientXmlReader(reader, options, userDictionaries));
+        }
+        catch (NaaccrIOException | RuntimeException e) {
+            try {
+                reader.close();
+            }
+            catch (IOException e1) {
+                // give up
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a stream of the patients of the provided NAACCR flat reader (see streamXmlFile() for more information about the stream).
+     * @param reader flat reader, cannot be null; it is closed when the stream is closed
+     * @param options optional validating options
+     * @param userDictionaries optional user-defined dictionaries (will be merged with the base dictionary)
+     * @return a stream of patients, never null
+     * @throws NaaccrIOException if the first line cannot be read
+     */
+    public static Stream<Patient> streamFlatReader(Reader reader, NaaccrOptions options, List<NaaccrDictionary> userDictionaries) throws NaaccrIOException {
+        try {
+            return streamPatients(new PatientFlatReader(reader, options, userDictionaries));
+        }
+        catch (NaaccrIOException | RuntimeException e) {
+            try {
+                reader.close();
+            }
+            catch (IOException e1) {
+                // give up
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a stream of the patients of the provided patient reader (see streamXmlFile() for more information about the stream).
+     * @param reader patient reader, cannot be null; it is closed when the stream is closed
+     * @return a stream of patients, never null
+     */
+    public static Stream<Patient> streamPatients(PatientReader reader) {
+        return StreamSupport.stream(new PatientSpliterator(reader), false).onClose(() -> {
+            try {
+                reader.close();
+            }
+            catch (IOException e) {
+                throw new NaaccrUncheckedIOException(e instanceof NaaccrIOException ? (NaaccrIOException)e : new NaaccrIOException(e.getMessage(), e));
+            }
+        });
     }
 
     /**
@@ -346,10 +593,11 @@ public class NaaccrXmlUtils {
         if (flatFile == null || !flatFile.exists())
             return null;
 
-        try (BufferedReader reader = new BufferedReader(createReader(flatFile))) {
-            return getFormatFromFlatFileLine(reader.readLine());
+        try {
+            // only the first few KB of the file are read, that's more than enough to get the format from the first line
+            return getFormatFromFlatFileLine(HeaderSniffer.sniff(flatFile).getFirstLine());
         }
-        catch (IOException e) {
+        catch (IOException | RuntimeException e) {
             return null;
         }
     }
@@ -384,12 +632,7 @@ public class NaaccrXmlUtils {
         if (xmlFile == null || !xmlFile.exists())
             return null;
 
-        try (Reader reader = createReader(xmlFile)) {
-            return getFormatFromXmlReader(reader);
-        }
-        catch (IOException | RuntimeException e) {
-            return null;
-        }
+        return getFormatFromAttributes(getAttributesFromXmlFile(xmlFile));
     }
 
     /**
@@ -398,7 +641,11 @@ public class NaaccrXmlUtils {
      * @return the NAACCR format, null if it cannot be determined
      */
     public static String getFormatFromXmlReader(Reader xmlReader) {
-        Map<String, String> attributes = getAttributesFromXmlReader(xmlReader);
+        return getFormatFromAttributes(getAttributesFromXmlReader(xmlReader));
+    }
+
+    // helper
+    private static String getFormatFromAttributes(Map<String, String> attributes) {
         String baseDictUri = attributes.get(NAACCR_XML_ROOT_ATT_BASE_DICT);
         String recordType = attributes.get(NAACCR_XML_ROOT_ATT_REC_TYPE);
         if (baseDictUri != null && recordType != null) {
@@ -419,8 +666,19 @@ public class NaaccrXmlUtils {
         if (xmlFile == null || !xmlFile.exists())
             return Collections.emptyMap();
 
+        try {
+            // the attributes are extracted from the first few KB of the file, without using an actual XML parser
+            HeaderSniffer.Header header = HeaderSniffer.sniff(xmlFile);
+            if (header.isComplete())
+                return getRootAttributes(header);
+        }
+        catch (IOException | RuntimeException e) {
+            return Collections.emptyMap();
+        }
+
+        // the header couldn't be understood, let's use an actual XML parser
         try (Reader reader = createReader(xmlFile)) {
-            return getAttributesFromXmlReader(reader);
+            return getAttributesFromXmlReaderUsingParser(reader);
         }
         catch (IOException | RuntimeException e) {
             return Collections.emptyMap();
@@ -437,14 +695,54 @@ public class NaaccrXmlUtils {
      * @return the available attributes in a map, maybe empty but never null
      */
     public static Map<String, String> getAttributesFromXmlReader(Reader xmlReader) {
-        Map<String, String> result = new HashMap<>();
         if (xmlReader == null)
-            return result;
+            return new HashMap<>();
 
+        char[] buffer = new char[HeaderSniffer.DEFAULT_HEADER_SIZE];
+        int length = 0;
         try {
             if (xmlReader.markSupported())
-                xmlReader.mark(8192); // this is the default buffer size for a BufferedReader; should be more than enough to get all available attributes...
-            HierarchicalStreamReader xstreamReader = new NaaccrStreamConfiguration().getDriver().createReader(xmlReader);
+                xmlReader.mark(buffer.length); // this is the default buffer size for a BufferedReader; should be more than enough to get all available attributes...
+            int n = 0;
+            while (length < buffer.length && (n = xmlReader.read(buffer, length, buffer.length - length)) != -1)
+                length += n;
+
+            // the attributes are extracted from the first few KB, without using an actual XML parser
+            HeaderSniffer.Header header = HeaderSniffer.sniff(CharBuffer.wrap(buffer, 0, length), n == -1);
+            if (header.isComplete()) {
+                if (xmlReader.markSupported())
+                    xmlReader.reset();
+                return new HashMap<>(getRootAttributes(header));
+            }
+
+            // the header couldn't be understood, let's use an actual XML parser (on the consumed characters followed by the rest of the reader)
+            if (xmlReader.markSupported()) {
+                xmlReader.reset();
+                return getAttributesFromXmlReaderUsingParser(xmlReader);
+            }
+            PushbackReader pushbackReader = new PushbackReader(xmlReader, Math.max(length, 1));
+            pushbackReader.unread(buffer, 0, length);
+            return getAttributesFromXmlReaderUsingParser(pushbackReader);
+        }
+        catch (IOException | RuntimeException e) {
+            return new HashMap<>();
+        }
+    }
+
+    // helper
+    private static Map<String, String> getRootAttributes(HeaderSniffer.Header header) {
+        if (header.getRootTag() == null || !removeNameSpacePrefix(header.getRootTag()).equals(NAACCR_XML_TAG_ROOT))
+            return new HashMap<>();
+        return new HashMap<>(header.getRootAttributes());
+    }
+
+    // helper
+    private static Map<String, String> getAttributesFromXmlReaderUsingParser(Reader xmlReader) {
+        Map<String, String> result = new HashMap<>();
+        try {
+            if (xmlReader.markSupported())
+                xmlReader.mark(8192);
+            HierarchicalStreamReader xstreamReader = NaaccrStreamConfigurationFactory.getDefault().createConfiguration().getDriver().createReader(xmlReader);
             if (removeNameSpacePrefix(xstreamReader.getNodeName()).equals(NaaccrXmlUtils.NAACCR_XML_TAG_ROOT))
                 for (int i = 0; i < xstreamReader.getAttributeCount(); i++)
                     result.put(removeNameSpacePrefix(xstreamReader.getAttributeName(i)), xstreamReader.getAttribute(i));
@@ -467,20 +765,46 @@ public class NaaccrXmlUtils {
     }
 
     /**
-     * Returns a generic reader for the provided file, taking care of the optional GZ compression.
+     * Returns a generic reader for the provided file, taking care of the optional compression.
+     * <br/><br/>
+     * The compression is determined from the file extension (".gz", ".xz", or any other extension registered in the {@link CompressionCodecRegistry});
+     * if the extension is not recognized, the first bytes of the file are used instead.
      * @param file file to create the reader from, cannot be null
      * @return a generic reader to the file, never null
      * @throws NaaccrIOException if the reader cannot be created
      */
     public static Reader createReader(File file) throws NaaccrIOException {
+        return createReader(file, null);
+    }
+
+    /**
+     * Returns a generic reader for the provided file, taking care of the optional compression.
+     * <br/><br/>
+     * If the provided options request it, the decompression and character decoding happen on a separate thread (see {@link ReadAheadReader}); the
+     * returned reader needs to be closed to release that thread.
+     * @param file file to create the reader from, cannot be null
+     * @param options optional options
+     * @return a generic reader to the file, never null
+     * @throws NaaccrIOException if the reader cannot be created
+     */
+    public static Reader createReader(File file, NaaccrOptions options) throws NaaccrIOException {
         InputStream is = null;
         try {
-            is = new FileInputStream(file);
+            is = CompressionCodecRegistry.getCodecForReading(file).createInputStream(file);
+
+            // when the JMX monitoring is enabled, the stream created on this reader needs to know the file and how much of it was read
+            MonitoredFileReader.ByteCountingInputStream counter = null;
+            if (NaaccrManagement.isEnabled())
+                is = counter = new MonitoredFileReader.ByteCountingInputStream(is);
+
+            Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+            if (options != null && Boolean.TRUE.equals(options.getUseReadAheadThread()))
+                reader = new ReadAheadReader(reader);
 
-            if (file.getName().endsWith(".gz"))
-                is = new GZIPInputStream(is);
+            if (counter != null)
+                reader = new MonitoredFileReader(reader, file, counter);
 
-            return new InputStreamReader(is, StandardCharsets.UTF_8);
+            return reader;
         }
         catch (IOException e) {
             if (is != null) {
@@ -496,7 +820,9 @@ public class NaaccrXmlUtils {
     }
 
     /**
-     * Returns a generic writer for the provided file, taking care of the optional GZ compression.
+     * Returns a generic writer for the provided file, taking care of the optional compression.
+     * <br/><br/>
+     * The compression is determined from the file extension (".gz", ".xz", or any other extension registered in the {@link CompressionCodecRegistry}).
      * @param file file to create the writer from, cannot be null
      * @return a generic writer to the file, never null
      * @throws NaaccrIOException if the writer cannot be created
@@ -505,9 +831,13 @@ public class NaaccrXmlUtils {
         OutputStream os = null;
         try {
             os = new FileOutputStream(file);
+            os = CompressionCodecRegistry.getCodecForWriting(file).createOutputStream(os);
 
-            if (file.getName().endsWith(".gz"))
-                os = new GZIPOutputStream(os);
+            // when the JMX monitoring is enabled, the stream created on this writer needs to know the file and how much was written to it
+            if (NaaccrManagement.isEnabled()) {
+                MonitoredFileWriter.ByteCountingOutputStream counter = new MonitoredFileWriter.ByteCountingOutputStream(os);
+                return new MonitoredFileWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8), file, counter);
+            }
 
             return new OutputStreamWriter(os, StandardCharsets.UTF_8);
         }
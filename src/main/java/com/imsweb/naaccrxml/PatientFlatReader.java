@@ -19,8 +19,14 @@ import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.Tumor;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.internal.CountingReader;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
+import com.imsweb.naaccrxml.management.NaaccrManagement;
+import com.imsweb.naaccrxml.management.StreamMonitor;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+import com.imsweb.naaccrxml.runtime.NaaccrValueInterner;
 import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryCache;
 import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryItem;
 
 /**
@@ -40,6 +46,9 @@ public class PatientFlatReader implements PatientReader {
     // the runtime dictionary (combination of base and user-defined dictionaries)
     protected RuntimeNaaccrDictionary _dictionary;
 
+    // the optional interner used for the values of the code items
+    protected NaaccrValueInterner _valueInterner;
+
     // the cached items that need to be used to know whether tumors belong to the same patient
     protected List<RuntimeNaaccrDictionaryItem> _groupingItems;
 
@@ -49,6 +58,21 @@ public class PatientFlatReader implements PatientReader {
     // reference to the previous data line in the reader
     protected String _previousLine;
 
+    // the metrics to report to; null when they are disabled
+    protected NaaccrMetrics _metrics;
+
+    // counts the read characters; null when the metrics are disabled
+    protected CountingReader _countingReader;
+
+    // the Flight Recorder event covering the life of this stream; null when that event is disabled
+    protected NaaccrFlightRecorder.StreamRecording _streamRecording;
+
+    // the JMX monitor of this stream; null when the monitoring is disabled
+    protected StreamMonitor _monitor;
+
+    // the number of patients processed by this stream
+    protected long _numPatients;
+
     /**
      * Constructor
      * @param reader required underlined reader
@@ -111,8 +135,15 @@ public class PatientFlatReader implements PatientReader {
      * @throws NaaccrIOException if there is problem creating the stream
      */
     public PatientFlatReader(Reader reader, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrStreamConfiguration conf) throws NaaccrIOException {
-        _reader = new LineNumberReader(reader);
+        _streamRecording = NaaccrFlightRecorder.getInstance().beginStream("PatientFlatReader");
         _options = options == null ? new NaaccrOptions() : options;
+        _metrics = _options.getEnabledMetrics();
+        _monitor = NaaccrManagement.createStreamMonitor("PatientFlatReader", reader, _metrics);
+        if (_monitor != null)
+            _metrics = _monitor;
+        if (_metrics != null)
+            reader = _countingReader = new CountingReader(reader);
+        _reader = new LineNumberReader(reader);
 
         try {
             _previousLine = _reader.readLine();
@@ -140,12 +171,14 @@ public class PatientFlatReader implements PatientReader {
 
         _format = NaaccrFormat.getInstance(version, type);
 
-        // try to use the cached runtime dictionary, create one if there isn't a cached one...
+        // try to use the cached runtime dictionary, get one from the process-wide cache if there isn't a cached one...
         _dictionary = conf == null ? null : conf.getCachedDictionary();
         if (_dictionary == null) {
             NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(_format.getNaaccrVersion());
-            _dictionary = new RuntimeNaaccrDictionary(_format.getRecordType(), baseDictionary, userDictionaries);
+            _dictionary = RuntimeNaaccrDictionaryCache.getDictionary(_format.getRecordType(), baseDictionary, userDictionaries);
         }
+        if (Boolean.TRUE.equals(_options.getUseValueInterning()))
+            _valueInterner = new NaaccrValueInterner();
         _rootData = new NaaccrData(_format.toString());
         _rootData.setSpecificationVersion(NaaccrXmlUtils.CURRENT_SPECIFICATION_VERSION);
 
@@ -167,10 +200,17 @@ public class PatientFlatReader implements PatientReader {
                     _groupingItems.add(item);
             }
         }
+
+        // the stream is fully created, it can be monitored
+        if (_monitor != null)
+            _monitor.register();
     }
 
     @Override
     public Patient readPatient() throws NaaccrIOException {
+        long start = _metrics != null ? System.nanoTime() : 0L;
+        NaaccrFlightRecorder.PatientRecording recording = NaaccrFlightRecorder.getInstance().beginPatientRead();
+
         List<String> lines = new ArrayList<>();
         List<Integer> lineNumbers = new ArrayList<>();
 
@@ -200,7 +240,19 @@ public class PatientFlatReader implements PatientReader {
             throw new NaaccrIOException(e.getMessage());
         }
 
-        return lines.isEmpty() ? null : createPatientFromLines(lines, lineNumbers);
+        if (lines.isEmpty())
+            return null;
+
+        Patient patient = createPatientFromLines(lines, lineNumbers);
+        _numPatients++;
+        if (recording != null)
+            recording.end(patient);
+        if (_metrics != null) {
+            _metrics.patientRead(patient, System.nanoTime() - start);
+            _metrics.charactersRead(_countingReader.takeCount());
+        }
+
+        return patient;
     }
 
     @Override
@@ -216,12 +268,22 @@ public class PatientFlatReader implements PatientReader {
     @Override
     public void close() throws NaaccrIOException {
         closeAndKeepAlive();
+        if (_streamRecording != null) {
+            _streamRecording.end(_rootData, _numPatients);
+            _streamRecording = null;
+        }
+        if (_monitor != null) {
+            _monitor.unregister();
+            _monitor = null;
+        }
         try {
             _reader.close();
         }
         catch (IOException e) {
             throw new NaaccrIOException(e.getMessage());
         }
+        if (_countingReader != null)
+            _metrics.charactersRead(_countingReader.takeCount());
     }
 
     protected Map<String, String> extractGroupingValues(String line, Integer linNumber, List<RuntimeNaaccrDictionaryItem> itemDefs) {
@@ -301,19 +363,27 @@ public class PatientFlatReader implements PatientReader {
         int end = start + def.getLength();
 
         if (end <= line.length()) {
-            String value = line.substring(start, end);
 
-            // apply trimming rule (no trimming rule means trim all)
-            String trimmedValue = value.trim();
-            if (trimmedValue.isEmpty() || def.getTrim() == null || NaaccrXmlDictionaryUtils.NAACCR_TRIM_ALL.equals(def.getTrim()))
-                value = trimmedValue;
+            // apply trimming rule (no trimming rule means trim all); this is done on the line itself to avoid creating intermediate strings
+            int trimmedStart = start, trimmedEnd = end;
+            while (trimmedStart < trimmedEnd && line.charAt(trimmedStart) <= ' ')
+                trimmedStart++;
+            while (trimmedEnd > trimmedStart && line.charAt(trimmedEnd - 1) <= ' ')
+                trimmedEnd--;
+            if (trimmedStart == trimmedEnd || def.getTrim() == null || NaaccrXmlDictionaryUtils.NAACCR_TRIM_ALL.equals(def.getTrim())) {
+                start = trimmedStart;
+                end = trimmedEnd;
+            }
+
+            if (start < end) {
+                String value = _valueInterner != null ? _valueInterner.intern(def, line, start, end) : line.substring(start, end);
 
-            if (!value.isEmpty()) {
                 // create the item
-                item = new Item(def.getNaaccrId(), def.getNaaccrNum(), value, lineNumber);
+                item = new Item(def.getNaaccrId(), def.getNaaccrNum(), value, Boolean.FALSE.equals(_options.getReadItemLineNumbers()) ? null : lineNumber);
 
                 // validate the value
                 if (entity != null) {
+                    long validationStart = _metrics != null ? System.nanoTime() : 0L;
                     if (item.getValue().length() > def.getLength())
                         reportError(entity, lineNumber, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_TOO_LONG, def.getLength(), item.getValue().length());
                     if (_options.getValidateReadValues()) {
@@ -325,6 +395,8 @@ public class PatientFlatReader implements PatientReader {
                                 reportError(entity, lineNumber, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_DATA_TYPE, def.getDataType());
                         }
                     }
+                    if (_metrics != null)
+                        _metrics.valueValidated(System.nanoTime() - validationStart);
                 }
             }
         }
@@ -341,6 +413,11 @@ public class PatientFlatReader implements PatientReader {
         }
         if (value != null && !value.isEmpty())
             error.setValue(value);
-        entity.addValidationError(error);
+        if (_metrics != null)
+            _metrics.errorReported(code);
+        if (_options.getValidationErrorSink() != null)
+            _options.getValidationErrorSink().errorReported(error);
+        else
+            entity.addValidationError(error);
     }
 }
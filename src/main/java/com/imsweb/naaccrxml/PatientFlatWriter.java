@@ -18,8 +18,12 @@ import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.Tumor;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
+import com.imsweb.naaccrxml.management.NaaccrManagement;
+import com.imsweb.naaccrxml.management.StreamMonitor;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
 import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryCache;
 import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryItem;
 
 import static com.imsweb.naaccrxml.NaaccrOptions.NEW_LINE_CRLF;
@@ -48,6 +52,18 @@ public class PatientFlatWriter implements PatientWriter {
     // cached value for new line character(s)
     protected String _newLine;
 
+    // the metrics to report to; null when they are disabled
+    protected NaaccrMetrics _metrics;
+
+    // the Flight Recorder event covering the life of this stream; null when that event is disabled
+    protected NaaccrFlightRecorder.StreamRecording _streamRecording;
+
+    // the JMX monitor of this stream; null when the monitoring is disabled
+    protected StreamMonitor _monitor;
+
+    // the number of patients processed by this stream
+    protected long _numPatients;
+
     // cached pattern for new lines
     private static final Pattern _NEW_LINES_PATTERN = Pattern.compile("(\r\n|\n|\r)");
 
@@ -119,18 +135,23 @@ public class PatientFlatWriter implements PatientWriter {
      * @throws NaaccrIOException if there is problem creating the stream
      */
     public PatientFlatWriter(Writer writer, NaaccrData data, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrStreamConfiguration conf) throws NaaccrIOException {
+        _streamRecording = NaaccrFlightRecorder.getInstance().beginStream("PatientFlatWriter");
         _writer = new BufferedWriter(writer);
         _rootData = data;
         _options = options == null ? new NaaccrOptions() : options;
         _newLine = NEW_LINE_LF.equals(_options.getNewLine()) ? "\n" : NEW_LINE_CRLF.equals(_options.getNewLine()) ? "\r\n" : System.getProperty("line.separator");
+        _metrics = _options.getEnabledMetrics();
+        _monitor = NaaccrManagement.createStreamMonitor("PatientFlatWriter", writer, _metrics);
+        if (_monitor != null)
+            _metrics = _monitor;
 
         // there should be better validation here...
 
-        // try to use the cached runtime dictionary, create one if there isn't a cached one...
+        // try to use the cached runtime dictionary, get one from the process-wide cache if there isn't a cached one...
         _dictionary = conf == null ? null : conf.getCachedDictionary();
         if (_dictionary == null) {
             NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByUri(data.getBaseDictionaryUri());
-            _dictionary = new RuntimeNaaccrDictionary(data.getRecordType(), baseDictionary, userDictionaries);
+            _dictionary = RuntimeNaaccrDictionaryCache.getDictionary(data.getRecordType(), baseDictionary, userDictionaries);
         }
 
         if (_dictionary.getLineLength() == null || _dictionary.getLineLength() == -1)
@@ -145,10 +166,18 @@ public class PatientFlatWriter implements PatientWriter {
             if (_recordTypeItem != null && _naaccrVersionItem != null)
                 break;
         }
+
+        // the stream is fully created, it can be monitored
+        if (_monitor != null)
+            _monitor.register();
     }
 
     @Override
     public void writePatient(Patient patient) throws NaaccrIOException {
+        long start = _metrics != null ? System.nanoTime() : 0L;
+        NaaccrFlightRecorder.PatientRecording recording = NaaccrFlightRecorder.getInstance().beginPatientWrite();
+        long numCharacters = 0;
+
         for (String line : createLinesFromPatient(_rootData, patient)) {
             try {
                 _writer.write(line);
@@ -157,6 +186,15 @@ public class PatientFlatWriter implements PatientWriter {
             catch (IOException e) {
                 throw new NaaccrIOException(e.getMessage());
             }
+            numCharacters += line.length() + _newLine.length();
+        }
+
+        _numPatients++;
+        if (recording != null)
+            recording.end(patient);
+        if (_metrics != null) {
+            _metrics.patientWritten(patient, System.nanoTime() - start);
+            _metrics.charactersWritten(numCharacters);
         }
     }
 
@@ -173,6 +211,14 @@ public class PatientFlatWriter implements PatientWriter {
     @Override
     public void close() throws NaaccrIOException {
         closeAndKeepAlive();
+        if (_streamRecording != null) {
+            _streamRecording.end(_rootData, _numPatients);
+            _streamRecording = null;
+        }
+        if (_monitor != null) {
+            _monitor.unregister();
+            _monitor = null;
+        }
         try {
             _writer.close();
         }
@@ -302,6 +348,11 @@ public class PatientFlatWriter implements PatientWriter {
         }
         if (value != null && !value.isEmpty())
             error.setValue(value);
-        entity.addValidationError(error);
+        if (_metrics != null)
+            _metrics.errorReported(code);
+        if (_options.getValidationErrorSink() != null)
+            _options.getValidationErrorSink().errorReported(error);
+        else
+            entity.addValidationError(error);
     }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * A spliterator over the patients of a patient reader.
+ * <br/><br/>
+ * The parsing is always sequential: when a parallel stream splits this spliterator, it receives a batch of patients that have already been read (the batches
+ * get bigger as the splitting goes, up to a maximum size); the downstream work on those patients can then be done by other threads.
+ * <br/><br/>
+ * The reading errors are thrown as NaaccrUncheckedIOException. This spliterator doesn't close the reader.
+ */
+public class PatientSpliterator implements Spliterator<Patient> {
+
+    // the size of the first batch; each new batch is bigger than the previous one, up to the maximum size
+    public static final int DEFAULT_INITIAL_BATCH_SIZE = 16;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    private final PatientReader _reader;
+
+    private final int _maxBatchSize;
+
+    private int _batchSize;
+
+    private boolean _done;
+
+    /**
+     * Constructor.
+     * @param reader patient reader, cannot be null
+     */
+    public PatientSpliterator(PatientReader reader) {
+        this(reader, DEFAULT_INITIAL_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param reader patient reader, cannot be null
+     * @param initialBatchSize number of patients in the first batch returned by trySplit()
+     * @param maxBatchSize maximum number of patients in a batch returned by trySplit()
+     */
+    public PatientSpliterator(PatientReader reader, int initialBatchSize, int maxBatchSize) {
+        if (initialBatchSize < 1 || maxBatchSize < initialBatchSize)
+            throw new IllegalArgumentException("Invalid batch sizes");
+        _reader = reader;
+        _batchSize = initialBatchSize;
+        _maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Patient> action) {
+        Patient patient = readPatient();
+        if (patient == null)
+            return false;
+        action.accept(patient);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Patient> action) {
+        Patient patient = readPatient();
+        while (patient != null) {
+            action.accept(patient);
+            patient = readPatient();
+        }
+    }
+
+    @Override
+    public Spliterator<Patient> trySplit() {
+        if (_done)
+            return null;
+
+        Patient[] batch = new Patient[_batchSize];
+        int size = 0;
+        while (size < batch.length) {
+            Patient patient = readPatient();
+            if (patient == null)
+                break;
+            batch[size++] = patient;
+        }
+        if (size == 0)
+            return null;
+
+        _batchSize = Math.min(_batchSize * 2, _maxBatchSize);
+
+        return Spliterators.spliterator(batch, 0, size, ORDERED | NONNULL);
+    }
+
+    @Override
+    public long estimateSize() {
+        return _done ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private Patient readPatient() {
+        if (_done)
+            return null;
+        try {
+            Patient patient = _reader.readPatient();
+            if (patient == null)
+                _done = true;
+            return patient;
+        }
+        catch (NaaccrIOException e) {
+            _done = true;
+            throw new NaaccrUncheckedIOException(e);
+        }
+    }
+}
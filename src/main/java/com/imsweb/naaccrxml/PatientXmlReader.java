@@ -30,9 +30,15 @@ import com.thoughtworks.xstream.mapper.CannotResolveClassException;
 import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.internal.CountingReader;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
+import com.imsweb.naaccrxml.management.NaaccrManagement;
+import com.imsweb.naaccrxml.management.StreamMonitor;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfigurationFactory;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamContext;
-import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.NaaccrValueInterner;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryCache;
 
 import static com.imsweb.naaccrxml.NaaccrXmlUtils.NAACCR_XML_ITEM_ATT_ID;
 import static com.imsweb.naaccrxml.NaaccrXmlUtils.NAACCR_XML_ITEM_ATT_NUM;
@@ -66,6 +72,18 @@ public class PatientXmlReader implements PatientReader {
     // sometimes we want to finalize the reading operation without closing the reader itself...
     protected boolean _hasBeenFinalized = false;
 
+    // counts the read characters; null when the metrics are disabled
+    protected CountingReader _countingReader;
+
+    // the Flight Recorder event covering the life of this stream; null when that event is disabled
+    protected NaaccrFlightRecorder.StreamRecording _streamRecording;
+
+    // the JMX monitor of this stream; null when the monitoring is disabled
+    protected StreamMonitor _monitor;
+
+    // the number of patients processed by this stream
+    protected long _numPatients;
+
     /**
      * Constructor.
      * @param reader required underlined reader
@@ -128,15 +146,16 @@ public class PatientXmlReader implements PatientReader {
      * @throws NaaccrIOException if anything goes wrong
      */
     public PatientXmlReader(Reader reader, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrStreamConfiguration conf) throws NaaccrIOException {
+        _streamRecording = NaaccrFlightRecorder.getInstance().beginStream("PatientXmlReader");
 
         try {
             // we always need options
             if (options == null)
                 options = NaaccrOptions.getDefault();
 
-            // we always need a configuration
+            // we always need a configuration (the default one shares its expensive parts with all the other default streams)
             if (conf == null)
-                conf = NaaccrStreamConfiguration.getDefault();
+                conf = NaaccrStreamConfigurationFactory.getDefault().createConfiguration();
 
             // clean-up the dictionaries
             Map<String, NaaccrDictionary> dictionaries = new HashMap<>();
@@ -149,6 +168,12 @@ public class PatientXmlReader implements PatientReader {
             _context = new NaaccrStreamContext();
             _context.setOptions(options);
             _context.setConfiguration(conf);
+            _monitor = NaaccrManagement.createStreamMonitor("PatientXmlReader", reader, options.getEnabledMetrics());
+            _context.setMetrics(_monitor != null ? _monitor : options.getEnabledMetrics());
+
+            // count the characters if the metrics are enabled
+            if (_context.getMetrics() != null)
+                reader = _countingReader = new CountingReader(reader);
 
             // create the XML reader
             _reader = conf.getDriver().createReader(reader);
@@ -226,7 +251,13 @@ public class PatientXmlReader implements PatientReader {
                         _rootData.setTimeGenerated(Date.from(LocalDateTime.parse(generatedTime, DateTimeFormatter.ISO_LOCAL_DATE_TIME).toInstant(ZoneOffset.UTC)));
                     }
                     catch (RuntimeException e2) {
-                        _rootData.addValidationError(new NaaccrValidationError(NaaccrErrorUtils.CODE_BAD_TIME_GENERATED, generatedTime));
+                        NaaccrValidationError error = new NaaccrValidationError(NaaccrErrorUtils.CODE_BAD_TIME_GENERATED, generatedTime);
+                        if (_context.getMetrics() != null)
+                            _context.getMetrics().errorReported(error.getCode());
+                        if (options.getValidationErrorSink() != null)
+                            options.getValidationErrorSink().errorReported(error);
+                        else
+                            _rootData.addValidationError(error);
                     }
                 }
             }
@@ -286,12 +317,13 @@ public class PatientXmlReader implements PatientReader {
                 _rootData.addExtraRootParameters(attrName, entry.getValue());
             }
 
-            // create or get the runtime dictionary
-            if (conf.getCachedDictionary() == null || !conf.getCachedDictionary().getId().equals(RuntimeNaaccrDictionary.computeId(_rootData.getRecordType(), baseDictionary, dictionaries.values())))
-                conf.setCachedDictionary(new RuntimeNaaccrDictionary(_rootData.getRecordType(), baseDictionary, dictionaries.values()));
+            // get the runtime dictionary from the process-wide cache (it will be created if needed)
+            conf.setCachedDictionary(RuntimeNaaccrDictionaryCache.getDictionary(_rootData.getRecordType(), baseDictionary, dictionaries.values()));
 
             // now we are ready to setup our reading context and make it available to the patient converter
             _context.setDictionary(conf.getCachedDictionary());
+            if (Boolean.TRUE.equals(options.getUseValueInterning()))
+                _context.setValueInterner(new NaaccrValueInterner());
             conf.getPatientConverter().setContext(_context);
 
             // handle the case where no patients nor items are provided
@@ -318,7 +350,7 @@ public class PatientXmlReader implements PatientReader {
             // handle root extensions
             while (!isPatientTag(_reader.getNodeName()) && !isRootTag(_reader.getNodeName())) {
                 if (!Boolean.TRUE.equals(options.getIgnoreExtensions()))
-                    _rootData.addExtension(conf.getXstream().unmarshal(_reader));
+                    _rootData.addExtension(conf.getXstream().unmarshal(_reader, null, conf.getDataHolder()));
                 _reader.moveUp();
                 if (_reader.hasMoreChildren())
                     _reader.moveDown();
@@ -347,6 +379,10 @@ public class PatientXmlReader implements PatientReader {
                 throw new NaaccrIOException("invalid tag: " + ex.getMessage());
             throw new NaaccrIOException("invalid XML syntax", ex);
         }
+
+        // the stream is fully created, it can be monitored
+        if (_monitor != null)
+            _monitor.register();
     }
 
     private boolean isRootTag(String tag) throws NaaccrIOException {
@@ -369,9 +405,13 @@ public class PatientXmlReader implements PatientReader {
         if (!_context.extractTag(_reader.getNodeName()).equals(NAACCR_XML_TAG_PATIENT))
             throw new NaaccrIOException("Unexpected tag: " + _reader.getNodeName(), _context.getLineNumber());
 
+        NaaccrMetrics metrics = _context.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0L;
+        NaaccrFlightRecorder.PatientRecording recording = NaaccrFlightRecorder.getInstance().beginPatientRead();
+
         Patient patient;
         try {
-            patient = (Patient)_xstream.unmarshal(_reader);
+            patient = (Patient)_xstream.unmarshal(_reader, null, _context.getConfiguration().getDataHolder());
             _reader.moveUp();
             if (_reader.hasMoreChildren())
                 _reader.moveDown();
@@ -389,6 +429,14 @@ public class PatientXmlReader implements PatientReader {
             throw new NaaccrIOException("invalid XML syntax", ex);
         }
 
+        _numPatients++;
+        if (recording != null)
+            recording.end(patient);
+        if (metrics != null) {
+            metrics.patientRead(patient, System.nanoTime() - start);
+            metrics.charactersRead(_countingReader.takeCount());
+        }
+
         return patient;
     }
 
@@ -408,7 +456,17 @@ public class PatientXmlReader implements PatientReader {
     @Override
     public void close() {
         closeAndKeepAlive();
+        if (_streamRecording != null) {
+            _streamRecording.end(_rootData, _numPatients);
+            _streamRecording = null;
+        }
+        if (_monitor != null) {
+            _monitor.unregister();
+            _monitor = null;
+        }
         _reader.close();
+        if (_countingReader != null)
+            _context.getMetrics().charactersRead(_countingReader.takeCount());
     }
 
     /**
@@ -21,15 +21,21 @@ import org.apache.commons.lang3.StringUtils;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.DataHolder;
 
 import com.imsweb.naaccrxml.entity.Item;
 import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.internal.CountingWriter;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
 import com.imsweb.naaccrxml.internal.NaaccrXmLPrettyPrintWriter;
+import com.imsweb.naaccrxml.management.NaaccrManagement;
+import com.imsweb.naaccrxml.management.StreamMonitor;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfigurationFactory;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamContext;
-import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryCache;
 
 import static com.imsweb.naaccrxml.NaaccrOptions.NEW_LINE_CRLF;
 import static com.imsweb.naaccrxml.NaaccrOptions.NEW_LINE_LF;
@@ -42,6 +48,9 @@ public class PatientXmlWriter implements PatientWriter {
     // XStream object responsible for reading patient objects
     protected XStream _xstream;
 
+    // data holder giving the XStream converters access to the configuration of this stream
+    protected DataHolder _dataHolder;
+
     // the underlined writer
     protected NaaccrXmLPrettyPrintWriter _writer;
 
@@ -51,6 +60,24 @@ public class PatientXmlWriter implements PatientWriter {
     // sometimes we want to finalize the writing operation without closing the writer itself...
     protected boolean _hasBeenFinalized = false;
 
+    // the metrics to report to; null when they are disabled
+    protected NaaccrMetrics _metrics;
+
+    // counts the written characters; null when the metrics are disabled
+    protected CountingWriter _countingWriter;
+
+    // the root data of this stream
+    protected NaaccrData _rootData;
+
+    // the Flight Recorder event covering the life of this stream; null when that event is disabled
+    protected NaaccrFlightRecorder.StreamRecording _streamRecording;
+
+    // the JMX monitor of this stream; null when the monitoring is disabled
+    protected StreamMonitor _monitor;
+
+    // the number of patients processed by this stream
+    protected long _numPatients;
+
     /**
      * Constructor.
      * @param writer required underlined writer
@@ -119,26 +146,36 @@ public class PatientXmlWriter implements PatientWriter {
      * @throws NaaccrIOException if anything goes wrong
      */
     public PatientXmlWriter(Writer writer, NaaccrData rootData, NaaccrOptions options, List<NaaccrDictionary> userDictionaries, NaaccrStreamConfiguration conf) throws NaaccrIOException {
+        _rootData = rootData;
+        _streamRecording = NaaccrFlightRecorder.getInstance().beginStream("PatientXmlWriter");
 
         try {
             // we always need options
             if (options == null)
                 options = NaaccrOptions.getDefault();
 
-            // we always need a configuration
+            // we always need a configuration (the default one shares its expensive parts with all the other default streams)
             if (conf == null)
-                conf = NaaccrStreamConfiguration.getDefault();
+                conf = NaaccrStreamConfigurationFactory.getDefault().createConfiguration();
 
             // compute the end-of-line character(s)
             _newLine = NEW_LINE_LF.equals(options.getNewLine()) ? "\n" : NEW_LINE_CRLF.equals(options.getNewLine()) ? "\r\n" : System.lineSeparator();
 
             // need to expose xstream so the other methods can use it...
             _xstream = conf.getXstream();
+            _dataHolder = conf.getDataHolder();
 
             // create the context
             NaaccrStreamContext context = new NaaccrStreamContext();
             context.setOptions(options);
             context.setConfiguration(conf);
+            _monitor = NaaccrManagement.createStreamMonitor("PatientXmlWriter", writer, options.getEnabledMetrics());
+            context.setMetrics(_monitor != null ? _monitor : options.getEnabledMetrics());
+
+            // count the characters if the metrics are enabled
+            _metrics = context.getMetrics();
+            if (_metrics != null)
+                writer = _countingWriter = new CountingWriter(writer);
 
             // get the base dictionary we need
             NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByUri(rootData.getBaseDictionaryUri());
@@ -196,9 +233,8 @@ public class PatientXmlWriter implements PatientWriter {
             // add the default namespace, always use the library value...
             _writer.addAttribute("xmlns", NaaccrXmlUtils.NAACCR_XML_NAMESPACE);
 
-            // create or get the runtime dictionary
-            if (conf.getCachedDictionary() == null || !conf.getCachedDictionary().getId().equals(RuntimeNaaccrDictionary.computeId(rootData.getRecordType(), baseDictionary, dictionaries.values())))
-                conf.setCachedDictionary(new RuntimeNaaccrDictionary(rootData.getRecordType(), baseDictionary, dictionaries.values()));
+            // get the runtime dictionary from the process-wide cache (it will be created if needed)
+            conf.setCachedDictionary(RuntimeNaaccrDictionaryCache.getDictionary(rootData.getRecordType(), baseDictionary, dictionaries.values()));
 
             // now we are ready to create our reading context and make it available to the patient converter
             context.setDictionary(conf.getCachedDictionary());
@@ -211,7 +247,7 @@ public class PatientXmlWriter implements PatientWriter {
             // write extensions
             if (!Boolean.TRUE.equals(options.getIgnoreExtensions()) && rootData.getExtensions() != null)
                 for (Object extension : rootData.getExtensions())
-                    _xstream.marshal(extension, _writer);
+                    _xstream.marshal(extension, _writer, _dataHolder);
         }
         catch (ConversionException ex) {
             throw convertSyntaxException(ex);
@@ -219,12 +255,18 @@ public class PatientXmlWriter implements PatientWriter {
         catch (RuntimeException ex) {
             throw new NaaccrIOException("unable to write XML", ex);
         }
+
+        // the stream is fully created, it can be monitored
+        if (_monitor != null)
+            _monitor.register();
     }
 
     @Override
     public void writePatient(Patient patient) throws NaaccrIOException {
+        long start = _metrics != null ? System.nanoTime() : 0L;
+        NaaccrFlightRecorder.PatientRecording recording = NaaccrFlightRecorder.getInstance().beginPatientWrite();
         try {
-            _xstream.marshal(patient, _writer);
+            _xstream.marshal(patient, _writer, _dataHolder);
         }
         catch (ConversionException ex) {
             throw convertSyntaxException(ex);
@@ -232,6 +274,14 @@ public class PatientXmlWriter implements PatientWriter {
         catch (RuntimeException ex) {
             throw new NaaccrIOException("unable to write XML", ex);
         }
+
+        _numPatients++;
+        if (recording != null)
+            recording.end(patient);
+        if (_metrics != null) {
+            _metrics.patientWritten(patient, System.nanoTime() - start);
+            _metrics.charactersWritten(_countingWriter.takeCount());
+        }
     }
 
     @Override
@@ -246,7 +296,17 @@ public class PatientXmlWriter implements PatientWriter {
     @Override
     public void close() {
         closeAndKeepAlive();
+        if (_streamRecording != null) {
+            _streamRecording.end(_rootData, _numPatients);
+            _streamRecording = null;
+        }
+        if (_monitor != null) {
+            _monitor.unregister();
+            _monitor = null;
+        }
         _writer.close();
+        if (_countingWriter != null)
+            _metrics.charactersWritten(_countingWriter.takeCount());
     }
 
     /**
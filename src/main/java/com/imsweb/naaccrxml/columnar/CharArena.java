@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.columnar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only storage for character data, shared by the columns of a columnar data object.
+ * <br/><br/>
+ * The characters are stored in large chunks; a value never spans two chunks, so it can be identified by its chunk index (high 32 bits of the position)
+ * and its offset within the chunk (low 32 bits of the position).
+ */
+final class CharArena {
+
+    // default size (in characters) of the chunks
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final int _chunkSize;
+
+    private final List<char[]> _chunks;
+
+    private char[] _current;
+
+    private int _currentPos;
+
+    private long _size;
+
+    CharArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    CharArena(int chunkSize) {
+        _chunkSize = chunkSize;
+        _chunks = new ArrayList<>();
+    }
+
+    /**
+     * Appends the provided value to the arena.
+     * @param value value to append, cannot be null
+     * @return the position of the value in the arena
+     */
+    long append(String value) {
+        int length = value.length();
+        if (_current == null || length > _current.length - _currentPos) {
+            // values larger than a chunk get their own chunk
+            _current = new char[Math.max(_chunkSize, length)];
+            _currentPos = 0;
+            _chunks.add(_current);
+        }
+        int offset = _currentPos;
+        value.getChars(0, length, _current, offset);
+        _currentPos += length;
+        _size += length;
+        return ((long)(_chunks.size() - 1) << 32) | offset;
+    }
+
+    /**
+     * Returns the value at the provided position.
+     * @param position position of the value (as returned by append())
+     * @param length length of the value
+     * @return the value, never null
+     */
+    String get(long position, int length) {
+        return new String(_chunks.get((int)(position >>> 32)), (int)position, length);
+    }
+
+    /**
+     * Returns the number of characters stored in the arena.
+     * @return number of characters
+     */
+    long getSize() {
+        return _size;
+    }
+
+    /**
+     * Returns the number of characters allocated by the arena (including the unused part of the current chunk).
+     * @return number of allocated characters
+     */
+    long getAllocatedSize() {
+        long size = 0;
+        for (char[] chunk : _chunks)
+            size += chunk.length;
+        return size;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of a single item, one per row (patient or tumor).
+ * <br/><br/>
+ * A column starts dictionary-encoded (each row references one of the distinct values using a 16 bits code) unless it's known to contain free text; if the
+ * number of distinct values becomes too large, the column is converted to store its values in the shared character arena.
+ */
+final class Column {
+
+    // maximum number of distinct values for a dictionary-encoded column (code 0 is used for missing values)
+    static final int MAX_DISTINCT_VALUES = Character.MAX_VALUE - 1;
+
+    private static final int _INITIAL_CAPACITY = 16;
+
+    private final String _naaccrId;
+
+    private final Integer _naaccrNum;
+
+    private final CharArena _arena;
+
+    // number of rows in this column
+    private int _size;
+
+    // dictionary encoding (null if the column uses the arena)
+    private char[] _codes;
+
+    private List<String> _distinctValues;
+
+    private Map<String, Integer> _distinctValuesIndex;
+
+    // arena encoding (null if the column is dictionary-encoded); a length of -1 means the row has no value
+    private long[] _positions;
+
+    private int[] _lengths;
+
+    Column(String naaccrId, Integer naaccrNum, CharArena arena, boolean dictionaryEncoded) {
+        _naaccrId = naaccrId;
+        _naaccrNum = naaccrNum;
+        _arena = arena;
+        if (dictionaryEncoded) {
+            _codes = new char[_INITIAL_CAPACITY];
+            _distinctValues = new ArrayList<>();
+            _distinctValues.add(null);
+            _distinctValuesIndex = new HashMap<>();
+        }
+        else {
+            _positions = new long[_INITIAL_CAPACITY];
+            _lengths = new int[_INITIAL_CAPACITY];
+            Arrays.fill(_lengths, -1);
+        }
+    }
+
+    String getNaaccrId() {
+        return _naaccrId;
+    }
+
+    Integer getNaaccrNum() {
+        return _naaccrNum;
+    }
+
+    boolean isDictionaryEncoded() {
+        return _codes != null;
+    }
+
+    int getDistinctValuesCount() {
+        return _distinctValues == null ? -1 : _distinctValues.size() - 1;
+    }
+
+    /**
+     * Sets the value of the provided row; rows are expected to be set in increasing order, the skipped rows have no value.
+     */
+    void set(int row, String value) {
+        ensureCapacity(row + 1);
+        _size = Math.max(_size, row + 1);
+        if (value == null)
+            return;
+
+        if (_codes != null) {
+            Integer code = _distinctValuesIndex.get(value);
+            if (code == null) {
+                if (_distinctValues.size() > MAX_DISTINCT_VALUES) {
+                    convertToArena();
+                    set(row, value);
+                    return;
+                }
+                code = _distinctValues.size();
+                _distinctValues.add(value);
+                _distinctValuesIndex.put(value, code);
+            }
+            _codes[row] = (char)code.intValue();
+        }
+        else {
+            _positions[row] = _arena.append(value);
+            _lengths[row] = value.length();
+        }
+    }
+
+    /**
+     * Returns the value of the provided row, null if it doesn't have a value.
+     */
+    String get(int row) {
+        if (row >= _size)
+            return null;
+        if (_codes != null)
+            return _distinctValues.get(_codes[row]);
+        int length = _lengths[row];
+        return length == -1 ? null : _arena.get(_positions[row], length);
+    }
+
+    /**
+     * Returns an estimation of the memory (in bytes) used by this column, not including the arena.
+     */
+    long getEstimatedMemorySize() {
+        if (_codes != null) {
+            long size = 2L * _codes.length;
+            for (int i = 1; i < _distinctValues.size(); i++)
+                size += 40 + 2L * _distinctValues.get(i).length() + 32; // the string, its array and its map entry
+            return size;
+        }
+        return 12L * _positions.length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int currentCapacity = _codes != null ? _codes.length : _positions.length;
+        if (capacity <= currentCapacity)
+            return;
+        int newCapacity = Math.max(capacity, currentCapacity + (currentCapacity >> 1));
+        if (_codes != null)
+            _codes = Arrays.copyOf(_codes, newCapacity);
+        else {
+            _positions = Arrays.copyOf(_positions, newCapacity);
+            _lengths = Arrays.copyOf(_lengths, newCapacity);
+            Arrays.fill(_lengths, currentCapacity, newCapacity, -1);
+        }
+    }
+
+    private void convertToArena() {
+        char[] codes = _codes;
+        List<String> distinctValues = _distinctValues;
+
+        // the distinct values are written once in the arena and shared by all the rows referencing them
+        long[] distinctPositions = new long[distinctValues.size()];
+        for (int i = 1; i < distinctValues.size(); i++)
+            distinctPositions[i] = _arena.append(distinctValues.get(i));
+
+        _positions = new long[codes.length];
+        _lengths = new int[codes.length];
+        Arrays.fill(_lengths, -1);
+        for (int row = 0; row < _size; row++) {
+            int code = codes[row];
+            if (code != 0) {
+                _positions[row] = distinctPositions[code];
+                _lengths[row] = distinctValues.get(code).length();
+            }
+        }
+
+        _codes = null;
+        _distinctValues = null;
+        _distinctValuesIndex = null;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.columnar;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrObserver;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.PatientReader;
+import com.imsweb.naaccrxml.PatientWriter;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryCache;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryItem;
+
+/**
+ * A compact, column-oriented, in-memory representation of an entire data file.
+ * <br/><br/>
+ * Instead of keeping an object graph for every patient (like NaaccrData does), the item values are stored in one column per item and per level (patient or
+ * tumor): the code items are dictionary-encoded, and the free text items are stored in a shared character arena. The tumors of a given patient are
+ * identified using an offset array. This uses a fraction of the memory used by the regular entities, which makes it possible to load much larger files.
+ * <br/><br/>
+ * The patients are available as regular Patient objects (see getPatient() and iterator()); those objects are created on demand, modifying them doesn't
+ * modify the columnar data. Only the item values are kept: validation errors, line numbers and extensions of the patients and tumors are not.
+ * The root data (root attributes and items, root extensions, etc...) is kept as a regular NaaccrData object with no patients.
+ */
+public class ColumnarNaaccrData implements Iterable<Patient> {
+
+    // the items longer than this are considered free text and stored in the arena right away
+    private static final int _MAX_DICTIONARY_ENCODED_LENGTH = 50;
+
+    private static final int _INITIAL_CAPACITY = 16;
+
+    // the root data (doesn't contain any patient)
+    private final NaaccrData _rootData;
+
+    // the runtime dictionary (used to decide how to store the values), can be null
+    private final RuntimeNaaccrDictionary _dictionary;
+
+    // the arena shared by all the columns
+    private final CharArena _arena;
+
+    // the patient and tumor columns, keyed by NAACCR ID
+    private final Map<String, Column> _patientColumns;
+
+    private final Map<String, Column> _tumorColumns;
+
+    // the tumors of patient i are the tumors from _tumorOffsets[i] (inclusive) to _tumorOffsets[i + 1] (exclusive)
+    private int[] _tumorOffsets;
+
+    private int _numPatients;
+
+    private int _numTumors;
+
+    /**
+     * Reads all the patients of the provided reader into a new columnar data object. The reader is not closed.
+     * @param reader patient reader (XML or flat), cannot be null
+     * @param userDictionaries optional user-defined dictionaries, used to decide how to store the values
+     * @param observer optional observer
+     * @return the new columnar data object, never null
+     * @throws NaaccrIOException if the patients cannot be read
+     */
+    public static ColumnarNaaccrData read(PatientReader reader, List<NaaccrDictionary> userDictionaries, NaaccrObserver observer) throws NaaccrIOException {
+        NaaccrData rootData = reader.getRootData();
+
+        RuntimeNaaccrDictionary dictionary = null;
+        NaaccrDictionary baseDictionary = rootData.getBaseDictionaryUri() == null ? null : NaaccrXmlDictionaryUtils.getBaseDictionaryByUri(rootData.getBaseDictionaryUri());
+        if (baseDictionary != null && rootData.getRecordType() != null)
+            dictionary = RuntimeNaaccrDictionaryCache.getDictionary(rootData.getRecordType(), baseDictionary, userDictionaries);
+
+        ColumnarNaaccrData data = new ColumnarNaaccrData(rootData, dictionary);
+        Patient patient = reader.readPatient();
+        while (patient != null && !Thread.currentThread().isInterrupted()) {
+            if (observer != null)
+                observer.patientRead(patient);
+            data.addPatient(patient);
+            patient = reader.readPatient();
+        }
+        return data;
+    }
+
+    /**
+     * Constructor.
+     * @param rootData root data (its patients, if any, are not copied), cannot be null
+     * @param dictionary optional runtime dictionary, used to decide how to store the values
+     */
+    public ColumnarNaaccrData(NaaccrData rootData, RuntimeNaaccrDictionary dictionary) {
+        _rootData = rootData;
+        _dictionary = dictionary;
+        _arena = new CharArena();
+        _patientColumns = new LinkedHashMap<>();
+        _tumorColumns = new LinkedHashMap<>();
+        _tumorOffsets = new int[_INITIAL_CAPACITY + 1];
+
+        // create the columns in the dictionary order, so the items of the patients come back in a predictable order
+        if (dictionary != null) {
+            for (RuntimeNaaccrDictionaryItem item : dictionary.getItems()) {
+                if (NaaccrXmlUtils.NAACCR_XML_TAG_PATIENT.equals(item.getParentXmlElement()))
+                    _patientColumns.put(item.getNaaccrId(), createColumn(item.getNaaccrId()));
+                else if (NaaccrXmlUtils.NAACCR_XML_TAG_TUMOR.equals(item.getParentXmlElement()))
+                    _tumorColumns.put(item.getNaaccrId(), createColumn(item.getNaaccrId()));
+            }
+        }
+    }
+
+    /**
+     * Adds the provided patient (and its tumors) to this columnar data.
+     * @param patient patient to add, cannot be null
+     */
+    public void addPatient(Patient patient) {
+        if (_numPatients + 2 > _tumorOffsets.length)
+            _tumorOffsets = Arrays.copyOf(_tumorOffsets, _tumorOffsets.length + (_tumorOffsets.length >> 1));
+
+        int patientIdx = _numPatients;
+        for (Item item : patient.getItems())
+            _patientColumns.computeIfAbsent(item.getNaaccrId(), this::createColumn).set(patientIdx, item.getValue());
+        for (Tumor tumor : patient.getTumors()) {
+            int tumorIdx = _numTumors++;
+            for (Item item : tumor.getItems())
+                _tumorColumns.computeIfAbsent(item.getNaaccrId(), this::createColumn).set(tumorIdx, item.getValue());
+        }
+
+        _numPatients++;
+        _tumorOffsets[_numPatients] = _numTumors;
+    }
+
+    /**
+     * Returns the root data; it contains the root attributes, items and extensions, but no patients.
+     * @return the root data, never null
+     */
+    public NaaccrData getRootData() {
+        return _rootData;
+    }
+
+    /**
+     * Returns the runtime dictionary used to create the columns.
+     * @return the runtime dictionary, maybe null
+     */
+    public RuntimeNaaccrDictionary getDictionary() {
+        return _dictionary;
+    }
+
+    public int getPatientCount() {
+        return _numPatients;
+    }
+
+    public int getTumorCount() {
+        return _numTumors;
+    }
+
+    public int getTumorCount(int patientIdx) {
+        checkPatientIndex(patientIdx);
+        return _tumorOffsets[patientIdx + 1] - _tumorOffsets[patientIdx];
+    }
+
+    /**
+     * Returns the value of the requested patient item.
+     * @param patientIdx patient index
+     * @param naaccrId item NAACCR ID
+     * @return the value, null if the patient doesn't have a value for that item
+     */
+    public String getPatientValue(int patientIdx, String naaccrId) {
+        checkPatientIndex(patientIdx);
+        Column column = _patientColumns.get(naaccrId);
+        return column == null ? null : column.get(patientIdx);
+    }
+
+    /**
+     * Returns the value of the requested tumor item.
+     * @param patientIdx patient index
+     * @param tumorIdx tumor index (within the patient)
+     * @param naaccrId item NAACCR ID
+     * @return the value, null if the tumor doesn't have a value for that item
+     */
+    public String getTumorValue(int patientIdx, int tumorIdx, String naaccrId) {
+        if (tumorIdx < 0 || tumorIdx >= getTumorCount(patientIdx))
+            throw new IndexOutOfBoundsException("Invalid tumor index: " + tumorIdx);
+        Column column = _tumorColumns.get(naaccrId);
+        return column == null ? null : column.get(_tumorOffsets[patientIdx] + tumorIdx);
+    }
+
+    /**
+     * Creates a patient object (with its tumors) for the requested patient; modifying that object doesn't modify this columnar data.
+     * @param patientIdx patient index
+     * @return the patient, never null
+     */
+    public Patient getPatient(int patientIdx) {
+        checkPatientIndex(patientIdx);
+
+        Patient patient = new Patient();
+        for (Column column : _patientColumns.values()) {
+            String value = column.get(patientIdx);
+            if (value != null)
+                patient.addItem(new Item(column.getNaaccrId(), column.getNaaccrNum(), value, null));
+        }
+        for (int tumorIdx = _tumorOffsets[patientIdx]; tumorIdx < _tumorOffsets[patientIdx + 1]; tumorIdx++) {
+            Tumor tumor = new Tumor();
+            for (Column column : _tumorColumns.values()) {
+                String value = column.get(tumorIdx);
+                if (value != null)
+                    tumor.addItem(new Item(column.getNaaccrId(), column.getNaaccrNum(), value, null));
+            }
+            patient.addTumor(tumor);
+        }
+        return patient;
+    }
+
+    /**
+     * Returns an iterator creating the patients on demand (see getPatient()).
+     * @return an iterator over the patients, never null
+     */
+    @Override
+    public Iterator<Patient> iterator() {
+        return new Iterator<Patient>() {
+
+            private int _next;
+
+            @Override
+            public boolean hasNext() {
+                return _next < _numPatients;
+            }
+
+            @Override
+            public Patient next() {
+                if (_next >= _numPatients)
+                    throw new NoSuchElementException();
+                return getPatient(_next++);
+            }
+        };
+    }
+
+    /**
+     * Writes all the patients to the provided writer (which needs to be created with the root data of this object). The writer is not closed.
+     * @param writer patient writer (XML or flat), cannot be null
+     * @param observer optional observer
+     * @throws NaaccrIOException if the patients cannot be written
+     */
+    public void write(PatientWriter writer, NaaccrObserver observer) throws NaaccrIOException {
+        for (int i = 0; i < _numPatients; i++) {
+            Patient patient = getPatient(i);
+            writer.writePatient(patient);
+            if (observer != null)
+                observer.patientWritten(patient);
+            if (Thread.currentThread().isInterrupted())
+                break;
+        }
+    }
+
+    /**
+     * Returns an estimation of the memory (in bytes) used by the patients and tumors of this object.
+     * @return the estimated memory size
+     */
+    public long getEstimatedMemorySize() {
+        long size = 2 * _arena.getAllocatedSize() + 4L * _tumorOffsets.length;
+        for (Column column : _patientColumns.values())
+            size += column.getEstimatedMemorySize();
+        for (Column column : _tumorColumns.values())
+            size += column.getEstimatedMemorySize();
+        return size;
+    }
+
+    // package-private, used by the tests
+    Column getPatientColumn(String naaccrId) {
+        return _patientColumns.get(naaccrId);
+    }
+
+    // package-private, used by the tests
+    Column getTumorColumn(String naaccrId) {
+        return _tumorColumns.get(naaccrId);
+    }
+
+    private Column createColumn(String naaccrId) {
+        RuntimeNaaccrDictionaryItem item = _dictionary == null ? null : _dictionary.getItemByNaaccrId(naaccrId);
+        boolean freeText = item != null && (Boolean.TRUE.equals(item.getAllowUnlimitedText()) || (item.getLength() != null && item.getLength() > _MAX_DICTIONARY_ENCODED_LENGTH));
+        return new Column(naaccrId, item == null ? null : item.getNaaccrNum(), _arena, !freeText);
+    }
+
+    private void checkPatientIndex(int patientIdx) {
+        if (patientIdx < 0 || patientIdx >= _numPatients)
+            throw new IndexOutOfBoundsException("Invalid patient index: " + patientIdx);
+    }
+}
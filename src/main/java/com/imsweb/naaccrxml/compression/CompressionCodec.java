@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A compression codec knows how to recognize a compressed file (from its extension or its first bytes) and how to compress/decompress it.
+ * <br/><br/>
+ * Codecs are registered in the {@link CompressionCodecRegistry}; they must be thread-safe since a single instance is shared by all the streams.
+ */
+public interface CompressionCodec {
+
+    /**
+     * Returns the name of this codec (gz, xz, none, etc...); the name is used as the key in the registry.
+     * @return the name of the codec, never null
+     */
+    String getName();
+
+    /**
+     * Returns the file extensions (without the leading dot, in lower case) handled by this codec.
+     * @return the extensions, maybe empty but never null
+     */
+    List<String> getExtensions();
+
+    /**
+     * Returns true if the provided first bytes of a file correspond to the "magic number" of this codec.
+     * @param header the first bytes of the file
+     * @param length the number of bytes available in the header (could be smaller than the array length)
+     * @return true if the bytes correspond to this codec
+     */
+    boolean matchesMagicBytes(byte[] header, int length);
+
+    /**
+     * Returns a decompressing stream for the provided file; having access to the file allows some codecs to decompress it in parallel.
+     * @param file file to decompress, cannot be null
+     * @return decompressing input stream, never null
+     * @throws IOException if the stream cannot be created
+     */
+    InputStream createInputStream(File file) throws IOException;
+
+    /**
+     * Returns a decompressing stream wrapping the provided stream.
+     * @param is raw input stream, cannot be null
+     * @return decompressing input stream, never null
+     * @throws IOException if the stream cannot be created
+     */
+    InputStream createInputStream(InputStream is) throws IOException;
+
+    /**
+     * Returns a compressing stream wrapping the provided stream.
+     * @param os raw output stream, cannot be null
+     * @return compressing output stream, never null
+     * @throws IOException if the stream cannot be created
+     */
+    OutputStream createOutputStream(OutputStream os) throws IOException;
+}
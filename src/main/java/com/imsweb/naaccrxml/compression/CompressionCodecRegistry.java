@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the compression codecs used when reading and writing data files.
+ * <br/><br/>
+ * The GZip ("gz") and XZ ("xz") codecs are registered by default; other codecs can be registered by the calling code. Registering a codec with the same
+ * name as an existing one replaces it (that can be used to change the number of threads used by the XZ codec for example).
+ */
+public final class CompressionCodecRegistry {
+
+    // maximum number of bytes needed to recognize a codec from the content of a file
+    private static final int _MAGIC_BYTES_LENGTH = 16;
+
+    private static final CompressionCodec _NO_COMPRESSION = new NoCompressionCodec();
+
+    private static final List<CompressionCodec> _CODECS = new CopyOnWriteArrayList<>();
+
+    static {
+        _CODECS.add(new GzipCompressionCodec());
+        _CODECS.add(new XzCompressionCodec());
+    }
+
+    private CompressionCodecRegistry() {
+        // no instances of this class allowed!
+    }
+
+    /**
+     * Registers the provided codec, replacing any existing codec with the same name.
+     * @param codec codec to register, cannot be null
+     */
+    public static synchronized void registerCodec(CompressionCodec codec) {
+        if (codec == null || codec.getName() == null)
+            throw new IllegalArgumentException("Codec and codec name are required");
+        if (NoCompressionCodec.NAME.equals(codec.getName()))
+            throw new IllegalArgumentException("Codec name '" + NoCompressionCodec.NAME + "' is reserved");
+        _CODECS.removeIf(c -> c.getName().equals(codec.getName()));
+        _CODECS.add(codec);
+    }
+
+    /**
+     * Returns the registered codecs (not including the "none" codec).
+     * @return the registered codecs, never null
+     */
+    public static List<CompressionCodec> getCodecs() {
+        return new ArrayList<>(_CODECS);
+    }
+
+    /**
+     * Returns the codec registered under the provided name; "none" returns the no-compression codec.
+     * @param name codec name
+     * @return the corresponding codec, null if no codec is registered under that name
+     */
+    public static CompressionCodec getCodecByName(String name) {
+        if (NoCompressionCodec.NAME.equals(name))
+            return _NO_COMPRESSION;
+        for (CompressionCodec codec : _CODECS)
+            if (codec.getName().equals(name))
+                return codec;
+        return null;
+    }
+
+    /**
+     * Returns the codec handling the extension of the provided file name.
+     * @param filename file name
+     * @return the corresponding codec, null if no codec handles that extension
+     */
+    public static CompressionCodec getCodecByExtension(String filename) {
+        if (filename == null)
+            return null;
+        String name = filename.toLowerCase(Locale.US);
+        for (CompressionCodec codec : _CODECS)
+            for (String extension : codec.getExtensions())
+                if (name.endsWith("." + extension))
+                    return codec;
+        return null;
+    }
+
+    /**
+     * Returns the codec corresponding to the provided first bytes of a file.
+     * @param header first bytes of the file
+     * @param length number of available bytes in the header
+     * @return the corresponding codec, null if no codec recognizes those bytes
+     */
+    public static CompressionCodec getCodecByMagicBytes(byte[] header, int length) {
+        for (CompressionCodec codec : _CODECS)
+            if (codec.matchesMagicBytes(header, length))
+                return codec;
+        return null;
+    }
+
+    /**
+     * Returns the codec to use to read the provided file: the extension is used first, then the first bytes of the file; if no codec recognizes the
+     * file, the no-compression codec is returned.
+     * @param file existing file
+     * @return the codec to use to read the file, never null
+     * @throws IOException if the file cannot be read
+     */
+    public static CompressionCodec getCodecForReading(File file) throws IOException {
+        CompressionCodec codec = getCodecByExtension(file.getName());
+        if (codec != null)
+            return codec;
+
+        byte[] header = new byte[_MAGIC_BYTES_LENGTH];
+        int length = 0;
+        try (InputStream is = new FileInputStream(file)) {
+            int n = is.read(header, 0, header.length);
+            while (n > 0) {
+                length += n;
+                n = is.read(header, length, header.length - length);
+            }
+        }
+        codec = getCodecByMagicBytes(header, length);
+
+        return codec == null ? _NO_COMPRESSION : codec;
+    }
+
+    /**
+     * Returns the codec to use to write the provided file (based on its extension); if no codec handles the extension, the no-compression codec is returned.
+     * @param file file to write
+     * @return the codec to use to write the file, never null
+     */
+    public static CompressionCodec getCodecForWriting(File file) {
+        CompressionCodec codec = getCodecByExtension(file.getName());
+        return codec == null ? _NO_COMPRESSION : codec;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codec for the GZip compression (".gz" extension).
+ */
+public class GzipCompressionCodec implements CompressionCodec {
+
+    public static final String NAME = "gz";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList("gz");
+    }
+
+    @Override
+    public boolean matchesMagicBytes(byte[] header, int length) {
+        return length >= 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B;
+    }
+
+    @Override
+    public InputStream createInputStream(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return createInputStream(is);
+        }
+        catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream createInputStream(InputStream is) throws IOException {
+        return new GZIPInputStream(is);
+    }
+
+    @Override
+    public OutputStream createOutputStream(OutputStream os) throws IOException {
+        return new GZIPOutputStream(os);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Codec used for uncompressed files; it never matches any extension or magic bytes and is used as the fallback of the registry.
+ */
+public class NoCompressionCodec implements CompressionCodec {
+
+    public static final String NAME = "none";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean matchesMagicBytes(byte[] header, int length) {
+        return false;
+    }
+
+    @Override
+    public InputStream createInputStream(File file) throws IOException {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public InputStream createInputStream(InputStream is) {
+        return is;
+    }
+
+    @Override
+    public OutputStream createOutputStream(OutputStream os) {
+        return os;
+    }
+}
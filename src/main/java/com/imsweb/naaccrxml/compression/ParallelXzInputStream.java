@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * An input stream that decompresses the blocks of an XZ file in parallel (each task seeks to its own block) and returns them in order.
+ * <br/><br/>
+ * Only a bounded number of blocks are decompressed ahead of the reading position, which bounds the memory used by the stream.
+ */
+class ParallelXzInputStream extends InputStream {
+
+    private final File _file;
+
+    private final int _blockCount;
+
+    private final ExecutorService _executor;
+
+    private final int _readAhead;
+
+    private final Deque<Future<byte[]>> _pending;
+
+    private int _nextBlockToSubmit;
+
+    private byte[] _current;
+
+    private int _pos;
+
+    private boolean _closed;
+
+    ParallelXzInputStream(File file, int blockCount, ExecutorService executor, int readAhead) {
+        _file = file;
+        _blockCount = blockCount;
+        _executor = executor;
+        _readAhead = readAhead;
+        _pending = new ArrayDeque<>();
+        _current = new byte[0];
+        fillPipeline();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData())
+            return -1;
+        return _current[_pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureData())
+            return -1;
+        int n = Math.min(len, _current.length - _pos);
+        System.arraycopy(_current, _pos, b, off, n);
+        _pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (_closed)
+            throw new IOException("Stream closed");
+        return _current.length - _pos;
+    }
+
+    @Override
+    public void close() {
+        if (_closed)
+            return;
+        _closed = true;
+        for (Future<byte[]> future : _pending)
+            future.cancel(true);
+        _pending.clear();
+        _current = null;
+    }
+
+    private boolean ensureData() throws IOException {
+        if (_closed)
+            throw new IOException("Stream closed");
+        while (_pos == _current.length) {
+            if (_pending.isEmpty())
+                return false;
+            try {
+                _current = _pending.removeFirst().get();
+                _pos = 0;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decompressing data");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException)e.getCause();
+                throw new IOException("Unable to decompress data", e.getCause());
+            }
+            fillPipeline();
+        }
+        return true;
+    }
+
+    private void fillPipeline() {
+        while (_pending.size() < _readAhead && _nextBlockToSubmit < _blockCount) {
+            final int block = _nextBlockToSubmit++;
+            _pending.addLast(_executor.submit(() -> decompressBlock(_file, block)));
+        }
+    }
+
+    private static byte[] decompressBlock(File file, int block) throws IOException {
+        try (SeekableXZInputStream is = new SeekableXZInputStream(new SeekableFileInputStream(file))) {
+            is.seekToBlock(block);
+            byte[] data = new byte[(int)is.getBlockSize(block)];
+            new DataInputStream(is).readFully(data);
+            return data;
+        }
+    }
+}
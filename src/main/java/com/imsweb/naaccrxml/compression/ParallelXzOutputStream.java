@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * An output stream that cuts the data in blocks of a fixed size and compresses each of them as an independent XZ stream, using the provided executor.
+ * <br/><br/>
+ * The compressed blocks are written in order; the number of blocks waiting to be written is bounded, which bounds the memory used by the stream.
+ * Note that flushing this stream only writes the blocks that are already compressed; the partial block is compressed when it's full or when the stream is closed.
+ */
+class ParallelXzOutputStream extends OutputStream {
+
+    private final OutputStream _out;
+
+    private final LZMA2Options _options;
+
+    private final ExecutorService _executor;
+
+    private final int _maxPending;
+
+    private final Deque<Future<byte[]>> _pending;
+
+    private byte[] _buffer;
+
+    private int _pos;
+
+    private boolean _blockWritten;
+
+    private boolean _closed;
+
+    ParallelXzOutputStream(OutputStream out, LZMA2Options options, int blockSize, ExecutorService executor, int maxPending) {
+        _out = out;
+        _options = options;
+        _executor = executor;
+        _maxPending = maxPending;
+        _pending = new ArrayDeque<>();
+        _buffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        _buffer[_pos++] = (byte)b;
+        if (_pos == _buffer.length)
+            submitBlock();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, _buffer.length - _pos);
+            System.arraycopy(b, off, _buffer, _pos, n);
+            _pos += n;
+            off += n;
+            len -= n;
+            if (_pos == _buffer.length)
+                submitBlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!_pending.isEmpty() && _pending.peekFirst().isDone())
+            writeFirstPendingBlock();
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+        _closed = true;
+        try {
+            // an empty file is not a valid XZ file, so at least one (possibly empty) stream needs to be written
+            if (_pos > 0 || !_blockWritten)
+                submitBlock();
+            while (!_pending.isEmpty())
+                writeFirstPendingBlock();
+        }
+        finally {
+            for (Future<byte[]> future : _pending)
+                future.cancel(true);
+            _pending.clear();
+            _buffer = null;
+            _out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = _pos == _buffer.length ? _buffer : Arrays.copyOf(_buffer, _pos);
+        _pending.addLast(_executor.submit(() -> compress(data, _options)));
+        _blockWritten = true;
+        _buffer = new byte[_buffer.length];
+        _pos = 0;
+        while (_pending.size() >= _maxPending)
+            writeFirstPendingBlock();
+    }
+
+    private void writeFirstPendingBlock() throws IOException {
+        try {
+            _out.write(_pending.removeFirst().get());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing data");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException("Unable to compress data", e.getCause());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (_closed)
+            throw new IOException("Stream closed");
+    }
+
+    private static byte[] compress(byte[] data, LZMA2Options options) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+        try (XZOutputStream xz = new XZOutputStream(result, options)) {
+            xz.write(data);
+        }
+        return result.toByteArray();
+    }
+}
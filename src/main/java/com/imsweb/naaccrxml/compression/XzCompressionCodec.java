@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Codec for the XZ (LZMA2) compression (".xz" extension).
+ * <br/><br/>
+ * When more than one thread is allowed, the data is compressed as a sequence of independent XZ streams of a fixed size (a concatenation of XZ streams is
+ * a valid XZ file that any XZ tool can read). Files made of several blocks are decompressed in parallel, one block per task.
+ */
+public class XzCompressionCodec implements CompressionCodec {
+
+    public static final String NAME = "xz";
+
+    // default compression preset (same as the xz command line tool)
+    public static final int DEFAULT_PRESET = 6;
+
+    // default size of the (uncompressed) blocks; each block is compressed independently
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    // the parallel decompression is not used for blocks bigger than this (they would need to be entirely loaded in memory)
+    private static final long _MAX_PARALLEL_BLOCK_SIZE = 64L * 1024 * 1024;
+
+    // how long an idle thread of the pool is kept
+    private static final long _THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private final int _preset;
+
+    private final int _numThreads;
+
+    private final int _blockSize;
+
+    private ExecutorService _executor;
+
+    /**
+     * Constructor, uses the default preset and block size, and up to 4 threads.
+     */
+    public XzCompressionCodec() {
+        this(DEFAULT_PRESET, Math.min(Runtime.getRuntime().availableProcessors(), 4), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param preset compression preset (0 to 9)
+     * @param numThreads number of threads to use to compress/decompress the data, 1 means no parallelism
+     * @param blockSize size of the uncompressed blocks when compressing in parallel
+     */
+    public XzCompressionCodec(int preset, int numThreads, int blockSize) {
+        if (preset < LZMA2Options.PRESET_MIN || preset > LZMA2Options.PRESET_MAX)
+            throw new IllegalArgumentException("Invalid preset: " + preset);
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        if (blockSize < 1024)
+            throw new IllegalArgumentException("Block size must be at least 1KB");
+        _preset = preset;
+        _numThreads = numThreads;
+        _blockSize = blockSize;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList("xz");
+    }
+
+    @Override
+    public boolean matchesMagicBytes(byte[] header, int length) {
+        return length >= 6 && (header[0] & 0xFF) == 0xFD && header[1] == '7' && header[2] == 'z' && header[3] == 'X' && header[4] == 'Z' && header[5] == 0x00;
+    }
+
+    public int getPreset() {
+        return _preset;
+    }
+
+    public int getNumThreads() {
+        return _numThreads;
+    }
+
+    public int getBlockSize() {
+        return _blockSize;
+    }
+
+    @Override
+    public InputStream createInputStream(File file) throws IOException {
+        if (_numThreads > 1) {
+            try (SeekableXZInputStream index = new SeekableXZInputStream(new SeekableFileInputStream(file))) {
+                int blockCount = index.getBlockCount();
+                boolean parallel = blockCount > 1;
+                for (int i = 0; i < blockCount && parallel; i++)
+                    if (index.getBlockSize(i) > _MAX_PARALLEL_BLOCK_SIZE)
+                        parallel = false;
+                if (parallel)
+                    return new ParallelXzInputStream(file, blockCount, getExecutor(), _numThreads * 2);
+            }
+        }
+
+        InputStream is = new FileInputStream(file);
+        try {
+            return createInputStream(is);
+        }
+        catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream createInputStream(InputStream is) throws IOException {
+        return new XZInputStream(new BufferedInputStream(is));
+    }
+
+    @Override
+    public OutputStream createOutputStream(OutputStream os) throws IOException {
+        LZMA2Options options = createOptions();
+        if (_numThreads == 1)
+            return new XZOutputStream(new BufferedOutputStream(os), options);
+        return new ParallelXzOutputStream(os, options, _blockSize, getExecutor(), _numThreads * 2);
+    }
+
+    private LZMA2Options createOptions() throws UnsupportedOptionsException {
+        LZMA2Options options = new LZMA2Options(_preset);
+        // there is no point having a dictionary bigger than a block, it would only use more memory
+        if (_numThreads > 1 && options.getDictSize() > _blockSize)
+            options.setDictSize(Math.max(_blockSize, LZMA2Options.DICT_SIZE_MIN));
+        return options;
+    }
+
+    // the threads of the pool time out when idle, so a codec that is not used anymore doesn't keep any thread alive
+    private synchronized ExecutorService getExecutor() {
+        if (_executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(_numThreads, _numThreads, _THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "naaccr-xz-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            _executor = executor;
+        }
+        return _executor;
+    }
+}
@@ -30,11 +30,11 @@ public class AbstractEntity {
     // the validation errors for this entity (most errors are attached to individual items; to gather all errors for an entity, use the getAllValidationErrors() method)
     protected List<NaaccrValidationError> _errors;
 
-    // the starting line number (start tag) for this entity; available only when reading from a file
-    protected Integer _startLineNumber;
+    // the starting line number (start tag) for this entity; available only when reading from a file (0 means not available)
+    protected int _startLineNumber;
 
-    // the ending line number (end tag) for this entity; available only when reading from a file
-    protected Integer _endLineNumber;
+    // the ending line number (end tag) for this entity; available only when reading from a file (0 means not available)
+    protected int _endLineNumber;
 
     // the extension objects
     protected List<Object> _extensions;
@@ -160,7 +160,7 @@ public class AbstractEntity {
      * @return the start line number of the current entity, maybe null
      */
     public Integer getStartLineNumber() {
-        return _startLineNumber;
+        return _startLineNumber == 0 ? null : _startLineNumber;
     }
 
     /**
@@ -168,6 +168,14 @@ public class AbstractEntity {
      * @param startLineNumber line number to set
      */
     public void setStartLineNumber(Integer startLineNumber) {
+        _startLineNumber = startLineNumber == null ? 0 : startLineNumber;
+    }
+
+    /**
+     * Sets the start line number of the current entity; this version avoids boxing the line number when reading large files.
+     * @param startLineNumber line number to set (0 means not available)
+     */
+    public void setStartLineNumber(int startLineNumber) {
         _startLineNumber = startLineNumber;
     }
 
@@ -180,7 +188,7 @@ public class AbstractEntity {
      * @return the end line number of the current entity, maybe null
      */
     public Integer getEndLineNumber() {
-        return _endLineNumber;
+        return _endLineNumber == 0 ? null : _endLineNumber;
     }
 
     /**
@@ -188,6 +196,14 @@ public class AbstractEntity {
      * @param endLineNumber line number to set
      */
     public void setEndLineNumber(Integer endLineNumber) {
+        _endLineNumber = endLineNumber == null ? 0 : endLineNumber;
+    }
+
+    /**
+     * Sets the end line number of the current entity; this version avoids boxing the line number when reading large files.
+     * @param endLineNumber line number to set (0 means not available)
+     */
+    public void setEndLineNumber(int endLineNumber) {
         _endLineNumber = endLineNumber;
     }
 
@@ -19,8 +19,8 @@ public class Item {
     // the value for this item
     protected String _value;
 
-    // the line number for this item; available only when reading from a file
-    protected Integer _startLineNumber;
+    // the line number for this item; available only when reading from a file (0 means not available)
+    protected int _startLineNumber;
 
     // the validation error for this item (null if it has no error)
     protected NaaccrValidationError _validationError;
@@ -52,7 +52,7 @@ public class Item {
         _naaccrId = naaccrId;
         _naaccrNum = naaccrNum;
         _value = value;
-        _startLineNumber = startLineNumber;
+        _startLineNumber = startLineNumber == null ? 0 : startLineNumber;
     }
 
     public String getNaaccrId() {
@@ -86,7 +86,7 @@ public class Item {
      * @return the line number of this item, maybe null
      */
     public Integer getStartLineNumber() {
-        return _startLineNumber;
+        return _startLineNumber == 0 ? null : _startLineNumber;
     }
 
     /**
@@ -94,6 +94,14 @@ public class Item {
      * @param startLineNumber line number to set
      */
     public void setStartLineNumber(Integer startLineNumber) {
+        _startLineNumber = startLineNumber == null ? 0 : startLineNumber;
+    }
+
+    /**
+     * Sets the line number of this item; this version avoids boxing the line number when reading large files.
+     * @param startLineNumber line number to set (0 means not available)
+     */
+    public void setStartLineNumber(int startLineNumber) {
         _startLineNumber = startLineNumber;
     }
 
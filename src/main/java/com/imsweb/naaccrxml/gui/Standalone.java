@@ -272,6 +272,15 @@ public class Standalone extends JFrame implements ActionListener {
      * @return formatted number
      */
     public static String formatNumber(int num) {
+        return formatNumber((long)num);
+    }
+
+    /**
+     * Format the passed number, added commas for the decimal parts.
+     * @param num number to format
+     * @return formatted number
+     */
+    public static String formatNumber(long num) {
         DecimalFormat format = new DecimalFormat();
         format.setDecimalSeparatorAlwaysShown(false);
         return format.format(num);
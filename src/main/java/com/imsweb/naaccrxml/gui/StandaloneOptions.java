@@ -35,7 +35,7 @@ public class StandaloneOptions extends JPanel {
     private final boolean _readFlat, _writeFlat, _readXml, _writeXml;
 
     // global GUI components
-    private JCheckBox _groupTumorBox, _reportMismatchBox, _validateValuesBox, _ignoreUnkItemsBox, _writeNumBox, _applyPaddingBox, _reportValTooLongBox, _strictNameSpacesBox, _autoTranslateIdsBox;
+    private JCheckBox _groupTumorBox, _reportMismatchBox, _validateValuesBox, _ignoreUnkItemsBox, _writeNumBox, _applyPaddingBox, _reportValTooLongBox, _strictNameSpacesBox, _autoTranslateIdsBox, _readAheadBox;
     private JTextField _itemListFld;
     private JRadioButton _itemsIncludeBtn, _itemsExcludeBtn;
 
@@ -159,6 +159,18 @@ public class StandaloneOptions extends JPanel {
             contentPnl.add(Box.createVerticalStrut(10));
         }
 
+        if (readFlat || readXml) {
+            JPanel pnl = new JPanel(new FlowLayout(FlowLayout.LEADING, 0, 0));
+            _readAheadBox = new JCheckBox(" When reading the file, read (and decompress) it on a separate thread.");
+            _readAheadBox.setSelected(true);
+            pnl.add(_readAheadBox);
+            contentPnl.add(pnl);
+            contentPnl.add(Box.createVerticalStrut(2));
+            contentPnl.add(addHelpRow("If this option is checked, the file is read ahead on its own thread; this is usually faster for large and compressed files."));
+            contentPnl.add(addHelpRow("Uncheck this option to read the file on the processing thread, using less memory."));
+            contentPnl.add(Box.createVerticalStrut(10));
+        }
+
         if (readFlat || readXml || writeFlat || writeXml) {
             JPanel pnl = new JPanel(new FlowLayout(FlowLayout.LEADING, 0, 0));
             pnl.add(new JLabel("Exclude/Include following items: "));
@@ -194,12 +206,18 @@ public class StandaloneOptions extends JPanel {
         return helpPnl;
     }
 
+    public boolean getUseReadAheadThread() {
+        return _readAheadBox != null && _readAheadBox.isSelected();
+    }
+
     public NaaccrOptions getOptions(NaaccrDictionary baseDictionary, List<NaaccrDictionary> userDictionaries) {
         NaaccrOptions options = new NaaccrOptions();
 
         // the standalone app has no way to register proper extensions, so they have to be turned off!
         options.setIgnoreExtensions(true);
 
+        options.setUseReadAheadThread(getUseReadAheadThread());
+
         if (_readFlat) {
             if (_groupTumorBox.isSelected())
                 options.setTumorGroupingItems(Collections.singletonList(NaaccrXmlUtils.DEFAULT_TUMOR_GROUPING_ITEM));
@@ -34,17 +34,17 @@ public abstract class AbstractPage extends JPanel {
         if (name.length < 2)
             return null;
         String extension = name[name.length - 1];
-        boolean compressed = false;
-        if (extension.equalsIgnoreCase("gz")) {
+        String compressedExtension = null;
+        if ((extension.equalsIgnoreCase("gz") || extension.equalsIgnoreCase("xz")) && name.length > 2) {
+            compressedExtension = extension.toLowerCase();
             extension = name[name.length - 2];
-            compressed = true;
         }
         StringBuilder result = new StringBuilder();
-        for (int i = 0; i < (compressed ? name.length - 2 : name.length - 1); i++)
+        for (int i = 0; i < (compressedExtension != null ? name.length - 2 : name.length - 1); i++)
             result.append(name[i]).append(".");
         result.append(extension.equalsIgnoreCase("xml") ? "txt" : "xml");
-        if (compressed)
-            result.append(".gz");
+        if (compressedExtension != null)
+            result.append(".").append(compressedExtension);
         return new File(file.getParentFile(), result.toString()).getAbsolutePath();
     }
 
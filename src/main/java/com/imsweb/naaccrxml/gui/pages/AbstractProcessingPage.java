@@ -14,10 +14,8 @@ import java.io.LineNumberReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,6 +54,7 @@ import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
 import com.imsweb.naaccrxml.gui.Standalone;
 import com.imsweb.naaccrxml.gui.StandaloneOptions;
+import com.imsweb.naaccrxml.sink.ValidationErrorStatistics;
 
 public abstract class AbstractProcessingPage extends AbstractPage {
 
@@ -99,8 +98,7 @@ public abstract class AbstractProcessingPage extends AbstractPage {
     protected Map<String, NaaccrDictionary> _userDictionaries = new HashMap<>();
 
     protected boolean _maxWarningsReached = false, _maxWarningsDiscAdded = false;
-    protected Map<String, AtomicInteger> _warningStats = new HashMap<>();
-    protected Map<String, Set<String>> _warningStatsDetails = new HashMap<>();
+    protected ValidationErrorStatistics _warningStats = new ValidationErrorStatistics();
 
     public AbstractProcessingPage(boolean isSourceXml) {
         super();
@@ -201,6 +199,7 @@ public abstract class AbstractProcessingPage extends AbstractPage {
         pnl.add(Box.createVerticalStrut(25));
         pnl.add(buildTextPnl("The following compressions are supported:"));
         pnl.add(buildTextPnl("             GZip (\".gz\" extension)"));
+        pnl.add(buildTextPnl("             XZ (\".xz\" extension)"));
         pnl.add(buildTextPnl("             Uncompressed (anything not ending in .gz or .xz will be treated as uncompressed)"));
         pnl.add(Box.createVerticalStrut(25));
         pnl.add(buildTextPnl("Note that this utility is not a data conversion tool, it simply translates one format into another."));
@@ -640,7 +639,9 @@ public abstract class AbstractProcessingPage extends AbstractPage {
             @Override
             protected Void doInBackground() throws Exception {
                 int numLines = 0, numPat = 0, numTum = 0;
-                try (LineNumberReader reader = new LineNumberReader(NaaccrXmlUtils.createReader(srcFile))) {
+                NaaccrOptions options = new NaaccrOptions();
+                options.setUseReadAheadThread(_guiOptions.getUseReadAheadThread());
+                try (LineNumberReader reader = new LineNumberReader(NaaccrXmlUtils.createReader(srcFile, options))) {
                     String line = reader.readLine();
                     while (line != null) {
                         numLines++;
@@ -690,8 +691,7 @@ public abstract class AbstractProcessingPage extends AbstractPage {
         _processingBar.setValue(0);
 
         _maxWarningsReached = _maxWarningsDiscAdded = false;
-        _warningStats.clear();
-        _warningStatsDetails.clear();
+        _warningStats.reset();
 
         _processingWorker = new SwingWorker<Void, Patient>() {
             @Override
@@ -752,14 +752,12 @@ public abstract class AbstractProcessingPage extends AbstractPage {
                             _warningsSummaryTextArea.setForeground(Color.BLACK);
                             StringBuilder buf = new StringBuilder("Validation warning counts (0 counts not displayed):\n\n");
                             for (String code : NaaccrErrorUtils.getAllValidationErrors().keySet()) {
-                                int count = _warningStats.containsKey(code) ? _warningStats.get(code).get() : 0;
+                                long count = _warningStats.getCount(code);
                                 if (count > 0) {
                                     buf.append("   ").append(code).append(": ").append(Standalone.formatNumber(count)).append("\n");
-                                    if (_warningStatsDetails.containsKey(code)) {
-                                        List<String> list = new ArrayList<>(_warningStatsDetails.get(code));
-                                        Collections.sort(list);
+                                    List<String> list = _warningStats.getNaaccrIds(code);
+                                    if (!list.isEmpty())
                                         buf.append("      ").append(list).append("\n");
-                                    }
                                 }
                             }
                             _warningsSummaryTextArea.setText(buf.toString());
@@ -799,15 +797,7 @@ public abstract class AbstractProcessingPage extends AbstractPage {
                         buf.append("\n");
 
                         // this will be used in the summary view
-                        AtomicInteger count = _warningStats.get(error.getCode());
-                        if (count == null)
-                            _warningStats.put(error.getCode(), new AtomicInteger(1));
-                        else
-                            count.incrementAndGet();
-
-                        // let's also keep track of more detailed information
-                        if (error.getNaaccrId() != null)
-                            _warningStatsDetails.computeIfAbsent(error.getCode(), k -> new HashSet<>()).add(error.getNaaccrId());
+                        _warningStats.errorReported(error);
                     }
                 }
 
@@ -54,7 +54,9 @@ public class FlatToXmlPage extends AbstractProcessingPage {
 
         // make sure the first line is available
         String firstLine = null;
-        try (BufferedReader reader = new BufferedReader(NaaccrXmlUtils.createReader(file))) {
+        NaaccrOptions options = new NaaccrOptions();
+        options.setUseReadAheadThread(_guiOptions.getUseReadAheadThread());
+        try (BufferedReader reader = new BufferedReader(NaaccrXmlUtils.createReader(file, options))) {
             firstLine = reader.readLine();
         }
         catch (IOException e) {
@@ -64,7 +64,7 @@ public class XmlToXmlPage extends AbstractProcessingPage {
             throw new NaaccrIOException("Target folder must exist");
 
         // create the reader and writer and let them do all the work!
-        try (PatientXmlReader reader = new PatientXmlReader(NaaccrXmlUtils.createReader(source), options, dictionaries)) {
+        try (PatientXmlReader reader = new PatientXmlReader(NaaccrXmlUtils.createReader(source, options), options, dictionaries)) {
             try (PatientXmlWriter writer = new PatientXmlWriter(NaaccrXmlUtils.createWriter(target), reader.getRootData(), options, dictionaries)) {
                 Patient patient = reader.readPatient();
                 while (patient != null && !Thread.currentThread().isInterrupted()) {
@@ -60,7 +60,7 @@ public class XmlValidationPage extends AbstractProcessingPage {
 
     @Override
     protected void runProcessing(File source, File target, NaaccrOptions options, List<NaaccrDictionary> dictionaries, NaaccrObserver observer) throws NaaccrIOException {
-        try (PatientXmlReader reader = new PatientXmlReader(NaaccrXmlUtils.createReader(source), options, dictionaries)) {
+        try (PatientXmlReader reader = new PatientXmlReader(NaaccrXmlUtils.createReader(source, options), options, dictionaries)) {
             Patient patient = reader.readPatient();
             while (patient != null && !Thread.currentThread().isInterrupted()) {
                 // this is the call that will actually collect the errors and show them in the GUI...
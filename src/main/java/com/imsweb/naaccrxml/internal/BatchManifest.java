@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A manifest keeping track of the files processed by a batch run, so an interrupted run can be resumed without re-processing the completed files.
+ * <br/><br/>
+ * The manifest is an append-only journal (one tab-separated line per status change, the last line of a given file wins); it is compacted when it's
+ * loaded. Since a line is appended (and flushed) for every change, a crash can at most leave a truncated last line, which is ignored on the next load.
+ * <br/><br/>
+ * This class is thread-safe.
+ */
+public class BatchManifest implements AutoCloseable {
+
+    // the file is being processed (if a run finds that status, the previous run didn't finish that file)
+    public static final String STATUS_IN_PROGRESS = "in-progress";
+
+    // the file has been processed and its output has been created
+    public static final String STATUS_COMPLETE = "complete";
+
+    // the processing of the file failed
+    public static final String STATUS_FAILED = "failed";
+
+    private static final int _NUM_FIELDS = 6;
+
+    private final File _file;
+
+    private final Map<String, Entry> _entries;
+
+    private Writer _writer;
+
+    /**
+     * Loads the manifest from the provided file (if it doesn't exist, an empty manifest is created).
+     * @param file manifest file, its parent folder must exist
+     * @return the loaded manifest, never null
+     * @throws IOException if the manifest cannot be read or written
+     */
+    public static BatchManifest load(File file) throws IOException {
+        BatchManifest manifest = new BatchManifest(file);
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    Entry entry = parseLine(line);
+                    if (entry != null)
+                        manifest._entries.put(entry.getName(), entry);
+                    line = reader.readLine();
+                }
+            }
+        }
+
+        // compact the journal so it doesn't grow forever (the temporary file is renamed so a crash leaves either the old or the new version)
+        File tmpFile = getTemporaryFile(file);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            for (Entry entry : manifest._entries.values())
+                writer.write(formatLine(entry));
+        }
+        moveAtomically(tmpFile, file);
+
+        manifest._writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+
+        return manifest;
+    }
+
+    private BatchManifest(File file) {
+        _file = file;
+        _entries = new LinkedHashMap<>();
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Returns the entry for the provided file name.
+     * @param name file name
+     * @return the entry, null if the manifest doesn't contain that file
+     */
+    public synchronized Entry getEntry(String name) {
+        return _entries.get(name);
+    }
+
+    /**
+     * Returns all the entries of this manifest.
+     * @return the entries, never null
+     */
+    public synchronized Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(new ArrayList<>(_entries.values()));
+    }
+
+    /**
+     * Records the provided entry, replacing the existing one for the same file name (if any).
+     * @param entry entry to record, cannot be null
+     * @throws IOException if the entry cannot be written
+     */
+    public synchronized void update(Entry entry) throws IOException {
+        if (_writer == null)
+            throw new IOException("Manifest has been closed");
+        _entries.put(entry.getName(), entry);
+        _writer.write(formatLine(entry));
+        _writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (_writer != null) {
+            _writer.close();
+            _writer = null;
+        }
+    }
+
+    /**
+     * Returns the temporary file used to compact the provided manifest file (it only exists if a run crashed while compacting the manifest).
+     * @param file manifest file
+     * @return the temporary file, never null
+     */
+    public static File getTemporaryFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * Moves the source file to the target file, replacing the target; the move is atomic if the file system supports it.
+     * @param source source file, must exist
+     * @param target target file
+     * @throws IOException if the file cannot be moved
+     */
+    public static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 hash of the content of the provided file.
+     * @param file file, must exist
+     * @return the hexadecimal hash, never null
+     * @throws IOException if the file cannot be read
+     */
+    public static String computeHash(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n = is.read(buffer);
+            while (n != -1) {
+                digest.update(buffer, 0, n);
+                n = is.read(buffer);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the SHA-256 hash of the provided value.
+     * @param value value, cannot be null
+     * @return the hexadecimal hash, never null
+     */
+    public static String computeHash(String value) {
+        return toHex(createDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform is required to support SHA-256
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return buf.toString();
+    }
+
+    // the name goes last, so it can contain tabs; names containing a new line are never written (see Entry)
+    private static String formatLine(Entry entry) {
+        return entry.getStatus() + "\t" + entry.getSize() + "\t" + entry.getLastModified() + "\t" + entry.getContentHash() + "\t" + entry.getOptionsHash() + "\t" + entry.getName() + "\n";
+    }
+
+    private static Entry parseLine(String line) {
+        String[] parts = line.split("\t", _NUM_FIELDS);
+        if (parts.length != _NUM_FIELDS || parts[5].isEmpty())
+            return null;
+        try {
+            return new Entry(parts[5], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], parts[4], parts[0]);
+        }
+        catch (IllegalArgumentException e) {
+            return null; // most likely a line truncated by a crash
+        }
+    }
+
+    /**
+     * The information recorded for a single input file.
+     */
+    public static final class Entry {
+
+        private final String _name;
+
+        private final long _size;
+
+        private final long _lastModified;
+
+        private final String _contentHash;
+
+        private final String _optionsHash;
+
+        private final String _status;
+
+        /**
+         * Constructor.
+         * @param name file name, cannot be null and cannot contain any new line character
+         * @param size file size
+         * @param lastModified file modification time
+         * @param contentHash file content hash
+         * @param optionsHash hash of the options used to process the file
+         * @param status processing status (one of the STATUS_XXX constants)
+         */
+        public Entry(String name, long size, long lastModified, String contentHash, String optionsHash, String status) {
+            if (name == null || name.indexOf('\n') != -1 || name.indexOf('\r') != -1)
+                throw new IllegalArgumentException("Invalid file name: " + name);
+            _name = name;
+            _size = size;
+            _lastModified = lastModified;
+            _contentHash = contentHash;
+            _optionsHash = optionsHash;
+            _status = status;
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        public long getSize() {
+            return _size;
+        }
+
+        public long getLastModified() {
+            return _lastModified;
+        }
+
+        public String getContentHash() {
+            return _contentHash;
+        }
+
+        public String getOptionsHash() {
+            return _optionsHash;
+        }
+
+        public String getStatus() {
+            return _status;
+        }
+
+        public boolean isComplete() {
+            return STATUS_COMPLETE.equals(_status);
+        }
+
+        /**
+         * Returns a copy of this entry with the provided status.
+         * @param status new status
+         * @return a new entry, never null
+         */
+        public Entry withStatus(String status) {
+            return new Entry(_name, _size, _lastModified, _contentHash, _optionsHash, status);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.imsweb.naaccrxml.NaaccrBinaryDictionaryUtils;
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+
+/**
+ * Pre-compiles the internal dictionaries (and the runtime dictionaries using them) into the binary format; this is called at build time.
+ */
+public final class BinaryDictionaryGenerator {
+
+    private BinaryDictionaryGenerator() {
+        // no instances of this class allowed!
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1)
+            throw new IllegalArgumentException("Usage: BinaryDictionaryGenerator <output-directory>");
+
+        File outputDir = new File(args[0]);
+        if (!outputDir.exists() && !outputDir.mkdirs())
+            throw new IOException("Unable to create " + outputDir.getPath());
+
+        for (String version : new TreeSet<>(NaaccrFormat.getSupportedVersions())) {
+            NaaccrDictionary baseDictionary = readXmlResource("naaccr-dictionary-" + version + ".xml");
+            writeDictionary(baseDictionary, new File(outputDir, NaaccrBinaryDictionaryUtils.getBinaryResourceName("naaccr-dictionary-" + version + ".xml")));
+
+            NaaccrDictionary userDictionary = null;
+            if (NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(version) != null) {
+                userDictionary = readXmlResource("user-defined-naaccr-dictionary-" + version + ".xml");
+                writeDictionary(userDictionary, new File(outputDir, NaaccrBinaryDictionaryUtils.getBinaryResourceName("user-defined-naaccr-dictionary-" + version + ".xml")));
+            }
+
+            // the runtime dictionaries are created from the XML (this is what validates the internal dictionaries)
+            List<NaaccrDictionary> userDictionaries = userDictionary == null ? Collections.emptyList() : Collections.singletonList(userDictionary);
+            for (String recordType : new TreeSet<>(NaaccrFormat.getSupportedRecordTypes())) {
+                RuntimeNaaccrDictionary runtimeDictionary = new RuntimeNaaccrDictionary(recordType, baseDictionary, userDictionaries);
+                File file = new File(outputDir, NaaccrBinaryDictionaryUtils.getRuntimeResourceName(version, recordType));
+                try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+                    NaaccrBinaryDictionaryUtils.writeRuntimeDictionary(runtimeDictionary, os);
+                }
+            }
+        }
+    }
+
+    private static NaaccrDictionary readXmlResource(String resName) throws IOException {
+        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(resName);
+        if (is == null)
+            throw new IOException("Unable to find " + resName);
+        try (InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            return NaaccrXmlDictionaryUtils.readDictionary(reader);
+        }
+    }
+
+    private static void writeDictionary(NaaccrDictionary dictionary, File file) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            NaaccrBinaryDictionaryUtils.writeDictionary(dictionary, os);
+        }
+    }
+}
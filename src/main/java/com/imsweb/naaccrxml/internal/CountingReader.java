@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader counting the characters it reads; the count is kept in a simple field (this class is not thread-safe) and is reset every time it is taken.
+ */
+public class CountingReader extends FilterReader {
+
+    private long _count;
+
+    public CountingReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c != -1)
+            _count++;
+        return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = super.read(cbuf, off, len);
+        if (n > 0)
+            _count += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        _count += skipped;
+        return skipped;
+    }
+
+    /**
+     * Returns the number of characters read since the last call to this method.
+     * @return number of characters
+     */
+    public long takeCount() {
+        long count = _count;
+        _count = 0;
+        return count;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer counting the characters it writes; the count is kept in a simple field (this class is not thread-safe) and is reset every time it is taken.
+ */
+public class CountingWriter extends FilterWriter {
+
+    private long _count;
+
+    public CountingWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        super.write(c);
+        _count++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        super.write(cbuf, off, len);
+        _count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        super.write(str, off, len);
+        _count += len;
+    }
+
+    /**
+     * Returns the number of characters written since the last call to this method.
+     * @return number of characters
+     */
+    public long takeCount() {
+        long count = _count;
+        _count = 0;
+        return count;
+    }
+}
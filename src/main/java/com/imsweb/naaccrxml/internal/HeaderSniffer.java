@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.imsweb.naaccrxml.compression.CompressionCodec;
+import com.imsweb.naaccrxml.compression.CompressionCodecRegistry;
+
+/**
+ * A lightweight sniffer that looks at the first few KB of a data file to determine its compression, whether it's an XML or a flat file, the attributes of
+ * the XML root tag, and the first line of a flat file.
+ * <br/><br/>
+ * The sniffer doesn't use any XML parser (and doesn't create any XStream object), it only understands what is needed to get to the root tag: byte order marks,
+ * XML declaration, processing instructions, comments, DOCTYPE declarations, single and double quoted attribute values, and the predefined and numeric
+ * entities. It doesn't validate the XML; a header that can't be understood is reported as incomplete and the caller should fall back to a real XML parser.
+ */
+public final class HeaderSniffer {
+
+    // default number of (decompressed) bytes to look at
+    public static final int DEFAULT_HEADER_SIZE = 8 * 1024;
+
+    // maximum number of bytes needed to recognize a codec from the content of a file
+    private static final int _MAGIC_BYTES_LENGTH = 16;
+
+    private HeaderSniffer() {
+        // no instances of this class allowed!
+    }
+
+    /**
+     * Sniffs the header of the provided file, using the default header size.
+     * @param file file to sniff, must exist
+     * @return the sniffed header, never null
+     * @throws IOException if the file cannot be read
+     */
+    public static Header sniff(File file) throws IOException {
+        return sniff(file, DEFAULT_HEADER_SIZE);
+    }
+
+    /**
+     * Sniffs the header of the provided file.
+     * <br/><br/>
+     * The compression is determined from the file extension, and from the first bytes of the file if the extension is not recognized; compressed files
+     * are decompressed in a streaming way, only the requested number of bytes are decompressed.
+     * @param file file to sniff, must exist
+     * @param headerSize maximum number of (decompressed) bytes to look at
+     * @return the sniffed header, never null
+     * @throws IOException if the file cannot be read
+     */
+    public static Header sniff(File file, int headerSize) throws IOException {
+        try (InputStream fis = new BufferedInputStream(new FileInputStream(file))) {
+            CompressionCodec codec = CompressionCodecRegistry.getCodecByExtension(file.getName());
+            if (codec == null) {
+                fis.mark(_MAGIC_BYTES_LENGTH);
+                byte[] magic = new byte[_MAGIC_BYTES_LENGTH];
+                int length = readFully(fis, magic, _MAGIC_BYTES_LENGTH);
+                fis.reset();
+                codec = CompressionCodecRegistry.getCodecByMagicBytes(magic, length);
+            }
+
+            try (InputStream is = codec == null ? fis : codec.createInputStream(fis)) {
+                byte[] data = new byte[headerSize];
+                int length = readFully(is, data, headerSize);
+                Header header = sniff(data, length, length < headerSize);
+                header._compression = codec == null ? null : codec.getName();
+                return header;
+            }
+        }
+    }
+
+    /**
+     * Sniffs the provided (uncompressed) bytes; the encoding is determined from the byte order mark, UTF-8 is assumed if there is none.
+     * @param data bytes to sniff
+     * @param length number of available bytes
+     * @param endOfData true if the provided bytes are the entire content (and not only the beginning of it)
+     * @return the sniffed header, never null
+     */
+    public static Header sniff(byte[] data, int length, boolean endOfData) {
+        Charset charset = StandardCharsets.UTF_8;
+        int offset = 0;
+        if (length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF)
+            offset = 3;
+        else if (length >= 2 && (data[0] & 0xFF) == 0xFE && (data[1] & 0xFF) == 0xFF) {
+            charset = StandardCharsets.UTF_16BE;
+            offset = 2;
+        }
+        else if (length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xFE) {
+            charset = StandardCharsets.UTF_16LE;
+            offset = 2;
+        }
+        return sniff(new String(data, offset, length - offset, charset), endOfData);
+    }
+
+    /**
+     * Sniffs the provided characters.
+     * @param text characters to sniff
+     * @param endOfData true if the provided characters are the entire content (and not only the beginning of it)
+     * @return the sniffed header, never null
+     */
+    public static Header sniff(CharSequence text, boolean endOfData) {
+        Header header = new Header();
+
+        int len = text.length();
+        int pos = 0;
+        if (pos < len && text.charAt(pos) == '\uFEFF')
+            pos++;
+        int contentStart = pos;
+        pos = skipWhitespaces(text, pos);
+
+        // not an XML file, it might be a flat file; the first line is returned as-is (leading blank lines and whitespaces are not skipped)
+        if (pos >= len || text.charAt(pos) != '<') {
+            int end = contentStart;
+            while (end < len && text.charAt(end) != '\n' && text.charAt(end) != '\r')
+                end++;
+            header._firstLine = text.subSequence(contentStart, end).toString();
+            header._complete = end < len || endOfData;
+            return header;
+        }
+
+        header._xml = true;
+        while (true) {
+            pos = skipWhitespaces(text, pos);
+            if (pos >= len || text.charAt(pos) != '<')
+                return header;
+            if (startsWith(text, pos, "<?"))
+                pos = skipPast(text, "?>", pos + 2);
+            else if (startsWith(text, pos, "<!--"))
+                pos = skipPast(text, "-->", pos + 4);
+            else if (startsWith(text, pos, "<!"))
+                pos = skipDeclaration(text, pos + 2);
+            else
+                return parseRootTag(text, pos + 1, header);
+            if (pos == -1)
+                return header;
+        }
+    }
+
+    private static Header parseRootTag(CharSequence text, int pos, Header header) {
+        int len = text.length();
+
+        int start = pos;
+        while (pos < len && !isWhitespace(text.charAt(pos)) && text.charAt(pos) != '>' && text.charAt(pos) != '/')
+            pos++;
+        if (pos >= len || pos == start)
+            return header;
+        String rootTag = text.subSequence(start, pos).toString();
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+        Set<String> rawNames = new HashSet<>();
+        while (true) {
+            pos = skipWhitespaces(text, pos);
+            if (pos >= len)
+                return header;
+            char c = text.charAt(pos);
+            if (c == '>' || (c == '/' && pos + 1 < len && text.charAt(pos + 1) == '>'))
+                break;
+
+            // attribute name
+            start = pos;
+            while (pos < len && !isWhitespace(text.charAt(pos)) && text.charAt(pos) != '=' && text.charAt(pos) != '>' && text.charAt(pos) != '/')
+                pos++;
+            if (pos >= len || pos == start)
+                return header;
+            String rawName = text.subSequence(start, pos).toString();
+
+            // a repeated attribute makes the XML not well-formed, let the caller deal with it
+            if (!rawNames.add(rawName))
+                return header;
+
+            // equal sign and quoted value
+            pos = skipWhitespaces(text, pos);
+            if (pos >= len || text.charAt(pos) != '=')
+                return header;
+            pos = skipWhitespaces(text, pos + 1);
+            if (pos >= len || (text.charAt(pos) != '"' && text.charAt(pos) != '\''))
+                return header;
+            char quote = text.charAt(pos);
+            int end = indexOf(text, quote, pos + 1);
+            if (end == -1)
+                return header;
+            String value = decodeAttributeValue(text, pos + 1, end);
+            if (value == null)
+                return header;
+            attributes.put(removeNameSpacePrefix(rawName), value);
+            pos = end + 1;
+        }
+
+        header._rootTag = rootTag;
+        header._rootAttributes = attributes;
+        header._complete = true;
+        return header;
+    }
+
+    // returns null if the value contains an invalid entity
+    private static String decodeAttributeValue(CharSequence text, int start, int end) {
+        StringBuilder buf = new StringBuilder(end - start);
+        int pos = start;
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (c == '&') {
+                int semicolon = indexOf(text, ';', pos + 1);
+                if (semicolon == -1 || semicolon > end)
+                    return null;
+                String entity = text.subSequence(pos + 1, semicolon).toString();
+                if ("lt".equals(entity))
+                    buf.append('<');
+                else if ("gt".equals(entity))
+                    buf.append('>');
+                else if ("amp".equals(entity))
+                    buf.append('&');
+                else if ("quot".equals(entity))
+                    buf.append('"');
+                else if ("apos".equals(entity))
+                    buf.append('\'');
+                else if (entity.startsWith("#")) {
+                    try {
+                        int codePoint = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+                        buf.appendCodePoint(codePoint);
+                    }
+                    catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+                else
+                    return null;
+                pos = semicolon + 1;
+            }
+            else {
+                // attribute value normalization (see XML specifications, section 3.3.3)
+                buf.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+                pos++;
+            }
+        }
+        return buf.toString();
+    }
+
+    // skips a DOCTYPE (or any other "<!" declaration), including its optional internal subset; returns -1 if the end of the declaration is not available
+    private static int skipDeclaration(CharSequence text, int pos) {
+        int len = text.length();
+        int depth = 0;
+        while (pos < len) {
+            char c = text.charAt(pos);
+            if (c == '"' || c == '\'') {
+                pos = indexOf(text, c, pos + 1);
+                if (pos == -1)
+                    return -1;
+            }
+            else if (c == '[')
+                depth++;
+            else if (c == ']')
+                depth--;
+            else if (c == '>' && depth <= 0)
+                return pos + 1;
+            pos++;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespaces(CharSequence text, int pos) {
+        while (pos < text.length() && isWhitespace(text.charAt(pos)))
+            pos++;
+        return pos;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean startsWith(CharSequence text, int pos, String prefix) {
+        if (pos + prefix.length() > text.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (text.charAt(pos + i) != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    // returns the position right after the found string, -1 if it can't be found
+    private static int skipPast(CharSequence text, String toFind, int from) {
+        int last = text.length() - toFind.length();
+        for (int i = from; i <= last; i++)
+            if (startsWith(text, i, toFind))
+                return i + toFind.length();
+        return -1;
+    }
+
+    private static int indexOf(CharSequence text, char toFind, int from) {
+        for (int i = from; i < text.length(); i++)
+            if (text.charAt(i) == toFind)
+                return i;
+        return -1;
+    }
+
+    private static String removeNameSpacePrefix(String tag) {
+        int idx = tag.indexOf(':');
+        if (idx != -1)
+            return tag.substring(idx + 1);
+        return tag;
+    }
+
+    private static int readFully(InputStream is, byte[] buffer, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int n = is.read(buffer, total, length - total);
+            if (n == -1)
+                break;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * The result of sniffing a header.
+     */
+    public static final class Header {
+
+        private String _compression;
+
+        private boolean _xml;
+
+        private boolean _complete;
+
+        private String _rootTag;
+
+        private Map<String, String> _rootAttributes;
+
+        private String _firstLine;
+
+        private Header() {
+        }
+
+        /**
+         * Returns the name of the compression codec of the file (see CompressionCodecRegistry).
+         * @return the codec name, null if the file is not compressed (or if the header was not sniffed from a file)
+         */
+        public String getCompression() {
+            return _compression;
+        }
+
+        /**
+         * Returns true if the content looks like XML (the first significant character is a '&lt;').
+         * @return whether the content looks like XML
+         */
+        public boolean isXml() {
+            return _xml;
+        }
+
+        /**
+         * Returns true if the header was fully understood: for XML, the entire root tag was found and parsed; for flat files, the first line was fully read.
+         * @return whether the header was fully understood
+         */
+        public boolean isComplete() {
+            return _complete;
+        }
+
+        /**
+         * Returns the name of the root tag (including its namespace prefix if it has one).
+         * @return the root tag, null if the content is not XML or if the header is not complete
+         */
+        public String getRootTag() {
+            return _rootTag;
+        }
+
+        /**
+         * Returns the attributes of the root tag, keyed by their name (without namespace prefix).
+         * @return the attributes of the root tag, empty if the content is not XML or if the header is not complete, never null
+         */
+        public Map<String, String> getRootAttributes() {
+            return _rootAttributes == null ? Collections.emptyMap() : Collections.unmodifiableMap(_rootAttributes);
+        }
+
+        /**
+         * Returns the first line of the content, as-is (it might be empty or start with whitespaces); the line might be truncated if it's longer than the
+         * sniffed header.
+         * @return the first line, null if the content is XML
+         */
+        public String getFirstLine() {
+            return _firstLine;
+        }
+    }
+}
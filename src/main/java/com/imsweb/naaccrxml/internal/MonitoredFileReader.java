@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * A reader remembering the file it reads from, and how many bytes were read from it so far; it's only used when the JMX monitoring is enabled.
+ * <br/><br/>
+ * The bytes are counted after decompression (but before the character decoding).
+ */
+public class MonitoredFileReader extends FilterReader {
+
+    private final File _file;
+
+    private final ByteCountingInputStream _counter;
+
+    public MonitoredFileReader(Reader in, File file, ByteCountingInputStream counter) {
+        super(in);
+        _file = file;
+        _counter = counter;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public long getBytesRead() {
+        return _counter.getCount();
+    }
+
+    /**
+     * An input stream counting the bytes it reads; the count is updated by a single thread but can be read from any thread.
+     */
+    public static final class ByteCountingInputStream extends FilterInputStream {
+
+        private volatile long _count;
+
+        public ByteCountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                _count = _count + 1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                _count = _count + n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            _count = _count + skipped;
+            return skipped;
+        }
+
+        public long getCount() {
+            return _count;
+        }
+    }
+}
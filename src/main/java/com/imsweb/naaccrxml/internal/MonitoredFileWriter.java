@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A writer remembering the file it writes to, and how many bytes were written to it so far; it's only used when the JMX monitoring is enabled.
+ * <br/><br/>
+ * The bytes are counted after the character encoding (but before the compression).
+ */
+public class MonitoredFileWriter extends FilterWriter {
+
+    private final File _file;
+
+    private final ByteCountingOutputStream _counter;
+
+    public MonitoredFileWriter(Writer out, File file, ByteCountingOutputStream counter) {
+        super(out);
+        _file = file;
+        _counter = counter;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public long getBytesWritten() {
+        return _counter.getCount();
+    }
+
+    /**
+     * An output stream counting the bytes it writes; the count is updated by a single thread but can be read from any thread.
+     */
+    public static final class ByteCountingOutputStream extends FilterOutputStream {
+
+        private volatile long _count;
+
+        public ByteCountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            _count = _count + 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream writes the bytes one at a time by default...
+            out.write(b, off, len);
+            _count = _count + len;
+        }
+
+        public long getCount() {
+            return _count;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+
+/**
+ * Entry point for the JDK Flight Recorder events emitted by the library (streams, patients, files and dictionaries).
+ * <br/><br/>
+ * The events require Java 11; they are implemented by a sub-class packaged in the versioned section of the library's multi-release jar. Under older versions
+ * of Java (or if the Flight Recorder isn't available), the instance returned by getInstance() is this class, which does nothing: all the "begin" methods
+ * return null, and the callers skip the recording entirely.
+ * <br/><br/>
+ * The patient events are thresholded (only the patients taking more than 10 ms are recorded, by default) and can be sampled using the
+ * "naaccrxml.jfr.patientSampling" system property (a value of N means only one patient out of N, on average, is timed).
+ */
+public class NaaccrFlightRecorder {
+
+    // the implementation using the Flight Recorder, only available under Java 11+
+    private static final String _JFR_IMPLEMENTATION = "com.imsweb.naaccrxml.internal.JfrNaaccrFlightRecorder";
+
+    private static final NaaccrFlightRecorder _INSTANCE = createInstance();
+
+    /**
+     * Returns the instance to use to emit the events.
+     * @return the instance, never null
+     */
+    public static NaaccrFlightRecorder getInstance() {
+        return _INSTANCE;
+    }
+
+    private static NaaccrFlightRecorder createInstance() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (NaaccrFlightRecorder)Class.forName(_JFR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return new NaaccrFlightRecorder();
+        }
+    }
+
+    /**
+     * Constructor (use getInstance() to get the instance to use).
+     */
+    protected NaaccrFlightRecorder() {
+    }
+
+    /**
+     * Begins the recording of a stream (covering the time between its creation and its closing).
+     * @param streamType type of stream (for example "PatientXmlReader")
+     * @return the recording, null if the event is disabled
+     */
+    public StreamRecording beginStream(String streamType) {
+        return null;
+    }
+
+    /**
+     * Begins the recording of the reading of a patient.
+     * @return the recording, null if the event is disabled (or if the patient isn't sampled)
+     */
+    public PatientRecording beginPatientRead() {
+        return null;
+    }
+
+    /**
+     * Begins the recording of the writing of a patient.
+     * @return the recording, null if the event is disabled (or if the patient isn't sampled)
+     */
+    public PatientRecording beginPatientWrite() {
+        return null;
+    }
+
+    /**
+     * Begins the recording of a file operation.
+     * @param operation operation (for example "readXmlFile")
+     * @return the recording, null if the event is disabled
+     */
+    public FileRecording beginFileOperation(String operation) {
+        return null;
+    }
+
+    /**
+     * Begins the recording of the loading of a dictionary.
+     * @param source where the dictionary is loaded from ("binary" or "xml")
+     * @return the recording, null if the event is disabled
+     */
+    public DictionaryLoadingRecording beginDictionaryLoading(String source) {
+        return null;
+    }
+
+    /**
+     * Begins the recording of the creation of a runtime dictionary.
+     * @return the recording, null if the event is disabled
+     */
+    public RuntimeDictionaryRecording beginRuntimeDictionaryCreation() {
+        return null;
+    }
+
+    public interface StreamRecording {
+
+        /**
+         * Ends the recording; this should be called when the stream is closed.
+         * @param rootData the root data of the stream (null if it's not available)
+         * @param numPatients number of patients read or written by the stream
+         */
+        void end(NaaccrData rootData, long numPatients);
+    }
+
+    public interface PatientRecording {
+
+        /**
+         * Ends the recording.
+         * @param patient the read or written patient
+         */
+        void end(Patient patient);
+    }
+
+    public interface FileRecording {
+
+        /**
+         * Ends the recording.
+         * @param source the source file, null if the operation doesn't have one
+         * @param target the target file, null if the operation doesn't have one
+         * @param rootData the root data of the processed file (null if it's not available)
+         * @param numPatients number of processed patients
+         */
+        void end(File source, File target, NaaccrData rootData, long numPatients);
+    }
+
+    public interface DictionaryLoadingRecording {
+
+        /**
+         * Ends the recording.
+         * @param dictionary the loaded dictionary (null if it couldn't be loaded)
+         */
+        void end(NaaccrDictionary dictionary);
+    }
+
+    public interface RuntimeDictionaryRecording {
+
+        /**
+         * Ends the recording.
+         * @param dictionary the created runtime dictionary
+         * @param precompiled whether the dictionary was created from its pre-compiled (binary) version
+         */
+        void end(RuntimeNaaccrDictionary dictionary, boolean precompiled);
+    }
+}
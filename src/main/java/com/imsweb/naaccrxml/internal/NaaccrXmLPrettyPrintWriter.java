@@ -14,11 +14,30 @@ public class NaaccrXmLPrettyPrintWriter extends PrettyPrintWriter {
 
     private final String _newLine;
 
+    // whether the text is currently written as-is (see writeRawXml())
+    private boolean _rawText;
+
+    // whether a new line needs to be written before the next tag (the parent class doesn't know about the XML written as-is)
+    private boolean _newLineNeeded;
+
     public NaaccrXmLPrettyPrintWriter(Writer writer, String newLine) {
         super(writer, new char[]{' ', ' ', ' ', ' '});
         _newLine = newLine;
     }
 
+    /**
+     * Creates a writer for nodes located at the provided depth; the XML it creates (every node starting with a new line) can be written as-is by a writer
+     * positioned at that depth (see writeRawXml()), the result being the same as if that writer had written those nodes.
+     * @param writer underlined writer
+     * @param newLine new line characters
+     * @param depth the depth of the written nodes
+     */
+    public NaaccrXmLPrettyPrintWriter(Writer writer, String newLine, int depth) {
+        this(writer, newLine);
+        this.depth = depth;
+        _newLineNeeded = depth > 0;
+    }
+
     @Override
     protected String getNewLine() {
         return _newLine;
@@ -31,6 +50,35 @@ public class NaaccrXmLPrettyPrintWriter extends PrettyPrintWriter {
             _internalWriter = writer;
     }
 
+    @Override
+    protected void writeText(QuickWriter writer, String text) {
+        if (_rawText)
+            writer.write(text);
+        else
+            super.writeText(writer, text);
+    }
+
+    @Override
+    public void startNode(String name) {
+        if (_newLineNeeded) {
+            _newLineNeeded = false;
+            endOfLine();
+        }
+        super.startNode(name);
+    }
+
+    @Override
+    public void endNode() {
+        if (_newLineNeeded) {
+            _newLineNeeded = false;
+            // the end tag is written one level up
+            depth--;
+            endOfLine();
+            depth++;
+        }
+        super.endNode();
+    }
+
     public void addAttributeWithNewLine(String key, String value) {
         super.addAttribute(key, value);
 
@@ -40,4 +88,23 @@ public class NaaccrXmLPrettyPrintWriter extends PrettyPrintWriter {
         // this might need to be reviewed if more attributes are supported in the future...
         _internalWriter.write("           ");
     }
+
+    /**
+     * Writes, as children of the current node, XML created by a writer constructed for the depth of those children.
+     * @param xml XML to write as-is
+     */
+    public void writeRawXml(String xml) {
+        if (xml.isEmpty())
+            return;
+
+        // setting the value closes the start tag of the current node if needed; the XML starts with its own new line
+        _rawText = true;
+        try {
+            setValue(xml);
+        }
+        finally {
+            _rawText = false;
+        }
+        _newLineNeeded = true;
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reader that reads its source on a separate thread, feeding large buffers to the consuming thread through a bounded queue.
+ * <br/><br/>
+ * This allows the decompression and character decoding of the source (done by the background thread) to overlap with the parsing (done by the calling thread).
+ * The buffers are recycled, so the memory used by this reader is bounded by (queue capacity + 2) * buffer size characters.
+ */
+public class ReadAheadReader extends Reader {
+
+    // default size (in characters) of the buffers
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    // default number of filled buffers that can wait in the queue
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    private static final AtomicInteger _THREAD_COUNTER = new AtomicInteger();
+
+    private final Reader _source;
+
+    private final BlockingQueue<Chunk> _filledChunks;
+
+    private final BlockingQueue<char[]> _freeBuffers;
+
+    private final int _bufferSize;
+
+    private final Thread _thread;
+
+    private Chunk _current;
+
+    private int _pos;
+
+    private volatile boolean _closed;
+
+    /**
+     * Constructor, uses the default buffer size and queue capacity.
+     * @param source source reader, will be closed when this reader is closed
+     */
+    public ReadAheadReader(Reader source) {
+        this(source, DEFAULT_BUFFER_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param source source reader, will be closed when this reader is closed
+     * @param bufferSize size (in characters) of the buffers
+     * @param queueCapacity number of filled buffers that can wait in the queue
+     */
+    public ReadAheadReader(Reader source, int bufferSize, int queueCapacity) {
+        if (bufferSize < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Buffer size and queue capacity must be positive");
+        _source = source;
+        _bufferSize = bufferSize;
+        _filledChunks = new ArrayBlockingQueue<>(queueCapacity);
+        _freeBuffers = new ArrayBlockingQueue<>(queueCapacity + 2);
+        _current = new Chunk(new char[0], 0, null);
+        _thread = new Thread(this::fill, "naaccr-read-ahead-" + _THREAD_COUNTER.incrementAndGet());
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData())
+            return -1;
+        return _current._buffer[_pos++];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureData())
+            return -1;
+        int n = Math.min(len, _current._length - _pos);
+        System.arraycopy(_current._buffer, _pos, cbuf, off, n);
+        _pos += n;
+        return n;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        if (_closed)
+            throw new IOException("Stream closed");
+        return _pos < _current._length || !_filledChunks.isEmpty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed)
+            return;
+        _closed = true;
+
+        // wake up the background thread (it could be waiting for space in the queue) and wait for it to close the source
+        _thread.interrupt();
+        _filledChunks.clear();
+        try {
+            _thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _filledChunks.clear();
+        _freeBuffers.clear();
+        _current = null;
+    }
+
+    private boolean ensureData() throws IOException {
+        if (_closed)
+            throw new IOException("Stream closed");
+        while (_pos >= _current._length) {
+            if (_current._error != null)
+                throw new IOException(_current._error.getMessage(), _current._error);
+            if (_current._length < 0)
+                return false;
+            Chunk previous = _current;
+            try {
+                _current = _filledChunks.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+            _pos = 0;
+            if (previous._buffer.length == _bufferSize)
+                _freeBuffers.offer(previous._buffer);
+        }
+        return true;
+    }
+
+    private void fill() {
+        try {
+            while (!_closed) {
+                char[] buffer = _freeBuffers.poll();
+                if (buffer == null)
+                    buffer = new char[_bufferSize];
+
+                // fill the entire buffer, this reduces the number of hand-offs between the threads
+                int length = 0;
+                int n = _source.read(buffer, 0, buffer.length);
+                while (n != -1) {
+                    length += n;
+                    if (length == buffer.length)
+                        break;
+                    n = _source.read(buffer, length, buffer.length - length);
+                }
+
+                if (length > 0)
+                    _filledChunks.put(new Chunk(buffer, length, null));
+                if (n == -1) {
+                    _filledChunks.put(new Chunk(new char[0], -1, null));
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            // the reader was closed, nothing to do
+        }
+        catch (IOException | RuntimeException e) {
+            try {
+                if (!_closed)
+                    _filledChunks.put(new Chunk(new char[0], 0, e));
+            }
+            catch (InterruptedException e1) {
+                // the reader was closed, nothing to do
+            }
+        }
+        finally {
+            try {
+                _source.close();
+            }
+            catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+    private static final class Chunk {
+
+        private final char[] _buffer;
+
+        // -1 indicates the end of the data
+        private final int _length;
+
+        private final Exception _error;
+
+        private Chunk(char[] buffer, int length, Exception error) {
+            _buffer = buffer;
+            _length = length;
+            _error = error;
+        }
+    }
+}
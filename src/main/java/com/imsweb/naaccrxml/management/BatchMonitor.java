@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.management;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+/**
+ * The monitor of a BatchProcessor run; the processor reports the state of its files to it.
+ * <br/><br/>
+ * Use NaaccrManagement.registerBatchMonitor() to create a monitor.
+ */
+public class BatchMonitor implements BatchMonitorMXBean {
+
+    private final ObjectName _objectName;
+
+    private final long _startTime;
+
+    private volatile ForkJoinPool _pool;
+
+    private final AtomicInteger _totalFiles = new AtomicInteger();
+
+    private final AtomicInteger _completedFiles = new AtomicInteger();
+
+    private final AtomicInteger _failedFiles = new AtomicInteger();
+
+    private final AtomicInteger _skippedFiles = new AtomicInteger();
+
+    private final AtomicLong _processedPatients = new AtomicLong();
+
+    private final AtomicLong _processedTumors = new AtomicLong();
+
+    private final Set<String> _runningFiles = ConcurrentHashMap.newKeySet();
+
+    BatchMonitor(ObjectName objectName) {
+        _objectName = objectName;
+        _startTime = System.currentTimeMillis();
+    }
+
+    public ObjectName getObjectName() {
+        return _objectName;
+    }
+
+    /**
+     * Unregisters the monitor from the platform MBean server.
+     */
+    public void unregister() {
+        NaaccrManagement.unregister(_objectName);
+    }
+
+    /**
+     * Sets the thread pool processing the files.
+     * @param pool the pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /**
+     * A file has been queued for processing.
+     */
+    public void fileQueued() {
+        _totalFiles.incrementAndGet();
+    }
+
+    /**
+     * The processing of a file has started.
+     * @param name name of the file
+     */
+    public void fileStarted(String name) {
+        _runningFiles.add(name);
+    }
+
+    /**
+     * A file has been skipped (it was already processed by a previous run).
+     */
+    public void fileSkipped() {
+        _skippedFiles.incrementAndGet();
+    }
+
+    /**
+     * The processing of a file is finished.
+     * @param name name of the file
+     * @param success whether the file was successfully processed
+     * @param numPatients number of processed patients
+     * @param numTumors number of processed tumors
+     */
+    public void fileFinished(String name, boolean success, long numPatients, long numTumors) {
+        if (success)
+            _completedFiles.incrementAndGet();
+        else
+            _failedFiles.incrementAndGet();
+        _processedPatients.addAndGet(numPatients);
+        _processedTumors.addAndGet(numTumors);
+        _runningFiles.remove(name);
+    }
+
+    @Override
+    public Date getStartTime() {
+        return new Date(_startTime);
+    }
+
+    @Override
+    public int getTotalFiles() {
+        return _totalFiles.get();
+    }
+
+    @Override
+    public int getQueuedFiles() {
+        return Math.max(0, _totalFiles.get() - _runningFiles.size() - _completedFiles.get() - _failedFiles.get() - _skippedFiles.get());
+    }
+
+    @Override
+    public int getRunningFiles() {
+        return _runningFiles.size();
+    }
+
+    @Override
+    public List<String> getRunningFileNames() {
+        return new ArrayList<>(_runningFiles);
+    }
+
+    @Override
+    public int getCompletedFiles() {
+        return _completedFiles.get();
+    }
+
+    @Override
+    public int getFailedFiles() {
+        return _failedFiles.get();
+    }
+
+    @Override
+    public int getSkippedFiles() {
+        return _skippedFiles.get();
+    }
+
+    @Override
+    public long getProcessedPatients() {
+        return _processedPatients.get();
+    }
+
+    @Override
+    public long getProcessedTumors() {
+        return _processedTumors.get();
+    }
+
+    @Override
+    public int getPoolParallelism() {
+        ForkJoinPool pool = _pool;
+        return pool == null ? 0 : pool.getParallelism();
+    }
+
+    @Override
+    public int getPoolSize() {
+        ForkJoinPool pool = _pool;
+        return pool == null ? 0 : pool.getPoolSize();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        ForkJoinPool pool = _pool;
+        return pool == null ? 0 : pool.getActiveThreadCount();
+    }
+
+    @Override
+    public double getPoolUtilization() {
+        ForkJoinPool pool = _pool;
+        return pool == null || pool.getParallelism() == 0 ? 0 : (double)pool.getActiveThreadCount() / pool.getParallelism();
+    }
+
+    @Override
+    public long getQueuedTasks() {
+        ForkJoinPool pool = _pool;
+        return pool == null ? 0 : pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.management;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The management interface of a BatchProcessor run; the MBean is registered when the batch starts and unregistered when it completes.
+ * <br/><br/>
+ * The progress of the files that are currently running is available through their stream MBeans (see StreamMonitorMXBean).
+ */
+public interface BatchMonitorMXBean {
+
+    /**
+     * Returns the time at which the batch started.
+     */
+    Date getStartTime();
+
+    /**
+     * Returns the total number of files to process.
+     */
+    int getTotalFiles();
+
+    /**
+     * Returns the number of files waiting to be processed.
+     */
+    int getQueuedFiles();
+
+    /**
+     * Returns the number of files being processed.
+     */
+    int getRunningFiles();
+
+    /**
+     * Returns the names of the files being processed.
+     */
+    List<String> getRunningFileNames();
+
+    /**
+     * Returns the number of files that were successfully processed.
+     */
+    int getCompletedFiles();
+
+    /**
+     * Returns the number of files that couldn't be processed.
+     */
+    int getFailedFiles();
+
+    /**
+     * Returns the number of files that were skipped because a previous run already processed them.
+     */
+    int getSkippedFiles();
+
+    /**
+     * Returns the number of patients of the finished files.
+     */
+    long getProcessedPatients();
+
+    /**
+     * Returns the number of tumors of the finished files.
+     */
+    long getProcessedTumors();
+
+    /**
+     * Returns the targeted parallelism of the thread pool (the requested number of threads).
+     */
+    int getPoolParallelism();
+
+    /**
+     * Returns the number of threads that have been started by the pool and are not terminated yet.
+     */
+    int getPoolSize();
+
+    /**
+     * Returns the number of threads of the pool currently executing (or stealing) tasks.
+     */
+    int getActiveThreads();
+
+    /**
+     * Returns the ratio between the active threads and the parallelism of the pool (between 0 and 1, unless the pool had to compensate for blocked threads).
+     */
+    double getPoolUtilization();
+
+    /**
+     * Returns the number of tasks (files and chunks) queued in the pool and not yet executing.
+     */
+    long getQueuedTasks();
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.management;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.imsweb.naaccrxml.NaaccrMetrics;
+
+/**
+ * Entry point for the JMX monitoring of the library: when it's enabled, every patient reader and writer registers an MBean (see StreamMonitorMXBean)
+ * for as long as it's open, and the BatchProcessor registers an MBean exposing the state of the batch (see BatchMonitorMXBean).
+ * <br/><br/>
+ * The monitoring is disabled by default; it can be enabled by setting the "naaccrxml.jmx.enabled" system property to "true", or by calling setEnabled().
+ * Only the streams created after the monitoring is enabled are monitored.
+ * <br/><br/>
+ * All the MBeans are registered in the platform MBean server, under the "com.imsweb.naaccrxml" domain.
+ */
+public final class NaaccrManagement {
+
+    // the system property that can be used to enable the monitoring
+    public static final String PROPERTY_ENABLED = "naaccrxml.jmx.enabled";
+
+    // the domain of the registered MBeans
+    public static final String DOMAIN = "com.imsweb.naaccrxml";
+
+    private static volatile boolean _ENABLED = Boolean.getBoolean(PROPERTY_ENABLED);
+
+    // used to give a unique name to each MBean
+    private static final AtomicLong _ID_GENERATOR = new AtomicLong();
+
+    private NaaccrManagement() {
+        // utility class
+    }
+
+    /**
+     * Returns whether the JMX monitoring is enabled.
+     * @return true if the monitoring is enabled, false otherwise
+     */
+    public static boolean isEnabled() {
+        return _ENABLED;
+    }
+
+    /**
+     * Enables or disables the JMX monitoring; disabling it doesn't unregister the MBeans of the streams that are still open.
+     * @param enabled whether the monitoring should be enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        _ENABLED = enabled;
+    }
+
+    /**
+     * Creates the monitor of a stream, if the monitoring is enabled; the monitor is not registered yet (the stream should register it once it's fully
+     * created, and unregister it when it's closed).
+     * <br/><br/>
+     * The monitor is also a metrics instance that forwards everything to the provided metrics; the stream should report its metrics to it.
+     * @param streamType type of the stream (for example "PatientXmlReader")
+     * @param source the reader or writer of the stream (if it was created by NaaccrXmlUtils, the monitor knows the corresponding file)
+     * @param metrics the metrics of the stream, can be null
+     * @return the monitor, null if the monitoring is disabled
+     */
+    public static StreamMonitor createStreamMonitor(String streamType, Object source, NaaccrMetrics metrics) {
+        if (!_ENABLED)
+            return null;
+        if (source != null && !(source instanceof Reader) && !(source instanceof Writer))
+            throw new IllegalArgumentException("Source must be a reader or a writer");
+        return new StreamMonitor(createObjectName("Stream", streamType + "-" + _ID_GENERATOR.incrementAndGet()), streamType, source, metrics);
+    }
+
+    /**
+     * Creates and registers the monitor of a batch, if the monitoring is enabled.
+     * @return the registered monitor, null if the monitoring is disabled
+     */
+    public static BatchMonitor registerBatchMonitor() {
+        if (!_ENABLED)
+            return null;
+        BatchMonitor monitor = new BatchMonitor(createObjectName("BatchProcessor", "batch-" + _ID_GENERATOR.incrementAndGet()));
+        register(monitor, monitor.getObjectName());
+        return monitor;
+    }
+
+    private static ObjectName createObjectName(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void register(Object mbean, ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(mbean, name);
+        }
+        catch (JMException e) {
+            // the monitoring should never prevent the processing
+        }
+    }
+
+    static void unregister(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (JMException e) {
+            // the monitoring should never prevent the processing
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.management;
+
+import java.io.File;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import com.imsweb.naaccrxml.NaaccrMetrics;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.internal.MonitoredFileReader;
+import com.imsweb.naaccrxml.internal.MonitoredFileWriter;
+import com.imsweb.naaccrxml.metrics.InMemoryNaaccrMetrics;
+
+/**
+ * The monitor of a patient reader or writer; it's a metrics instance accumulating the values exposed through JMX, and forwarding everything to the metrics
+ * provided in the options of the stream (if any).
+ * <br/><br/>
+ * Use NaaccrManagement.createStreamMonitor() to create a monitor.
+ */
+public class StreamMonitor extends InMemoryNaaccrMetrics implements StreamMonitorMXBean {
+
+    private final ObjectName _objectName;
+
+    private final String _streamType;
+
+    private final MonitoredFileReader _fileReader;
+
+    private final MonitoredFileWriter _fileWriter;
+
+    private final NaaccrMetrics _delegate;
+
+    private final long _startTime;
+
+    private final long _startNanos;
+
+    // the values at the previous call to getCurrentPatientsPerSecond()
+    private long _previousNanos, _previousPatients;
+
+    StreamMonitor(ObjectName objectName, String streamType, Object source, NaaccrMetrics delegate) {
+        _objectName = objectName;
+        _streamType = streamType;
+        _fileReader = source instanceof MonitoredFileReader ? (MonitoredFileReader)source : null;
+        _fileWriter = source instanceof MonitoredFileWriter ? (MonitoredFileWriter)source : null;
+        _delegate = delegate;
+        _startTime = System.currentTimeMillis();
+        _startNanos = System.nanoTime();
+        _previousNanos = _startNanos;
+    }
+
+    public ObjectName getObjectName() {
+        return _objectName;
+    }
+
+    /**
+     * Registers the monitor in the platform MBean server.
+     */
+    public void register() {
+        NaaccrManagement.register(this, _objectName);
+    }
+
+    /**
+     * Unregisters the monitor from the platform MBean server.
+     */
+    public void unregister() {
+        NaaccrManagement.unregister(_objectName);
+    }
+
+    @Override
+    public void patientRead(Patient patient, long parsingNanos) {
+        super.patientRead(patient, parsingNanos);
+        if (_delegate != null)
+            _delegate.patientRead(patient, parsingNanos);
+    }
+
+    @Override
+    public void patientWritten(Patient patient, long writingNanos) {
+        super.patientWritten(patient, writingNanos);
+        if (_delegate != null)
+            _delegate.patientWritten(patient, writingNanos);
+    }
+
+    @Override
+    public void charactersRead(long count) {
+        super.charactersRead(count);
+        if (_delegate != null)
+            _delegate.charactersRead(count);
+    }
+
+    @Override
+    public void charactersWritten(long count) {
+        super.charactersWritten(count);
+        if (_delegate != null)
+            _delegate.charactersWritten(count);
+    }
+
+    @Override
+    public void valueValidated(long validationNanos) {
+        super.valueValidated(validationNanos);
+        if (_delegate != null)
+            _delegate.valueValidated(validationNanos);
+    }
+
+    @Override
+    public void errorReported(String code) {
+        super.errorReported(code);
+        if (_delegate != null)
+            _delegate.errorReported(code);
+    }
+
+    @Override
+    public String getStreamType() {
+        return _streamType;
+    }
+
+    @Override
+    public String getFile() {
+        File file = getMonitoredFile();
+        return file == null ? null : file.getPath();
+    }
+
+    @Override
+    public long getFileSize() {
+        return _fileReader == null ? -1 : _fileReader.getFile().length();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return _fileReader == null ? -1 : _fileReader.getBytesRead();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return _fileWriter == null ? -1 : _fileWriter.getBytesWritten();
+    }
+
+    @Override
+    public long getCharactersRead() {
+        return _charactersRead.sum();
+    }
+
+    @Override
+    public long getCharactersWritten() {
+        return _charactersWritten.sum();
+    }
+
+    @Override
+    public long getPatientsRead() {
+        return _patientsRead.sum();
+    }
+
+    @Override
+    public long getTumorsRead() {
+        return _tumorsRead.sum();
+    }
+
+    @Override
+    public long getPatientsWritten() {
+        return _patientsWritten.sum();
+    }
+
+    @Override
+    public long getTumorsWritten() {
+        return _tumorsWritten.sum();
+    }
+
+    @Override
+    public Date getStartTime() {
+        return new Date(_startTime);
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _startNanos);
+    }
+
+    @Override
+    public double getAveragePatientsPerSecond() {
+        return computeRate(getProcessedPatients(), System.nanoTime() - _startNanos);
+    }
+
+    @Override
+    public synchronized double getCurrentPatientsPerSecond() {
+        long now = System.nanoTime();
+        long patients = getProcessedPatients();
+        double rate = computeRate(patients - _previousPatients, now - _previousNanos);
+        _previousNanos = now;
+        _previousPatients = patients;
+        return rate;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> errors = new TreeMap<>();
+        _errors.forEach((code, count) -> errors.put(code, count.sum()));
+        return errors;
+    }
+
+    @Override
+    public long getTotalErrors() {
+        long total = 0;
+        for (LongAdder count : _errors.values())
+            total += count.sum();
+        return total;
+    }
+
+    private File getMonitoredFile() {
+        if (_fileReader != null)
+            return _fileReader.getFile();
+        if (_fileWriter != null)
+            return _fileWriter.getFile();
+        return null;
+    }
+
+    // a stream either reads or writes, so one of the counts is always 0
+    private long getProcessedPatients() {
+        return _patientsRead.sum() + _patientsWritten.sum();
+    }
+
+    private static double computeRate(long numPatients, long nanos) {
+        return nanos <= 0 ? 0 : numPatients * 1_000_000_000d / nanos;
+    }
+}
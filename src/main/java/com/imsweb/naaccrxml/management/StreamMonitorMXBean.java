@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.management;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * The management interface of a patient reader or writer; the MBean is registered when the stream is created and unregistered when it's closed.
+ */
+public interface StreamMonitorMXBean {
+
+    /**
+     * Returns the type of the stream (for example "PatientXmlReader").
+     */
+    String getStreamType();
+
+    /**
+     * Returns the path of the file read or written by the stream, null if it's not known (the file is known only if the stream was created on a reader
+     * or writer returned by NaaccrXmlUtils).
+     */
+    String getFile();
+
+    /**
+     * Returns the size of the file read by the stream (the size on disk, so the compressed size for a compressed file), -1 if it's not known.
+     */
+    long getFileSize();
+
+    /**
+     * Returns the number of bytes read from the file (after decompression), -1 if it's not known.
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the number of bytes written to the file (before compression), -1 if it's not known.
+     */
+    long getBytesWritten();
+
+    long getCharactersRead();
+
+    long getCharactersWritten();
+
+    long getPatientsRead();
+
+    long getTumorsRead();
+
+    long getPatientsWritten();
+
+    long getTumorsWritten();
+
+    /**
+     * Returns the time at which the stream was created.
+     */
+    Date getStartTime();
+
+    /**
+     * Returns the number of milliseconds since the stream was created.
+     */
+    long getElapsedMillis();
+
+    /**
+     * Returns the average number of processed (read or written) patients per second since the stream was created.
+     */
+    double getAveragePatientsPerSecond();
+
+    /**
+     * Returns the number of processed (read or written) patients per second since the previous call to this method (or since the stream was created for
+     * the first call); this is the "current" rate for a monitoring tool polling the MBean at a regular interval.
+     */
+    double getCurrentPatientsPerSecond();
+
+    /**
+     * Returns the number of reported validation errors, keyed by error code.
+     */
+    Map<String, Long> getErrorCounts();
+
+    long getTotalErrors();
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.imsweb.naaccrxml.NaaccrMetrics;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+
+/**
+ * Thread-safe metrics accumulated in memory; use getSnapshot() to get the current values (for example to feed them to a monitoring system).
+ * <br/><br/>
+ * The counters are LongAdder instances, so many streams running on different threads can share the same metrics without contention.
+ */
+public class InMemoryNaaccrMetrics implements NaaccrMetrics {
+
+    protected final LongAdder _patientsRead = new LongAdder();
+
+    protected final LongAdder _tumorsRead = new LongAdder();
+
+    protected final LongAdder _itemsRead = new LongAdder();
+
+    protected final LongAdder _parsingNanos = new LongAdder();
+
+    protected final LongAdder _patientsWritten = new LongAdder();
+
+    protected final LongAdder _tumorsWritten = new LongAdder();
+
+    protected final LongAdder _itemsWritten = new LongAdder();
+
+    protected final LongAdder _writingNanos = new LongAdder();
+
+    protected final LongAdder _charactersRead = new LongAdder();
+
+    protected final LongAdder _charactersWritten = new LongAdder();
+
+    protected final LongAdder _valuesValidated = new LongAdder();
+
+    protected final LongAdder _validationNanos = new LongAdder();
+
+    // the error counts, keyed by error code
+    protected final Map<String, LongAdder> _errors = new ConcurrentHashMap<>();
+
+    @Override
+    public void patientRead(Patient patient, long parsingNanos) {
+        _patientsRead.increment();
+        _tumorsRead.add(patient.getTumors().size());
+        _itemsRead.add(countItems(patient));
+        _parsingNanos.add(parsingNanos);
+    }
+
+    @Override
+    public void patientWritten(Patient patient, long writingNanos) {
+        _patientsWritten.increment();
+        _tumorsWritten.add(patient.getTumors().size());
+        _itemsWritten.add(countItems(patient));
+        _writingNanos.add(writingNanos);
+    }
+
+    @Override
+    public void charactersRead(long count) {
+        _charactersRead.add(count);
+    }
+
+    @Override
+    public void charactersWritten(long count) {
+        _charactersWritten.add(count);
+    }
+
+    @Override
+    public void valueValidated(long validationNanos) {
+        _valuesValidated.increment();
+        _validationNanos.add(validationNanos);
+    }
+
+    @Override
+    public void errorReported(String code) {
+        _errors.computeIfAbsent(code, k -> new LongAdder()).increment();
+    }
+
+    // returns the number of items of the patient, including the items of its tumors
+    private static int countItems(Patient patient) {
+        int count = patient.getItems().size();
+        for (Tumor tumor : patient.getTumors())
+            count += tumor.getItems().size();
+        return count;
+    }
+
+    /**
+     * Returns a snapshot of the current values; the values are read one after the other, so if streams are still running, the snapshot might not be exactly
+     * consistent (for example the number of tumors might already include a patient that isn't counted yet).
+     * @return a new snapshot, never null
+     */
+    public NaaccrMetricsSnapshot getSnapshot() {
+        Map<String, Long> errors = new TreeMap<>();
+        _errors.forEach((code, count) -> errors.put(code, count.sum()));
+
+        return new NaaccrMetricsSnapshot(_patientsRead.sum(), _tumorsRead.sum(), _itemsRead.sum(), _parsingNanos.sum(), _patientsWritten.sum(), _tumorsWritten.sum(),
+                _itemsWritten.sum(), _writingNanos.sum(), _charactersRead.sum(), _charactersWritten.sum(), _valuesValidated.sum(), _validationNanos.sum(), errors);
+    }
+
+    /**
+     * Resets all the values.
+     */
+    public void reset() {
+        _patientsRead.reset();
+        _tumorsRead.reset();
+        _itemsRead.reset();
+        _parsingNanos.reset();
+        _patientsWritten.reset();
+        _tumorsWritten.reset();
+        _itemsWritten.reset();
+        _writingNanos.reset();
+        _charactersRead.reset();
+        _charactersWritten.reset();
+        _valuesValidated.reset();
+        _validationNanos.reset();
+        _errors.clear();
+    }
+}
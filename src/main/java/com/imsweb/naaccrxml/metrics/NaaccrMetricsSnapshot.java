@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of in-memory metrics. The times are in nanoseconds.
+ */
+public final class NaaccrMetricsSnapshot {
+
+    private final long _patientsRead;
+
+    private final long _tumorsRead;
+
+    private final long _itemsRead;
+
+    private final long _parsingNanos;
+
+    private final long _patientsWritten;
+
+    private final long _tumorsWritten;
+
+    private final long _itemsWritten;
+
+    private final long _writingNanos;
+
+    private final long _charactersRead;
+
+    private final long _charactersWritten;
+
+    private final long _valuesValidated;
+
+    private final long _validationNanos;
+
+    private final Map<String, Long> _errors;
+
+    NaaccrMetricsSnapshot(long patientsRead, long tumorsRead, long itemsRead, long parsingNanos, long patientsWritten, long tumorsWritten, long itemsWritten,
+            long writingNanos, long charactersRead, long charactersWritten, long valuesValidated, long validationNanos, Map<String, Long> errors) {
+        _patientsRead = patientsRead;
+        _tumorsRead = tumorsRead;
+        _itemsRead = itemsRead;
+        _parsingNanos = parsingNanos;
+        _patientsWritten = patientsWritten;
+        _tumorsWritten = tumorsWritten;
+        _itemsWritten = itemsWritten;
+        _writingNanos = writingNanos;
+        _charactersRead = charactersRead;
+        _charactersWritten = charactersWritten;
+        _valuesValidated = valuesValidated;
+        _validationNanos = validationNanos;
+        _errors = Collections.unmodifiableMap(new TreeMap<>(errors));
+    }
+
+    public long getPatientsRead() {
+        return _patientsRead;
+    }
+
+    public long getTumorsRead() {
+        return _tumorsRead;
+    }
+
+    public long getItemsRead() {
+        return _itemsRead;
+    }
+
+    /**
+     * Returns the time spent reading the patients; that time includes the validation time.
+     * @return parsing time in nanoseconds
+     */
+    public long getParsingNanos() {
+        return _parsingNanos;
+    }
+
+    public long getPatientsWritten() {
+        return _patientsWritten;
+    }
+
+    public long getTumorsWritten() {
+        return _tumorsWritten;
+    }
+
+    public long getItemsWritten() {
+        return _itemsWritten;
+    }
+
+    public long getWritingNanos() {
+        return _writingNanos;
+    }
+
+    public long getCharactersRead() {
+        return _charactersRead;
+    }
+
+    public long getCharactersWritten() {
+        return _charactersWritten;
+    }
+
+    public long getValuesValidated() {
+        return _valuesValidated;
+    }
+
+    public long getValidationNanos() {
+        return _validationNanos;
+    }
+
+    /**
+     * Returns the number of errors per error code (sorted by code).
+     * @return the error counts, never null
+     */
+    public Map<String, Long> getErrors() {
+        return _errors;
+    }
+
+    /**
+     * Returns the total number of errors.
+     * @return total number of errors
+     */
+    public long getTotalErrors() {
+        long total = 0;
+        for (Long count : _errors.values())
+            total += count;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "NaaccrMetricsSnapshot{patientsRead=" + _patientsRead + ", tumorsRead=" + _tumorsRead + ", itemsRead=" + _itemsRead + ", parsingNanos=" + _parsingNanos
+                + ", patientsWritten=" + _patientsWritten + ", tumorsWritten=" + _tumorsWritten + ", itemsWritten=" + _itemsWritten + ", writingNanos=" + _writingNanos
+                + ", charactersRead=" + _charactersRead + ", charactersWritten=" + _charactersWritten + ", valuesValidated=" + _valuesValidated + ", validationNanos="
+                + _validationNanos + ", errors=" + _errors + "}";
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.metrics;
+
+import com.imsweb.naaccrxml.NaaccrMetrics;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * The metrics used when none are provided in the options: they are disabled, so the streams don't report anything to them.
+ */
+public final class NoOpNaaccrMetrics implements NaaccrMetrics {
+
+    public static final NoOpNaaccrMetrics INSTANCE = new NoOpNaaccrMetrics();
+
+    private NoOpNaaccrMetrics() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void patientRead(Patient patient, long parsingNanos) {
+        // nothing to do
+    }
+
+    @Override
+    public void patientWritten(Patient patient, long writingNanos) {
+        // nothing to do
+    }
+
+    @Override
+    public void charactersRead(long count) {
+        // nothing to do
+    }
+
+    @Override
+    public void charactersWritten(long count) {
+        // nothing to do
+    }
+
+    @Override
+    public void valueValidated(long validationNanos) {
+        // nothing to do
+    }
+
+    @Override
+    public void errorReported(String code) {
+        // nothing to do
+    }
+}
@@ -28,7 +28,9 @@ public class LineNumberExtensionConverter extends AbstractReflectionConverter {
 
     @Override
     public Object unmarshal(final HierarchicalStreamReader reader, final UnmarshallingContext context) {
-        int lineNumber = _conf.getParser().getLineNumber();
+        // use the parser of the current stream if it's available (the converter might be shared by several streams)
+        NaaccrStreamConfiguration conf = NaaccrStreamConfiguration.getStreamConfiguration(context);
+        int lineNumber = (conf != null ? conf : _conf).getParser().getLineNumber();
         Object object = super.unmarshal(reader, context);
         ((NaaccrXmlExtension)object).setStartLineNumber(lineNumber);
         return object;
@@ -14,6 +14,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.DataHolder;
 import com.thoughtworks.xstream.converters.MarshallingContext;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
@@ -22,8 +23,10 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 import com.imsweb.naaccrxml.NaaccrErrorUtils;
 import com.imsweb.naaccrxml.NaaccrFormat;
 import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrMetrics;
 import com.imsweb.naaccrxml.NaaccrOptions;
 import com.imsweb.naaccrxml.NaaccrValidationError;
+import com.imsweb.naaccrxml.NaaccrValidationErrorSink;
 import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
 import com.imsweb.naaccrxml.NaaccrXmlUtils;
 import com.imsweb.naaccrxml.entity.AbstractEntity;
@@ -59,8 +62,32 @@ public class NaaccrPatientConverter implements Converter {
         return Patient.class.isAssignableFrom(type);
     }
 
+    /**
+     * Returns the patient converter of the stream being processed; that's this converter, unless the stream uses a per-stream configuration sharing
+     * its XStream instance with other configurations (see NaaccrStreamConfigurationFactory).
+     * <br/><br/>
+     * The returned converter must have a context; that's not the case when the XStream instance of a configuration is used directly, outside of the
+     * reader and writer (the converter of a shared instance doesn't know about any stream, and no data holder identifies the stream anyway).
+     * @param context XStream marshalling or unmarshalling context
+     * @return the converter to use, never null
+     */
+    protected NaaccrPatientConverter getStreamConverter(DataHolder context) {
+        NaaccrStreamConfiguration conf = NaaccrStreamConfiguration.getStreamConfiguration(context);
+        NaaccrPatientConverter converter = conf == null || conf.getPatientConverter() == null ? this : conf.getPatientConverter();
+        if (converter._context == null)
+            throw new RuntimeException("Patients can only be read and written through PatientXmlReader and PatientXmlWriter; no stream context is available "
+                    + "(when using the XStream instance of a configuration directly, pass it the data holder of a configuration used by a reader or writer)");
+        return converter;
+    }
+
     @Override
     public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+        NaaccrPatientConverter streamConverter = getStreamConverter(context);
+        if (streamConverter != this) {
+            streamConverter.marshal(source, writer, context);
+            return;
+        }
+
         if (!(source instanceof Patient))
             reportSyntaxError("Unexpected object type: " + source.getClass().getName());
         else {
@@ -71,7 +98,7 @@ public class NaaccrPatientConverter implements Converter {
             // handle extension
             if (!Boolean.TRUE.equals(_context.getOptions().getIgnoreExtensions()) && patient.getExtensions() != null)
                 for (Object extension : patient.getExtensions())
-                    _context.getConfiguration().getXstream().marshal(extension, writer);
+                    _context.getConfiguration().getXstream().marshal(extension, writer, _context.getConfiguration().getDataHolder());
 
             for (Tumor tumor : patient.getTumors()) {
                 writer.startNode(NaaccrXmlUtils.NAACCR_XML_TAG_TUMOR);
@@ -81,7 +108,7 @@ public class NaaccrPatientConverter implements Converter {
                 // handle extension
                 if (!Boolean.TRUE.equals(_context.getOptions().getIgnoreExtensions()) && tumor.getExtensions() != null)
                     for (Object extension : tumor.getExtensions())
-                        _context.getConfiguration().getXstream().marshal(extension, writer);
+                        _context.getConfiguration().getXstream().marshal(extension, writer, _context.getConfiguration().getDataHolder());
 
                 writer.endNode();
             }
@@ -90,6 +117,10 @@ public class NaaccrPatientConverter implements Converter {
 
     @Override
     public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+        NaaccrPatientConverter streamConverter = getStreamConverter(context);
+        if (streamConverter != this)
+            return streamConverter.unmarshal(reader, context);
+
         try {
             if (!NaaccrXmlUtils.NAACCR_XML_TAG_PATIENT.equals(_context.extractTag(reader.getNodeName())))
                 reportSyntaxError("unexpected tag: " + _context.extractTag(reader.getNodeName()));
@@ -155,7 +186,7 @@ public class NaaccrPatientConverter implements Converter {
                         }
                         else {
                             if (!Boolean.TRUE.equals(_context.getOptions().getIgnoreExtensions()))
-                                tumor.addExtension(_context.getConfiguration().getXstream().unmarshal(reader));
+                                tumor.addExtension(_context.getConfiguration().getXstream().unmarshal(reader, null, _context.getConfiguration().getDataHolder()));
                             seenTumorExtension = true;
                         }
 
@@ -171,7 +202,7 @@ public class NaaccrPatientConverter implements Converter {
                     if (tumorCount > 0)
                         reportSyntaxError("unexpected tag: " + _context.extractTag(reader.getNodeName()));
                     if (!Boolean.TRUE.equals(_context.getOptions().getIgnoreExtensions()))
-                        patient.addExtension(_context.getConfiguration().getXstream().unmarshal(reader));
+                        patient.addExtension(_context.getConfiguration().getXstream().unmarshal(reader, null, _context.getConfiguration().getDataHolder()));
                     seenPatientExtension = true;
                 }
 
@@ -257,16 +288,15 @@ public class NaaccrPatientConverter implements Converter {
     }
 
     public Item readItem(AbstractEntity entity, String currentPath, String parentTag, String rawId, String rawNum, String value) {
-        int lineNumber = _context.getLineNumber();
-
         // if there is no value at all, don't bother
         if (value == null || value.isEmpty())
             return null;
 
-        // create the item
+        // create the item (the line number is always available from the parser for the errors, it only needs to be captured on the item if requested)
         Item item = new Item();
         item.setValue(value);
-        item.setStartLineNumber(lineNumber);
+        if (!Boolean.FALSE.equals(_context.getOptions().getReadItemLineNumbers()))
+            item.setStartLineNumber(_context.getLineNumber());
 
         // the NAACCR ID is required
         if (StringUtils.isBlank(rawId))
@@ -287,6 +317,8 @@ public class NaaccrPatientConverter implements Converter {
         if (def != null) {
             item.setNaaccrId(def.getNaaccrId());
             item.setNaaccrNum(def.getNaaccrNum());
+            if (_context.getValueInterner() != null)
+                item.setValue(_context.getValueInterner().intern(def, value));
         }
         else {
             if (NaaccrOptions.ITEM_HANDLING_PROCESS.equals(_context.getOptions().getUnknownItemHandling()))
@@ -296,7 +328,7 @@ public class NaaccrPatientConverter implements Converter {
                 badItem.setNaaccrId(rawId);
                 if (StringUtils.isNumeric(rawNum))
                     badItem.setNaaccrNum(Integer.parseInt(rawNum));
-                reportError(entity, lineNumber, currentPath, new RuntimeNaaccrDictionaryItem(badItem), value, NaaccrErrorUtils.CODE_BAD_NAACCR_ID, rawId);
+                reportError(entity, _context.getLineNumber(), currentPath, new RuntimeNaaccrDictionaryItem(badItem), value, NaaccrErrorUtils.CODE_BAD_NAACCR_ID, rawId);
                 return null;
             }
             else if (NaaccrOptions.ITEM_HANDLING_IGNORE.equals(_context.getOptions().getUnknownItemHandling()))
@@ -311,7 +343,7 @@ public class NaaccrPatientConverter implements Converter {
             try {
                 if (def != null) {
                     if (!Integer.valueOf(rawNum).equals(def.getNaaccrNum()))
-                        reportError(item, lineNumber, currentPath, null, null, NaaccrErrorUtils.CODE_BAD_NAACCR_NUM, rawNum, def.getNaaccrId());
+                        reportError(item, _context.getLineNumber(), currentPath, null, null, NaaccrErrorUtils.CODE_BAD_NAACCR_NUM, rawNum, def.getNaaccrId());
                 }
                 else
                     item.setNaaccrNum(Integer.valueOf(rawNum));
@@ -326,22 +358,26 @@ public class NaaccrPatientConverter implements Converter {
 
             // value should be valid
             if (item.getValue() != null) {
+                NaaccrMetrics metrics = _context.getMetrics();
+                long start = metrics != null ? System.nanoTime() : 0L;
                 if (item.getValue().length() > def.getLength() && (!Boolean.TRUE.equals(def.getAllowUnlimitedText())))
-                    reportError(item, lineNumber, currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_TOO_LONG, def.getLength(), item.getValue().length());
+                    reportError(item, _context.getLineNumber(), currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_TOO_LONG, def.getLength(), item.getValue().length());
                 if (_context.getOptions().getValidateReadValues()) {
                     if (NaaccrXmlDictionaryUtils.isFullLengthRequiredForType(def.getDataType()) && item.getValue().length() < def.getLength())
-                        reportError(item, lineNumber, currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_TOO_SHORT, def.getLength(), item.getValue().length());
+                        reportError(item, _context.getLineNumber(), currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_TOO_SHORT, def.getLength(), item.getValue().length());
                     else if (def.getDataType() != null) {
                         Pattern pattern = NaaccrXmlDictionaryUtils.getDataTypePattern(def.getDataType());
                         if (pattern != null && !pattern.matcher(item.getValue()).matches())
-                            reportError(item, lineNumber, currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_DATA_TYPE, def.getDataType());
+                            reportError(item, _context.getLineNumber(), currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_DATA_TYPE, def.getDataType());
                     }
 
                     if (item.getValue().startsWith(" "))
-                        reportError(item, lineNumber, currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_START_SPACE);
+                        reportError(item, _context.getLineNumber(), currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_START_SPACE);
                     if (item.getValue().endsWith(" "))
-                        reportError(item, lineNumber, currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_END_SPACE);
+                        reportError(item, _context.getLineNumber(), currentPath, def, item.getValue(), NaaccrErrorUtils.CODE_VAL_END_SPACE);
                 }
+                if (metrics != null)
+                    metrics.valueValidated(System.nanoTime() - start);
             }
 
             // item should be under the proper data level
@@ -373,7 +409,13 @@ public class NaaccrPatientConverter implements Converter {
         if (value != null && !value.isEmpty())
             error.setValue(value);
 
-        if (obj instanceof AbstractEntity)
+        if (_context.getMetrics() != null)
+            _context.getMetrics().errorReported(code);
+
+        NaaccrValidationErrorSink sink = _context.getOptions().getValidationErrorSink();
+        if (sink != null)
+            sink.errorReported(error);
+        else if (obj instanceof AbstractEntity)
             ((AbstractEntity)obj).addValidationError(error);
         else if (obj instanceof Item) {
             if (((Item)obj).getValidationError() == null)
@@ -15,6 +15,7 @@ import org.xmlpull.v1.XmlPullParserFactory;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.DataHolder;
 import com.thoughtworks.xstream.converters.basic.BooleanConverter;
 import com.thoughtworks.xstream.converters.basic.ByteConverter;
 import com.thoughtworks.xstream.converters.basic.DateConverter;
@@ -27,6 +28,7 @@ import com.thoughtworks.xstream.converters.basic.ShortConverter;
 import com.thoughtworks.xstream.converters.basic.StringConverter;
 import com.thoughtworks.xstream.converters.collections.CollectionConverter;
 import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.core.MapBackedDataHolder;
 import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
 import com.thoughtworks.xstream.io.xml.XppDriver;
 import com.thoughtworks.xstream.security.NoTypePermission;
@@ -37,8 +39,21 @@ import com.imsweb.naaccrxml.entity.Item;
 import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 
+/**
+ * A stream configuration defines how the XML readers and writers map the NAACCR XML tags to the library entities (including the extensions).
+ * <br/><br/>
+ * A configuration is not thread-safe and can only be used by one stream at a time; creating a configuration is expensive though (mostly because of
+ * the XStream instance). Applications using many concurrent streams should use a {@link NaaccrStreamConfigurationFactory}: it creates the expensive
+ * (and immutable) parts once and provides lightweight per-stream configurations sharing them.
+ */
 public class NaaccrStreamConfiguration {
 
+    // key under which a configuration makes itself available to the XStream converters (see getDataHolder())
+    private static final String _DATA_HOLDER_KEY = NaaccrStreamConfiguration.class.getName();
+
+    // the factory used to create the parsers
+    private static volatile XmlPullParserFactory _PARSER_FACTORY;
+
     // the parser used for reading operations
     protected XmlPullParser _parser;
 
@@ -63,6 +78,18 @@ public class NaaccrStreamConfiguration {
     // cached runtime dictionary
     protected RuntimeNaaccrDictionary _cachedDictionary;
 
+    // the data holder passed to XStream, allows the converters to access the configuration of the current stream
+    protected DataHolder _dataHolder;
+
+    // whether this configuration shares its XStream instance with other configurations (if so, it cannot be modified anymore)
+    protected volatile boolean _shared;
+
+    // whether anything was registered on this configuration (namespaces, tags, attributes, implicit collections or converters)
+    protected boolean _customized;
+
+    // whether this configuration can stop sharing its XStream instance when it's modified (only possible if it was shared from a non-customized one)
+    protected boolean _copyOnWrite;
+
     /**
      * Convenience method to make the code look nicer, but it really just calls the default constructor!
      * @return an instance of the configuration with all default values.
@@ -90,6 +117,57 @@ public class NaaccrStreamConfiguration {
         _defaultTags = Collections.unmodifiableSet(defaultTags);
 
         _xstream.registerConverter(new LineNumberExtensionConverter(this));
+
+        _dataHolder = new MapBackedDataHolder();
+        _dataHolder.put(_DATA_HOLDER_KEY, this);
+    }
+
+    /**
+     * Constructor used to create a lightweight per-stream configuration; the new configuration gets its own parser, driver and patient converter,
+     * but shares the XStream instance, the namespaces and the tags of the provided configuration.
+     * <br/><br/>
+     * If the provided configuration doesn't have any registration, the new configuration is copy-on-write: registering anything on it makes it create
+     * its own XStream instance (like a configuration created from the default constructor) instead of failing.
+     * @param sharedConfiguration the configuration to share the immutable parts with
+     */
+    protected NaaccrStreamConfiguration(NaaccrStreamConfiguration sharedConfiguration) {
+        _parser = createParser();
+        _driver = createDriver(_parser);
+        _patientConverter = createPatientConverter();
+        _xstream = sharedConfiguration._xstream;
+        _namespaces = sharedConfiguration._namespaces;
+        _tags = sharedConfiguration._tags;
+        _defaultTags = sharedConfiguration._defaultTags;
+        _shared = true;
+        _copyOnWrite = !sharedConfiguration._customized;
+
+        _dataHolder = new MapBackedDataHolder();
+        _dataHolder.put(_DATA_HOLDER_KEY, this);
+    }
+
+    /**
+     * Creates a lightweight per-stream configuration sharing the XStream instance, the namespaces and the tags of this configuration. Once that method
+     * has been called, this configuration cannot register namespaces, tags, attributes or converters anymore. The returned configuration cannot either,
+     * unless this configuration doesn't have any registration (see the protected constructor).
+     * <br/><br/>
+     * Classes extending this one and overriding the creation of the parser, driver or patient converter should also override this method.
+     * @return a new configuration, never null
+     */
+    public NaaccrStreamConfiguration createStreamConfiguration() {
+        _shared = true;
+        return new NaaccrStreamConfiguration(this);
+    }
+
+    /**
+     * Returns the configuration of the current stream from the provided XStream data holder (see getDataHolder()).
+     * @param dataHolder XStream data holder (usually the marshalling or unmarshalling context), can be null
+     * @return the configuration of the current stream, null if it's not available
+     */
+    public static NaaccrStreamConfiguration getStreamConfiguration(DataHolder dataHolder) {
+        if (dataHolder == null)
+            return null;
+        Object conf = dataHolder.get(_DATA_HOLDER_KEY);
+        return conf instanceof NaaccrStreamConfiguration ? (NaaccrStreamConfiguration)conf : null;
     }
 
     /**
@@ -98,7 +176,13 @@ public class NaaccrStreamConfiguration {
      */
     protected XmlPullParser createParser() {
         try {
-            return XmlPullParserFactory.newInstance().newPullParser();
+            // the factory is expensive to create (it looks up the parser implementation on the classpath), so it's created only once
+            XmlPullParserFactory factory = _PARSER_FACTORY;
+            if (factory == null) {
+                factory = XmlPullParserFactory.newInstance();
+                _PARSER_FACTORY = factory;
+            }
+            return factory.newPullParser();
         }
         catch (XmlPullParserException e) {
             throw new RuntimeException(e);
@@ -204,12 +288,27 @@ public class NaaccrStreamConfiguration {
 
     /**
      * Returns the instance of XStream to use for all reading and writing operations.
+     * <br/><br/>
+     * If this configuration is shared, the returned instance is used by other streams and must not be modified; on a copy-on-write configuration,
+     * registering a namespace first gives it its own instance.
+     * <br/><br/>
+     * The patients can't be read or written with that instance outside of PatientXmlReader and PatientXmlWriter: the patient converter needs the context
+     * of a stream (it fails with an explicit error otherwise).
      * @return an instance of XStream, never null
      */
     public XStream getXstream() {
         return _xstream;
     }
 
+    /**
+     * Returns the data holder to pass to XStream when reading or writing with this configuration; the converters use it to access the configuration
+     * (and therefore the parser and the patient converter) of the current stream.
+     * @return a data holder, never null
+     */
+    public DataHolder getDataHolder() {
+        return _dataHolder;
+    }
+
     /**
      * Returns the runtime dictionary cached by this configuration, null if non is currently cached.
      * @return runtime dictionary, maybe null
@@ -236,6 +335,7 @@ public class NaaccrStreamConfiguration {
      * @param namespaceUri the namespace URI, cannot be null
      */
     public void registerNamespace(String namespacePrefix, String namespaceUri) {
+        ensureModifiable();
         if (_namespaces.containsKey(namespacePrefix))
             throw new RuntimeException("Namespace prefix '" + namespacePrefix + "' has already been registered");
         _namespaces.put(namespacePrefix, namespaceUri);
@@ -256,6 +356,7 @@ public class NaaccrStreamConfiguration {
      * @param clazz class corresponding to the tag name, required
      */
     public void registerTag(String namespacePrefix, String tagName, Class<?> clazz) {
+        ensureModifiable();
         if (!_namespaces.containsKey(namespacePrefix))
             throw new RuntimeException("Namespace prefix '" + namespacePrefix + "' has not been registered yet");
         _xstream.alias(namespacePrefix + ":" + tagName, clazz);
@@ -272,6 +373,7 @@ public class NaaccrStreamConfiguration {
      * @param fieldClass field type, required
      */
     public void registerTag(String namespacePrefix, String tagName, Class<?> clazz, String fieldName, Class<?> fieldClass) {
+        ensureModifiable();
         if (!_namespaces.containsKey(namespacePrefix))
             throw new RuntimeException("Namespace prefix '" + namespacePrefix + "' has not been registered yet");
         _xstream.alias(namespacePrefix + ":" + tagName, fieldClass);
@@ -288,6 +390,7 @@ public class NaaccrStreamConfiguration {
      * @param fieldClass field type, required
      */
     public void registerAttribute(String namespacePrefix, String attributeName, Class<?> clazz, String fieldName, Class<?> fieldClass) {
+        ensureModifiable();
         if (!_namespaces.containsKey(namespacePrefix))
             throw new RuntimeException("Namespace prefix '" + namespacePrefix + "' has not been registered yet");
         _xstream.aliasAttribute(clazz, fieldName, namespacePrefix + ":" + attributeName);
@@ -301,6 +404,7 @@ public class NaaccrStreamConfiguration {
      * @param fieldClass field type, required
      */
     public void registerImplicitCollection(Class<?> clazz, String fieldName, Class<?> fieldClass) {
+        ensureModifiable();
         _xstream.addImplicitCollection(clazz, fieldName, fieldClass);
     }
 
@@ -309,6 +413,7 @@ public class NaaccrStreamConfiguration {
      * @param converter converter to register, required
      */
     public void registerConverter(Converter converter) {
+        ensureModifiable();
         _xstream.registerConverter(converter);
     }
 
@@ -322,4 +427,19 @@ public class NaaccrStreamConfiguration {
             return _defaultTags;
         return _tags.get(namespacePrefix);
     }
+
+    // called before any registration; a shared copy-on-write configuration gets its own XStream instance, other shared configurations fail
+    private void ensureModifiable() {
+        if (_shared) {
+            if (!_copyOnWrite)
+                throw new RuntimeException("This configuration is shared with other streams and cannot be modified anymore");
+            _xstream = createXStream(_driver, _patientConverter);
+            _xstream.registerConverter(new LineNumberExtensionConverter(this));
+            _namespaces = new HashMap<>();
+            _tags = new HashMap<>();
+            _shared = false;
+            _copyOnWrite = false;
+        }
+        _customized = true;
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.runtime;
+
+/**
+ * A factory providing lightweight per-stream configurations that all share the expensive parts (the XStream instance with its mappings, the registered
+ * namespaces and tags) of a single template configuration.
+ * <br/><br/>
+ * The template configuration needs to be fully set up (namespaces, tags, converters, etc...) before the factory is created; after that, it cannot be
+ * modified anymore. The factory itself is thread-safe and the configurations it returns can be used concurrently (one per stream). Example:
+ * <pre>
+ * NaaccrStreamConfiguration template = new NaaccrStreamConfiguration();
+ * template.registerNamespace("other", "http://whatever.org");
+ * template.registerTag("other", "MyOuterTag", MyOuterTag.class);
+ * NaaccrStreamConfigurationFactory factory = new NaaccrStreamConfigurationFactory(template);
+ *
+ * // then, in each thread
+ * try (PatientXmlReader reader = new PatientXmlReader(source, options, userDictionaries, factory.createConfiguration())) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class NaaccrStreamConfigurationFactory {
+
+    // factory using a default configuration, created when first requested
+    private static volatile NaaccrStreamConfigurationFactory _DEFAULT_FACTORY;
+
+    // the configuration shared by all the per-stream configurations
+    protected final NaaccrStreamConfiguration _template;
+
+    /**
+     * Returns a factory based on the default configuration; that factory is created once and shared by the entire process.
+     * @return the default factory, never null
+     */
+    public static NaaccrStreamConfigurationFactory getDefault() {
+        NaaccrStreamConfigurationFactory factory = _DEFAULT_FACTORY;
+        if (factory == null) {
+            synchronized (NaaccrStreamConfigurationFactory.class) {
+                factory = _DEFAULT_FACTORY;
+                if (factory == null) {
+                    factory = new NaaccrStreamConfigurationFactory();
+                    _DEFAULT_FACTORY = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Constructor, uses a default configuration as the template.
+     */
+    public NaaccrStreamConfigurationFactory() {
+        this(new NaaccrStreamConfiguration());
+    }
+
+    /**
+     * Constructor.
+     * @param template the fully set up configuration to share with the per-stream configurations, cannot be null
+     */
+    public NaaccrStreamConfigurationFactory(NaaccrStreamConfiguration template) {
+        if (template == null)
+            throw new RuntimeException("Template configuration is required");
+        _template = template;
+        _template._shared = true;
+    }
+
+    /**
+     * Creates a new lightweight configuration; it should only be used for a single stream at a time.
+     * @return a new configuration, never null
+     */
+    public NaaccrStreamConfiguration createConfiguration() {
+        return _template.createStreamConfiguration();
+    }
+
+    /**
+     * Returns the template configuration (it cannot be modified anymore).
+     * @return the template configuration, never null
+     */
+    public NaaccrStreamConfiguration getTemplate() {
+        return _template;
+    }
+}
@@ -6,6 +6,7 @@ package com.imsweb.naaccrxml.runtime;
 import java.util.Set;
 
 import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrMetrics;
 import com.imsweb.naaccrxml.NaaccrOptions;
 
 public class NaaccrStreamContext {
@@ -16,6 +17,11 @@ public class NaaccrStreamContext {
 
     protected NaaccrOptions _options;
 
+    protected NaaccrValueInterner _valueInterner;
+
+    // null when the metrics are disabled
+    protected NaaccrMetrics _metrics;
+
     public RuntimeNaaccrDictionary getDictionary() {
         return _dictionary;
     }
@@ -40,6 +46,22 @@ public class NaaccrStreamContext {
         _options = options;
     }
 
+    public NaaccrValueInterner getValueInterner() {
+        return _valueInterner;
+    }
+
+    public void setValueInterner(NaaccrValueInterner valueInterner) {
+        _valueInterner = valueInterner;
+    }
+
+    public NaaccrMetrics getMetrics() {
+        return _metrics;
+    }
+
+    public void setMetrics(NaaccrMetrics metrics) {
+        _metrics = metrics;
+    }
+
     /**
      * Returns the current line number.
      * @return current line number (from the parser).
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.runtime;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A per-stream value interner returning a canonical String instance for the repeated values of the low-cardinality (code) items.
+ * <br/><br/>
+ * Each item gets its own bounded table; an item is never interned if it allows unlimited text or if its values are longer than the maximum value length,
+ * and the interning is automatically turned off for an item once its table reaches the maximum number of distinct values (that happens quickly for the
+ * identifiers, dates, etc...).
+ * <br/><br/>
+ * This class is not thread-safe, it is meant to be used by a single stream (reader) at a time.
+ */
+public class NaaccrValueInterner {
+
+    // default maximum number of distinct values per item
+    public static final int DEFAULT_MAX_DISTINCT_VALUES = 256;
+
+    // default maximum length of the interned values
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 16;
+
+    // marker for the items that are not interned
+    private static final InternTable _DISABLED = new InternTable(1);
+
+    private final int _maxDistinctValues;
+
+    private final int _maxValueLength;
+
+    // the runtime items are immutable and shared, so they can safely be compared using their identity
+    private final Map<RuntimeNaaccrDictionaryItem, InternTable> _tables;
+
+    private long _lookupCount;
+
+    private long _hitCount;
+
+    /**
+     * Constructor.
+     */
+    public NaaccrValueInterner() {
+        this(DEFAULT_MAX_DISTINCT_VALUES, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Constructor.
+     * @param maxDistinctValues maximum number of distinct values for a given item; once reached, the item is not interned anymore
+     * @param maxValueLength maximum length of the interned values; the items defined with a longer length are never interned
+     */
+    public NaaccrValueInterner(int maxDistinctValues, int maxValueLength) {
+        _maxDistinctValues = maxDistinctValues;
+        _maxValueLength = maxValueLength;
+        _tables = new IdentityHashMap<>();
+    }
+
+    /**
+     * Returns the canonical instance for the provided value.
+     * @param item item definition, can be null (in which case the value is returned as-is)
+     * @param value value, can be null
+     * @return the canonical instance if the item is interned, the provided value otherwise
+     */
+    public String intern(RuntimeNaaccrDictionaryItem item, String value) {
+        if (item == null || value == null || value.length() > _maxValueLength)
+            return value;
+        InternTable table = getTable(item);
+        if (table == _DISABLED)
+            return value;
+        return lookup(item, table, value, 0, value.length(), value.hashCode(), value);
+    }
+
+    /**
+     * Returns the canonical instance for the provided range of characters; this allows to intern a value without creating an intermediate String.
+     * @param item item definition, can be null (in which case a new String is returned)
+     * @param source characters source, cannot be null
+     * @param start start index (inclusive)
+     * @param end end index (exclusive)
+     * @return the canonical instance if the item is interned, a new String otherwise
+     */
+    public String intern(RuntimeNaaccrDictionaryItem item, CharSequence source, int start, int end) {
+        if (item == null || end - start > _maxValueLength)
+            return source.subSequence(start, end).toString();
+        InternTable table = getTable(item);
+        if (table == _DISABLED)
+            return source.subSequence(start, end).toString();
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + source.charAt(i);
+        return lookup(item, table, source, start, end, hash, null);
+    }
+
+    /**
+     * Returns true if the provided item is currently interned, false otherwise.
+     * @param item item definition, cannot be null
+     * @return true if the item is interned
+     */
+    public boolean isInterned(RuntimeNaaccrDictionaryItem item) {
+        return getTable(item) != _DISABLED;
+    }
+
+    /**
+     * Returns the number of lookups done on the interned items.
+     * @return number of lookups
+     */
+    public long getLookupCount() {
+        return _lookupCount;
+    }
+
+    /**
+     * Returns the number of lookups that returned an existing canonical instance.
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return _hitCount;
+    }
+
+    private InternTable getTable(RuntimeNaaccrDictionaryItem item) {
+        InternTable table = _tables.get(item);
+        if (table == null) {
+            boolean freeText = Boolean.TRUE.equals(item.getAllowUnlimitedText()) || item.getLength() == null || item.getLength() > _maxValueLength;
+            table = freeText ? _DISABLED : new InternTable(_maxDistinctValues);
+            _tables.put(item, table);
+        }
+        return table;
+    }
+
+    private String lookup(RuntimeNaaccrDictionaryItem item, InternTable table, CharSequence source, int start, int end, int hash, String value) {
+        _lookupCount++;
+        String[] slots = table._slots;
+        int mask = slots.length - 1;
+        int idx = (hash ^ (hash >>> 16)) & mask;
+        String existing = slots[idx];
+        while (existing != null) {
+            if (existing.hashCode() == hash && regionEquals(existing, source, start, end)) {
+                _hitCount++;
+                return existing;
+            }
+            idx = (idx + 1) & mask;
+            existing = slots[idx];
+        }
+
+        String result = value != null ? value : source.subSequence(start, end).toString();
+        if (table._size >= _maxDistinctValues)
+            _tables.put(item, _DISABLED); // too many distinct values, this item isn't worth interning
+        else {
+            slots[idx] = result;
+            table._size++;
+        }
+        return result;
+    }
+
+    private static boolean regionEquals(String value, CharSequence source, int start, int end) {
+        if (value.length() != end - start)
+            return false;
+        for (int i = 0; i < value.length(); i++)
+            if (value.charAt(i) != source.charAt(start + i))
+                return false;
+        return true;
+    }
+
+    // an open-addressing table, kept at most half full
+    private static final class InternTable {
+
+        private final String[] _slots;
+
+        private int _size;
+
+        private InternTable(int maxSize) {
+            _slots = new String[Integer.highestOneBit(Math.max(1, maxSize) * 2 - 1) << 1];
+        }
+    }
+}
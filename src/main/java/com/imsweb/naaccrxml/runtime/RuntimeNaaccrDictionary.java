@@ -5,6 +5,7 @@ package com.imsweb.naaccrxml.runtime;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,12 +15,19 @@ import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.imsweb.naaccrxml.NaaccrBinaryDictionaryUtils;
 import com.imsweb.naaccrxml.NaaccrFormat;
 import com.imsweb.naaccrxml.NaaccrIOException;
 import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryItem;
+import com.imsweb.naaccrxml.internal.NaaccrFlightRecorder;
 
+/**
+ * The runtime dictionary is the combination of a base dictionary and user-defined dictionaries for a given record type; it's what the readers and writers use.
+ * <br/><br/>
+ * Runtime dictionaries are immutable, they can safely be shared between threads (see {@link RuntimeNaaccrDictionaryCache}).
+ */
 public class RuntimeNaaccrDictionary {
 
     // used to uniquely identify a runtime dictionary (based on the URI of the base and user dictionaries)
@@ -28,11 +36,11 @@ public class RuntimeNaaccrDictionary {
     // the format for this runtime dictionary
     private final NaaccrFormat _format;
 
-    // the items for this runtime dictionary
-    private List<RuntimeNaaccrDictionaryItem> _items;
+    // the items for this runtime dictionary (unmodifiable)
+    private final List<RuntimeNaaccrDictionaryItem> _items;
 
     // caches used to improve lookup performances
-    private Map<String, RuntimeNaaccrDictionaryItem> _cachedById;
+    private final Map<String, RuntimeNaaccrDictionaryItem> _cachedById;
 
     /**
      * Constructor.
@@ -61,20 +69,23 @@ public class RuntimeNaaccrDictionary {
         if (!errors.isEmpty())
             throw new NaaccrIOException(StringUtils.capitalize(errors.get(0)));
 
-        // use the default user dictionary if one is not provided...
-        if (dictionaries.isEmpty())
-            dictionaries.add(NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(baseDictionary.getNaaccrVersion()));
+        // use the default user dictionary if one is not provided (there is no default user dictionary for recent versions)...
+        if (dictionaries.isEmpty()) {
+            NaaccrDictionary defaultUserDictionary = NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(baseDictionary.getNaaccrVersion());
+            if (defaultUserDictionary != null)
+                dictionaries.add(defaultUserDictionary);
+        }
 
         _format = NaaccrFormat.getInstance(baseDictionary.getNaaccrVersion(), recordType);
-        _items = new ArrayList<>();
+        List<RuntimeNaaccrDictionaryItem> items = new ArrayList<>();
         for (NaaccrDictionaryItem item : baseDictionary.getItems())
             if (item.getRecordTypes() == null || StringUtils.contains(item.getRecordTypes(), recordType))
-                _items.add(new RuntimeNaaccrDictionaryItem(item));
+                items.add(new RuntimeNaaccrDictionaryItem(item));
         Set<String> processedIds = new HashSet<>();
         for (NaaccrDictionary userDictionary : dictionaries) {
             for (NaaccrDictionaryItem item : userDictionary.getItems()) {
                 if ((item.getRecordTypes() == null || StringUtils.contains(item.getRecordTypes(), recordType) && !processedIds.contains(item.getNaaccrId()))) {
-                    _items.add(new RuntimeNaaccrDictionaryItem(item));
+                    items.add(new RuntimeNaaccrDictionaryItem(item));
                     processedIds.add(item.getNaaccrId());
                 }
             }
@@ -82,7 +93,7 @@ public class RuntimeNaaccrDictionary {
 
         // sort the fields by starting columns (no start columns go to the end) for older version, by ID for new ones
         if (Integer.parseInt(_format.getNaaccrVersion()) <= 180) {
-            _items.sort((o1, o2) -> {
+            items.sort((o1, o2) -> {
                 if (o1.getStartColumn() == null)
                     return 1;
                 if (o2.getStartColumn() == null)
@@ -91,7 +102,76 @@ public class RuntimeNaaccrDictionary {
             });
         }
         else
-            _items.sort(Comparator.comparing(RuntimeNaaccrDictionaryItem::getNaaccrId));
+            items.sort(Comparator.comparing(RuntimeNaaccrDictionaryItem::getNaaccrId));
+
+        _items = Collections.unmodifiableList(items);
+        _cachedById = createIdCache(_items);
+    }
+
+    /**
+     * Constructor used for runtime dictionaries that are already known to be valid (like the ones read from the binary format); no validation takes place
+     * and the items are expected to already be sorted.
+     * @param id runtime dictionary ID (see computeId())
+     * @param naaccrVersion NAACCR version
+     * @param recordType record type
+     * @param items runtime items
+     */
+    public RuntimeNaaccrDictionary(String id, String naaccrVersion, String recordType, List<RuntimeNaaccrDictionaryItem> items) {
+        _id = id;
+        _format = NaaccrFormat.getInstance(naaccrVersion, recordType);
+        _items = Collections.unmodifiableList(new ArrayList<>(items));
+        _cachedById = createIdCache(_items);
+    }
+
+    // helper
+    private static Map<String, RuntimeNaaccrDictionaryItem> createIdCache(List<RuntimeNaaccrDictionaryItem> items) {
+        Map<String, RuntimeNaaccrDictionaryItem> cache = new HashMap<>();
+        for (RuntimeNaaccrDictionaryItem item : items)
+            if (item.getNaaccrId() != null)
+                cache.put(item.getNaaccrId(), item);
+        return cache;
+    }
+
+    /**
+     * Creates a runtime dictionary for the provided record type, base and user dictionaries.
+     * <br/><br/>
+     * If the internal base dictionary is used without any user dictionary (or with the internal default user dictionary), the pre-compiled runtime
+     * dictionary is used (if it's available); that's much faster than validating and merging the dictionaries.
+     * @param recordType record type (required)
+     * @param baseDictionary base dictionary (required)
+     * @param userDictionaries user dictionaries (optional)
+     * @return the runtime dictionary, never null
+     * @throws NaaccrIOException if the runtime dictionary cannot be successfully created
+     */
+    public static RuntimeNaaccrDictionary create(String recordType, NaaccrDictionary baseDictionary, Collection<NaaccrDictionary> userDictionaries) throws NaaccrIOException {
+        NaaccrFlightRecorder.RuntimeDictionaryRecording recording = NaaccrFlightRecorder.getInstance().beginRuntimeDictionaryCreation();
+
+        RuntimeNaaccrDictionary result = null;
+        if (recordType != null && baseDictionary != null && isInternalDictionaryCombination(baseDictionary, userDictionaries)) {
+            RuntimeNaaccrDictionary precompiled = NaaccrBinaryDictionaryUtils.readInternalRuntimeDictionary(baseDictionary.getNaaccrVersion(), recordType);
+            if (precompiled != null)
+                result = new RuntimeNaaccrDictionary(computeId(recordType, baseDictionary, userDictionaries), precompiled.getNaaccrVersion(), recordType, precompiled.getItems());
+        }
+        boolean isPrecompiled = result != null;
+        if (result == null)
+            result = new RuntimeNaaccrDictionary(recordType, baseDictionary, userDictionaries);
+
+        if (recording != null)
+            recording.end(result, isPrecompiled);
+
+        return result;
+    }
+
+    // helper
+    private static boolean isInternalDictionaryCombination(NaaccrDictionary baseDictionary, Collection<NaaccrDictionary> userDictionaries) {
+        String version = baseDictionary.getNaaccrVersion();
+        if (version == null || !NaaccrFormat.isVersionSupported(version) || baseDictionary != NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(version))
+            return false;
+        if (userDictionaries != null)
+            for (NaaccrDictionary userDictionary : userDictionaries)
+                if (userDictionary != null && userDictionary != NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(version))
+                    return false;
+        return true;
     }
 
     public String getId() {
@@ -111,19 +191,10 @@ public class RuntimeNaaccrDictionary {
     }
 
     public List<RuntimeNaaccrDictionaryItem> getItems() {
-        if (_items == null)
-            _items = new ArrayList<>();
         return _items;
     }
 
     public RuntimeNaaccrDictionaryItem getItemByNaaccrId(String id) {
-        if (_cachedById == null) {
-            Map<String, RuntimeNaaccrDictionaryItem> cache = new HashMap<>();
-            for (RuntimeNaaccrDictionaryItem item : _items)
-                if (item.getNaaccrId() != null)
-                    cache.put(item.getNaaccrId(), item);
-            _cachedById = cache;
-        }
         return _cachedById.get(id);
     }
 
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.runtime;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.imsweb.naaccrxml.NaaccrBinaryDictionaryUtils;
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+
+/**
+ * Process-wide cache of runtime dictionaries, shared by all the readers and writers (and all the threads).
+ * <br/><br/>
+ * The cached runtime dictionaries are keyed by their ID (see {@link RuntimeNaaccrDictionary#computeId(String, NaaccrDictionary, Collection)}) and by a
+ * fingerprint of the content of the dictionaries that are not the internal ones; so modifying a user-defined dictionary (without changing its URI) results
+ * in a new runtime dictionary being created. The cache is bounded; when it's full, the least recently used runtime dictionary is evicted.
+ * <br/><br/>
+ * The fingerprint of a dictionary is computed only once per dictionary instance (the instances are weakly referenced); so a dictionary that is modified
+ * after it was used to get a runtime dictionary needs to be provided as a new instance (or the cache needs to be cleared) for the modification to be seen.
+ */
+public final class RuntimeNaaccrDictionaryCache {
+
+    // default maximum number of runtime dictionaries kept in the cache
+    public static final int DEFAULT_MAXIMUM_SIZE = 64;
+
+    private static final Map<String, CacheEntry> _CACHE = new ConcurrentHashMap<>();
+
+    // the fingerprints of the (non-internal) dictionaries, by dictionary instance (dictionaries don't override equals/hashCode)
+    private static final Map<NaaccrDictionary, String> _FINGERPRINTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final AtomicLong _ACCESS_COUNTER = new AtomicLong();
+
+    private static final LongAdder _HITS = new LongAdder();
+
+    private static final LongAdder _MISSES = new LongAdder();
+
+    private static final LongAdder _EVICTIONS = new LongAdder();
+
+    private static volatile int _MAXIMUM_SIZE = DEFAULT_MAXIMUM_SIZE;
+
+    private RuntimeNaaccrDictionaryCache() {
+        // no instances of this class allowed!
+    }
+
+    /**
+     * Returns the runtime dictionary for the provided record type, base and user dictionaries, creating it (and caching it) if needed.
+     * @param recordType record type (required)
+     * @param baseDictionary base dictionary (required)
+     * @param userDictionaries user dictionaries (optional)
+     * @return the runtime dictionary, never null
+     * @throws NaaccrIOException if the runtime dictionary cannot be successfully created
+     */
+    public static RuntimeNaaccrDictionary getDictionary(String recordType, NaaccrDictionary baseDictionary, Collection<NaaccrDictionary> userDictionaries) throws NaaccrIOException {
+        if (recordType == null || baseDictionary == null || _MAXIMUM_SIZE <= 0)
+            return RuntimeNaaccrDictionary.create(recordType, baseDictionary, userDictionaries);
+
+        String key = computeKey(recordType, baseDictionary, userDictionaries);
+
+        CacheEntry entry = _CACHE.get(key);
+        if (entry != null) {
+            _HITS.increment();
+            entry._lastAccess = _ACCESS_COUNTER.incrementAndGet();
+            return entry._dictionary;
+        }
+
+        // the dictionary is created outside of the map so a slow creation doesn't block other keys; two threads might create the same dictionary, only one is kept
+        _MISSES.increment();
+        RuntimeNaaccrDictionary dictionary = RuntimeNaaccrDictionary.create(recordType, baseDictionary, userDictionaries);
+        CacheEntry newEntry = new CacheEntry(dictionary, _ACCESS_COUNTER.incrementAndGet());
+        CacheEntry existingEntry = _CACHE.putIfAbsent(key, newEntry);
+        if (existingEntry != null)
+            return existingEntry._dictionary;
+
+        evictIfNeeded();
+
+        return dictionary;
+    }
+
+    /**
+     * Returns the maximum number of runtime dictionaries kept in the cache.
+     * @return the maximum size of the cache
+     */
+    public static int getMaximumSize() {
+        return _MAXIMUM_SIZE;
+    }
+
+    /**
+     * Sets the maximum number of runtime dictionaries kept in the cache; 0 disables the cache.
+     * @param maximumSize maximum size of the cache, can't be negative
+     */
+    public static void setMaximumSize(int maximumSize) {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("Maximum size can't be negative");
+        _MAXIMUM_SIZE = maximumSize;
+        evictIfNeeded();
+    }
+
+    /**
+     * Returns the number of runtime dictionaries currently in the cache.
+     * @return the size of the cache
+     */
+    public static int getSize() {
+        return _CACHE.size();
+    }
+
+    /**
+     * Returns the number of requests that were answered from the cache.
+     * @return number of hits
+     */
+    public static long getHitCount() {
+        return _HITS.sum();
+    }
+
+    /**
+     * Returns the number of requests that required a runtime dictionary to be created.
+     * @return number of misses
+     */
+    public static long getMissCount() {
+        return _MISSES.sum();
+    }
+
+    /**
+     * Returns the number of runtime dictionaries that were evicted from the cache because it was full.
+     * @return number of evictions
+     */
+    public static long getEvictionCount() {
+        return _EVICTIONS.sum();
+    }
+
+    /**
+     * Removes all the runtime dictionaries (and the dictionary fingerprints) from the cache and resets the counters.
+     */
+    public static synchronized void clear() {
+        _CACHE.clear();
+        _FINGERPRINTS.clear();
+        _HITS.reset();
+        _MISSES.reset();
+        _EVICTIONS.reset();
+    }
+
+    /**
+     * Computes the key used to cache the runtime dictionary corresponding to the provided record type, base and user dictionaries.
+     * @param recordType record type
+     * @param baseDictionary base dictionary
+     * @param userDictionaries user dictionaries (optional)
+     * @return the key, never null
+     */
+    static String computeKey(String recordType, NaaccrDictionary baseDictionary, Collection<NaaccrDictionary> userDictionaries) {
+        String version = baseDictionary.getNaaccrVersion();
+        boolean supportedVersion = version != null && NaaccrFormat.isVersionSupported(version);
+
+        // the internal dictionaries can't change, there is no need to compute their fingerprint
+        StringBuilder buf = new StringBuilder(RuntimeNaaccrDictionary.computeId(recordType, baseDictionary, userDictionaries));
+        buf.append("#");
+        if (supportedVersion && baseDictionary == NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(version))
+            buf.append("internal");
+        else
+            buf.append(getFingerprint(baseDictionary));
+        if (userDictionaries != null) {
+            for (NaaccrDictionary userDictionary : userDictionaries) {
+                if (userDictionary == null)
+                    continue;
+                buf.append(";");
+                if (supportedVersion && userDictionary == NaaccrXmlDictionaryUtils.getDefaultUserDictionaryByVersion(version))
+                    buf.append("internal");
+                else
+                    buf.append(getFingerprint(userDictionary));
+            }
+        }
+        return buf.toString();
+    }
+
+    // returns the fingerprint of the provided dictionary, computing it only the first time the instance is seen
+    private static String getFingerprint(NaaccrDictionary dictionary) {
+        String fingerprint = _FINGERPRINTS.get(dictionary);
+        if (fingerprint == null) {
+            fingerprint = NaaccrBinaryDictionaryUtils.computeDictionaryFingerprint(dictionary);
+            _FINGERPRINTS.put(dictionary, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    // evicts the least recently used entries until the cache is within its maximum size
+    private static synchronized void evictIfNeeded() {
+        while (_CACHE.size() > _MAXIMUM_SIZE) {
+            Map.Entry<String, CacheEntry> oldest = null;
+            for (Map.Entry<String, CacheEntry> entry : _CACHE.entrySet())
+                if (oldest == null || entry.getValue()._lastAccess < oldest.getValue()._lastAccess)
+                    oldest = entry;
+            if (oldest == null)
+                break;
+            if (_CACHE.remove(oldest.getKey(), oldest.getValue()))
+                _EVICTIONS.increment();
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final RuntimeNaaccrDictionary _dictionary;
+
+        private volatile long _lastAccess;
+
+        private CacheEntry(RuntimeNaaccrDictionary dictionary, long lastAccess) {
+            _dictionary = dictionary;
+            _lastAccess = lastAccess;
+        }
+    }
+}
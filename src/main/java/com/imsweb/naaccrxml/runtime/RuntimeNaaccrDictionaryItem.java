@@ -9,25 +9,25 @@ import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryItem;
 
 public class RuntimeNaaccrDictionaryItem {
 
-    private String _naaccrId;
+    private final String _naaccrId;
 
-    private Integer _naaccrNum;
+    private final Integer _naaccrNum;
 
-    private Integer _startColumn;
+    private final Integer _startColumn;
 
-    private Integer _length;
+    private final Integer _length;
 
-    private Boolean _allowUnlimitedText;
+    private final Boolean _allowUnlimitedText;
 
-    private String _parentXmlElement;
+    private final String _parentXmlElement;
 
-    private Pattern _regexValidation;
+    private final Pattern _regexValidation;
 
-    private String _dataType;
+    private final String _dataType;
 
-    private String _trim;
+    private final String _trim;
 
-    private String _padding;
+    private final String _padding;
 
     public RuntimeNaaccrDictionaryItem(NaaccrDictionaryItem item) {
         _naaccrId = item.getNaaccrId();
@@ -36,13 +36,29 @@ public class RuntimeNaaccrDictionaryItem {
         _length = item.getLength();
         _allowUnlimitedText = item.getAllowUnlimitedText();
         _parentXmlElement = item.getParentXmlElement();
-        if (item.getRegexValidation() != null)
-            _regexValidation = Pattern.compile(item.getRegexValidation());
+        _regexValidation = item.getRegexValidation() == null ? null : Pattern.compile(item.getRegexValidation());
         _dataType = item.getDataType();
         _trim = item.getTrim();
         _padding = item.getPadding();
     }
 
+    /**
+     * Constructor used for runtime items that are already known to be valid (like the ones read from the binary format).
+     */
+    public RuntimeNaaccrDictionaryItem(String naaccrId, Integer naaccrNum, Integer startColumn, Integer length, Boolean allowUnlimitedText, String parentXmlElement,
+            String regexValidation, String dataType, String trim, String padding) {
+        _naaccrId = naaccrId;
+        _naaccrNum = naaccrNum;
+        _startColumn = startColumn;
+        _length = length;
+        _allowUnlimitedText = allowUnlimitedText;
+        _parentXmlElement = parentXmlElement;
+        _regexValidation = regexValidation == null ? null : Pattern.compile(regexValidation);
+        _dataType = dataType;
+        _trim = trim;
+        _padding = padding;
+    }
+
     public String getNaaccrId() {
         return _naaccrId;
     }
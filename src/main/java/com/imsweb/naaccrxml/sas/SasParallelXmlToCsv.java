@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sas;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Converts NAACCR XML data into CSV rows using several threads; this is used by SasXmlToCsv when more than one thread is requested.
+ * <br/><br/>
+ * The entries of a ZIP file are read concurrently (one entry per thread). A single file is split on the patient boundaries into chunks that are parsed and
+ * formatted concurrently (the reading and splitting happen on the calling thread). In both cases, the rows are written in the order of the input, and the
+ * memory used is bounded by a few blocks of rows per thread. The data is read with SasXmlReader unless the byte reader was requested.
+ * <br/><br/>
+ * The split of a single file assumes that the Patient tags don't appear inside comments or CDATA sections.
+ * <br/><br/>
+ * THIS CLASS IS IMPLEMENTED TO BE COMPATIBLE WITH JAVA 7; BE CAREFUL WHEN MODIFYING IT.
+ */
+@SuppressWarnings("ALL")
+class SasParallelXmlToCsv {
+
+    // default size (in bytes) of the chunks of a single file
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // size (in characters) of the blocks of rows produced for a ZIP entry
+    private static final int _ENTRY_BLOCK_SIZE = 1024 * 1024;
+
+    // number of blocks of rows that can wait for each ZIP entry
+    private static final int _ENTRY_QUEUE_CAPACITY = 4;
+
+    // marker indicating that a ZIP entry has been fully converted (compared by identity)
+    private static final String _END_OF_ENTRY = new String("end-of-entry");
+
+    private static final byte[] _PATIENT_START = "<Patient".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] _PATIENT_END = "</Patient>".getBytes(StandardCharsets.US_ASCII);
+
+    // added after each chunk so the readers find the end of the data (the last chunk already contains it, so that one is never read)
+    private static final byte[] _DATA_END = "\n</NaaccrData>\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final AtomicInteger _THREAD_COUNTER = new AtomicInteger();
+
+    private final List<SasFieldInfo> _fields;
+
+    private final int _numThreads;
+
+    private final int _chunkSize;
+
+    private final boolean _useByteReader;
+
+    /**
+     * Constructor.
+     * @param fields the fields to write, in order (the ordinal of a field is its index in that list)
+     * @param numThreads number of threads to use
+     * @param chunkSize approximate size (in bytes) of the chunks a single file is split into
+     * @param useByteReader whether the data should be read with SasXmlByteReader instead of SasXmlReader
+     */
+    SasParallelXmlToCsv(List<SasFieldInfo> fields, int numThreads, int chunkSize, boolean useByteReader) {
+        _fields = fields;
+        _numThreads = numThreads;
+        _chunkSize = chunkSize;
+        _useByteReader = useByteReader;
+    }
+
+    /**
+     * Converts the entries of the given ZIP file, writing their rows (in the order of the entries) to the provided writer.
+     */
+    public void convertZipFile(File file, Writer writer) throws IOException {
+        ZipFile zipFile = new ZipFile(file);
+        ExecutorService executor = createExecutor();
+        try {
+            List<EntryConversion> conversions = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    EntryConversion conversion = new EntryConversion(zipFile, entry);
+                    conversions.add(conversion);
+                    executor.execute(conversion);
+                }
+            }
+
+            // the tasks are executed in order, so the entry being written is always running (or done)
+            for (EntryConversion conversion : conversions) {
+                String block = conversion.takeBlock();
+                while (block != _END_OF_ENTRY) {
+                    writer.write(block);
+                    block = conversion.takeBlock();
+                }
+                if (conversion._error instanceof Error)
+                    throw (Error)conversion._error;
+                if (conversion._error != null)
+                    throw toIOException(conversion._error);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Converts the given (possibly GZIP compressed) file, writing its rows (in order) to the provided writer.
+     */
+    public void convertFile(File file, Writer writer) throws IOException {
+        InputStream is = SasUtils.createInputStream(file);
+        ExecutorService executor = createExecutor();
+        try {
+            // keeping a few chunks per thread in flight, the oldest one is written once the limit is reached
+            Deque<Future<String>> results = new ArrayDeque<>();
+            PatientChunker chunker = new PatientChunker(is, _chunkSize);
+            byte[] chunk = chunker.nextChunk();
+            while (chunk != null) {
+                if (results.size() >= _numThreads * 2)
+                    writer.write(getResult(results.removeFirst()));
+                results.add(executor.submit(new ChunkConversion(chunker.getHeader(), chunk)));
+                chunk = chunker.nextChunk();
+            }
+            while (!results.isEmpty())
+                writer.write(getResult(results.removeFirst()));
+        }
+        finally {
+            executor.shutdownNow();
+            is.close();
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(_numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "naaccr-sas-xml-to-csv-" + _THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // the stream contains the (uncompressed) UTF-8 bytes of the data; not private so the tests can simulate a failing reader
+    SasRecordReader createReader(InputStream is) {
+        if (_useByteReader)
+            return new SasXmlByteReader(is, _fields);
+        return new SasXmlReader(new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)), _fields);
+    }
+
+    private static String getResult(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the conversion");
+        }
+        catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
+
+    private static IOException toIOException(Throwable t) {
+        if (t instanceof IOException)
+            return (IOException)t;
+        return new IOException(t);
+    }
+
+    /**
+     * Converts a ZIP entry into blocks of rows, waiting when too many blocks are pending.
+     */
+    private final class EntryConversion implements Runnable {
+
+        private final ZipFile _zipFile;
+
+        private final ZipEntry _entry;
+
+        private final BlockingQueue<String> _blocks = new ArrayBlockingQueue<>(_ENTRY_QUEUE_CAPACITY);
+
+        private volatile Throwable _error;
+
+        private EntryConversion(ZipFile zipFile, ZipEntry entry) {
+            _zipFile = zipFile;
+            _entry = entry;
+        }
+
+        @Override
+        public void run() {
+            SasRecordReader reader = null;
+            try {
+                reader = createReader(SasUtils.createInputStream(_zipFile.getInputStream(_entry), _entry.getName()));
+                StringBuilder buf = new StringBuilder();
+                while (reader.nextRecord() > 0) {
+                    SasXmlToCsv.appendRecord(reader, buf, _fields.size());
+                    if (buf.length() >= _ENTRY_BLOCK_SIZE) {
+                        _blocks.put(buf.toString());
+                        buf.setLength(0);
+                    }
+                }
+                if (buf.length() > 0)
+                    _blocks.put(buf.toString());
+            }
+            catch (InterruptedException e) {
+                // the conversion was cancelled
+                Thread.currentThread().interrupt();
+            }
+            catch (Throwable e) {
+                // any error (including the JVM ones, like running out of memory) is reported by the thread writing the entries
+                _error = e;
+            }
+            finally {
+                try {
+                    if (reader != null)
+                        reader.close();
+                }
+                finally {
+                    // the end of the entry is always signaled, otherwise the thread writing the entries would wait forever
+                    endEntry();
+                }
+            }
+        }
+
+        private void endEntry() {
+            // once cancelled, nothing reads the blocks anymore; the marker is added only if there is room for it
+            if (Thread.currentThread().isInterrupted()) {
+                _blocks.offer(_END_OF_ENTRY);
+                return;
+            }
+            try {
+                _blocks.put(_END_OF_ENTRY);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private String takeBlock() throws IOException {
+            try {
+                return _blocks.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the conversion of " + _entry.getName());
+            }
+        }
+    }
+
+    /**
+     * Converts a chunk of patients into rows; the header (everything before the first patient) is read first so the root values are available.
+     */
+    private final class ChunkConversion implements Callable<String> {
+
+        private final byte[] _header;
+
+        private final byte[] _chunk;
+
+        private ChunkConversion(byte[] header, byte[] chunk) {
+            _header = header;
+            _chunk = chunk;
+        }
+
+        @Override
+        public String call() throws IOException {
+            InputStream chunk = new SequenceInputStream(new ByteArrayInputStream(_chunk), new ByteArrayInputStream(_DATA_END));
+            SasRecordReader reader = createReader(new SequenceInputStream(new ByteArrayInputStream(_header), chunk));
+            try {
+                StringBuilder buf = new StringBuilder();
+                while (reader.nextRecord() > 0)
+                    SasXmlToCsv.appendRecord(reader, buf, _fields.size());
+                return buf.toString();
+            }
+            finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Splits a stream into a header (everything before the first patient) and chunks of complete patients; the last chunk also contains the end of the data.
+     */
+    private static final class PatientChunker {
+
+        private static final int _READ_SIZE = 64 * 1024;
+
+        private final InputStream _is;
+
+        private final int _chunkSize;
+
+        private byte[] _data = new byte[_READ_SIZE];
+
+        private int _length;
+
+        // the searched pattern doesn't start before that position in the data
+        private int _searched;
+
+        private byte[] _header;
+
+        private boolean _eof;
+
+        private PatientChunker(InputStream is, int chunkSize) {
+            _is = is;
+            _chunkSize = chunkSize;
+        }
+
+        private byte[] getHeader() {
+            return _header;
+        }
+
+        /**
+         * Returns the next chunk, null if there is no more patient to read.
+         */
+        private byte[] nextChunk() throws IOException {
+            while (true) {
+                if (_header == null) {
+                    int idx = indexOfPatientStart();
+                    if (idx != -1) {
+                        _header = Arrays.copyOf(_data, idx);
+                        remove(idx);
+                        continue;
+                    }
+                }
+                else if (_length >= _chunkSize) {
+                    int idx = lastIndexOfPatientEnd();
+                    if (idx != -1)
+                        return remove(idx + _PATIENT_END.length);
+                }
+
+                if (_eof) {
+                    if (_header == null || _length == 0)
+                        return null;
+                    return remove(_length);
+                }
+
+                fill();
+            }
+        }
+
+        private int indexOfPatientStart() {
+            // the byte following the tag name needs to be available to make sure it's not a longer tag name
+            int last = _length - _PATIENT_START.length - 1;
+            for (int i = _searched; i <= last; i++) {
+                if (matches(i, _PATIENT_START)) {
+                    byte next = _data[i + _PATIENT_START.length];
+                    if (next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\r' || next == '\n')
+                        return i;
+                }
+            }
+            _searched = Math.max(_searched, last + 1);
+            return -1;
+        }
+
+        private int lastIndexOfPatientEnd() {
+            int last = _length - _PATIENT_END.length;
+            for (int i = last; i >= _searched; i--)
+                if (matches(i, _PATIENT_END))
+                    return i;
+            _searched = Math.max(_searched, last + 1);
+            return -1;
+        }
+
+        private boolean matches(int idx, byte[] pattern) {
+            for (int i = 0; i < pattern.length; i++)
+                if (_data[idx + i] != pattern[i])
+                    return false;
+            return true;
+        }
+
+        // removes (and returns) the first bytes of the data
+        private byte[] remove(int length) {
+            byte[] result = Arrays.copyOf(_data, length);
+            System.arraycopy(_data, length, _data, 0, _length - length);
+            _length -= length;
+            _searched = 0;
+            return result;
+        }
+
+        private void fill() throws IOException {
+            if (_data.length - _length < _READ_SIZE)
+                _data = Arrays.copyOf(_data, Math.max(_data.length * 2, _length + _READ_SIZE));
+            int n = _is.read(_data, _length, _READ_SIZE);
+            if (n == -1)
+                _eof = true;
+            else
+                _length += n;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sas;
+
+import java.io.IOException;
+
+/**
+ * The common methods of the SAS readers, used by the converter to write the records without knowing which reader is used.
+ * <br/><br/>
+ * THIS CLASS IS IMPLEMENTED TO BE COMPATIBLE WITH JAVA 7; BE CAREFUL WHEN MODIFYING IT.
+ */
+@SuppressWarnings("ALL")
+interface SasRecordReader {
+
+    /**
+     * Moves to the next record (tumor); returns 0 if there is no more record.
+     */
+    int nextRecord() throws IOException;
+
+    /**
+     * Returns the value of the field with the requested ordinal for the current record, an empty string if the record doesn't have a value for it.
+     */
+    String getValue(int ordinal);
+
+    void close();
+}
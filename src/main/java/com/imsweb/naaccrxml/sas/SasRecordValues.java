@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sas;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of the current record of a SAS XML reader.
+ * <br/><br/>
+ * The values are kept in three arrays (root, patient and tumor levels) indexed by field ordinal, so nothing is copied when a tumor ends. A value is
+ * looked up in the patient level first, then the root level and then the tumor level; that's the precedence the reader always had (the root and
+ * patient values used to be copied over the tumor ones). If the fields are provided to the constructor, the ordinal of a field is its index in that
+ * list and the values of the other items are ignored; otherwise the ordinals are assigned as new items are found.
+ * <br/><br/>
+ * THIS CLASS IS IMPLEMENTED TO BE COMPATIBLE WITH JAVA 7; BE CAREFUL WHEN MODIFYING IT.
+ */
+@SuppressWarnings("ALL")
+final class SasRecordValues {
+
+    // the ordinal of each field, keyed by NAACCR ID
+    private final Map<String, Integer> _ordinals;
+
+    // whether new ordinals are assigned to the unknown fields (only if no fields were provided)
+    private final boolean _assignOrdinals;
+
+    private String[] _naaccrDataValues, _patientValues, _tumorValues;
+
+    SasRecordValues(List<SasFieldInfo> fields) {
+        _ordinals = new HashMap<>();
+        _assignOrdinals = fields == null;
+        if (fields != null)
+            for (SasFieldInfo field : fields)
+                if (!_ordinals.containsKey(field.getNaaccrId()))
+                    _ordinals.put(field.getNaaccrId(), _ordinals.size());
+        int size = fields == null ? 64 : Math.max(_ordinals.size(), 1);
+        _naaccrDataValues = new String[size];
+        _patientValues = new String[size];
+        _tumorValues = new String[size];
+    }
+
+    /**
+     * Returns the ordinal of the given field, -1 if its values shouldn't be kept.
+     */
+    int getOrdinal(String naaccrId) {
+        Integer ordinal = _ordinals.get(naaccrId);
+        if (ordinal != null)
+            return ordinal;
+        if (!_assignOrdinals)
+            return -1;
+        int newOrdinal = _ordinals.size();
+        _ordinals.put(naaccrId, newOrdinal);
+        if (newOrdinal >= _tumorValues.length) {
+            _naaccrDataValues = Arrays.copyOf(_naaccrDataValues, _tumorValues.length * 2);
+            _patientValues = Arrays.copyOf(_patientValues, _tumorValues.length * 2);
+            _tumorValues = Arrays.copyOf(_tumorValues, _tumorValues.length * 2);
+        }
+        return newOrdinal;
+    }
+
+    void setValue(int ordinal, String value, boolean inPatient, boolean inTumor) {
+        if (inPatient)
+            _patientValues[ordinal] = value;
+        else if (inTumor)
+            _tumorValues[ordinal] = value;
+        else
+            _naaccrDataValues[ordinal] = value;
+    }
+
+    void clearPatientValues() {
+        Arrays.fill(_patientValues, null);
+    }
+
+    void clearTumorValues() {
+        Arrays.fill(_tumorValues, null);
+    }
+
+    String getValue(String naaccrId) {
+        Integer ordinal = _ordinals.get(naaccrId);
+        return ordinal == null ? "" : getValue(ordinal);
+    }
+
+    String getValue(int ordinal) {
+        if (ordinal < 0 || ordinal >= _tumorValues.length)
+            return "";
+        String value = _patientValues[ordinal];
+        if (value == null)
+            value = _naaccrDataValues[ordinal];
+        if (value == null)
+            value = _tumorValues[ordinal];
+        return value == null ? "" : value;
+    }
+}
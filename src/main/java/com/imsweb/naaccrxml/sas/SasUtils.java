@@ -14,6 +14,7 @@ import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -82,10 +83,17 @@ public class SasUtils {
      * @return reader
      */
     public static BufferedReader createReader(File file) throws IOException {
-        InputStream is = new FileInputStream(file);
-        if (file.getName().toLowerCase().endsWith(".gz"))
-            is = new GZIPInputStream(is);
-        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        return createReader(file, false);
+    }
+
+    /**
+     * Creates a reader from the given file. Support GZIP compressed files.
+     * @param file file to read
+     * @param readAhead if true, the decompression and decoding will happen on a separate thread
+     * @return reader
+     */
+    public static BufferedReader createReader(File file, boolean readAhead) throws IOException {
+        return createReader(new FileInputStream(file), file.getName(), readAhead);
     }
 
     /**
@@ -94,9 +102,44 @@ public class SasUtils {
      * @return reader
      */
     public static BufferedReader createReader(InputStream is, String name) throws IOException {
+        return createReader(is, name, false);
+    }
+
+    /**
+     * Creates a reader from the given stream. Support GZIP compressed files.
+     * @param is stream to read
+     * @param name name of the file (or ZIP entry) corresponding to the stream
+     * @param readAhead if true, the decompression and decoding will happen on a separate thread
+     * @return reader
+     */
+    public static BufferedReader createReader(InputStream is, String name, boolean readAhead) throws IOException {
         if (name.toLowerCase().endsWith(".gz"))
             is = new GZIPInputStream(is);
-        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+        if (readAhead)
+            reader = new SasReadAheadReader(reader);
+        return new BufferedReader(reader);
+    }
+
+    /**
+     * Creates a buffered stream from the given file (to be used with SasXmlByteReader). Support GZIP compressed files.
+     * @param file file to read
+     * @return stream
+     */
+    public static InputStream createInputStream(File file) throws IOException {
+        return createInputStream(new FileInputStream(file), file.getName());
+    }
+
+    /**
+     * Creates a buffered stream from the given stream (to be used with SasXmlByteReader). Support GZIP compressed files.
+     * @param is stream to read
+     * @param name name of the file (or ZIP entry) corresponding to the stream
+     * @return stream
+     */
+    public static InputStream createInputStream(InputStream is, String name) throws IOException {
+        if (name.toLowerCase().endsWith(".gz"))
+            return new GZIPInputStream(is, 64 * 1024);
+        return is;
     }
 
     /**
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * This class is a simplified NAACCR XML reader working directly on the (UTF-8) bytes of the data; it is much faster than SasXmlReader on large files.
+ * <br/><br/>
+ * It doesn't use an XML parser; it scans the bytes with a small state machine looking for the Patient, Tumor and Item tags and the "naaccrId"
+ * attribute of the items, and ignores everything else. The values are only decoded into strings for the requested fields. Like SasXmlReader, it only
+ * decodes the five predefined entities (the numeric character references are kept as-is) and replaces the new lines inside a value by "::".
+ * <br/><br/>
+ * It returns the same values as SasXmlReader for well formatted data, but it is not a drop-in replacement: it doesn't require one item per line, and it
+ * skips the comments found inside a value (SasXmlReader stops the value at the comment, or keeps it when the value spans several lines). That's why
+ * SasXmlToCsv only uses it when requested.
+ * <br/><br/>
+ * If the fields are provided to the constructor, only their values are kept, and the ordinal of a field (see getValue(int)) is its index in that list.
+ * <br/><br/>
+ * THIS CLASS IS IMPLEMENTED TO BE COMPATIBLE WITH JAVA 7; BE CAREFUL WHEN MODIFYING IT.
+ */
+@SuppressWarnings("ALL")
+public class SasXmlByteReader implements SasRecordReader {
+
+    private static final int _BUFFER_SIZE = 64 * 1024;
+
+    // the length of the longest entity that can be decoded, including the '&' ("&quot;" and "&apos;")
+    private static final int _MAX_ENTITY_LENGTH = 5;
+
+    private static final byte[] _TAG_ITEM = "Item".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] _TAG_PATIENT = "Patient".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] _TAG_TUMOR = "Tumor".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] _TAG_NAACCR_DATA = "NaaccrData".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] _ATTRIBUTE_NAACCR_ID = "naaccrId".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] _CDATA_START = "[CDATA[".getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream _is;
+
+    private final byte[] _buffer = new byte[_BUFFER_SIZE];
+
+    private int _pos, _limit;
+
+    private final SasRecordValues _values;
+
+    private boolean _inPatient, _inTumor, _done;
+
+    // reusable buffers for the tag and attribute names, the attribute values and the item values
+    private byte[] _name = new byte[32], _attribute = new byte[64], _value = new byte[256];
+
+    private int _nameLength, _attributeLength, _valueLength;
+
+    public SasXmlByteReader(InputStream is) {
+        this(is, null);
+    }
+
+    public SasXmlByteReader(InputStream is, List<SasFieldInfo> fields) {
+        _is = is;
+        _values = new SasRecordValues(fields);
+    }
+
+    public int nextRecord() throws IOException {
+        _values.clearTumorValues();
+
+        while (!_done) {
+            if (!skipTo('<')) {
+                _done = true;
+                break;
+            }
+
+            int b = read();
+            if (b == '/') {
+                readName();
+                skipTag();
+                // like SasXmlReader, the reader stays at the tumor level until the next Tumor or Patient tag
+                if (isName(_TAG_TUMOR))
+                    return 1;
+                if (isName(_TAG_PATIENT)) {
+                    _inPatient = false;
+                    _values.clearPatientValues();
+                }
+                else if (isName(_TAG_NAACCR_DATA))
+                    _done = true;
+            }
+            else if (b == '?')
+                skipPast('?', '>');
+            else if (b == '!')
+                skipDeclaration();
+            else if (b != -1) {
+                unread();
+                readName();
+                if (isName(_TAG_ITEM))
+                    readItem();
+                else {
+                    if (isName(_TAG_PATIENT)) {
+                        _inPatient = true;
+                        _inTumor = false;
+                    }
+                    else if (isName(_TAG_TUMOR)) {
+                        _inPatient = false;
+                        _inTumor = true;
+                    }
+                    skipTag();
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    public String getValue(String naaccrId) {
+        return _values.getValue(naaccrId);
+    }
+
+    /**
+     * Returns the value of the field with the requested ordinal for the current record, an empty string if the record doesn't have a value for it.
+     * @param ordinal the ordinal of the field (its index in the fields provided to the constructor)
+     */
+    public String getValue(int ordinal) {
+        return _values.getValue(ordinal);
+    }
+
+    public void close() {
+        try {
+            if (_is != null)
+                _is.close();
+        }
+        catch (IOException e) {
+            // ignored
+        }
+    }
+
+    /**
+     * Reads an item; the name of the tag has been read already.
+     */
+    private void readItem() throws IOException {
+        String naaccrId = null;
+        boolean empty = false;
+
+        // attributes
+        while (true) {
+            int b = skipWhitespaces();
+            if (b == -1)
+                throw new IOException("Unable to find end of Item tag");
+            if (b == '>')
+                break;
+            if (b == '/') {
+                skipTag();
+                empty = true;
+                break;
+            }
+            unread();
+            boolean isNaaccrId = readAttribute();
+            if (isNaaccrId)
+                naaccrId = new String(_attribute, 0, _attributeLength, StandardCharsets.UTF_8);
+        }
+        if (naaccrId == null)
+            throw new IOException("Unable to find NAACCR ID attribute for Item tag");
+
+        int ordinal = _values.getOrdinal(naaccrId);
+        if (empty) {
+            if (ordinal != -1)
+                _values.setValue(ordinal, "", _inPatient, _inTumor);
+            return;
+        }
+
+        // value (the bytes are only kept if the value is requested)
+        boolean keep = ordinal != -1;
+        _valueLength = 0;
+        while (true) {
+            int b = read();
+            if (b == -1)
+                throw new IOException("Unable to find end of value for " + naaccrId);
+            if (b == '<') {
+                if (peek() == '!') {
+                    read();
+                    if (peek() == '-')
+                        skipComment();
+                    else if (readCdataStart())
+                        readCdata(keep, naaccrId);
+                    else {
+                        skipTag();
+                        break;
+                    }
+                }
+                else {
+                    // that has to be the end of the item
+                    skipTag();
+                    break;
+                }
+            }
+            else if (!keep)
+                continue;
+            else if (b == '&')
+                readEntity();
+            else if (b == '\n')
+                appendNewLine();
+            else if (b == '\r') {
+                appendNewLine();
+                if (peek() == '\n')
+                    read();
+            }
+            else
+                append(b);
+        }
+
+        if (keep)
+            _values.setValue(ordinal, new String(_value, 0, _valueLength, StandardCharsets.UTF_8), _inPatient, _inTumor);
+    }
+
+    /**
+     * Reads an attribute and returns true if it's the NAACCR ID attribute (its value is then available in the attribute buffer).
+     */
+    private boolean readAttribute() throws IOException {
+        readName();
+        boolean isNaaccrId = isName(_ATTRIBUTE_NAACCR_ID);
+        int b = skipWhitespaces();
+        if (b != '=')
+            throw new IOException("Invalid attribute in Item tag");
+        int quote = skipWhitespaces();
+        if (quote != '"' && quote != '\'')
+            throw new IOException("Invalid attribute value in Item tag");
+        _attributeLength = 0;
+        b = read();
+        while (b != quote) {
+            if (b == -1)
+                throw new IOException("Unable to find end of attribute value in Item tag");
+            if (isNaaccrId) {
+                if (_attributeLength == _attribute.length)
+                    _attribute = grow(_attribute);
+                _attribute[_attributeLength++] = (byte)b;
+            }
+            b = read();
+        }
+        return isNaaccrId;
+    }
+
+    /**
+     * Called after "&lt;!"; returns true (and consumes the bytes) if a CDATA section starts; otherwise leaves the bytes untouched.
+     */
+    private boolean readCdataStart() throws IOException {
+        for (int i = 0; i < _CDATA_START.length; i++) {
+            if (peek() != _CDATA_START[i])
+                return false;
+            read();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the content of a CDATA section (entities are not decoded in those sections).
+     */
+    private void readCdata(boolean keep, String naaccrId) throws IOException {
+        int numBrackets = 0;
+        while (true) {
+            int b = read();
+            if (b == -1)
+                throw new IOException("Unable to find end of value for " + naaccrId);
+            if (b == '>' && numBrackets >= 2) {
+                // the two closing brackets were added to the value, let's remove them
+                if (keep)
+                    _valueLength -= 2;
+                return;
+            }
+            numBrackets = b == ']' ? numBrackets + 1 : 0;
+            if (!keep)
+                continue;
+            if (b == '\n')
+                appendNewLine();
+            else if (b == '\r') {
+                appendNewLine();
+                if (peek() == '\n')
+                    read();
+            }
+            else
+                append(b);
+        }
+    }
+
+    /**
+     * Decodes an entity; the '&amp;' has been read already. An unknown (or invalid) entity is kept as-is.
+     */
+    private void readEntity() throws IOException {
+        int start = _valueLength;
+        append('&');
+        int b = read();
+        while (b != ';' && b != -1 && b != '<' && _valueLength - start < _MAX_ENTITY_LENGTH) {
+            append(b);
+            b = read();
+        }
+        if (b != ';') {
+            if (b != -1)
+                unread();
+            return;
+        }
+
+        int decoded = decodeEntity(start + 1, _valueLength);
+        if (decoded == -1) {
+            append(';');
+            return;
+        }
+
+        // replace the entity by its (ASCII) character
+        _valueLength = start;
+        append(decoded);
+    }
+
+    /**
+     * Returns the character corresponding to the entity name in the value buffer (between the two provided indexes), -1 if it's not one of the
+     * predefined entities (the numeric character references are not decoded, like in SasXmlReader).
+     */
+    private int decodeEntity(int start, int end) {
+        int length = end - start;
+        if (length < 2)
+            return -1;
+        byte first = _value[start];
+        if (length == 2 && _value[start + 1] == 't') {
+            if (first == 'l')
+                return '<';
+            if (first == 'g')
+                return '>';
+        }
+        if (length == 3 && first == 'a' && _value[start + 1] == 'm' && _value[start + 2] == 'p')
+            return '&';
+        if (length == 4 && first == 'q' && _value[start + 1] == 'u' && _value[start + 2] == 'o' && _value[start + 3] == 't')
+            return '"';
+        if (length == 4 && first == 'a' && _value[start + 1] == 'p' && _value[start + 2] == 'o' && _value[start + 3] == 's')
+            return '\'';
+        return -1;
+    }
+
+    /**
+     * Skips a declaration, a comment or a CDATA section outside of an item; the "&lt;!" has been read already.
+     */
+    private void skipDeclaration() throws IOException {
+        if (peek() == '-') {
+            skipComment();
+            return;
+        }
+        if (peek() == '[') {
+            // CDATA section, ends with "]]>"
+            int numBrackets = 0;
+            int b = read();
+            while (b != -1 && !(b == '>' && numBrackets >= 2)) {
+                numBrackets = b == ']' ? numBrackets + 1 : 0;
+                b = read();
+            }
+            return;
+        }
+        skipTag();
+    }
+
+    /**
+     * Skips a comment, ending with "--&gt;"; the "&lt;!" has been read already.
+     */
+    private void skipComment() throws IOException {
+        // the two dashes starting the comment
+        read();
+        if (peek() == '-')
+            read();
+        int numDashes = 0;
+        int b = read();
+        while (b != -1 && !(b == '>' && numDashes >= 2)) {
+            numDashes = b == '-' ? numDashes + 1 : 0;
+            b = read();
+        }
+    }
+
+    /**
+     * Reads a tag or attribute name into the name buffer.
+     */
+    private void readName() throws IOException {
+        _nameLength = 0;
+        int b = read();
+        while (b != -1 && b != '>' && b != '/' && b != '=' && !isWhitespace(b)) {
+            if (_nameLength == _name.length)
+                _name = grow(_name);
+            _name[_nameLength++] = (byte)b;
+            b = read();
+        }
+        if (b != -1)
+            unread();
+    }
+
+    private boolean isName(byte[] name) {
+        if (_nameLength != name.length)
+            return false;
+        for (int i = 0; i < _nameLength; i++)
+            if (_name[i] != name[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Skips the rest of the current tag, up to its closing '>' (the attribute values can contain a '>').
+     */
+    private void skipTag() throws IOException {
+        int quote = -1;
+        int b = read();
+        while (b != -1) {
+            if (quote != -1) {
+                if (b == quote)
+                    quote = -1;
+            }
+            else if (b == '"' || b == '\'')
+                quote = b;
+            else if (b == '>')
+                return;
+            b = read();
+        }
+    }
+
+    private void skipPast(int b1, int b2) throws IOException {
+        int previous = -1;
+        int b = read();
+        while (b != -1 && !(previous == b1 && b == b2)) {
+            previous = b;
+            b = read();
+        }
+    }
+
+    /**
+     * Skips the bytes up to (and including) the requested byte; returns false if the end of the data was reached.
+     */
+    private boolean skipTo(int target) throws IOException {
+        while (true) {
+            for (int i = _pos; i < _limit; i++) {
+                if (_buffer[i] == target) {
+                    _pos = i + 1;
+                    return true;
+                }
+            }
+            _pos = _limit;
+            if (!fill())
+                return false;
+        }
+    }
+
+    private int skipWhitespaces() throws IOException {
+        int b = read();
+        while (isWhitespace(b))
+            b = read();
+        return b;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private void appendNewLine() {
+        append(':');
+        append(':');
+    }
+
+    private void append(int b) {
+        if (_valueLength == _value.length)
+            _value = grow(_value);
+        _value[_valueLength++] = (byte)b;
+    }
+
+    private static byte[] grow(byte[] buffer) {
+        byte[] result = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, result, 0, buffer.length);
+        return result;
+    }
+
+    private int read() throws IOException {
+        if (_pos == _limit && !fill())
+            return -1;
+        return _buffer[_pos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (_pos == _limit && !fill())
+            return -1;
+        return _buffer[_pos] & 0xFF;
+    }
+
+    // only valid right after a successful read (the buffer is never refilled between the two calls)
+    private void unread() {
+        _pos--;
+    }
+
+    private boolean fill() throws IOException {
+        int n = _is.read(_buffer, 0, _buffer.length);
+        while (n == 0)
+            n = _is.read(_buffer, 0, _buffer.length);
+        if (n == -1) {
+            _pos = _limit = 0;
+            return false;
+        }
+        _pos = 0;
+        _limit = n;
+        return true;
+    }
+}
@@ -6,17 +6,21 @@ package com.imsweb.naaccrxml.sas;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 /**
  * This class is a simplified NAACCR XML reader.
  * <br/><br/>
  * It doesn't use an XML parser; it expects the XML to be well formatted (one item per line) and uses regular expressions to find the values.
  * <br/><br/>
+ * If the fields are provided to the constructor, only their values are kept, and the ordinal of a field (see getValue(int)) is its index in that list.
+ * <br/><br/>
+ * See SasXmlByteReader for a faster reader working directly on the bytes of the data.
+ * <br/><br/>
  * THIS CLASS IS IMPLEMENTED TO BE COMPATIBLE WITH JAVA 7; BE CAREFUL WHEN MODIFYING IT.
  */
-public class SasXmlReader {
+public class SasXmlReader implements SasRecordReader {
 
     private static final Map<String, String> _TO_ESCAPE = new HashMap<>();
 
@@ -32,14 +36,19 @@ public class SasXmlReader {
 
     private boolean _inPatient, _inTumor, _inCdata;
 
-    private final Map<String, String> _naaccrDataValues = new HashMap<>(), _patientValues = new HashMap<>(), _tumorValues = new HashMap<>();
+    private final SasRecordValues _values;
 
     public SasXmlReader(BufferedReader reader) {
+        this(reader, null);
+    }
+
+    public SasXmlReader(BufferedReader reader, List<SasFieldInfo> fields) {
         _reader = reader;
+        _values = new SasRecordValues(fields);
     }
 
     public int nextRecord() throws IOException {
-        _tumorValues.clear();
+        _values.clearTumorValues();
 
         String currentKey = null;
         StringBuilder currentVal = null;
@@ -89,13 +98,11 @@ public class SasXmlReader {
                 }
 
                 if (currentVal == null) {
-                    String val = _inCdata ? line.substring(valueStart + 1, valueEnd) : cleanUpValue(new StringBuilder(line.substring(valueStart + 1, valueEnd)));
-                    if (_inPatient)
-                        _patientValues.put(key, val);
-                    else if (_inTumor)
-                        _tumorValues.put(key, val);
-                    else
-                        _naaccrDataValues.put(key, val);
+                    int ordinal = _values.getOrdinal(key);
+                    if (ordinal != -1) {
+                        String val = _inCdata ? line.substring(valueStart + 1, valueEnd) : cleanUpValue(new StringBuilder(line.substring(valueStart + 1, valueEnd)));
+                        _values.setValue(ordinal, val, _inPatient, _inTumor);
+                    }
                     _inCdata = false;
                 }
             }
@@ -118,13 +125,11 @@ public class SasXmlReader {
                         if (currentVal != null)
                             throw new IOException("Unable to find end of value for " + currentKey);
                         _inPatient = false;
-                        _patientValues.clear();
+                        _values.clearPatientValues();
                     }
                     else if (line.indexOf("Tumor>", endIdx) > -1) {
                         if (currentVal != null)
                             throw new IOException("Unable to find end of value for " + currentKey);
-                        _tumorValues.putAll(_naaccrDataValues);
-                        _tumorValues.putAll(_patientValues);
                         break;
                     }
                     else if (line.indexOf("Item>", endIdx) > -1) {
@@ -133,13 +138,9 @@ public class SasXmlReader {
                             if (endIdx > 3 && line.charAt(endIdx - 1) == '>' && line.charAt(endIdx - 2) == ']' && line.charAt(endIdx - 3) == ']')
                                 endIdx = endIdx - 3;
                             currentVal.append("::").append(line, 0, endIdx);
-                            String val = _inCdata ? currentVal.toString() : cleanUpValue(currentVal);
-                            if (_inPatient)
-                                _patientValues.put(currentKey, val);
-                            else if (_inTumor)
-                                _tumorValues.put(currentKey, val);
-                            else
-                                _naaccrDataValues.put(currentKey, val);
+                            int ordinal = _values.getOrdinal(currentKey);
+                            if (ordinal != -1)
+                                _values.setValue(ordinal, _inCdata ? currentVal.toString() : cleanUpValue(currentVal), _inPatient, _inTumor);
                             _inCdata = false;
                             currentKey = null;
                             currentVal = null;
@@ -162,7 +163,15 @@ public class SasXmlReader {
     }
 
     public String getValue(String naaccrId) {
-        return Objects.toString(_tumorValues.get(naaccrId), "");
+        return _values.getValue(naaccrId);
+    }
+
+    /**
+     * Returns the value of the field with the requested ordinal for the current record, an empty string if the record doesn't have a value for it.
+     * @param ordinal the ordinal of the field (its index in the fields provided to the constructor)
+     */
+    public String getValue(int ordinal) {
+        return _values.getValue(ordinal);
     }
 
     public void close() {
@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -29,12 +30,18 @@ import java.util.zip.ZipInputStream;
 @SuppressWarnings("ALL")
 public class SasXmlToCsv {
 
+    private static final Pattern _QUOTE_PATTERN = Pattern.compile("\"", Pattern.LITERAL);
+
     private File _xmlFile, _csvFile;
 
     private List<File> _dictionaryFiles;
 
     private String _naaccrVersion, _recordType;
 
+    private boolean _useReadAheadThread, _useByteReader;
+
+    private int _numThreads = 1, _parallelChunkSize = SasParallelXmlToCsv.DEFAULT_CHUNK_SIZE;
+
     public SasXmlToCsv(String xmlPath, String naaccrVersion, String recordType) {
         this(xmlPath, null, naaccrVersion, recordType);
     }
@@ -97,6 +104,53 @@ public class SasXmlToCsv {
         }
     }
 
+    /**
+     * If set to true, the XML data will be decompressed and decoded on a separate thread (this is useful for big compressed files). Defaults to false.
+     */
+    public void setUseReadAheadThread(boolean useReadAheadThread) {
+        _useReadAheadThread = useReadAheadThread;
+        if (useReadAheadThread)
+            SasUtils.logInfo("Using read-ahead thread");
+    }
+
+    public boolean getUseReadAheadThread() {
+        return _useReadAheadThread;
+    }
+
+    /**
+     * If set to true, the XML data will be read with the (much faster) SasXmlByteReader instead of SasXmlReader; see that class for the few cases where the
+     * two readers return different values. This is ignored when the read-ahead thread is used. Defaults to false.
+     */
+    public void setUseByteReader(boolean useByteReader) {
+        _useByteReader = useByteReader;
+        if (useByteReader)
+            SasUtils.logInfo("Using byte reader");
+    }
+
+    public boolean getUseByteReader() {
+        return _useByteReader;
+    }
+
+    /**
+     * If set to more than 1, the conversion will use that many threads: the entries of a ZIP file will be read concurrently, and a single file will be split
+     * into chunks of patients that are converted concurrently; the rows are still written in the order of the input. The read-ahead thread is not used in
+     * that mode. Defaults to 1.
+     */
+    public void setNumThreads(int numThreads) {
+        _numThreads = Math.max(1, numThreads);
+        if (_numThreads > 1)
+            SasUtils.logInfo("Using " + _numThreads + " threads");
+    }
+
+    public int getNumThreads() {
+        return _numThreads;
+    }
+
+    // for testing only (the test files are too small to be split into several chunks with the default size)
+    void setParallelChunkSize(int parallelChunkSize) {
+        _parallelChunkSize = parallelChunkSize;
+    }
+
     public String getXmlPath() {
         return _xmlFile.getAbsolutePath();
     }
@@ -143,9 +197,12 @@ public class SasXmlToCsv {
         try {
             Set<String> requestedFields = SasUtils.extractRequestedFields(fields, availableFields);
 
+            // the reader looks up the values by ordinal, the ordinal of a field being its index in this list
+            List<SasFieldInfo> fieldsToWrite = new ArrayList<>();
             Map<String, Integer> allFields = new LinkedHashMap<>();
             for (SasFieldInfo field : availableFields) {
-                if (requestedFields == null || requestedFields.contains(field.getNaaccrId())) {
+                if ((requestedFields == null || requestedFields.contains(field.getNaaccrId())) && !allFields.containsKey(field.getTruncatedNaaccrId())) {
+                    fieldsToWrite.add(field);
                     allFields.put(field.getTruncatedNaaccrId(), field.getLength());
                     if (!field.getNaaccrId().equals(field.getTruncatedNaaccrId()))
                         SasUtils.logInfo("Truncated '" + field.getNaaccrId() + "' into '" + field.getTruncatedNaaccrId() + "'...");
@@ -180,7 +237,14 @@ public class SasXmlToCsv {
                     buf.setLength(0);
                 }
 
-                if (_xmlFile.getName().toLowerCase().endsWith(".zip")) {
+                if (_numThreads > 1) {
+                    SasParallelXmlToCsv converter = new SasParallelXmlToCsv(fieldsToWrite, _numThreads, _parallelChunkSize, _useByteReader);
+                    if (_xmlFile.getName().toLowerCase().endsWith(".zip"))
+                        converter.convertZipFile(_xmlFile, writer);
+                    else
+                        converter.convertFile(_xmlFile, writer);
+                }
+                else if (_xmlFile.getName().toLowerCase().endsWith(".zip")) {
                     ZipFile zipFile = null;
                     ZipInputStream zipIs = null;
                     try {
@@ -188,8 +252,7 @@ public class SasXmlToCsv {
                         zipIs = new ZipInputStream(new FileInputStream(_xmlFile));
                         ZipEntry entry = zipIs.getNextEntry();
                         while (entry != null) {
-                            SasXmlReader reader = new SasXmlReader(SasUtils.createReader(zipFile.getInputStream(entry), entry.getName()));
-                            convertSingleFile(reader, writer, addExtraCharFields, allFields);
+                            convertSingleFile(createReader(zipFile.getInputStream(entry), entry.getName(), fieldsToWrite), writer, fieldsToWrite.size());
                             entry = zipIs.getNextEntry();
                         }
                     }
@@ -201,10 +264,10 @@ public class SasXmlToCsv {
                     }
                 }
                 else {
-                    SasXmlReader reader = null;
+                    SasRecordReader reader = null;
                     try {
-                        reader = new SasXmlReader(SasUtils.createReader(_xmlFile));
-                        convertSingleFile(reader, writer, addExtraCharFields, allFields);
+                        reader = createReader(new FileInputStream(_xmlFile), _xmlFile.getName(), fieldsToWrite);
+                        convertSingleFile(reader, writer, fieldsToWrite.size());
                     }
                     finally {
                         if (reader != null)
@@ -229,23 +292,36 @@ public class SasXmlToCsv {
         SasUtils.logInfo("Successfully created " + _csvFile.getAbsolutePath());
     }
 
-    private void convertSingleFile(SasXmlReader reader, BufferedWriter writer, boolean addExtraCharFields, Map<String, Integer> allFields) throws IOException {
-        Pattern quotePattern = Pattern.compile("\"", Pattern.LITERAL);
+    // the read-ahead thread works on characters, so the byte reader can't be used with it
+    private SasRecordReader createReader(InputStream is, String name, List<SasFieldInfo> fields) throws IOException {
+        if (_useByteReader && !_useReadAheadThread)
+            return new SasXmlByteReader(SasUtils.createInputStream(is, name), fields);
+        return new SasXmlReader(SasUtils.createReader(is, name, _useReadAheadThread), fields);
+    }
+
+    private void convertSingleFile(SasRecordReader reader, BufferedWriter writer, int numFields) throws IOException {
         StringBuilder buf = new StringBuilder();
         while (reader.nextRecord() > 0) {
-            for (String field : allFields.keySet()) {
-                String val = reader.getValue(field);
-                if (val != null && val.contains(","))
-                    val = "\"" + quotePattern.matcher(val).replaceAll("\"\"") + "\"";
-                buf.append(val == null ? "" : val).append(",");
-            }
-            buf.setLength(buf.length() - 1);
+            appendRecord(reader, buf, numFields);
             writer.write(buf.toString());
-            writer.write("\n");
             buf.setLength(0);
         }
     }
 
+    /**
+     * Appends the CSV row (including its new line) of the current record of the reader to the provided buffer.
+     */
+    static void appendRecord(SasRecordReader reader, StringBuilder buf, int numFields) {
+        for (int i = 0; i < numFields; i++) {
+            String val = reader.getValue(i);
+            if (val != null && val.contains(","))
+                val = "\"" + _QUOTE_PATTERN.matcher(val).replaceAll("\"\"") + "\"";
+            buf.append(val == null ? "" : val).append(",");
+        }
+        buf.setLength(buf.length() - 1);
+        buf.append("\n");
+    }
+
     public void cleanup() {
         if (!_csvFile.delete())
             SasUtils.logError("Unable to cleanup tmp CSV file, it will have to be manually deleted...");
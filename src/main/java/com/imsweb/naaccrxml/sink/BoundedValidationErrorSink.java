@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.imsweb.naaccrxml.NaaccrValidationError;
+import com.imsweb.naaccrxml.NaaccrValidationErrorSink;
+
+/**
+ * A thread-safe sink that collects the validation errors, up to a maximum number; the errors reported after that are only counted.
+ */
+public class BoundedValidationErrorSink implements NaaccrValidationErrorSink {
+
+    protected final int _maxErrors;
+
+    protected final List<NaaccrValidationError> _errors;
+
+    protected long _numDroppedErrors;
+
+    /**
+     * Constructor.
+     * @param maxErrors maximum number of errors to keep
+     */
+    public BoundedValidationErrorSink(int maxErrors) {
+        if (maxErrors < 0)
+            throw new RuntimeException("Maximum number of errors can't be negative");
+        _maxErrors = maxErrors;
+        _errors = new ArrayList<>(Math.min(maxErrors, 1024));
+    }
+
+    @Override
+    public synchronized void errorReported(NaaccrValidationError error) {
+        if (_errors.size() < _maxErrors)
+            _errors.add(error);
+        else
+            _numDroppedErrors++;
+    }
+
+    /**
+     * Returns the collected errors (in the order they were reported).
+     * @return the collected errors, never null
+     */
+    public synchronized List<NaaccrValidationError> getErrors() {
+        return new ArrayList<>(_errors);
+    }
+
+    /**
+     * Returns the number of errors that were reported after the maximum was reached.
+     * @return number of dropped errors
+     */
+    public synchronized long getNumDroppedErrors() {
+        return _numDroppedErrors;
+    }
+
+    /**
+     * Returns true if some errors were dropped, false otherwise.
+     * @return true if some errors were dropped
+     */
+    public synchronized boolean isTruncated() {
+        return _numDroppedErrors > 0;
+    }
+
+    /**
+     * Removes all the collected errors.
+     */
+    public synchronized void reset() {
+        _errors.clear();
+        _numDroppedErrors = 0;
+    }
+}
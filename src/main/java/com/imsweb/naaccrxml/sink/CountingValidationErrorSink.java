@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sink;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.imsweb.naaccrxml.NaaccrValidationError;
+import com.imsweb.naaccrxml.NaaccrValidationErrorSink;
+
+/**
+ * A thread-safe sink that only counts the validation errors per error code; the errors themselves are not kept.
+ */
+public class CountingValidationErrorSink implements NaaccrValidationErrorSink {
+
+    // the counts, keyed by error code
+    protected final Map<String, LongAdder> _counts = new ConcurrentHashMap<>();
+
+    @Override
+    public void errorReported(NaaccrValidationError error) {
+        _counts.computeIfAbsent(error.getCode(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns the number of errors reported for the provided code.
+     * @param code error code
+     * @return number of errors for that code
+     */
+    public long getCount(String code) {
+        LongAdder count = _counts.get(code);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Returns the total number of errors reported.
+     * @return total number of errors
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (LongAdder count : _counts.values())
+            total += count.sum();
+        return total;
+    }
+
+    /**
+     * Returns a snapshot of the counts, keyed by error code (sorted by code).
+     * @return the counts, never null
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        _counts.forEach((code, count) -> result.put(code, count.sum()));
+        return result;
+    }
+
+    /**
+     * Resets all the counts.
+     */
+    public void reset() {
+        _counts.clear();
+    }
+}
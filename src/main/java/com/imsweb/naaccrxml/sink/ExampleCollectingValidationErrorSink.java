@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.imsweb.naaccrxml.NaaccrValidationError;
+
+/**
+ * A thread-safe sink that counts the validation errors per error code, and keeps the first few errors of each code as examples.
+ */
+public class ExampleCollectingValidationErrorSink extends CountingValidationErrorSink {
+
+    // default number of examples kept for each code
+    public static final int DEFAULT_NUM_EXAMPLES = 10;
+
+    protected final int _numExamples;
+
+    // the examples, keyed by error code
+    protected final Map<String, List<NaaccrValidationError>> _examples = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     */
+    public ExampleCollectingValidationErrorSink() {
+        this(DEFAULT_NUM_EXAMPLES);
+    }
+
+    /**
+     * Constructor.
+     * @param numExamples maximum number of examples to keep per error code
+     */
+    public ExampleCollectingValidationErrorSink(int numExamples) {
+        if (numExamples < 0)
+            throw new RuntimeException("Number of examples can't be negative");
+        _numExamples = numExamples;
+    }
+
+    @Override
+    public void errorReported(NaaccrValidationError error) {
+        super.errorReported(error);
+
+        List<NaaccrValidationError> examples = _examples.computeIfAbsent(error.getCode(), k -> new ArrayList<>());
+        synchronized (examples) {
+            if (examples.size() < _numExamples)
+                examples.add(error);
+        }
+    }
+
+    /**
+     * Returns the examples kept for the provided code.
+     * @param code error code
+     * @return the examples (in the order they were reported), never null
+     */
+    public List<NaaccrValidationError> getExamples(String code) {
+        List<NaaccrValidationError> examples = _examples.get(code);
+        if (examples == null)
+            return Collections.emptyList();
+        synchronized (examples) {
+            return new ArrayList<>(examples);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        _examples.clear();
+    }
+}
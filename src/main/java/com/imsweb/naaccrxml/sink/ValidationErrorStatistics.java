@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.imsweb.naaccrxml.NaaccrValidationError;
+import com.imsweb.naaccrxml.NaaccrValidationErrorSink;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * Thread-safe statistics about validation errors: number of errors per error code, and distinct NAACCR IDs involved in each error code.
+ * <br/><br/>
+ * When many threads report errors at a high rate, each thread should use its own accumulator (see createAccumulator()) and merge it into the shared
+ * statistics once its work is done (for example at the end of each file); that avoids any contention on the shared structures.
+ */
+public class ValidationErrorStatistics extends CountingValidationErrorSink {
+
+    // the distinct NAACCR IDs, keyed by error code
+    protected final Map<String, Set<String>> _naaccrIds = new ConcurrentHashMap<>();
+
+    @Override
+    public void errorReported(NaaccrValidationError error) {
+        super.errorReported(error);
+        if (error.getNaaccrId() != null)
+            getNaaccrIdsSet(error.getCode()).add(error.getNaaccrId());
+    }
+
+    /**
+     * Adds all the validation errors of the provided patient (including the ones of its tumors and items).
+     * @param patient patient, cannot be null
+     */
+    public void addErrors(Patient patient) {
+        for (NaaccrValidationError error : patient.getAllValidationErrors())
+            errorReported(error);
+    }
+
+    /**
+     * Returns the distinct NAACCR IDs involved in the provided code.
+     * @param code error code
+     * @return sorted list of NAACCR IDs, never null
+     */
+    public List<String> getNaaccrIds(String code) {
+        Set<String> ids = _naaccrIds.get(code);
+        if (ids == null)
+            return Collections.emptyList();
+        List<String> result = new ArrayList<>(ids);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns true if no error has been reported.
+     * @return true if no error has been reported
+     */
+    public boolean isEmpty() {
+        return _counts.isEmpty();
+    }
+
+    /**
+     * Creates a new accumulator for these statistics; an accumulator is not thread-safe and should be used by a single thread.
+     * @return a new accumulator, never null
+     */
+    public Accumulator createAccumulator() {
+        return new Accumulator(this);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        _naaccrIds.clear();
+    }
+
+    private Set<String> getNaaccrIdsSet(String code) {
+        return _naaccrIds.computeIfAbsent(code, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * A single-thread accumulator that collects errors locally and merges them into the shared statistics on demand.
+     */
+    public static final class Accumulator implements NaaccrValidationErrorSink {
+
+        private final ValidationErrorStatistics _parent;
+
+        private final Map<String, long[]> _counts = new HashMap<>();
+
+        private final Map<String, Set<String>> _naaccrIds = new HashMap<>();
+
+        private Accumulator(ValidationErrorStatistics parent) {
+            _parent = parent;
+        }
+
+        @Override
+        public void errorReported(NaaccrValidationError error) {
+            _counts.computeIfAbsent(error.getCode(), k -> new long[1])[0]++;
+            if (error.getNaaccrId() != null)
+                _naaccrIds.computeIfAbsent(error.getCode(), k -> new HashSet<>()).add(error.getNaaccrId());
+        }
+
+        /**
+         * Adds all the validation errors of the provided patient (including the ones of its tumors and items).
+         * @param patient patient, cannot be null
+         */
+        public void addErrors(Patient patient) {
+            for (NaaccrValidationError error : patient.getAllValidationErrors())
+                errorReported(error);
+        }
+
+        /**
+         * Returns the number of errors accumulated for the provided code (since the last merge).
+         * @param code error code
+         * @return number of errors for that code
+         */
+        public long getCount(String code) {
+            long[] count = _counts.get(code);
+            return count == null ? 0 : count[0];
+        }
+
+        /**
+         * Returns the total number of errors accumulated (since the last merge).
+         * @return total number of errors
+         */
+        public long getTotalCount() {
+            long total = 0;
+            for (long[] count : _counts.values())
+                total += count[0];
+            return total;
+        }
+
+        /**
+         * Returns the distinct NAACCR IDs involved in the provided code (since the last merge).
+         * @param code error code
+         * @return sorted list of NAACCR IDs, never null
+         */
+        public List<String> getNaaccrIds(String code) {
+            Set<String> ids = _naaccrIds.get(code);
+            if (ids == null)
+                return Collections.emptyList();
+            List<String> result = new ArrayList<>(ids);
+            Collections.sort(result);
+            return result;
+        }
+
+        /**
+         * Adds the errors accumulated by another accumulator (since its last merge) to this accumulator; the other accumulator is not modified.
+         * @param other other accumulator, cannot be null
+         */
+        public void add(Accumulator other) {
+            for (Map.Entry<String, long[]> entry : other._counts.entrySet())
+                _counts.computeIfAbsent(entry.getKey(), k -> new long[1])[0] += entry.getValue()[0];
+            for (Map.Entry<String, Set<String>> entry : other._naaccrIds.entrySet())
+                _naaccrIds.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+        }
+
+        /**
+         * Merges the accumulated errors into the shared statistics and resets this accumulator.
+         */
+        public void merge() {
+            for (Map.Entry<String, long[]> entry : _counts.entrySet())
+                _parent._counts.computeIfAbsent(entry.getKey(), k -> new LongAdder()).add(entry.getValue()[0]);
+            for (Map.Entry<String, Set<String>> entry : _naaccrIds.entrySet())
+                _parent.getNaaccrIdsSet(entry.getKey()).addAll(entry.getValue());
+            _counts.clear();
+            _naaccrIds.clear();
+        }
+    }
+}
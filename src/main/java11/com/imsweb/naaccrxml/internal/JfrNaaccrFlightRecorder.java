@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+
+/**
+ * The implementation of the library's events using the JDK Flight Recorder.
+ * <br/><br/>
+ * This class requires Java 11; it is packaged in the versioned section of the library's multi-release jar and loaded by NaaccrFlightRecorder. It is not
+ * public on purpose: the versioned entries of a multi-release jar cannot add any public API.
+ */
+class JfrNaaccrFlightRecorder extends NaaccrFlightRecorder {
+
+    static final String CATEGORY = "NAACCR XML";
+
+    // the event types, used to check whether an event is enabled without creating it
+    private static final EventType _STREAM_TYPE = EventType.getEventType(StreamEvent.class);
+    private static final EventType _PATIENT_READ_TYPE = EventType.getEventType(PatientReadEvent.class);
+    private static final EventType _PATIENT_WRITE_TYPE = EventType.getEventType(PatientWriteEvent.class);
+    private static final EventType _FILE_TYPE = EventType.getEventType(FileEvent.class);
+    private static final EventType _DICTIONARY_LOADING_TYPE = EventType.getEventType(DictionaryLoadingEvent.class);
+    private static final EventType _RUNTIME_DICTIONARY_TYPE = EventType.getEventType(RuntimeDictionaryEvent.class);
+
+    // one patient out of N is timed (on average)
+    private final int _patientSampling;
+
+    JfrNaaccrFlightRecorder() {
+        _patientSampling = Math.max(1, Integer.getInteger("naaccrxml.jfr.patientSampling", 1));
+    }
+
+    @Override
+    public StreamRecording beginStream(String streamType) {
+        if (!_STREAM_TYPE.isEnabled())
+            return null;
+        StreamEvent event = new StreamEvent();
+        event.streamType = streamType;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public PatientRecording beginPatientRead() {
+        if (!_PATIENT_READ_TYPE.isEnabled() || !isSampled())
+            return null;
+        PatientReadEvent event = new PatientReadEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public PatientRecording beginPatientWrite() {
+        if (!_PATIENT_WRITE_TYPE.isEnabled() || !isSampled())
+            return null;
+        PatientWriteEvent event = new PatientWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public FileRecording beginFileOperation(String operation) {
+        if (!_FILE_TYPE.isEnabled())
+            return null;
+        FileEvent event = new FileEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public DictionaryLoadingRecording beginDictionaryLoading(String source) {
+        if (!_DICTIONARY_LOADING_TYPE.isEnabled())
+            return null;
+        DictionaryLoadingEvent event = new DictionaryLoadingEvent();
+        event.source = source;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public RuntimeDictionaryRecording beginRuntimeDictionaryCreation() {
+        if (!_RUNTIME_DICTIONARY_TYPE.isEnabled())
+            return null;
+        RuntimeDictionaryEvent event = new RuntimeDictionaryEvent();
+        event.begin();
+        return event;
+    }
+
+    private boolean isSampled() {
+        return _patientSampling == 1 || ThreadLocalRandom.current().nextInt(_patientSampling) == 0;
+    }
+
+    // returns the format of the root data, null if it can't be determined
+    private static String getFormat(NaaccrData rootData) {
+        if (rootData == null || rootData.getBaseDictionaryUri() == null)
+            return null;
+        String version = NaaccrXmlDictionaryUtils.extractVersionFromUri(rootData.getBaseDictionaryUri());
+        if (!NaaccrFormat.isVersionSupported(version) || !NaaccrFormat.isRecordTypeSupported(rootData.getRecordType()))
+            return null;
+        return NaaccrFormat.getInstance(version, rootData.getRecordType()).toString();
+    }
+
+    // returns the number of items of the patient, including the items of its tumors
+    private static int countItems(Patient patient) {
+        int count = patient.getItems().size();
+        for (Tumor tumor : patient.getTumors())
+            count += tumor.getItems().size();
+        return count;
+    }
+
+    // the fields of the events don't follow the usual naming convention: their names are part of the recorded data
+
+    @Name("com.imsweb.naaccrxml.Stream")
+    @Label("NAACCR Stream")
+    @Category(CATEGORY)
+    @Description("A patient reader or writer, from its creation to its closing")
+    static final class StreamEvent extends Event implements StreamRecording {
+
+        @Label("Stream Type")
+        String streamType;
+
+        @Label("Format")
+        String format;
+
+        @Label("Base Dictionary")
+        String baseDictionaryUri;
+
+        @Label("User Dictionaries")
+        String userDictionaryUris;
+
+        @Label("Patients")
+        long patients;
+
+        @Override
+        public void end(NaaccrData rootData, long numPatients) {
+            end();
+            if (shouldCommit()) {
+                if (rootData != null) {
+                    baseDictionaryUri = rootData.getBaseDictionaryUri();
+                    userDictionaryUris = rootData.getUserDictionaryUri() == null ? null : String.join(" ", rootData.getUserDictionaryUri());
+                }
+                format = getFormat(rootData);
+                patients = numPatients;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.imsweb.naaccrxml.PatientRead")
+    @Label("NAACCR Patient Read")
+    @Category(CATEGORY)
+    @Description("The reading of a patient; only the patients taking longer than the threshold (and sampled) are recorded")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class PatientReadEvent extends Event implements PatientRecording {
+
+        @Label("Tumors")
+        int tumors;
+
+        @Label("Items")
+        int items;
+
+        @Override
+        public void end(Patient patient) {
+            end();
+            if (shouldCommit()) {
+                tumors = patient.getTumors().size();
+                items = countItems(patient);
+                commit();
+            }
+        }
+    }
+
+    @Name("com.imsweb.naaccrxml.PatientWrite")
+    @Label("NAACCR Patient Write")
+    @Category(CATEGORY)
+    @Description("The writing of a patient; only the patients taking longer than the threshold (and sampled) are recorded")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class PatientWriteEvent extends Event implements PatientRecording {
+
+        @Label("Tumors")
+        int tumors;
+
+        @Label("Items")
+        int items;
+
+        @Override
+        public void end(Patient patient) {
+            end();
+            if (shouldCommit()) {
+                tumors = patient.getTumors().size();
+                items = countItems(patient);
+                commit();
+            }
+        }
+    }
+
+    @Name("com.imsweb.naaccrxml.File")
+    @Label("NAACCR File Operation")
+    @Category(CATEGORY)
+    @Description("A file operation of NaaccrXmlUtils (reading, writing or translating a data file)")
+    static final class FileEvent extends Event implements FileRecording {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Source File")
+        String sourceFile;
+
+        @Label("Source File Size")
+        @DataAmount
+        long sourceFileSize;
+
+        @Label("Target File")
+        String targetFile;
+
+        @Label("Target File Size")
+        @DataAmount
+        long targetFileSize;
+
+        @Label("Format")
+        String format;
+
+        @Label("Patients")
+        long patients;
+
+        @Override
+        public void end(File source, File target, NaaccrData rootData, long numPatients) {
+            end();
+            if (shouldCommit()) {
+                if (source != null) {
+                    sourceFile = source.getPath();
+                    sourceFileSize = source.length();
+                }
+                if (target != null) {
+                    targetFile = target.getPath();
+                    targetFileSize = target.length();
+                }
+                format = getFormat(rootData);
+                patients = numPatients;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.imsweb.naaccrxml.DictionaryLoading")
+    @Label("NAACCR Dictionary Loading")
+    @Category(CATEGORY)
+    @Description("The loading of a dictionary, from its XML or pre-compiled binary format")
+    static final class DictionaryLoadingEvent extends Event implements DictionaryLoadingRecording {
+
+        @Label("Source")
+        String source;
+
+        @Label("Dictionary")
+        String dictionaryUri;
+
+        @Label("Items")
+        int items;
+
+        @Override
+        public void end(NaaccrDictionary dictionary) {
+            end();
+            if (shouldCommit()) {
+                if (dictionary != null) {
+                    dictionaryUri = dictionary.getDictionaryUri();
+                    items = dictionary.getItems() == null ? 0 : dictionary.getItems().size();
+                }
+                commit();
+            }
+        }
+    }
+
+    @Name("com.imsweb.naaccrxml.RuntimeDictionary")
+    @Label("NAACCR Runtime Dictionary Creation")
+    @Category(CATEGORY)
+    @Description("The creation of a runtime dictionary (the combination of a base dictionary and user-defined dictionaries for a record type)")
+    static final class RuntimeDictionaryEvent extends Event implements RuntimeDictionaryRecording {
+
+        @Label("Dictionary")
+        String dictionaryId;
+
+        @Label("Format")
+        String format;
+
+        @Label("Items")
+        int items;
+
+        @Label("Pre-compiled")
+        boolean precompiled;
+
+        @Override
+        public void end(RuntimeNaaccrDictionary dictionary, boolean isPrecompiled) {
+            end();
+            if (shouldCommit()) {
+                dictionaryId = dictionary.getId();
+                format = NaaccrFormat.getInstance(dictionary.getNaaccrVersion(), dictionary.getRecordType()).toString();
+                items = dictionary.getItems().size();
+                precompiled = isPrecompiled;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * A reactive publisher of the patients of a patient reader.
+ * <br/><br/>
+ * The patients are only read when they are requested by the subscriber: a request for N patients reads (at most) N patients. The reading is done on the
+ * provided executor, never on the thread calling request(), and the subscriber's methods are never called concurrently.
+ * <br/><br/>
+ * The reader is closed when all the patients have been published, when an error occurs, or when the subscription is cancelled. Since a reader can only be
+ * read once, a publisher accepts a single subscriber.
+ * <br/><br/>
+ * This class requires Java 9; it is released in a separate jar of the library (classifier "reactive").
+ */
+public class PatientPublisher implements Flow.Publisher<Patient> {
+
+    private final PatientReader _reader;
+
+    private final Executor _executor;
+
+    private final AtomicBoolean _subscribed;
+
+    /**
+     * Constructor; the patients are read on the common fork-join pool.
+     * @param reader patient reader, cannot be null
+     */
+    public PatientPublisher(PatientReader reader) {
+        this(reader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     * @param reader patient reader, cannot be null
+     * @param executor executor used to read the patients and signal the subscriber, cannot be null
+     */
+    public PatientPublisher(PatientReader reader, Executor executor) {
+        _reader = Objects.requireNonNull(reader);
+        _executor = Objects.requireNonNull(executor);
+        _subscribed = new AtomicBoolean();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Patient> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!_subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    // nothing to do
+                }
+
+                @Override
+                public void cancel() {
+                    // nothing to do
+                }
+            });
+            subscriber.onError(new IllegalStateException("This publisher already has a subscriber"));
+            return;
+        }
+
+        PatientSubscription subscription = new PatientSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class PatientSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Patient> _subscriber;
+
+        // the number of requested patients that haven't been published yet (Long.MAX_VALUE means unbounded)
+        private final AtomicLong _demand;
+
+        // the number of signals (request, cancel) that haven't been handled by the draining loop yet; the loop only runs when it goes from 0 to 1
+        private final AtomicInteger _pendingSignals;
+
+        private volatile boolean _cancelled;
+
+        private volatile Throwable _error;
+
+        private boolean _terminated;
+
+        private PatientSubscription(Flow.Subscriber<? super Patient> subscriber) {
+            _subscriber = subscriber;
+            _demand = new AtomicLong();
+            _pendingSignals = new AtomicInteger();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                _error = new IllegalArgumentException("Number of requested patients must be positive, got " + n);
+            else {
+                long current;
+                do {
+                    current = _demand.get();
+                    if (current == Long.MAX_VALUE)
+                        break;
+                }
+                while (!_demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            signal();
+        }
+
+        private void signal() {
+            if (_pendingSignals.getAndIncrement() == 0) {
+                try {
+                    _executor.execute(this::drain);
+                }
+                catch (RejectedExecutionException e) {
+                    terminate(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (_terminated)
+                    return;
+                if (_cancelled) {
+                    terminate(null);
+                    return;
+                }
+                if (_error != null) {
+                    terminate(_error);
+                    return;
+                }
+
+                long requested = _demand.get();
+                long published = 0;
+                while (published != requested && !_cancelled) {
+                    Patient patient;
+                    try {
+                        patient = _reader.readPatient();
+                    }
+                    catch (NaaccrIOException | RuntimeException e) {
+                        terminate(e);
+                        return;
+                    }
+                    if (patient == null) {
+                        closeReader();
+                        _terminated = true;
+                        _subscriber.onComplete();
+                        return;
+                    }
+                    try {
+                        _subscriber.onNext(patient);
+                    }
+                    catch (RuntimeException e) {
+                        terminate(e);
+                        return;
+                    }
+                    published++;
+                }
+                if (published > 0 && requested != Long.MAX_VALUE)
+                    _demand.addAndGet(-published);
+
+                missed = _pendingSignals.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+
+        // closes the reader and signals the error to the subscriber (if there is an error); the subscriber won't receive any other signal
+        private void terminate(Throwable error) {
+            _terminated = true;
+            closeReader();
+            if (error != null)
+                _subscriber.onError(error);
+        }
+
+        private void closeReader() {
+            try {
+                _reader.close();
+            }
+            catch (IOException | RuntimeException e) {
+                // give up
+            }
+        }
+    }
+}
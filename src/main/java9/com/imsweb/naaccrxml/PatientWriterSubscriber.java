@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * A reactive subscriber writing the received patients to a patient writer.
+ * <br/><br/>
+ * The patients are requested in batches (a new batch is requested once the previous one has been written), so the publisher can never get ahead of the
+ * writer by more than one batch. The writer is closed when the publisher completes or fails, or when a patient cannot be written (in which case the
+ * subscription is cancelled).
+ * <br/><br/>
+ * Use getResult() to wait for the end of the writing; the returned future completes with the number of written patients.
+ * <br/><br/>
+ * This class requires Java 9; it is released in a separate jar of the library (classifier "reactive").
+ */
+public class PatientWriterSubscriber implements Flow.Subscriber<Patient> {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final PatientWriter _writer;
+
+    private final int _batchSize;
+
+    private final CompletableFuture<Long> _result;
+
+    private Flow.Subscription _subscription;
+
+    private long _numWritten;
+
+    private int _remainingInBatch;
+
+    /**
+     * Constructor.
+     * @param writer patient writer, cannot be null
+     */
+    public PatientWriterSubscriber(PatientWriter writer) {
+        this(writer, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param writer patient writer, cannot be null
+     * @param batchSize number of patients requested at once, must be positive
+     */
+    public PatientWriterSubscriber(PatientWriter writer, int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        _writer = Objects.requireNonNull(writer);
+        _batchSize = batchSize;
+        _result = new CompletableFuture<>();
+    }
+
+    /**
+     * Returns the result of the writing.
+     * @return a future completing with the number of written patients, or completing exceptionally if the patients couldn't be read or written
+     */
+    public CompletableFuture<Long> getResult() {
+        return _result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (_subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        _subscription = subscription;
+        _remainingInBatch = _batchSize;
+        subscription.request(_batchSize);
+    }
+
+    @Override
+    public void onNext(Patient patient) {
+        if (_result.isDone())
+            return;
+        try {
+            _writer.writePatient(patient);
+        }
+        catch (NaaccrIOException | RuntimeException e) {
+            _subscription.cancel();
+            finish(e);
+            return;
+        }
+        _numWritten++;
+        if (--_remainingInBatch == 0) {
+            _remainingInBatch = _batchSize;
+            _subscription.request(_batchSize);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        finish(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        finish(null);
+    }
+
+    private void finish(Throwable error) {
+        if (_result.isDone())
+            return;
+
+        Throwable closingError = null;
+        try {
+            _writer.close();
+        }
+        catch (IOException | RuntimeException e) {
+            closingError = e;
+        }
+
+        if (error != null)
+            _result.completeExceptionally(error);
+        else if (closingError != null)
+            _result.completeExceptionally(closingError);
+        else
+            _result.complete(_numWritten);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchProcessorTest {
+
+    @Test
+    public void testFlatToXmlInChunks() throws IOException, InterruptedException {
+        File dir = new File(TestingUtils.getBuildDirectory(), "batch-chunks");
+        FileUtils.deleteDirectory(dir);
+        File inputDir = new File(dir, "input");
+        Assert.assertTrue(inputDir.mkdirs());
+        FileUtils.copyFileToDirectory(TestingUtils.getDataFile("fake-naaccr14inc-10000-rec.txt.gz"), inputDir);
+
+        // a file without any root value (the root tag doesn't have any child before the first patient)
+        StringBuilder buf = new StringBuilder();
+        for (int i = 1; i <= 5; i++)
+            buf.append(TestingUtils.createEmptyRecord("140", "I", String.format("%08d", i))).append("\n");
+        TestingUtils.writeFile(new File(inputDir, "no-root-values.txt"), buf.toString());
+
+        Map<String, String> options = new HashMap<>();
+        options.put("processing.mode", "flat-to-xml");
+        options.put("processing.compression", "none");
+        options.put("processing.num-threads", "4");
+
+        options.put("processing.chunk-size", "0");
+        File notChunkedDir = runBatch(inputDir, new File(dir, "output-not-chunked"), options);
+        options.put("processing.chunk-size", "3");
+        File chunkedDir = runBatch(inputDir, new File(dir, "output-chunked"), options);
+
+        // the created files are the same, apart from the generation time
+        for (String name : new String[] {"fake-naaccr14inc-10000-rec.xml", "no-root-values.xml"}) {
+            String expected = readCreatedXml(new File(notChunkedDir, name));
+            Assert.assertEquals(name, expected, readCreatedXml(new File(chunkedDir, name)));
+            Assert.assertNotNull(NaaccrXmlUtils.readXmlFile(new File(chunkedDir, name), null, null, null));
+        }
+
+        // so are the reports, apart from the times and the number of chunks (and the created sizes, the generation time doesn't always have the same length)
+        Assert.assertEquals(readReport(notChunkedDir), readReport(chunkedDir));
+        Assert.assertTrue(readReport(chunkedDir).contains("   number of processed patients: 10,000"));
+    }
+
+    @Test(timeout = 120000)
+    public void testChunksOfSeveralFiles() throws IOException, InterruptedException {
+        File dir = new File(TestingUtils.getBuildDirectory(), "batch-chunks-files");
+        FileUtils.deleteDirectory(dir);
+        File inputDir = new File(dir, "input");
+        Assert.assertTrue(inputDir.mkdirs());
+        for (int file = 1; file <= 6; file++) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 1; i <= 20 * file; i++)
+                buf.append(TestingUtils.createEmptyRecord("140", "I", String.format("%08d", i))).append("\n");
+            TestingUtils.writeFile(new File(inputDir, "file-" + file + ".txt"), buf.toString());
+        }
+
+        Map<String, String> options = new HashMap<>();
+        options.put("processing.mode", "flat-to-xml");
+        options.put("processing.compression", "none");
+        options.put("processing.chunk-size", "0");
+        List<String> expected = readReport(runBatch(inputDir, new File(dir, "output-not-chunked"), options));
+        Assert.assertTrue(expected.contains("total number of processed patients: 420"));
+
+        // the chunks in memory are limited for the entire batch; the files processed at the same time share that limit without blocking each other
+        options.put("processing.chunk-size", "1");
+        for (String numThreads : new String[] {"1", "2", "3"}) {
+            options.put("processing.num-threads", numThreads);
+            File outputDir = runBatch(inputDir, new File(dir, "output-chunked-" + numThreads), options);
+            Assert.assertEquals(numThreads, expected, readReport(outputDir));
+            for (int file = 1; file <= 6; file++)
+                Assert.assertEquals(20 * file, NaaccrXmlUtils.readXmlFile(new File(outputDir, "file-" + file + ".xml"), null, null, null).getPatients().size());
+        }
+    }
+
+    @Test
+    public void testModes() throws IOException, InterruptedException {
+        File dir = new File(TestingUtils.getBuildDirectory(), "batch-modes");
+        FileUtils.deleteDirectory(dir);
+        File inputDir = new File(TestingUtils.getWorkingDirectory(), "src/test/resources/data");
+        File referenceDir = new File(dir, "reference");
+        Assert.assertTrue(referenceDir.mkdirs());
+
+        String flatFiles = "fake-naaccr14inc-[12]-rec\\.txt";
+        String xmlFiles = "standard-file\\.xml|xml-reader-bad-time-generated\\.xml|xml-reader-two-patients\\.xml";
+
+        Map<String, String> options = new HashMap<>();
+        options.put("processing.num-threads", "2");
+        options.put("processing.compression", "none");
+
+        options.put("processing.mode", "validate");
+        options.put("input.regex-include", flatFiles + "|" + xmlFiles);
+        List<String> validateReport = readReport(runBatch(inputDir, new File(dir, "output-validate"), options));
+        Assert.assertTrue(validateReport.contains("total number of files: 5"));
+        Assert.assertTrue(validateReport.contains("total number of processed patients: 5"));
+
+        // flat to XML: the created files are the ones the utility method creates, and the errors are the same as in validate mode
+        options.put("processing.mode", "flat-to-xml");
+        options.put("input.regex-include", flatFiles);
+        File outputDir = runBatch(inputDir, new File(dir, "output-flat-to-xml"), options);
+        List<String> report = readReport(outputDir);
+        Assert.assertTrue(report.contains("total number of files: 2"));
+        for (String name : new String[] {"fake-naaccr14inc-1-rec", "fake-naaccr14inc-2-rec"}) {
+            File reference = new File(referenceDir, name + ".xml");
+            NaaccrXmlUtils.flatToXml(new File(inputDir, name + ".txt"), reference, null, null, null);
+            Assert.assertEquals(readCreatedXml(reference), readCreatedXml(new File(outputDir, name + ".xml")));
+            Assert.assertEquals(getFileWarnings(validateReport, name + ".txt"), getFileWarnings(report, name + ".txt"));
+        }
+
+        // XML to flat
+        options.put("processing.mode", "xml-to-flat");
+        options.put("input.regex-include", xmlFiles);
+        outputDir = runBatch(inputDir, new File(dir, "output-xml-to-flat"), options);
+        report = readReport(outputDir);
+        Assert.assertTrue(report.contains("total number of files: 3"));
+        Assert.assertTrue(report.contains("total number of processed patients: 2"));
+        File reference = new File(referenceDir, "standard-file.txt");
+        NaaccrXmlUtils.xmlToFlat(new File(inputDir, "standard-file.xml"), reference, null, null, null);
+        Assert.assertEquals(TestingUtils.readFileAsOneString(reference), TestingUtils.readFileAsOneString(new File(outputDir, "standard-file.txt")));
+        Assert.assertEquals(getFileWarnings(validateReport, "standard-file.xml"), getFileWarnings(report, "standard-file.xml"));
+        Assert.assertTrue(report.contains("   processing error: version 210 does not support start columns and cannot be used with this flat writer"));
+        Assert.assertFalse(new File(outputDir, "xml-reader-bad-time-generated.txt").exists());
+
+        // XML to XML
+        options.put("processing.mode", "xml-to-xml");
+        outputDir = runBatch(inputDir, new File(dir, "output-xml-to-xml"), options);
+        report = readReport(outputDir);
+        Assert.assertTrue(report.contains("total number of files: 3"));
+        Assert.assertTrue(report.contains("total number of processed patients: 3"));
+        for (String name : new String[] {"standard-file", "xml-reader-bad-time-generated"}) {
+            reference = new File(referenceDir, name + ".xml");
+            NaaccrXmlUtils.writeXmlFile(NaaccrXmlUtils.readXmlFile(new File(inputDir, name + ".xml"), null, null, null), reference, null, null, null);
+            Assert.assertEquals(readCreatedXml(reference), readCreatedXml(new File(outputDir, name + ".xml")));
+            Assert.assertEquals(getFileWarnings(validateReport, name + ".xml"), getFileWarnings(report, name + ".xml"));
+        }
+
+        // the file without the namespace can't be read, in any mode
+        String error = "   processing error: namespace http://naaccr.org/naaccrxml must be defined in the root attributes";
+        Assert.assertTrue(validateReport.contains(error));
+        Assert.assertTrue(report.contains(error));
+        Assert.assertFalse(new File(outputDir, "xml-reader-two-patients.xml").exists());
+
+        // the error of the root data is counted in every mode
+        List<String> expected = Arrays.asList("   warnings:", "      " + NaaccrErrorUtils.CODE_BAD_TIME_GENERATED + ": 1 cases");
+        Assert.assertEquals(expected, getFileWarnings(validateReport, "xml-reader-bad-time-generated.xml"));
+        Assert.assertEquals(expected, getFileWarnings(report, "xml-reader-bad-time-generated.xml"));
+        Assert.assertTrue(report.contains("      " + NaaccrErrorUtils.CODE_BAD_TIME_GENERATED + ": 1 cases"));
+    }
+
+    @Test
+    public void testInputFolderIsOutputFolder() throws IOException, InterruptedException {
+        File dir = new File(TestingUtils.getBuildDirectory(), "batch-same-folder");
+        FileUtils.deleteDirectory(dir);
+        Assert.assertTrue(dir.mkdirs());
+        StringBuilder buf = new StringBuilder();
+        for (int i = 1; i <= 2; i++)
+            buf.append(TestingUtils.createEmptyRecord("140", "I", String.format("%08d", i))).append("\n");
+        TestingUtils.writeFile(new File(dir, "input.txt"), buf.toString());
+
+        // the temporary files left by a crashed run are not inputs
+        TestingUtils.writeFile(new File(dir, ".tmp-other.xml"), buf.toString());
+        TestingUtils.writeFile(new File(dir, "batch-manifest.txt.tmp"), buf.toString());
+
+        Map<String, String> options = new HashMap<>();
+        options.put("processing.mode", "flat-to-xml");
+        options.put("processing.compression", "none");
+        options.put("input.regex-exclude", "report\\.txt");
+        runBatchProcessor(dir, dir, options);
+        List<String> report = readReport(dir);
+        Assert.assertTrue(report.contains("total number of files: 1"));
+        Assert.assertTrue(report.contains("total number of processed patients: 2"));
+        Assert.assertEquals(2, NaaccrXmlUtils.readXmlFile(new File(dir, "input.xml"), null, null, null).getPatients().size());
+    }
+
+    /**
+     * Runs the batch processor on the input folder with the provided options (the report is always created); returns the output folder.
+     */
+    static File runBatch(File inputDir, File outputDir, Map<String, String> options) throws IOException, InterruptedException {
+        FileUtils.deleteDirectory(outputDir);
+        Assert.assertTrue(outputDir.mkdirs());
+        runBatchProcessor(inputDir, outputDir, options);
+        return outputDir;
+    }
+
+    /**
+     * Runs the batch processor on the input folder with the provided options (the report is always created), without cleaning the output folder first.
+     */
+    static void runBatchProcessor(File inputDir, File outputDir, Map<String, String> options) throws IOException, InterruptedException {
+        Properties props = new Properties();
+        props.setProperty("input.folder", inputDir.getAbsolutePath());
+        props.setProperty("output.folder", outputDir.getAbsolutePath());
+        props.setProperty("output.create-report", "true");
+        for (Entry<String, String> entry : options.entrySet())
+            props.setProperty(entry.getKey(), entry.getValue());
+        File optionsFile = new File(outputDir.getParentFile(), outputDir.getName() + ".properties");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(optionsFile), StandardCharsets.UTF_8)) {
+            props.store(writer, null);
+        }
+
+        BatchProcessor.main(new String[] {optionsFile.getAbsolutePath()});
+    }
+
+    static String readCreatedXml(File file) throws IOException {
+        Assert.assertTrue(file.getName(), file.exists());
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8).replaceAll("timeGenerated=\"[^\"]*\"", "timeGenerated=\"\"");
+    }
+
+    /**
+     * Returns the lines of the report, without the ones depending on the time the files were processed (or on the way they were processed).
+     */
+    static List<String> readReport(File outputDir) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String line : FileUtils.readLines(new File(outputDir, "report.txt"), StandardCharsets.UTF_8))
+            if (!line.startsWith("Report created on") && !line.contains("processing time:") && !line.contains("CPU time:") && !line.contains("throughput:")
+                    && !line.contains("number of processed chunks:") && !line.contains("created size:"))
+                result.add(line);
+        return result;
+    }
+
+    /**
+     * Returns the warnings section of the provided file in the report (starting with the "warnings:" line).
+     */
+    static List<String> getFileWarnings(List<String> report, String fileName) {
+        int idx = report.indexOf(fileName);
+        Assert.assertTrue(fileName, idx != -1);
+        List<String> result = new ArrayList<>();
+        boolean inWarnings = false;
+        for (String line : report.subList(idx + 1, report.size())) {
+            if (line.isEmpty())
+                break;
+            inWarnings |= line.equals("   warnings:");
+            if (inWarnings)
+                result.add(line);
+        }
+        Assert.assertFalse(fileName, result.isEmpty());
+        return result;
+    }
+}
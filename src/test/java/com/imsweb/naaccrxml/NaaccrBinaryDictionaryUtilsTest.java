@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionaryItem;
+
+public class NaaccrBinaryDictionaryUtilsTest {
+
+    @Test
+    public void testDictionaryRoundTrip() throws IOException {
+        for (String version : NaaccrFormat.getSupportedVersions()) {
+            assertSameDictionary(readXmlResource("naaccr-dictionary-" + version + ".xml"));
+            if (Integer.parseInt(version) < 220)
+                assertSameDictionary(readXmlResource("user-defined-naaccr-dictionary-" + version + ".xml"));
+        }
+
+        // a user-defined dictionary
+        assertSameDictionary(NaaccrXmlDictionaryUtils.readDictionary(TestingUtils.getDataFile("dictionary/testing-user-dictionary-140.xml")));
+
+        // the internal dictionaries are pre-compiled at build time and should be identical to the XML ones
+        for (String version : NaaccrFormat.getSupportedVersions())
+            Assert.assertEquals(writeXml(readXmlResource("naaccr-dictionary-" + version + ".xml")), writeXml(NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(version)));
+    }
+
+    @Test
+    public void testRuntimeDictionaryRoundTrip() throws IOException {
+        for (String version : NaaccrFormat.getSupportedVersions()) {
+            for (String recordType : NaaccrFormat.getSupportedRecordTypes()) {
+                NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(version);
+                RuntimeNaaccrDictionary expected = new RuntimeNaaccrDictionary(recordType, baseDictionary, null);
+
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                NaaccrBinaryDictionaryUtils.writeRuntimeDictionary(expected, os);
+                assertSameRuntimeDictionary(expected, NaaccrBinaryDictionaryUtils.readRuntimeDictionary(new ByteArrayInputStream(os.toByteArray())));
+
+                // the pre-compiled runtime dictionary should be the same as the one computed from the dictionaries
+                assertSameRuntimeDictionary(expected, RuntimeNaaccrDictionary.create(recordType, baseDictionary, null));
+                Assert.assertNotNull(NaaccrBinaryDictionaryUtils.readInternalRuntimeDictionary(version, recordType));
+            }
+        }
+
+        // the pre-compiled runtime dictionary can't be used with a user-defined dictionary
+        List<NaaccrDictionary> userDictionaries = Collections.singletonList(TestingUtils.createUserDictionary());
+        NaaccrDictionary baseDictionary = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(userDictionaries.get(0).getNaaccrVersion());
+        RuntimeNaaccrDictionary runtimeDictionary = RuntimeNaaccrDictionary.create("I", baseDictionary, userDictionaries);
+        Assert.assertNotNull(runtimeDictionary.getItemByNaaccrId("myVariable"));
+        Assert.assertEquals(RuntimeNaaccrDictionary.computeId("I", baseDictionary, userDictionaries), runtimeDictionary.getId());
+    }
+
+    @Test
+    public void testReadDictionaryWithCache() throws IOException {
+        File cacheDir = new File(TestingUtils.getBuildDirectory(), "dictionary-cache");
+        FileUtils.deleteDirectory(cacheDir);
+
+        File xmlFile = TestingUtils.getDataFile("dictionary/testing-user-dictionary-140.xml");
+        NaaccrDictionary dictionary = NaaccrBinaryDictionaryUtils.readDictionary(xmlFile, cacheDir);
+        File[] cachedFiles = cacheDir.listFiles();
+        Assert.assertNotNull(cachedFiles);
+        Assert.assertEquals(1, cachedFiles.length);
+        Assert.assertEquals(writeXml(dictionary), writeXml(NaaccrBinaryDictionaryUtils.readDictionary(xmlFile, cacheDir)));
+
+        // an invalid cached file is ignored and re-created
+        FileUtils.writeStringToFile(cachedFiles[0], "garbage", StandardCharsets.UTF_8);
+        Assert.assertEquals(writeXml(dictionary), writeXml(NaaccrBinaryDictionaryUtils.readDictionary(xmlFile, cacheDir)));
+        Assert.assertEquals(writeXml(dictionary), writeXml(NaaccrBinaryDictionaryUtils.readDictionary(xmlFile, cacheDir)));
+        Assert.assertEquals(1, Objects.requireNonNull(cacheDir.listFiles()).length);
+
+        // content that is not in the binary format is rejected
+        try {
+            NaaccrBinaryDictionaryUtils.readDictionary(new ByteArrayInputStream("garbage".getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("Should have been an exception!");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static NaaccrDictionary readXmlResource(String resName) throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(Thread.currentThread().getContextClassLoader().getResourceAsStream(resName), StandardCharsets.UTF_8)) {
+            return NaaccrXmlDictionaryUtils.readDictionary(reader);
+        }
+    }
+
+    private static String writeXml(NaaccrDictionary dictionary) throws IOException {
+        StringWriter writer = new StringWriter();
+        NaaccrXmlDictionaryUtils.writeDictionary(dictionary, writer);
+        return writer.toString();
+    }
+
+    private static void assertSameDictionary(NaaccrDictionary expected) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        NaaccrBinaryDictionaryUtils.writeDictionary(expected, os);
+        NaaccrDictionary actual = NaaccrBinaryDictionaryUtils.readDictionary(new ByteArrayInputStream(os.toByteArray()));
+        Assert.assertEquals(writeXml(expected), writeXml(actual));
+        Assert.assertEquals(expected.getItems().size(), actual.getItems().size());
+        Assert.assertEquals(expected.getGroupedItems().size(), actual.getGroupedItems().size());
+    }
+
+    private static void assertSameRuntimeDictionary(RuntimeNaaccrDictionary expected, RuntimeNaaccrDictionary actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getNaaccrVersion(), actual.getNaaccrVersion());
+        Assert.assertEquals(expected.getRecordType(), actual.getRecordType());
+        Assert.assertEquals(expected.getItems().size(), actual.getItems().size());
+        for (int i = 0; i < expected.getItems().size(); i++) {
+            RuntimeNaaccrDictionaryItem item1 = expected.getItems().get(i);
+            RuntimeNaaccrDictionaryItem item2 = actual.getItems().get(i);
+            Assert.assertEquals(item1.getNaaccrId(), item2.getNaaccrId());
+            Assert.assertEquals(item1.getNaaccrNum(), item2.getNaaccrNum());
+            Assert.assertEquals(item1.getStartColumn(), item2.getStartColumn());
+            Assert.assertEquals(item1.getLength(), item2.getLength());
+            Assert.assertEquals(item1.getAllowUnlimitedText(), item2.getAllowUnlimitedText());
+            Assert.assertEquals(item1.getParentXmlElement(), item2.getParentXmlElement());
+            Assert.assertEquals(item1.getRegexValidation() == null ? null : item1.getRegexValidation().pattern(), item2.getRegexValidation() == null ? null : item2.getRegexValidation().pattern());
+            Assert.assertEquals(item1.getDataType(), item2.getDataType());
+            Assert.assertEquals(item1.getTrim(), item2.getTrim());
+            Assert.assertEquals(item1.getPadding(), item2.getPadding());
+        }
+    }
+}
@@ -14,6 +14,25 @@ public class NaaccrErrorUtilsTest {
         Assert.assertEquals("unknown NAACCR ID: {blank}", NaaccrErrorUtils.getValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_ID, (String)null));
         Assert.assertEquals("unknown NAACCR ID: ", NaaccrErrorUtils.getValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_ID, ""));
         Assert.assertEquals("unknown NAACCR ID: xyz", NaaccrErrorUtils.getValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_ID, "xyz"));
+        Assert.assertEquals("unknown NAACCR ID: ${1}", NaaccrErrorUtils.getValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_ID, "${1}", "xyz"));
+        Assert.assertEquals("NAACCR Number '10' does not correspond to NAACCR ID 'xyz'", NaaccrErrorUtils.getValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_NUM, 10, "xyz"));
+        Assert.assertEquals("NAACCR Number '10' does not correspond to NAACCR ID '${1}'", NaaccrErrorUtils.getValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_NUM, 10));
+    }
+
+    @Test
+    public void testValidationErrorMessage() {
+        NaaccrValidationError error = new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_TOO_LONG, 4, 5);
+        Assert.assertEquals(NaaccrErrorUtils.CODE_VAL_TOO_LONG, error.getCode());
+        Assert.assertEquals("value too long, expected at most 4 character(s) but got 5", error.getMessage());
+        Assert.assertSame(error.getMessage(), error.getMessage());
+
+        try {
+            new NaaccrValidationError("unknown code");
+            Assert.fail("Should have failed");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
     }
     
     @Test
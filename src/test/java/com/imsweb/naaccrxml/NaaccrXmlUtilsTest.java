@@ -18,6 +18,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -127,6 +128,21 @@ public class NaaccrXmlUtilsTest {
             }
             Assert.assertEquals(2, patients.size());
         }
+
+        // read the file using a java.util.stream
+        try (Stream<Patient> patients = NaaccrXmlUtils.streamXmlFile(file, null, null)) {
+            Assert.assertEquals(2, patients.count());
+        }
+        try (Stream<Patient> patients = NaaccrXmlUtils.streamXmlFile(file, null, null).parallel()) {
+            Assert.assertEquals(1, patients.flatMap(p -> p.getTumors().stream()).count());
+        }
+        try {
+            NaaccrXmlUtils.streamXmlFile(new File(TestingUtils.getWorkingDirectory() + "/src/test/resources/data/missing.xml"), null, null);
+            Assert.fail("Should have been an exception!");
+        }
+        catch (NaaccrIOException e) {
+            // expected
+        }
     }
 
     @Test
@@ -209,7 +225,7 @@ public class NaaccrXmlUtilsTest {
     }
 
     @Test
-    public void testGetFormatFromFlatFile() {
+    public void testGetFormatFromFlatFile() throws IOException {
 
         // regular file
         File file = new File(TestingUtils.getWorkingDirectory()  + "/src/test/resources/data/fake-naaccr14inc-1-rec.txt");
@@ -218,6 +234,11 @@ public class NaaccrXmlUtilsTest {
         // not a valid file
         file = new File(TestingUtils.getWorkingDirectory()  + "/src/test/resources/data/standard-file.xml");
         Assert.assertNull(NaaccrXmlUtils.getFormatFromFlatFile(file));
+
+        // the first line is used as-is, a leading blank line makes the file invalid
+        file = new File(TestingUtils.getBuildDirectory(), "flat-file-leading-blank-line.txt");
+        Files.write(file.toPath(), ("\n" + new String(Files.readAllBytes(TestingUtils.getDataFile("fake-naaccr14inc-1-rec.txt").toPath()), StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+        Assert.assertNull(NaaccrXmlUtils.getFormatFromFlatFile(file));
     }
 
     @Test
@@ -8,6 +8,8 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -59,6 +61,18 @@ public class PatientFlatReaderTest {
         Assert.assertNull(reader.readPatient());
         reader.close();
 
+        // same file but without the item line numbers
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setReadItemLineNumbers(false);
+        reader = new PatientFlatReader(new FileReader(file), options);
+        reader.readPatient();
+        patient = reader.readPatient();
+        Assert.assertEquals(2, patient.getStartLineNumber().intValue());
+        Assert.assertEquals(2, patient.getTumors().get(0).getStartLineNumber().intValue());
+        Assert.assertEquals("C456", patient.getTumors().get(0).getItem("primarySite").getValue());
+        Assert.assertNull(patient.getTumors().get(0).getItem("primarySite").getStartLineNumber());
+        reader.close();
+
         // file with two records for the same patient (one patient with two tumors)
         rec2.replace(41, 49, "00000001"); // patient ID number (Patient level)
         file = TestingUtils.createAndPopulateFile("test-flat-reader-two-rec-same.txt", rec1, rec2);
@@ -181,6 +195,16 @@ public class PatientFlatReaderTest {
 
         Assert.assertNull(reader.readPatient());
         reader.close();
+
+        // same file with an error sink
+        List<NaaccrValidationError> reportedErrors = new ArrayList<>();
+        options.setValidationErrorSink(reportedErrors::add);
+        reader = new PatientFlatReader(new FileReader(file), options, (NaaccrDictionary)null);
+        pat1 = reader.readPatient();
+        Assert.assertTrue(pat1.getAllValidationErrors().isEmpty());
+        Assert.assertEquals(1, reportedErrors.size());
+        Assert.assertEquals(NaaccrErrorUtils.CODE_VAL_PAT_VS_TUM, reportedErrors.get(0).getCode());
+        reader.close();
     }
 
     @Test
@@ -18,6 +18,7 @@ import com.imsweb.naaccrxml.entity.NaaccrData;
 import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.Tumor;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.sink.CountingValidationErrorSink;
 
 public class PatientFlatWriterTest {
 
@@ -252,6 +253,19 @@ public class PatientFlatWriterTest {
                 Assert.assertFalse(TestingUtils.readFileAsOneString(file).contains("XX"));
             }
 
+            // same thing with an error sink -> the error goes to the sink
+            Patient patient2 = new Patient();
+            patient2.addItem(new Item("patientIdNumber", "00000002"));
+            patient2.addItem(new Item("myVariable5", "XX"));
+            CountingValidationErrorSink sink = new CountingValidationErrorSink();
+            options.setValidationErrorSink(sink);
+            try (PatientFlatWriter writer = new PatientFlatWriter(new FileWriter(file), root, options, dict)) {
+                writer.writePatient(patient2);
+                Assert.assertTrue(patient2.getAllValidationErrors().isEmpty());
+                Assert.assertEquals(1, sink.getCount(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+            }
+            options.setValidationErrorSink(null);
+
             // using the same dictionary, define a value too long for a field that is supposed to be 1 long but it supports unlimited text -> truncated
             patient.addItem(new Item("myVariable6", "YY"));
             try (PatientFlatWriter writer = new PatientFlatWriter(new FileWriter(file), root, options, dict)) {
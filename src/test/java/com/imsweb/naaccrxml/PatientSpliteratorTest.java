@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+
+public class PatientSpliteratorTest {
+
+    @Test
+    public void testSplit() {
+        PatientSpliterator spliterator = new PatientSpliterator(new FakeReader(100, -1), 16, 32);
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+
+        // batches get bigger, up to the maximum size
+        List<String> ids = new ArrayList<>();
+        Spliterator<Patient> batch = spliterator.trySplit();
+        Assert.assertEquals(16, batch.estimateSize());
+        batch.forEachRemaining(p -> ids.add(p.getItemValue("patientIdNumber")));
+        Assert.assertEquals(32, spliterator.trySplit().estimateSize());
+        Assert.assertEquals(32, spliterator.trySplit().estimateSize());
+        Assert.assertTrue(spliterator.tryAdvance(p -> ids.add(p.getItemValue("patientIdNumber"))));
+        Assert.assertEquals(19, spliterator.trySplit().estimateSize());
+        Assert.assertNull(spliterator.trySplit());
+        Assert.assertFalse(spliterator.tryAdvance(p -> Assert.fail()));
+        Assert.assertEquals(0, spliterator.estimateSize());
+        Assert.assertEquals("00000000", ids.get(0));
+        Assert.assertEquals("00000015", ids.get(15));
+        Assert.assertEquals("00000080", ids.get(16));
+
+        try {
+            new PatientSpliterator(new FakeReader(1, -1), 0, 10);
+            Assert.fail("Should have been an exception!");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStream() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            expected.add(String.format("%08d", i));
+
+        // sequential
+        FakeReader reader = new FakeReader(5000, -1);
+        try (Stream<Patient> stream = NaaccrXmlUtils.streamPatients(reader)) {
+            Assert.assertEquals(expected, stream.map(p -> p.getItemValue("patientIdNumber")).collect(Collectors.toList()));
+        }
+        Assert.assertTrue(reader._closed);
+
+        // parallel, the order is preserved
+        reader = new FakeReader(5000, -1);
+        try (Stream<Patient> stream = NaaccrXmlUtils.streamPatients(reader).parallel()) {
+            Assert.assertEquals(expected, stream.map(p -> p.getItemValue("patientIdNumber")).collect(Collectors.toList()));
+        }
+        Assert.assertTrue(reader._closed);
+
+        // reading errors
+        reader = new FakeReader(5000, 10);
+        try (Stream<Patient> stream = NaaccrXmlUtils.streamPatients(reader)) {
+            stream.count();
+            Assert.fail("Should have been an exception!");
+        }
+        catch (NaaccrUncheckedIOException e) {
+            Assert.assertEquals("bad patient", e.getCause().getMessage());
+            Assert.assertEquals(Integer.valueOf(11), e.getCause().getLineNumber());
+        }
+        Assert.assertTrue(reader._closed);
+    }
+
+    private static class FakeReader implements PatientReader {
+
+        private final int _numPatients;
+
+        private final int _failingPatient;
+
+        private int _next;
+
+        private boolean _closed;
+
+        private FakeReader(int numPatients, int failingPatient) {
+            _numPatients = numPatients;
+            _failingPatient = failingPatient;
+        }
+
+        @Override
+        public Patient readPatient() throws NaaccrIOException {
+            if (_next == _failingPatient)
+                throw new NaaccrIOException("bad patient", _next + 1);
+            if (_next >= _numPatients)
+                return null;
+            Patient patient = new Patient();
+            patient.addItem(new Item("patientIdNumber", String.format("%08d", _next++)));
+            return patient;
+        }
+
+        @Override
+        public NaaccrData getRootData() {
+            return new NaaccrData();
+        }
+
+        @Override
+        public void closeAndKeepAlive() {
+            // nothing to do
+        }
+
+        @Override
+        public void close() {
+            _closed = true;
+        }
+    }
+}
@@ -8,7 +8,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -21,6 +25,7 @@ import com.imsweb.naaccrxml.entity.Tumor;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryItem;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfigurationFactory;
 
 public class PatientXmlReaderTest {
 
@@ -97,6 +102,20 @@ public class PatientXmlReaderTest {
             Assert.assertNull(reader.readPatient());
         }
 
+        // same file but without the item line numbers; the patient and tumor line numbers are still available
+        NaaccrOptions noItemLinesOptions = NaaccrOptions.getDefault();
+        noItemLinesOptions.setUseStrictNamespaces(false);
+        noItemLinesOptions.setReadItemLineNumbers(false);
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-two-patients.xml")), noItemLinesOptions)) {
+            Patient patient1 = reader.readPatient();
+            Assert.assertEquals(3, patient1.getStartLineNumber().intValue());
+            Assert.assertEquals(8, patient1.getEndLineNumber().intValue());
+            Assert.assertEquals(5, patient1.getTumor(0).getStartLineNumber().intValue());
+            Assert.assertEquals(7, patient1.getTumor(0).getEndLineNumber().intValue());
+            Assert.assertEquals("C123", patient1.getTumor(0).getItem("primarySite").getValue());
+            Assert.assertNull(patient1.getTumor(0).getItem("primarySite").getStartLineNumber());
+        }
+
         // test the root data attributes
         try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-root-data-1.xml")), options)) {
             NaaccrData data = reader.getRootData();
@@ -226,6 +245,18 @@ public class PatientXmlReaderTest {
             Assert.assertEquals("X", error.getValue());
         }
 
+        // same thing but using an error sink; the errors are not attached to the entities anymore
+        List<NaaccrValidationError> reportedErrors = new ArrayList<>();
+        options.setValidationErrorSink(reportedErrors::add);
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-options-unk.xml")), options)) {
+            Patient patient = reader.readPatient();
+            Assert.assertTrue(patient.getAllValidationErrors().isEmpty());
+            Assert.assertEquals(1, reportedErrors.size());
+            Assert.assertEquals("unknown", reportedErrors.get(0).getNaaccrId());
+            Assert.assertNotNull(reportedErrors.get(0).getLineNumber());
+        }
+        options.setValidationErrorSink(null);
+
         // test option to auto-translate renamed IDs - option is OFF
         options.setTranslateRenamedStandardItemIds(false);
         options.setUnknownItemHandling(NaaccrOptions.ITEM_HANDLING_ERROR);
@@ -441,6 +472,93 @@ public class PatientXmlReaderTest {
         }
     }
 
+    @Test
+    public void testCopyOnWriteConfiguration() throws Exception {
+
+        // the configurations of a factory using a non-customized template can still be customized, they get their own XStream instance
+        NaaccrStreamConfiguration conf = NaaccrStreamConfigurationFactory.getDefault().createConfiguration();
+        Assert.assertSame(NaaccrStreamConfigurationFactory.getDefault().getTemplate().getXstream(), conf.getXstream());
+        conf.registerNamespace("other", "http://whatever.org");
+        conf.getXstream().autodetectAnnotations(true);
+        conf.registerTag("other", "MyOuterTag", OuterTag.class);
+        conf.registerTag("other", "MyEmbeddedEntity", EmbeddedEntity.class);
+        Assert.assertNotSame(NaaccrStreamConfigurationFactory.getDefault().getTemplate().getXstream(), conf.getXstream());
+        Assert.assertTrue(NaaccrStreamConfigurationFactory.getDefault().createConfiguration().getRegisterNamespaces().isEmpty());
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("standard-file-extension.xml")), null, (NaaccrDictionary)null, conf)) {
+            Assert.assertEquals(2, reader.getRootData().getExtensions().size());
+            Assert.assertEquals("patient-extension-1", ((OuterTag)reader.readPatient().getExtensions().get(0)).getInnerTag());
+        }
+
+        // same thing for the configuration of a context
+        NaaccrContext context = new NaaccrContext(NaaccrFormat.NAACCR_FORMAT_16_INCIDENCE);
+        context.getStreamConfiguration().registerNamespace("other", "http://whatever.org");
+        Assert.assertEquals("http://whatever.org", context.getStreamConfiguration().getRegisterNamespaces().get("other"));
+        StringBuilder line = new StringBuilder(StringUtils.repeat(' ', 3339));
+        line.replace(41, 49, "00000001");
+        Assert.assertEquals("00000001", NaaccrXmlUtils.lineToPatient(line.toString(), context).getItemValue("patientIdNumber"));
+
+        // the configurations of a customized template can't be modified
+        NaaccrStreamConfiguration template = new NaaccrStreamConfiguration();
+        template.registerNamespace("other", "http://whatever.org");
+        try {
+            new NaaccrStreamConfigurationFactory(template).createConfiguration().registerNamespace("other2", "http://whatever2.org");
+            Assert.fail("Configuration sharing a customized template should not be modifiable");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExtensionsWithConfigurationFactory() throws Exception {
+        NaaccrStreamConfiguration template = new NaaccrStreamConfiguration();
+        template.getXstream().autodetectAnnotations(true);
+        template.registerNamespace("other", "http://whatever.org");
+        template.registerTag("other", "MyOuterTag", OuterTag.class);
+        template.registerTag("other", "MyEmbeddedEntity", EmbeddedEntity.class);
+        NaaccrStreamConfigurationFactory factory = new NaaccrStreamConfigurationFactory(template);
+
+        // the template is shared, it can't be modified anymore
+        try {
+            template.registerNamespace("other2", "http://whatever2.org");
+            Assert.fail("Shared configuration should not be modifiable");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+
+        // the per-stream configurations share the XStream instance, but each stream needs to use its own parser (and report its own line numbers)
+        NaaccrStreamConfiguration conf1 = factory.createConfiguration();
+        NaaccrStreamConfiguration conf2 = factory.createConfiguration();
+        Assert.assertSame(conf1.getXstream(), conf2.getXstream());
+        Assert.assertNotSame(conf1.getParser(), conf2.getParser());
+        Assert.assertNotSame(conf1.getPatientConverter(), conf2.getPatientConverter());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> {
+                    try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("standard-file-extension.xml")), null, (NaaccrDictionary)null,
+                            factory.createConfiguration())) {
+                        Assert.assertEquals(5, ((OuterTag)reader.getRootData().getExtensions().get(0)).getStartLineNumber().intValue());
+                        Patient patient = reader.readPatient();
+                        Assert.assertEquals(16, ((OuterTag)patient.getExtensions().get(0)).getStartLineNumber().intValue());
+                        Assert.assertEquals("tumor-extension-2", ((OuterTag)patient.getTumor(0).getExtensions().get(1)).getInnerTag());
+                        Assert.assertEquals(27, ((OuterTag)patient.getTumor(0).getExtensions().get(1)).getStartLineNumber().intValue());
+                        Assert.assertEquals(Integer.valueOf(14), patient.getStartLineNumber());
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                Assert.assertTrue(future.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     @SuppressWarnings("unused")
     @XStreamAlias("MyOuterTag")
     private static class OuterTag implements NaaccrXmlExtension {
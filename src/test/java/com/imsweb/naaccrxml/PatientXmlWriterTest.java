@@ -19,6 +19,7 @@ import com.imsweb.naaccrxml.entity.Patient;
 import com.imsweb.naaccrxml.entity.Tumor;
 import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
 import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfigurationFactory;
 
 public class PatientXmlWriterTest {
 
@@ -203,6 +204,33 @@ public class PatientXmlWriterTest {
 
     }
 
+    @Test
+    public void testXstreamOutsideOfStream() throws IOException {
+        Patient patient = new Patient();
+        patient.addItem(new Item("patientIdNumber", "00000001"));
+
+        // the XStream instance of a configuration can't write a patient without the context of a stream (it's shared by the per-stream configurations)
+        for (NaaccrStreamConfiguration conf : Arrays.asList(NaaccrStreamConfigurationFactory.getDefault().createConfiguration(), NaaccrStreamConfiguration.getDefault())) {
+            try {
+                conf.getXstream().toXML(patient);
+                Assert.fail("Should have failed");
+            }
+            catch (RuntimeException e) {
+                Throwable cause = e;
+                while (cause.getCause() != null)
+                    cause = cause.getCause();
+                Assert.assertTrue(cause.getMessage(), cause.getMessage().startsWith("Patients can only be read and written through PatientXmlReader and PatientXmlWriter"));
+            }
+
+            // the configuration can still be used by a writer
+            File file = TestingUtils.createFile("test-xstream-outside-stream.xml");
+            try (PatientXmlWriter writer = new PatientXmlWriter(new FileWriter(file), new NaaccrData(NaaccrFormat.NAACCR_FORMAT_16_ABSTRACT), null, (NaaccrDictionary)null, conf)) {
+                writer.writePatient(patient);
+            }
+            Assert.assertTrue(TestingUtils.readFileAsOneString(file).contains("00000001"));
+        }
+    }
+
     @Test
     public void testOptions() throws IOException {
 
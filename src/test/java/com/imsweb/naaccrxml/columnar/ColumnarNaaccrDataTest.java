@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.columnar;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+
+public class ColumnarNaaccrDataTest {
+
+    @Test
+    public void testReadXmlFile() throws Exception {
+        File file = TestingUtils.getDataFile("standard-file.xml");
+        NaaccrData data = NaaccrXmlUtils.readXmlFile(file, null, null, null);
+        ColumnarNaaccrData columnar = NaaccrXmlUtils.readXmlFileAsColumnar(file, null, null, null);
+        Assert.assertNotNull(columnar.getDictionary());
+        Assert.assertEquals(data.getRecordType(), columnar.getRootData().getRecordType());
+        Assert.assertEquals(data.getItemValue("registryId"), columnar.getRootData().getItemValue("registryId"));
+        Assert.assertTrue(columnar.getRootData().getPatients().isEmpty());
+        assertSamePatients(data.getPatients(), columnar);
+
+        // write the data back and make sure it can be re-read
+        File target = TestingUtils.createFile("columnar-data.xml");
+        NaaccrXmlUtils.writeXmlFile(columnar, target, null, null, null);
+        assertSamePatients(NaaccrXmlUtils.readXmlFile(target, null, null, null).getPatients(), columnar);
+    }
+
+    @Test
+    public void testReadFlatFile() throws Exception {
+        File file = TestingUtils.getDataFile("fake-naaccr14inc-10000-rec.txt.gz");
+        NaaccrData data = NaaccrXmlUtils.readFlatFile(file, null, null, null);
+        ColumnarNaaccrData columnar = NaaccrXmlUtils.readFlatFileAsColumnar(file, null, null, null);
+        Assert.assertEquals(data.getPatients().size(), columnar.getPatientCount());
+        Assert.assertEquals(data.getPatients().stream().mapToInt(p -> p.getTumors().size()).sum(), columnar.getTumorCount());
+        assertSamePatients(data.getPatients(), columnar);
+
+        // the free text items use the arena, the code items use dictionary encoding
+        Assert.assertTrue(columnar.getTumorColumn("primarySite").isDictionaryEncoded());
+        Assert.assertFalse(columnar.getTumorColumn("textUsualOccupation").isDictionaryEncoded());
+
+        // write the data back as a flat file, the lines should be identical
+        File target = TestingUtils.createFile("columnar-data.txt");
+        NaaccrXmlUtils.writeFlatFile(columnar, target, null, null, null);
+        File expected = TestingUtils.createFile("columnar-data-expected.txt");
+        NaaccrXmlUtils.writeFlatFile(data, expected, null, null, null);
+        Assert.assertEquals(TestingUtils.readFileAsOneString(expected), TestingUtils.readFileAsOneString(target));
+    }
+
+    @Test
+    public void testValueAccess() {
+        NaaccrData root = new NaaccrData(NaaccrFormat.NAACCR_FORMAT_22_INCIDENCE);
+        ColumnarNaaccrData columnar = new ColumnarNaaccrData(root, null);
+
+        Patient patient1 = new Patient();
+        patient1.addItem(new Item("patientIdNumber", "00000001"));
+        Tumor tumor1 = new Tumor();
+        tumor1.addItem(new Item("primarySite", "C123"));
+        patient1.addTumor(tumor1);
+        Tumor tumor2 = new Tumor();
+        tumor2.addItem(new Item("primarySite", "C456"));
+        patient1.addTumor(tumor2);
+        columnar.addPatient(patient1);
+
+        Patient patient2 = new Patient();
+        patient2.addItem(new Item("patientIdNumber", "00000002"));
+        patient2.addItem(new Item("sex", "1"));
+        columnar.addPatient(patient2);
+
+        Assert.assertEquals(2, columnar.getPatientCount());
+        Assert.assertEquals(2, columnar.getTumorCount());
+        Assert.assertEquals(2, columnar.getTumorCount(0));
+        Assert.assertEquals(0, columnar.getTumorCount(1));
+        Assert.assertEquals("00000001", columnar.getPatientValue(0, "patientIdNumber"));
+        Assert.assertNull(columnar.getPatientValue(0, "sex"));
+        Assert.assertEquals("1", columnar.getPatientValue(1, "sex"));
+        Assert.assertNull(columnar.getPatientValue(1, "unknownItem"));
+        Assert.assertEquals("C456", columnar.getTumorValue(0, 1, "primarySite"));
+        try {
+            columnar.getTumorValue(1, 0, "primarySite");
+            Assert.fail("Should have failed");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        Iterator<Patient> iterator = columnar.iterator();
+        Assert.assertEquals("C123", iterator.next().getTumors().get(0).getItemValue("primarySite"));
+        Assert.assertEquals("1", iterator.next().getItemValue("sex"));
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testColumnEncoding() {
+        CharArena arena = new CharArena(16);
+        Column column = new Column("whatever", null, arena, true);
+        int numRows = Column.MAX_DISTINCT_VALUES + 2000;
+        for (int i = 0; i < numRows; i++)
+            if (i % 50 != 0)
+                column.set(i, "V" + (i % 10));
+        Assert.assertTrue(column.isDictionaryEncoded());
+        Assert.assertEquals(10, column.getDistinctValuesCount());
+
+        // too many distinct values, the column should switch to the arena
+        column = new Column("whatever", null, arena, true);
+        for (int i = 0; i < numRows; i++)
+            if (i % 50 != 0)
+                column.set(i, "Value" + i);
+        Assert.assertFalse(column.isDictionaryEncoded());
+        for (int i = 0; i < numRows; i++)
+            Assert.assertEquals(i % 50 != 0 ? ("Value" + i) : null, column.get(i));
+        Assert.assertNull(column.get(numRows + 1));
+
+        // values larger than a chunk get their own chunk
+        long pos = arena.append("This value is larger than the chunk size");
+        Assert.assertEquals("This value is larger than the chunk size", arena.get(pos, 40));
+    }
+
+    private static void assertSamePatients(List<Patient> expected, ColumnarNaaccrData columnar) {
+        Assert.assertEquals(expected.size(), columnar.getPatientCount());
+        int idx = 0;
+        for (Patient actual : columnar) {
+            Patient patient = expected.get(idx++);
+            assertSameItems(patient.getItems(), actual);
+            Assert.assertEquals(patient.getTumors().size(), actual.getTumors().size());
+            for (int i = 0; i < patient.getTumors().size(); i++)
+                assertSameItems(patient.getTumors().get(i).getItems(), actual.getTumors().get(i));
+        }
+    }
+
+    private static void assertSameItems(List<Item> expected, com.imsweb.naaccrxml.entity.AbstractEntity actual) {
+        Assert.assertEquals(expected.size(), actual.getItems().size());
+        for (Item item : expected)
+            Assert.assertEquals(item.getValue(), actual.getItemValue(item.getNaaccrId()));
+    }
+}
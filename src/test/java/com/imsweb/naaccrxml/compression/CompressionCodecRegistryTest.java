@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+
+public class CompressionCodecRegistryTest {
+
+    @Test
+    public void testCodecLookup() throws IOException {
+        Assert.assertEquals("gz", CompressionCodecRegistry.getCodecByExtension("test.xml.gz").getName());
+        Assert.assertEquals("xz", CompressionCodecRegistry.getCodecByExtension("test.XML.XZ").getName());
+        Assert.assertNull(CompressionCodecRegistry.getCodecByExtension("test.xml"));
+        Assert.assertEquals("none", CompressionCodecRegistry.getCodecForWriting(new File("test.xml")).getName());
+        Assert.assertEquals("none", CompressionCodecRegistry.getCodecByName("none").getName());
+        Assert.assertNull(CompressionCodecRegistry.getCodecByName("bz2"));
+
+        // a compressed file without the proper extension is recognized from its first bytes
+        File file = TestingUtils.createFile("compressed-without-extension.txt");
+        for (String name : new String[] {"gz", "xz"}) {
+            CompressionCodec codec = CompressionCodecRegistry.getCodecByName(name);
+            try (OutputStream os = codec.createOutputStream(new FileOutputStream(file))) {
+                os.write("SOME DATA".getBytes());
+            }
+            Assert.assertEquals(name, CompressionCodecRegistry.getCodecForReading(file).getName());
+            try (InputStream is = CompressionCodecRegistry.getCodecForReading(file).createInputStream(file)) {
+                Assert.assertEquals("SOME DATA", IOUtils.toString(is, "UTF-8"));
+            }
+        }
+
+        // an empty file is not compressed
+        TestingUtils.writeFile(file, "");
+        Assert.assertEquals("none", CompressionCodecRegistry.getCodecForReading(file).getName());
+    }
+
+    @Test
+    public void testParallelXz() throws IOException {
+        byte[] data = new byte[50 * 1024 + 17];
+        Random random = new Random(1234);
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte)('A' + random.nextInt(5));
+
+        // use a tiny block size so the data is split in many independent blocks
+        XzCompressionCodec codec = new XzCompressionCodec(1, 3, 1024);
+        File file = TestingUtils.createFile("parallel.txt.xz");
+        try (OutputStream os = codec.createOutputStream(new FileOutputStream(file))) {
+            os.write(data, 0, 100);
+            os.flush();
+            os.write(data, 100, data.length - 100);
+        }
+        try (SeekableXZInputStream is = new SeekableXZInputStream(new SeekableFileInputStream(file))) {
+            Assert.assertEquals(51, is.getBlockCount());
+        }
+
+        // parallel decompression
+        try (InputStream is = codec.createInputStream(file)) {
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+        }
+
+        // sequential decompression of the same file
+        try (InputStream is = new XzCompressionCodec(1, 1, 1024).createInputStream(file)) {
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+        }
+        try (InputStream is = codec.createInputStream(Files.newInputStream(file.toPath()))) {
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+        }
+
+        // empty content still creates a valid file
+        try (OutputStream os = codec.createOutputStream(new FileOutputStream(file))) {
+            os.flush();
+        }
+        try (InputStream is = codec.createInputStream(file)) {
+            Assert.assertEquals(-1, is.read());
+        }
+
+        // sequential compression
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream os = new XzCompressionCodec(1, 1, 1024).createOutputStream(bytes)) {
+            os.write(data);
+        }
+        Assert.assertTrue(new XzCompressionCodec().matchesMagicBytes(bytes.toByteArray(), bytes.size()));
+    }
+
+    @Test
+    public void testReadWriteXzDataFile() throws IOException {
+        NaaccrData data = NaaccrXmlUtils.readXmlFile(TestingUtils.getDataFile("standard-file.xml"), null, null, null);
+
+        File file = TestingUtils.createFile("standard-file.xml.xz");
+        NaaccrXmlUtils.writeXmlFile(data, file, null, null, null);
+        Assert.assertEquals("xz", CompressionCodecRegistry.getCodecForReading(file).getName());
+        NaaccrData data2 = NaaccrXmlUtils.readXmlFile(file, null, null, null);
+        Assert.assertEquals(data.getPatients().size(), data2.getPatients().size());
+        Assert.assertEquals(data.getRecordType(), data2.getRecordType());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.TestingUtils;
+
+public class BatchManifestTest {
+
+    @Test
+    public void testManifest() throws IOException {
+        File file = TestingUtils.createFile("batch-manifest-test.txt");
+        if (file.exists())
+            Assert.assertTrue(file.delete());
+
+        // a new manifest is empty
+        try (BatchManifest manifest = BatchManifest.load(file)) {
+            Assert.assertTrue(manifest.getEntries().isEmpty());
+            Assert.assertTrue(file.exists());
+
+            BatchManifest.Entry entry = new BatchManifest.Entry("file\t1.txt", 100L, 200L, "hash1", "options1", BatchManifest.STATUS_IN_PROGRESS);
+            manifest.update(entry);
+            manifest.update(new BatchManifest.Entry("file2.txt", 300L, 400L, "hash2", "options1", BatchManifest.STATUS_IN_PROGRESS));
+            manifest.update(entry.withStatus(BatchManifest.STATUS_COMPLETE));
+            Assert.assertTrue(manifest.getEntry("file\t1.txt").isComplete());
+        }
+
+        // the last entry of each file wins, and the journal is compacted
+        Assert.assertEquals(3, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+        try (BatchManifest manifest = BatchManifest.load(file)) {
+            Assert.assertEquals(2, manifest.getEntries().size());
+            Assert.assertEquals(2, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+            BatchManifest.Entry entry = manifest.getEntry("file\t1.txt");
+            Assert.assertTrue(entry.isComplete());
+            Assert.assertEquals(100L, entry.getSize());
+            Assert.assertEquals(200L, entry.getLastModified());
+            Assert.assertEquals("hash1", entry.getContentHash());
+            Assert.assertEquals("options1", entry.getOptionsHash());
+            Assert.assertEquals(BatchManifest.STATUS_IN_PROGRESS, manifest.getEntry("file2.txt").getStatus());
+            Assert.assertNull(manifest.getEntry("file3.txt"));
+        }
+
+        // a line truncated by a crash is ignored
+        Files.write(file.toPath(), "complete\t500\t60".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (BatchManifest manifest = BatchManifest.load(file)) {
+            Assert.assertEquals(2, manifest.getEntries().size());
+        }
+
+        // a closed manifest can't be updated
+        BatchManifest manifest = BatchManifest.load(file);
+        manifest.close();
+        try {
+            manifest.update(new BatchManifest.Entry("file3.txt", 1L, 1L, "hash3", "options1", BatchManifest.STATUS_COMPLETE));
+            Assert.fail("Should have been an exception!");
+        }
+        catch (IOException e) {
+            // expected
+        }
+
+        try {
+            new BatchManifest.Entry("bad\nname", 1L, 1L, "hash", "options", BatchManifest.STATUS_COMPLETE);
+            Assert.fail("Should have been an exception!");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMoveAndHash() throws IOException {
+        File source = TestingUtils.createFile("batch-manifest-source.txt");
+        File target = TestingUtils.createFile("batch-manifest-target.txt");
+        TestingUtils.writeFile(target, "old content");
+        TestingUtils.writeFile(source, "abc");
+        Assert.assertEquals(BatchManifest.computeHash("abc"), BatchManifest.computeHash(source));
+        Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", BatchManifest.computeHash("abc"));
+
+        BatchManifest.moveAtomically(source, target);
+        Assert.assertFalse(source.exists());
+        Assert.assertEquals("abc", TestingUtils.readFileAsOneString(target));
+    }
+}
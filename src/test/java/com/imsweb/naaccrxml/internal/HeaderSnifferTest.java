@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.compression.CompressionCodecRegistry;
+
+public class HeaderSnifferTest {
+
+    @Test
+    public void testSniffXml() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!-- a comment with a fake <NaaccrData> tag -->\n"
+                + "<!DOCTYPE NaaccrData [ <!ENTITY test \"value>\"> ]>\n"
+                + "<ns:NaaccrData ns:baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-210.xml\"\n"
+                + "    recordType = 'I' other=\"a &amp; b &lt;c&gt; &quot;d&quot; &apos;e&apos; &#65;&#x42;\" multi=\"a\tb\nc\"\n"
+                + "    xmlns:ns=\"http://naaccr.org/naaccrxml\">\n"
+                + "    <ns:Item naaccrId=\"registryId\">0000000001</ns:Item>";
+
+        HeaderSniffer.Header header = HeaderSniffer.sniff(xml, false);
+        Assert.assertTrue(header.isXml());
+        Assert.assertTrue(header.isComplete());
+        Assert.assertEquals("ns:NaaccrData", header.getRootTag());
+        Assert.assertEquals("http://naaccr.org/naaccrxml/naaccr-dictionary-210.xml", header.getRootAttributes().get("baseDictionaryUri"));
+        Assert.assertEquals("I", header.getRootAttributes().get("recordType"));
+        Assert.assertEquals("a & b <c> \"d\" 'e' AB", header.getRootAttributes().get("other"));
+        Assert.assertEquals("a b c", header.getRootAttributes().get("multi"));
+        Assert.assertEquals("http://naaccr.org/naaccrxml", header.getRootAttributes().get("ns"));
+        Assert.assertNull(header.getFirstLine());
+
+        // self-closing root tag
+        header = HeaderSniffer.sniff("<NaaccrData recordType=\"A\"/>", true);
+        Assert.assertTrue(header.isComplete());
+        Assert.assertEquals("A", header.getRootAttributes().get("recordType"));
+
+        // truncated root tag
+        header = HeaderSniffer.sniff("<NaaccrData recordType=\"A\" baseDictionaryUri=\"http://naa", false);
+        Assert.assertTrue(header.isXml());
+        Assert.assertFalse(header.isComplete());
+        Assert.assertTrue(header.getRootAttributes().isEmpty());
+
+        // unknown entity and repeated attribute
+        Assert.assertFalse(HeaderSniffer.sniff("<NaaccrData recordType=\"&unknown;\">", false).isComplete());
+        Assert.assertFalse(HeaderSniffer.sniff("<NaaccrData recordType=\"A\" recordType=\"I\">", false).isComplete());
+    }
+
+    @Test
+    public void testSniffFlat() {
+        HeaderSniffer.Header header = HeaderSniffer.sniff("I         160\r\nI         160\r\n", false);
+        Assert.assertFalse(header.isXml());
+        Assert.assertTrue(header.isComplete());
+        Assert.assertEquals("I         160", header.getFirstLine());
+        Assert.assertTrue(header.getRootAttributes().isEmpty());
+
+        header = HeaderSniffer.sniff("I         160", false);
+        Assert.assertFalse(header.isComplete());
+        Assert.assertEquals("I         160", header.getFirstLine());
+
+        // the first line is used as-is, a file starting with a blank line (or with whitespaces) doesn't have a valid format
+        header = HeaderSniffer.sniff("\r\nI         160\r\n", true);
+        Assert.assertTrue(header.isComplete());
+        Assert.assertEquals("", header.getFirstLine());
+        Assert.assertEquals("  I         160", HeaderSniffer.sniff("  I         160\n", true).getFirstLine());
+    }
+
+    @Test
+    public void testSniffBytes() {
+        String xml = "<NaaccrData recordType=\"é\">";
+
+        byte[] utf8 = ("\uFEFF" + xml).getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("é", HeaderSniffer.sniff(utf8, utf8.length, true).getRootAttributes().get("recordType"));
+
+        byte[] utf16be = ("\uFEFF" + xml).getBytes(StandardCharsets.UTF_16BE);
+        Assert.assertEquals("é", HeaderSniffer.sniff(utf16be, utf16be.length, true).getRootAttributes().get("recordType"));
+
+        byte[] utf16le = ("\uFEFF" + xml).getBytes(StandardCharsets.UTF_16LE);
+        Assert.assertEquals("é", HeaderSniffer.sniff(utf16le, utf16le.length, true).getRootAttributes().get("recordType"));
+    }
+
+    @Test
+    public void testSniffFiles() throws IOException {
+        File source = TestingUtils.getDataFile("standard-file.xml");
+        String content = new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8);
+
+        // compressed files, recognized from their extension or from their content
+        for (String name : new String[] {"sniffer.xml.gz", "sniffer.xml.xz", "sniffer-gz.tmp", "sniffer-xz.tmp"}) {
+            File file = new File(TestingUtils.getBuildDirectory(), name);
+            String codecName = name.contains("gz") ? "gz" : "xz";
+            try (OutputStream os = CompressionCodecRegistry.getCodecByName(codecName).createOutputStream(Files.newOutputStream(file.toPath()));
+                 Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+                writer.write(content);
+            }
+            HeaderSniffer.Header header = HeaderSniffer.sniff(file);
+            Assert.assertEquals(name, codecName, header.getCompression());
+            Assert.assertTrue(name, header.isComplete());
+            Assert.assertEquals(name, NaaccrXmlUtils.getAttributesFromXmlFile(source), header.getRootAttributes());
+            Assert.assertEquals(name, NaaccrFormat.NAACCR_FORMAT_16_INCIDENCE, NaaccrXmlUtils.getFormatFromXmlFile(file));
+            Assert.assertTrue(file.delete());
+        }
+
+        // compressed flat file
+        HeaderSniffer.Header header = HeaderSniffer.sniff(TestingUtils.getDataFile("fake-naaccr14inc-10000-rec.txt.gz"));
+        Assert.assertEquals("gz", header.getCompression());
+        Assert.assertFalse(header.isXml());
+        Assert.assertEquals(NaaccrFormat.NAACCR_FORMAT_14_INCIDENCE, NaaccrXmlUtils.getFormatFromFlatFileLine(header.getFirstLine()));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.PatientFlatReader;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.Patient;
+
+public class ReadAheadReaderTest {
+
+    @Test
+    public void testReadAheadReader() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            buf.append("line ").append(i).append("\n");
+        String content = buf.toString();
+
+        // use tiny buffers so the queue is full most of the time
+        try (Reader reader = new ReadAheadReader(new StringReader(content), 7, 2)) {
+            Assert.assertEquals(content, IOUtils.toString(reader));
+            Assert.assertEquals(-1, reader.read());
+        }
+
+        // single character reads
+        try (Reader reader = new ReadAheadReader(new StringReader("ABC"), 2, 1)) {
+            Assert.assertEquals('A', reader.read());
+            Assert.assertEquals('B', reader.read());
+            Assert.assertEquals('C', reader.read());
+            Assert.assertEquals(-1, reader.read());
+        }
+
+        // empty source
+        try (Reader reader = new ReadAheadReader(new StringReader(""))) {
+            Assert.assertEquals(-1, reader.read(new char[10], 0, 10));
+        }
+
+        // closing the reader before the end of the data
+        Reader reader = new ReadAheadReader(new StringReader(content), 7, 2);
+        Assert.assertEquals('l', reader.read());
+        reader.close();
+        try {
+            reader.read();
+            Assert.fail("Should have failed");
+        }
+        catch (IOException e) {
+            // expected
+        }
+
+        // errors from the source are reported to the reading thread
+        Reader failingSource = new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("Failed!");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (Reader r = new ReadAheadReader(failingSource)) {
+            r.read();
+            Assert.fail("Should have failed");
+        }
+        catch (IOException e) {
+            Assert.assertEquals("Failed!", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadCompressedFileWithReadAheadThread() throws IOException {
+        File file = TestingUtils.getDataFile("fake-naaccr14inc-10000-rec.txt.gz");
+
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setUseReadAheadThread(true);
+
+        int count = 0;
+        try (Reader reader = NaaccrXmlUtils.createReader(file, options)) {
+            Assert.assertTrue(reader instanceof ReadAheadReader);
+            try (PatientFlatReader flatReader = new PatientFlatReader(reader, options)) {
+                Patient patient = flatReader.readPatient();
+                while (patient != null) {
+                    count++;
+                    patient = flatReader.readPatient();
+                }
+            }
+        }
+        Assert.assertTrue(count > 0);
+
+        Assert.assertEquals(count, NaaccrXmlUtils.readFlatFile(file, options, null, null).getPatients().size());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrErrorUtils;
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.PatientFlatReader;
+import com.imsweb.naaccrxml.PatientFlatWriter;
+import com.imsweb.naaccrxml.PatientXmlWriter;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+import com.imsweb.naaccrxml.metrics.InMemoryNaaccrMetrics;
+
+public class NaaccrManagementTest {
+
+    @Test
+    public void testStreamMonitoring() throws IOException, JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName query = new ObjectName(NaaccrManagement.DOMAIN + ":type=Stream,*");
+
+        NaaccrData data = new NaaccrData(NaaccrFormat.NAACCR_FORMAT_16_INCIDENCE);
+        Patient patient = new Patient();
+        patient.addItem(new Item("patientIdNumber", "00000001"));
+        Tumor tumor = new Tumor();
+        tumor.addItem(new Item("primarySite", "C123"));
+        tumor.addItem(new Item("dateOfDiagnosis", "ABCDEFGH"));
+        patient.addTumor(tumor);
+        data.addPatient(patient);
+        File file = new File(TestingUtils.getBuildDirectory(), "jmx-test.txt.gz");
+
+        // disabled by default
+        Assert.assertFalse(NaaccrManagement.isEnabled());
+        Assert.assertNull(NaaccrManagement.createStreamMonitor("PatientXmlWriter", new StringWriter(), null));
+        try (PatientXmlWriter writer = new PatientXmlWriter(new StringWriter(), data)) {
+            writer.writePatient(patient);
+            Assert.assertTrue(server.queryNames(query, null).isEmpty());
+        }
+
+        NaaccrManagement.setEnabled(true);
+        try {
+            NaaccrXmlUtils.writeFlatFile(data, file, null, null, null);
+
+            // the options metrics still receive everything
+            InMemoryNaaccrMetrics metrics = new InMemoryNaaccrMetrics();
+            NaaccrOptions options = NaaccrOptions.getDefault();
+            options.setMetrics(metrics);
+
+            try (PatientFlatReader reader = new PatientFlatReader(NaaccrXmlUtils.createReader(file, options), options)) {
+                Set<ObjectName> names = server.queryNames(query, null);
+                Assert.assertEquals(1, names.size());
+                ObjectName name = names.iterator().next();
+                Assert.assertEquals("PatientFlatReader", server.getAttribute(name, "StreamType"));
+                Assert.assertEquals(file.getPath(), server.getAttribute(name, "File"));
+                Assert.assertEquals(file.length(), server.getAttribute(name, "FileSize"));
+                Assert.assertEquals(-1L, server.getAttribute(name, "BytesWritten"));
+
+                Assert.assertNotNull(reader.readPatient());
+                Assert.assertEquals(1L, server.getAttribute(name, "PatientsRead"));
+                Assert.assertEquals(1L, server.getAttribute(name, "TumorsRead"));
+                Assert.assertTrue((Long)server.getAttribute(name, "BytesRead") > 0);
+                Assert.assertTrue((Long)server.getAttribute(name, "CharactersRead") > 0);
+                Assert.assertTrue((Double)server.getAttribute(name, "AveragePatientsPerSecond") > 0);
+                Assert.assertEquals(1L, server.getAttribute(name, "TotalErrors"));
+                TabularData errors = (TabularData)server.getAttribute(name, "ErrorCounts");
+                Assert.assertEquals(1, errors.size());
+                Assert.assertNotNull(errors.get(new Object[] {NaaccrErrorUtils.CODE_VAL_DATA_TYPE}));
+
+                Assert.assertEquals(1, metrics.getSnapshot().getPatientsRead());
+            }
+
+            // closing the stream unregisters its MBean
+            Assert.assertTrue(server.queryNames(query, null).isEmpty());
+
+            // the writers are monitored too
+            try (PatientFlatWriter writer = new PatientFlatWriter(NaaccrXmlUtils.createWriter(file), data)) {
+                writer.writePatient(patient);
+                ObjectName name = server.queryNames(query, null).iterator().next();
+                Assert.assertEquals("PatientFlatWriter", server.getAttribute(name, "StreamType"));
+                Assert.assertEquals(1L, server.getAttribute(name, "PatientsWritten"));
+                Assert.assertEquals(file.getPath(), server.getAttribute(name, "File"));
+            }
+            Assert.assertTrue(server.queryNames(query, null).isEmpty());
+        }
+        finally {
+            NaaccrManagement.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testBatchMonitoring() throws JMException {
+        Assert.assertNull(NaaccrManagement.registerBatchMonitor());
+
+        NaaccrManagement.setEnabled(true);
+        try {
+            BatchMonitor monitor = NaaccrManagement.registerBatchMonitor();
+            Assert.assertNotNull(monitor);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertTrue(server.isRegistered(monitor.getObjectName()));
+
+            for (int i = 0; i < 4; i++)
+                monitor.fileQueued();
+            monitor.fileSkipped();
+            monitor.fileStarted("file1.txt");
+            monitor.fileStarted("file2.txt");
+            monitor.fileFinished("file1.txt", true, 10, 12);
+            Assert.assertEquals(4, server.getAttribute(monitor.getObjectName(), "TotalFiles"));
+            Assert.assertEquals(1, server.getAttribute(monitor.getObjectName(), "QueuedFiles"));
+            Assert.assertEquals(1, server.getAttribute(monitor.getObjectName(), "RunningFiles"));
+            Assert.assertArrayEquals(new String[] {"file2.txt"}, (String[])server.getAttribute(monitor.getObjectName(), "RunningFileNames"));
+            Assert.assertEquals(1, server.getAttribute(monitor.getObjectName(), "CompletedFiles"));
+            Assert.assertEquals(1, server.getAttribute(monitor.getObjectName(), "SkippedFiles"));
+            Assert.assertEquals(10L, server.getAttribute(monitor.getObjectName(), "ProcessedPatients"));
+            Assert.assertEquals(12L, server.getAttribute(monitor.getObjectName(), "ProcessedTumors"));
+            Assert.assertEquals(0, server.getAttribute(monitor.getObjectName(), "PoolParallelism"));
+
+            monitor.fileFinished("file2.txt", false, 0, 0);
+            Assert.assertEquals(1, server.getAttribute(monitor.getObjectName(), "FailedFiles"));
+            Assert.assertEquals(0, server.getAttribute(monitor.getObjectName(), "RunningFiles"));
+
+            monitor.unregister();
+            Assert.assertFalse(server.isRegistered(monitor.getObjectName()));
+        }
+        finally {
+            NaaccrManagement.setEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.metrics;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrErrorUtils;
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrMetrics;
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.PatientFlatReader;
+import com.imsweb.naaccrxml.PatientFlatWriter;
+import com.imsweb.naaccrxml.PatientXmlReader;
+import com.imsweb.naaccrxml.PatientXmlWriter;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+
+public class NaaccrMetricsTest {
+
+    @Test
+    public void testXmlStreams() throws IOException {
+        InMemoryNaaccrMetrics metrics = new InMemoryNaaccrMetrics();
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setMetrics(metrics);
+        options.setUseStrictNamespaces(false);
+
+        // reading
+        File file = TestingUtils.getDataFile("xml-reader-two-patients.xml");
+        List<Patient> patients = new ArrayList<>();
+        NaaccrData rootData;
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(file), options)) {
+            rootData = reader.getRootData();
+            Patient patient = reader.readPatient();
+            while (patient != null) {
+                patients.add(patient);
+                patient = reader.readPatient();
+            }
+        }
+        NaaccrMetricsSnapshot snapshot = metrics.getSnapshot();
+        Assert.assertEquals(2, snapshot.getPatientsRead());
+        Assert.assertEquals(2, snapshot.getTumorsRead());
+        Assert.assertEquals(4, snapshot.getItemsRead());
+        Assert.assertTrue(snapshot.getParsingNanos() > 0);
+        Assert.assertEquals(5, snapshot.getValuesValidated()); // the root item is validated too
+        Assert.assertTrue(snapshot.getParsingNanos() >= snapshot.getValidationNanos());
+        Assert.assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).length(), snapshot.getCharactersRead());
+        Assert.assertEquals(0, snapshot.getTotalErrors());
+        Assert.assertEquals(0, snapshot.getPatientsWritten());
+
+        // writing
+        StringWriter writer = new StringWriter();
+        try (PatientXmlWriter xmlWriter = new PatientXmlWriter(writer, rootData, options)) {
+            for (Patient patient : patients)
+                xmlWriter.writePatient(patient);
+        }
+        snapshot = metrics.getSnapshot();
+        Assert.assertEquals(2, snapshot.getPatientsWritten());
+        Assert.assertEquals(2, snapshot.getTumorsWritten());
+        Assert.assertEquals(4, snapshot.getItemsWritten());
+        Assert.assertTrue(snapshot.getWritingNanos() > 0);
+        Assert.assertEquals(writer.toString().length(), snapshot.getCharactersWritten());
+
+        // errors
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getSnapshot().getPatientsRead());
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-options-unk.xml")), options)) {
+            Assert.assertNotNull(reader.readPatient());
+        }
+        snapshot = metrics.getSnapshot();
+        Assert.assertEquals(1, snapshot.getPatientsRead());
+        Assert.assertEquals(1, snapshot.getTotalErrors());
+        Assert.assertEquals(Long.valueOf(1), snapshot.getErrors().get(NaaccrErrorUtils.CODE_BAD_NAACCR_ID));
+    }
+
+    @Test
+    public void testFlatStreams() throws IOException {
+        InMemoryNaaccrMetrics metrics = new InMemoryNaaccrMetrics();
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setMetrics(metrics);
+        options.setNewLine(NaaccrOptions.NEW_LINE_LF);
+
+        Patient patient = new Patient();
+        patient.addItem(new Item("patientIdNumber", "00000001"));
+        Tumor tumor1 = new Tumor();
+        tumor1.addItem(new Item("primarySite", "C123"));
+        patient.addTumor(tumor1);
+        Tumor tumor2 = new Tumor();
+        tumor2.addItem(new Item("primarySite", "C456"));
+        tumor2.addItem(new Item("dateOfDiagnosis", "ABCDEFGH"));
+        patient.addTumor(tumor2);
+
+        // writing
+        StringWriter writer = new StringWriter();
+        try (PatientFlatWriter flatWriter = new PatientFlatWriter(writer, new NaaccrData(NaaccrFormat.NAACCR_FORMAT_16_INCIDENCE), options)) {
+            flatWriter.writePatient(patient);
+        }
+        NaaccrMetricsSnapshot snapshot = metrics.getSnapshot();
+        Assert.assertEquals(1, snapshot.getPatientsWritten());
+        Assert.assertEquals(2, snapshot.getTumorsWritten());
+        Assert.assertEquals(4, snapshot.getItemsWritten());
+        Assert.assertEquals(writer.toString().length(), snapshot.getCharactersWritten());
+
+        // reading (the invalid date is reported)
+        metrics.reset();
+        try (PatientFlatReader reader = new PatientFlatReader(new StringReader(writer.toString()), options)) {
+            Assert.assertNotNull(reader.readPatient());
+            Assert.assertNull(reader.readPatient());
+        }
+        snapshot = metrics.getSnapshot();
+        Assert.assertEquals(1, snapshot.getPatientsRead());
+        Assert.assertEquals(2, snapshot.getTumorsRead());
+        Assert.assertTrue(snapshot.getValuesValidated() > 0);
+        Assert.assertEquals(writer.toString().length(), snapshot.getCharactersRead());
+        Assert.assertEquals(Long.valueOf(1), snapshot.getErrors().get(NaaccrErrorUtils.CODE_VAL_DATA_TYPE));
+    }
+
+    @Test
+    public void testDisabledMetrics() throws IOException {
+        Assert.assertFalse(NoOpNaaccrMetrics.INSTANCE.isEnabled());
+        Assert.assertSame(NoOpNaaccrMetrics.INSTANCE, NaaccrOptions.getDefault().getMetrics());
+        Assert.assertNull(NaaccrOptions.getDefault().getEnabledMetrics());
+
+        // disabled metrics never receive anything
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setUseStrictNamespaces(false);
+        options.setMetrics(new InMemoryNaaccrMetrics() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public void patientRead(Patient patient, long parsingNanos) {
+                Assert.fail("disabled metrics should not be called");
+            }
+        });
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-two-patients.xml")), options)) {
+            Assert.assertNotNull(reader.readPatient());
+        }
+
+        // null metrics are allowed too
+        options.setMetrics(null);
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-two-patients.xml")), options)) {
+            Assert.assertNotNull(reader.readPatient());
+        }
+    }
+
+    @Test
+    public void testCustomMetrics() throws IOException {
+        List<String> codes = new ArrayList<>();
+        NaaccrMetrics metrics = new NaaccrMetrics() {
+            @Override
+            public void patientRead(Patient patient, long parsingNanos) {
+                // ignored
+            }
+
+            @Override
+            public void patientWritten(Patient patient, long writingNanos) {
+                // ignored
+            }
+
+            @Override
+            public void charactersRead(long count) {
+                // ignored
+            }
+
+            @Override
+            public void charactersWritten(long count) {
+                // ignored
+            }
+
+            @Override
+            public void valueValidated(long validationNanos) {
+                // ignored
+            }
+
+            @Override
+            public void errorReported(String code) {
+                codes.add(code);
+            }
+        };
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setMetrics(metrics);
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(TestingUtils.getDataFile("xml-reader-bad-time-generated.xml")), options)) {
+            reader.readPatient();
+        }
+        Assert.assertTrue(codes.contains(NaaccrErrorUtils.CODE_BAD_TIME_GENERATED));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.runtime;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.AbstractEntity;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+
+public class NaaccrValueInternerTest {
+
+    @Test
+    public void testIntern() {
+        RuntimeNaaccrDictionaryItem code = new RuntimeNaaccrDictionaryItem("sex", 220, 100, 1, null, "Patient", null, null, null, null);
+        RuntimeNaaccrDictionaryItem text = new RuntimeNaaccrDictionaryItem("textRemarks", 2680, 200, 1000, true, "Tumor", null, null, null, null);
+        NaaccrValueInterner interner = new NaaccrValueInterner(4, 8);
+
+        String value = interner.intern(code, new String("1"));
+        Assert.assertSame(value, interner.intern(code, new String("1")));
+        Assert.assertSame(value, interner.intern(code, "XX1XX", 2, 3));
+        Assert.assertNotSame(value, interner.intern(code, new String("2")));
+        Assert.assertNull(interner.intern(code, null));
+        Assert.assertEquals("1", interner.intern(null, new String("1")));
+        Assert.assertEquals(4, interner.getLookupCount());
+        Assert.assertEquals(2, interner.getHitCount());
+
+        // free text items are never interned
+        Assert.assertFalse(interner.isInterned(text));
+        Assert.assertNotSame(interner.intern(text, new String("A")), interner.intern(text, new String("A")));
+
+        // too many distinct values turn the interning off for that item
+        for (int i = 3; i < 6; i++)
+            interner.intern(code, String.valueOf(i));
+        Assert.assertFalse(interner.isInterned(code));
+        Assert.assertNotSame(interner.intern(code, new String("1")), interner.intern(code, new String("1")));
+    }
+
+    @Test
+    public void testReaders() throws Exception {
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setUseValueInterning(true);
+
+        File file = TestingUtils.getDataFile("fake-naaccr14inc-10000-rec.txt.gz");
+        List<Patient> expected = NaaccrXmlUtils.readFlatFile(file, null, null, null).getPatients();
+        List<Patient> actual = NaaccrXmlUtils.readFlatFile(file, options, null, null).getPatients();
+        assertSameValues(expected, actual);
+        assertInterned(actual);
+
+        // use a subset of the patients for the XML reader
+        NaaccrData data = new NaaccrData(NaaccrFormat.NAACCR_FORMAT_14_INCIDENCE);
+        expected.subList(0, 500).forEach(data::addPatient);
+        File xmlFile = TestingUtils.createFile("value-interning.xml");
+        NaaccrXmlUtils.writeXmlFile(data, xmlFile, null, null, null);
+        expected = NaaccrXmlUtils.readXmlFile(xmlFile, null, null, null).getPatients();
+        actual = NaaccrXmlUtils.readXmlFile(xmlFile, options, null, null).getPatients();
+        assertSameValues(expected, actual);
+        assertInterned(actual);
+    }
+
+    private static void assertSameValues(List<Patient> expected, List<Patient> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameValues(expected.get(i), actual.get(i));
+            Assert.assertEquals(expected.get(i).getTumors().size(), actual.get(i).getTumors().size());
+            for (int j = 0; j < expected.get(i).getTumors().size(); j++)
+                assertSameValues(expected.get(i).getTumors().get(j), actual.get(i).getTumors().get(j));
+        }
+    }
+
+    private static void assertSameValues(AbstractEntity expected, AbstractEntity actual) {
+        Assert.assertEquals(expected.getItems().size(), actual.getItems().size());
+        for (Item item : expected.getItems())
+            Assert.assertEquals(item.getValue(), actual.getItemValue(item.getNaaccrId()));
+    }
+
+    private static void assertInterned(List<Patient> patients) {
+        String sex = null;
+        for (Patient patient : patients) {
+            if ("1".equals(patient.getItemValue("sex"))) {
+                if (sex == null)
+                    sex = patient.getItemValue("sex");
+                else
+                    Assert.assertSame(sex, patient.getItemValue("sex"));
+            }
+        }
+        Assert.assertNotNull(sex);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionaryItem;
+
+public class RuntimeNaaccrDictionaryCacheTest {
+
+    @Before
+    public void setUp() {
+        RuntimeNaaccrDictionaryCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        RuntimeNaaccrDictionaryCache.setMaximumSize(RuntimeNaaccrDictionaryCache.DEFAULT_MAXIMUM_SIZE);
+        RuntimeNaaccrDictionaryCache.clear();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        NaaccrDictionary baseDict = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(NaaccrFormat.NAACCR_VERSION_180);
+
+        RuntimeNaaccrDictionary dict1 = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null);
+        RuntimeNaaccrDictionary dict2 = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, Collections.emptyList());
+        RuntimeNaaccrDictionary dict3 = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_INCIDENCE, baseDict, null);
+        Assert.assertSame(dict1, dict2);
+        Assert.assertNotSame(dict1, dict3);
+        Assert.assertEquals(1, RuntimeNaaccrDictionaryCache.getHitCount());
+        Assert.assertEquals(2, RuntimeNaaccrDictionaryCache.getMissCount());
+        Assert.assertEquals(2, RuntimeNaaccrDictionaryCache.getSize());
+
+        // the cached dictionaries can't be modified
+        try {
+            dict1.getItems().clear();
+            Assert.fail("Runtime dictionary items should not be modifiable");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUserDictionaryContent() throws Exception {
+        NaaccrDictionary baseDict = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(NaaccrFormat.NAACCR_VERSION_180);
+        NaaccrDictionary userDict = createUserDictionary(1);
+
+        RuntimeNaaccrDictionary dict1 = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, Collections.singletonList(userDict));
+        Assert.assertNotNull(dict1.getItemByNaaccrId("myVariable"));
+        Assert.assertSame(dict1, RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, Collections.singletonList(createUserDictionary(1))));
+
+        // same URI but different content, a new runtime dictionary needs to be created
+        RuntimeNaaccrDictionary dict2 = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, Collections.singletonList(createUserDictionary(2)));
+        Assert.assertNotSame(dict1, dict2);
+        Assert.assertEquals(dict1.getId(), dict2.getId());
+        Assert.assertEquals(Integer.valueOf(2), dict2.getItemByNaaccrId("myVariable").getLength());
+
+        // the fingerprint is computed once per instance, modifying an instance that was already used requires the cache to be cleared
+        userDict.getItems().get(0).setLength(3);
+        Assert.assertSame(dict1, RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, Collections.singletonList(userDict)));
+        RuntimeNaaccrDictionaryCache.clear();
+        RuntimeNaaccrDictionary dict3 = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, Collections.singletonList(userDict));
+        Assert.assertEquals(Integer.valueOf(3), dict3.getItemByNaaccrId("myVariable").getLength());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        RuntimeNaaccrDictionaryCache.setMaximumSize(2);
+        NaaccrDictionary baseDict = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(NaaccrFormat.NAACCR_VERSION_180);
+
+        RuntimeNaaccrDictionary dictA = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null);
+        RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_MODIFIED, baseDict, null);
+        RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null);
+        RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_INCIDENCE, baseDict, null);
+        Assert.assertEquals(2, RuntimeNaaccrDictionaryCache.getSize());
+        Assert.assertEquals(1, RuntimeNaaccrDictionaryCache.getEvictionCount());
+
+        // the modified dictionary was the least recently used one, the abstract one should still be there
+        Assert.assertSame(dictA, RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null));
+
+        // a maximum size of 0 disables the cache
+        RuntimeNaaccrDictionaryCache.setMaximumSize(0);
+        Assert.assertEquals(0, RuntimeNaaccrDictionaryCache.getSize());
+        Assert.assertNotSame(dictA, RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        NaaccrDictionary baseDict = NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(NaaccrFormat.NAACCR_VERSION_210);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<RuntimeNaaccrDictionary>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++)
+                futures.add(executor.submit(() -> RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null)));
+            RuntimeNaaccrDictionary expected = RuntimeNaaccrDictionaryCache.getDictionary(NaaccrFormat.NAACCR_REC_TYPE_ABSTRACT, baseDict, null);
+            for (Future<RuntimeNaaccrDictionary> future : futures)
+                Assert.assertSame(expected, future.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(51, RuntimeNaaccrDictionaryCache.getHitCount() + RuntimeNaaccrDictionaryCache.getMissCount());
+        Assert.assertEquals(1, RuntimeNaaccrDictionaryCache.getSize());
+    }
+
+    private NaaccrDictionary createUserDictionary(int length) {
+        NaaccrDictionary dict = new NaaccrDictionary();
+        dict.setNaaccrVersion(NaaccrFormat.NAACCR_VERSION_180);
+        dict.setDictionaryUri("user-dictionary-cache-test");
+        dict.setSpecificationVersion(NaaccrXmlUtils.CURRENT_SPECIFICATION_VERSION);
+        NaaccrDictionaryItem item = new NaaccrDictionaryItem();
+        item.setNaaccrId("myVariable");
+        item.setNaaccrName("My Variable");
+        item.setParentXmlElement(NaaccrXmlUtils.NAACCR_XML_TAG_PATIENT);
+        item.setNaaccrNum(10000);
+        item.setLength(length);
+        dict.addItem(item);
+        return dict;
+    }
+}
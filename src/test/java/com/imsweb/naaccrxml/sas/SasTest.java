@@ -3,10 +3,20 @@
  */
 package com.imsweb.naaccrxml.sas;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,6 +24,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -112,6 +125,184 @@ public class SasTest {
         Assert.assertEquals("9-9/9-9-16 HOSPITAL, DR DOCTOR: XXX BRAIN (9999 CGY), 99 FX’S, XXXX & 9MV tumor #2", secondPatient.getTumors().get(1).getItemValue("rxTextRadiation"));
     }
 
+    @Test
+    public void testConvertWithReadAheadThread() throws IOException {
+        File xmlFile = TestingUtils.getDataFile("sas/test2.xml");
+        File csvFile = new File(TestingUtils.getBuildDirectory(), "test2-read-ahead.csv");
+        File xmlCopyFile = new File(TestingUtils.getBuildDirectory(), "test2-read-ahead-copy.xml");
+        SasXmlToCsv xmlToCsv = createXmlToCsvConverter(xmlFile, csvFile, "180", "A");
+        xmlToCsv.setUseReadAheadThread(true);
+        Assert.assertTrue(xmlToCsv.getUseReadAheadThread());
+        xmlToCsv.convert(null, false);
+        createCsvToXmlConverter(csvFile, xmlCopyFile, "180", "A").convert(null);
+        Patient secondPatient = NaaccrXmlUtils.readXmlFile(xmlCopyFile, null, null, null).getPatients().get(1);
+        Assert.assertEquals("00000002", secondPatient.getItemValue("patientIdNumber"));
+        Assert.assertEquals(2, secondPatient.getTumors().size());
+    }
+
+    @Test
+    public void testConvertInParallel() throws IOException {
+        File dir = TestingUtils.getBuildDirectory();
+
+        // a single file with enough patients to be split into many chunks (a small chunk size is used)
+        StringBuilder buf = new StringBuilder();
+        buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        buf.append("<NaaccrData baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-180.xml\" recordType=\"A\">\n");
+        buf.append("    <Item naaccrId=\"registryId\">0000000001</Item>\n");
+        for (int i = 1; i <= 500; i++) {
+            buf.append("    <Patient>\n");
+            buf.append("        <Item naaccrId=\"patientIdNumber\">").append(String.format("%08d", i)).append("</Item>\n");
+            for (int j = 0; j < i % 3 + 1; j++) {
+                buf.append("        <Tumor>\n");
+                buf.append("            <Item naaccrId=\"primarySite\">C").append(i % 1000).append("</Item>\n");
+                buf.append("            <Item naaccrId=\"textRemarks\">remark, &lt;").append(j).append("&gt;</Item>\n");
+                buf.append("        </Tumor>\n");
+            }
+            buf.append("    </Patient>\n");
+        }
+        buf.append("</NaaccrData>");
+        File xmlFile = new File(dir, "test-parallel.xml");
+        Files.write(xmlFile.toPath(), buf.toString().getBytes(StandardCharsets.UTF_8));
+        File gzFile = new File(dir, "test-parallel.xml.gz");
+        try (OutputStream os = new GZIPOutputStream(new FileOutputStream(gzFile))) {
+            os.write(buf.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        String expected = convertForParallel(xmlFile, 1);
+        Assert.assertEquals(1000 + 2, expected.split("\n").length);
+        Assert.assertEquals(expected, convertForParallel(xmlFile, 3));
+        Assert.assertEquals(expected, convertForParallel(gzFile, 3));
+
+        // a ZIP file with several entries (including the large one)
+        File zipFile = new File(dir, "test-parallel.zip");
+        try (ZipOutputStream zipOs = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for (String name : new String[] {"test.xml", "test2.xml", "test-multi-line.xml"}) {
+                zipOs.putNextEntry(new ZipEntry(name));
+                zipOs.write(Files.readAllBytes(TestingUtils.getDataFile("sas/" + name).toPath()));
+            }
+            zipOs.putNextEntry(new ZipEntry(xmlFile.getName()));
+            zipOs.write(buf.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        expected = convertForParallel(zipFile, 1);
+        Assert.assertEquals(expected, convertForParallel(zipFile, 2));
+        Assert.assertEquals(expected, convertForParallel(zipFile, 8));
+    }
+
+    @Test(timeout = 60000)
+    public void testConvertInParallelWithError() throws IOException {
+        File zipFile = new File(TestingUtils.getBuildDirectory(), "test-parallel-error.zip");
+        try (ZipOutputStream zipOs = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for (String name : new String[] {"test.xml", "test2.xml", "test-multi-line.xml"}) {
+                zipOs.putNextEntry(new ZipEntry(name));
+                zipOs.write(Files.readAllBytes(TestingUtils.getDataFile("sas/" + name).toPath()));
+            }
+        }
+
+        // an error thrown while converting an entry (even a JVM one) ends the conversion instead of blocking it
+        List<SasFieldInfo> fields = SasUtils.getFields("I", new FileInputStream(TestingUtils.getWorkingDirectory() + "/docs/naaccr-xml-items-180.csv"), null);
+        for (final Throwable error : new Throwable[] {new StackOverflowError("test error"), new IllegalStateException("test error")}) {
+            SasParallelXmlToCsv converter = new SasParallelXmlToCsv(fields, 2, SasParallelXmlToCsv.DEFAULT_CHUNK_SIZE, false) {
+                @Override
+                SasRecordReader createReader(InputStream is) {
+                    final SasRecordReader reader = super.createReader(is);
+                    return new SasRecordReader() {
+                        @Override
+                        public int nextRecord() {
+                            if (error instanceof Error)
+                                throw (Error)error;
+                            throw (RuntimeException)error;
+                        }
+
+                        @Override
+                        public String getValue(int ordinal) {
+                            return reader.getValue(ordinal);
+                        }
+
+                        @Override
+                        public void close() {
+                            reader.close();
+                        }
+                    };
+                }
+            };
+            try {
+                converter.convertZipFile(zipFile, new StringWriter());
+                Assert.fail("Should have failed");
+            }
+            catch (IOException | Error e) {
+                Throwable cause = e instanceof IOException ? e.getCause() : e;
+                Assert.assertSame(error, cause);
+            }
+        }
+    }
+
+    @Test
+    public void testConvertWithByteReader() throws IOException {
+        File dir = TestingUtils.getBuildDirectory();
+        List<File> csvDictionaries = Collections.singletonList(TestingUtils.getDataFile("sas/epath/path-text-dictionary.csv"));
+
+        // a file with entities, comments and an item following a tumor
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!-- a comment with a <Patient> tag -->\n"
+                + "<NaaccrData baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-180.xml\" recordType=\"A\">\n"
+                + "    <Item naaccrId=\"registryId\">0000000001</Item>\n"
+                + "    <Patient>\n"
+                + "        <Item naaccrId=\"patientIdNumber\">00000001</Item>\n"
+                + "        <!-- a comment between two items -->\n"
+                + "        <Item naaccrId=\"nameLast\">A &amp; B &lt;C&gt; &quot;D&quot; &apos;E&apos; &#70;&#x47; &foo;</Item>\n"
+                + "        <Tumor>\n"
+                + "            <Item naaccrId=\"primarySite\">C123</Item>\n"
+                + "            <Item naaccrId=\"textRemarks\">line1\n"
+                + "line2 &lt;&amp;&gt;</Item>\n"
+                + "        </Tumor>\n"
+                + "        <Item naaccrId=\"sex\">1</Item>\n"
+                + "        <Tumor>\n"
+                + "            <Item naaccrId=\"primarySite\">C456</Item>\n"
+                + "        </Tumor>\n"
+                + "    </Patient>\n"
+                + "</NaaccrData>";
+        File entitiesFile = new File(dir, "test-byte-reader.xml");
+        Files.write(entitiesFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        // the byte reader produces the same CSV as the line reader
+        List<File> files = new ArrayList<>();
+        files.add(entitiesFile);
+        for (String name : new String[] {"test.xml", "test2.xml", "test-cdata.xml", "test-cdata2.xml", "test-multi-line.xml", "test-multi-line-cdata.xml"})
+            files.add(TestingUtils.getDataFile("sas/" + name));
+        for (File file : TestingUtils.getDataFile("sas/epath").listFiles())
+            if (file.getName().endsWith(".XML") || file.getName().endsWith(".zip"))
+                files.add(file);
+        for (File file : files) {
+            String expected = convertWithReader(file, false, 1, csvDictionaries);
+            Assert.assertEquals(file.getName(), expected, convertWithReader(file, true, 1, csvDictionaries));
+            Assert.assertEquals(file.getName(), expected, convertWithReader(file, true, 3, csvDictionaries));
+        }
+
+        // only the predefined entities are decoded
+        String csv = convertWithReader(entitiesFile, true, 1, csvDictionaries);
+        Assert.assertTrue(csv, csv.contains(",A & B <C> \"D\" 'E' &#70;&#x47; &foo;,"));
+    }
+
+    private String convertWithReader(File xmlFile, boolean useByteReader, int numThreads, List<File> csvDictionaries) throws IOException {
+        File csvFile = new File(TestingUtils.getBuildDirectory(), xmlFile.getName().replace(".", "-") + "-" + useByteReader + "-" + numThreads + ".csv");
+        SasXmlToCsv xmlToCsv = createXmlToCsvConverter(xmlFile, csvFile, "180", "A", csvDictionaries);
+        xmlToCsv.setUseByteReader(useByteReader);
+        Assert.assertEquals(useByteReader, xmlToCsv.getUseByteReader());
+        xmlToCsv.setNumThreads(numThreads);
+        xmlToCsv.setParallelChunkSize(1024);
+        xmlToCsv.convert(null, false);
+        return new String(Files.readAllBytes(csvFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private String convertForParallel(File xmlFile, int numThreads) throws IOException {
+        File csvFile = new File(TestingUtils.getBuildDirectory(), xmlFile.getName().replace(".", "-") + "-" + numThreads + ".csv");
+        SasXmlToCsv xmlToCsv = createXmlToCsvConverter(xmlFile, csvFile, "180", "A");
+        xmlToCsv.setNumThreads(numThreads);
+        Assert.assertEquals(numThreads, xmlToCsv.getNumThreads());
+        xmlToCsv.setParallelChunkSize(1024);
+        xmlToCsv.convert(null, false);
+        return new String(Files.readAllBytes(csvFile.toPath()), StandardCharsets.UTF_8);
+    }
+
     @Test
     public void testConvertCdata() throws IOException {
         File xmlFile = TestingUtils.getDataFile("sas/test-cdata.xml");
@@ -209,6 +400,162 @@ public class SasTest {
         Assert.assertEquals(4, data.getPatients().size());
     }
 
+    @Test
+    public void testXmlReaderLayeredValues() throws IOException {
+        String xml = "<NaaccrData baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-180.xml\" recordType=\"A\">\n"
+                + "    <Item naaccrId=\"registryId\">0000000001</Item>\n"
+                + "    <Patient>\n"
+                + "        <Item naaccrId=\"patientIdNumber\">00000001</Item>\n"
+                + "        <Item naaccrId=\"sex\">1</Item>\n"
+                + "        <Tumor>\n"
+                + "            <Item naaccrId=\"primarySite\">C123</Item>\n"
+                + "        </Tumor>\n"
+                + "        <Tumor>\n"
+                + "            <Item naaccrId=\"behaviorCodeIcdO3\">3</Item>\n"
+                + "        </Tumor>\n"
+                + "    </Patient>\n"
+                + "    <Patient>\n"
+                + "        <Item naaccrId=\"patientIdNumber\">00000002</Item>\n"
+                + "        <Tumor>\n"
+                + "            <Item naaccrId=\"primarySite\">C456</Item>\n"
+                + "        </Tumor>\n"
+                + "    </Patient>\n"
+                + "</NaaccrData>";
+
+        // only the requested fields are kept, the ordinal of a field being its index in the list
+        List<SasFieldInfo> fields = new ArrayList<>();
+        for (String id : new String[] {"primarySite", "patientIdNumber", "registryId", "sex", "behaviorCodeIcdO3"})
+            fields.add(new SasFieldInfo(id, id, null, 10, null, null, null));
+        SasXmlReader reader = new SasXmlReader(new BufferedReader(new StringReader(xml)), fields);
+        Assert.assertEquals(1, reader.nextRecord());
+        Assert.assertEquals("C123", reader.getValue(0));
+        Assert.assertEquals("00000001", reader.getValue(1));
+        Assert.assertEquals("0000000001", reader.getValue(2));
+        Assert.assertEquals("1", reader.getValue(3));
+        Assert.assertEquals("", reader.getValue(4));
+        Assert.assertEquals("", reader.getValue(5));
+        Assert.assertEquals("00000001", reader.getValue("patientIdNumber"));
+        Assert.assertEquals("", reader.getValue("dateOfDiagnosis"));
+
+        // the tumor values are cleared for the second tumor, the patient ones are kept
+        Assert.assertEquals(1, reader.nextRecord());
+        Assert.assertEquals("", reader.getValue(0));
+        Assert.assertEquals("3", reader.getValue(4));
+        Assert.assertEquals("00000001", reader.getValue(1));
+        Assert.assertEquals("1", reader.getValue(3));
+
+        // the patient values are cleared for the second patient, the root ones are kept
+        Assert.assertEquals(1, reader.nextRecord());
+        Assert.assertEquals("C456", reader.getValue(0));
+        Assert.assertEquals("00000002", reader.getValue(1));
+        Assert.assertEquals("", reader.getValue(3));
+        Assert.assertEquals("", reader.getValue(4));
+        Assert.assertEquals("0000000001", reader.getValue(2));
+        Assert.assertEquals(0, reader.nextRecord());
+        reader.close();
+
+        // without any fields, all the values are available by NAACCR ID
+        reader = new SasXmlReader(new BufferedReader(new StringReader(xml)));
+        Assert.assertEquals(1, reader.nextRecord());
+        Assert.assertEquals("C123", reader.getValue("primarySite"));
+        Assert.assertEquals("1", reader.getValue("sex"));
+        Assert.assertEquals("0000000001", reader.getValue("registryId"));
+        Assert.assertEquals("", reader.getValue("behaviorCodeIcdO3"));
+        reader.close();
+    }
+
+    @Test
+    public void testXmlReaderValuesPrecedence() throws IOException {
+        // an item provided on several levels takes its patient value first, then its root value, then its tumor value
+        String xml = "<NaaccrData baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-180.xml\" recordType=\"A\">\n"
+                + "    <Item naaccrId=\"registryId\">0000000001</Item>\n"
+                + "    <Item naaccrId=\"vitalStatus\">1</Item>\n"
+                + "    <Patient>\n"
+                + "        <Item naaccrId=\"sex\">1</Item>\n"
+                + "        <Item naaccrId=\"vitalStatus\">0</Item>\n"
+                + "        <Tumor>\n"
+                + "            <Item naaccrId=\"registryId\">0000000002</Item>\n"
+                + "            <Item naaccrId=\"sex\">2</Item>\n"
+                + "            <Item naaccrId=\"primarySite\">C123</Item>\n"
+                + "        </Tumor>\n"
+                + "    </Patient>\n"
+                + "</NaaccrData>";
+
+        List<SasFieldInfo> fields = new ArrayList<>();
+        for (String id : new String[] {"registryId", "sex", "vitalStatus", "primarySite"})
+            fields.add(new SasFieldInfo(id, id, null, 10, null, null, null));
+        List<SasRecordReader> readers = new ArrayList<>();
+        readers.add(new SasXmlReader(new BufferedReader(new StringReader(xml)), fields));
+        readers.add(new SasXmlByteReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), fields));
+        for (SasRecordReader reader : readers) {
+            Assert.assertEquals(1, reader.nextRecord());
+            Assert.assertEquals("0000000001", reader.getValue(0));
+            Assert.assertEquals("1", reader.getValue(1));
+            Assert.assertEquals("0", reader.getValue(2));
+            Assert.assertEquals("C123", reader.getValue(3));
+            Assert.assertEquals(0, reader.nextRecord());
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testXmlByteReader() throws IOException {
+        List<File> csvDictionaries = Collections.singletonList(TestingUtils.getDataFile("sas/epath/path-text-dictionary.csv"));
+        List<SasFieldInfo> fields = SasUtils.getFields("A", new FileInputStream(TestingUtils.getWorkingDirectory() + "/docs/naaccr-xml-items-180.csv"), csvDictionaries);
+
+        // the byte reader returns the same values as the line reader
+        List<File> files = new ArrayList<>();
+        for (String name : new String[] {"test.xml", "test2.xml", "test-cdata.xml", "test-cdata2.xml", "test-multi-line.xml", "test-multi-line-cdata.xml"})
+            files.add(TestingUtils.getDataFile("sas/" + name));
+        for (File file : TestingUtils.getDataFile("sas/epath").listFiles())
+            if (file.getName().endsWith(".XML"))
+                files.add(file);
+        for (File file : files) {
+            SasXmlReader lineReader = new SasXmlReader(SasUtils.createReader(file), fields);
+            SasXmlByteReader byteReader = new SasXmlByteReader(SasUtils.createInputStream(file), fields);
+            int numRecords = 0;
+            while (lineReader.nextRecord() > 0) {
+                Assert.assertEquals(file.getName(), 1, byteReader.nextRecord());
+                for (int i = 0; i < fields.size(); i++)
+                    Assert.assertEquals(file.getName() + " - " + fields.get(i).getNaaccrId(), lineReader.getValue(i), byteReader.getValue(i));
+                numRecords++;
+            }
+            Assert.assertEquals(file.getName(), 0, byteReader.nextRecord());
+            Assert.assertTrue(file.getName(), numRecords > 0);
+            lineReader.close();
+            byteReader.close();
+        }
+
+        // the byte reader doesn't need one item per line, decodes the predefined entities (and keeps the other ones), and skips the comments inside a value
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!-- a comment with a <Patient> tag -->\n"
+                + "<NaaccrData baseDictionaryUri=\"http://naaccr.org/naaccrxml/naaccr-dictionary-180.xml\" recordType=\"A\"><Item naaccrId='registryId'>0000000001</Item>"
+                + "<Patient><Item naaccrId=\"patientIdNumber\">00000001</Item><Item naaccrId=\"nameLast\">A &amp; B &lt;&#67;&#x44;&gt; &quot;&apos; &foo; &amp</Item>"
+                + "<Tumor><Item naaccrId=\"primarySite\" >C123</Item><Item naaccrId=\"sex\"/><Item naaccrId=\"textRemarks\">line1\r\nline2 caf\u00e9 <![CDATA[<&amp;>]]><!-- a -- comment -->!</Item></Tumor>"
+                + "</Patient></NaaccrData>";
+        SasXmlByteReader reader = new SasXmlByteReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(1, reader.nextRecord());
+        Assert.assertEquals("0000000001", reader.getValue("registryId"));
+        Assert.assertEquals("00000001", reader.getValue("patientIdNumber"));
+        Assert.assertEquals("A & B <&#67;&#x44;> \"' &foo; &amp", reader.getValue("nameLast"));
+        Assert.assertEquals("C123", reader.getValue("primarySite"));
+        Assert.assertEquals("", reader.getValue("sex"));
+        Assert.assertEquals("line1::line2 caf\u00e9 <&amp;>!", reader.getValue("textRemarks"));
+        Assert.assertEquals(0, reader.nextRecord());
+        reader.close();
+
+        // a value that never ends is reported
+        reader = new SasXmlByteReader(new ByteArrayInputStream("<NaaccrData><Patient><Item naaccrId=\"sex\">1".getBytes(StandardCharsets.UTF_8)));
+        try {
+            reader.nextRecord();
+            Assert.fail("should have failed");
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("sex"));
+        }
+        reader.close();
+    }
+
     private Tumor convertForEpathSingleTumor(String naaccrVersion, String recordType, String input, List<File> csvDictionaryFiles, List<NaaccrDictionary> xmlDictionaries) throws IOException {
         return convertForEpath(naaccrVersion, recordType, input, csvDictionaryFiles, xmlDictionaries).getPatients().get(0).getTumors().get(0);
     }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.sink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.NaaccrErrorUtils;
+import com.imsweb.naaccrxml.NaaccrValidationError;
+
+public class ValidationErrorSinkTest {
+
+    @Test
+    public void testCountingSink() throws Exception {
+        CountingValidationErrorSink sink = new CountingValidationErrorSink();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        sink.errorReported(new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_TOO_LONG, 1, 2));
+                        if (j % 10 == 0)
+                            sink.errorReported(new NaaccrValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_ID, "unknown"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(4000, sink.getCount(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+        Assert.assertEquals(400, sink.getCount(NaaccrErrorUtils.CODE_BAD_NAACCR_ID));
+        Assert.assertEquals(0, sink.getCount(NaaccrErrorUtils.CODE_VAL_DATA_TYPE));
+        Assert.assertEquals(4400, sink.getTotalCount());
+        Assert.assertEquals(2, sink.getCounts().size());
+
+        sink.reset();
+        Assert.assertEquals(0, sink.getTotalCount());
+    }
+
+    @Test
+    public void testExampleCollectingSink() {
+        ExampleCollectingValidationErrorSink sink = new ExampleCollectingValidationErrorSink(2);
+        for (int i = 0; i < 5; i++) {
+            NaaccrValidationError error = new NaaccrValidationError(NaaccrErrorUtils.CODE_BAD_NAACCR_ID, "id" + i);
+            error.setValue("value" + i);
+            sink.errorReported(error);
+        }
+        sink.errorReported(new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_END_SPACE));
+
+        Assert.assertEquals(5, sink.getCount(NaaccrErrorUtils.CODE_BAD_NAACCR_ID));
+        Assert.assertEquals(2, sink.getExamples(NaaccrErrorUtils.CODE_BAD_NAACCR_ID).size());
+        Assert.assertEquals("value0", sink.getExamples(NaaccrErrorUtils.CODE_BAD_NAACCR_ID).get(0).getValue());
+        Assert.assertEquals("unknown NAACCR ID: id1", sink.getExamples(NaaccrErrorUtils.CODE_BAD_NAACCR_ID).get(1).getMessage());
+        Assert.assertEquals(1, sink.getExamples(NaaccrErrorUtils.CODE_VAL_END_SPACE).size());
+        Assert.assertTrue(sink.getExamples(NaaccrErrorUtils.CODE_VAL_DATA_TYPE).isEmpty());
+
+        sink.reset();
+        Assert.assertTrue(sink.getExamples(NaaccrErrorUtils.CODE_BAD_NAACCR_ID).isEmpty());
+    }
+
+    @Test
+    public void testBoundedSink() {
+        BoundedValidationErrorSink sink = new BoundedValidationErrorSink(3);
+        sink.errorReported(new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_START_SPACE));
+        Assert.assertEquals(1, sink.getErrors().size());
+        Assert.assertFalse(sink.isTruncated());
+        for (int i = 0; i < 4; i++)
+            sink.errorReported(new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_END_SPACE));
+        Assert.assertEquals(3, sink.getErrors().size());
+        Assert.assertEquals(2, sink.getNumDroppedErrors());
+        Assert.assertTrue(sink.isTruncated());
+        Assert.assertEquals(NaaccrErrorUtils.CODE_VAL_START_SPACE, sink.getErrors().get(0).getCode());
+
+        sink.reset();
+        Assert.assertTrue(sink.getErrors().isEmpty());
+        Assert.assertFalse(sink.isTruncated());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        ValidationErrorStatistics stats = new ValidationErrorStatistics();
+        Assert.assertTrue(stats.isEmpty());
+
+        // each thread uses its own accumulator and merges it at the end of each "file"
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int threadIdx = i;
+                futures.add(executor.submit(() -> {
+                    for (int file = 0; file < 10; file++) {
+                        ValidationErrorStatistics.Accumulator accumulator = stats.createAccumulator();
+                        for (int j = 0; j < 100; j++) {
+                            NaaccrValidationError error = new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_TOO_LONG, 1, 2);
+                            error.setNaaccrId("item" + threadIdx);
+                            accumulator.errorReported(error);
+                        }
+                        Assert.assertEquals(100, accumulator.getCount(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+                        Assert.assertEquals(Collections.singletonList("item" + threadIdx), accumulator.getNaaccrIds(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+                        accumulator.merge();
+                        Assert.assertEquals(0, accumulator.getTotalCount());
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        Assert.assertFalse(stats.isEmpty());
+        Assert.assertEquals(4000, stats.getCount(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+        Assert.assertEquals(Arrays.asList("item0", "item1", "item2", "item3"), stats.getNaaccrIds(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+        Assert.assertTrue(stats.getNaaccrIds(NaaccrErrorUtils.CODE_VAL_DATA_TYPE).isEmpty());
+
+        // errors can also be reported directly
+        stats.errorReported(new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_END_SPACE));
+        Assert.assertEquals(4001, stats.getTotalCount());
+
+        // accumulators can be combined before being merged
+        ValidationErrorStatistics.Accumulator acc1 = stats.createAccumulator();
+        ValidationErrorStatistics.Accumulator acc2 = stats.createAccumulator();
+        NaaccrValidationError error = new NaaccrValidationError(NaaccrErrorUtils.CODE_VAL_TOO_LONG);
+        error.setNaaccrId("other");
+        acc1.errorReported(error);
+        acc2.errorReported(error);
+        acc1.add(acc2);
+        Assert.assertEquals(2, acc1.getCount(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+        Assert.assertEquals(1, acc2.getCount(NaaccrErrorUtils.CODE_VAL_TOO_LONG));
+        acc1.merge();
+        Assert.assertEquals(4003, stats.getTotalCount());
+        Assert.assertTrue(stats.getNaaccrIds(NaaccrErrorUtils.CODE_VAL_TOO_LONG).contains("other"));
+
+        stats.reset();
+        Assert.assertTrue(stats.isEmpty());
+        Assert.assertTrue(stats.getNaaccrIds(NaaccrErrorUtils.CODE_VAL_TOO_LONG).isEmpty());
+    }
+}
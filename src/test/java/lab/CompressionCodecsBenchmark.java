@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package lab;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import com.imsweb.naaccrxml.compression.CompressionCodec;
+import com.imsweb.naaccrxml.compression.CompressionCodecRegistry;
+import com.imsweb.naaccrxml.compression.GzipCompressionCodec;
+import com.imsweb.naaccrxml.compression.NoCompressionCodec;
+import com.imsweb.naaccrxml.compression.XzCompressionCodec;
+
+/**
+ * Reports the compression ratio and the compression/decompression throughput of each codec on the sample files.
+ */
+public class CompressionCodecsBenchmark {
+
+    private static final int _NUM_RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        List<File> samples = new ArrayList<>();
+        samples.add(new File("src/test/resources/data/fake-naaccr14inc-10000-rec.txt.gz"));
+        samples.add(new File("docs/samples/naaccr-xml-sample-v210-abstract-1000.xml.gz"));
+        samples.add(new File("docs/samples/naaccr-xml-sample-v210-incidence-1000.xml.gz"));
+
+        int cpus = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<CompressionCodec> codecs = Arrays.asList(new NoCompressionCodec(), new GzipCompressionCodec(), new XzCompressionCodec(XzCompressionCodec.DEFAULT_PRESET, 1,
+                XzCompressionCodec.DEFAULT_BLOCK_SIZE), new XzCompressionCodec(XzCompressionCodec.DEFAULT_PRESET, cpus, XzCompressionCodec.DEFAULT_BLOCK_SIZE));
+        List<String> labels = Arrays.asList("none", "gz", "xz (1 thread)", "xz (" + cpus + " threads)");
+
+        File tmpFile = File.createTempFile("codec-benchmark", ".tmp");
+        tmpFile.deleteOnExit();
+
+        for (File sample : samples) {
+            if (!sample.exists()) {
+                System.out.println("Skipping missing sample " + sample.getPath());
+                continue;
+            }
+
+            byte[] data;
+            try (InputStream is = CompressionCodecRegistry.getCodecForReading(sample).createInputStream(sample)) {
+                data = IOUtils.toByteArray(is);
+            }
+            System.out.println(sample.getName() + " (" + data.length / 1024 + " KB uncompressed)");
+
+            for (int i = 0; i < codecs.size(); i++) {
+                CompressionCodec codec = codecs.get(i);
+                long compressTime = Long.MAX_VALUE;
+                long decompressTime = Long.MAX_VALUE;
+                for (int run = 0; run < _NUM_RUNS; run++) {
+                    long start = System.nanoTime();
+                    try (OutputStream os = codec.createOutputStream(new FileOutputStream(tmpFile))) {
+                        os.write(data);
+                    }
+                    compressTime = Math.min(compressTime, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    byte[] buffer = new byte[8192];
+                    try (InputStream is = codec.createInputStream(tmpFile)) {
+                        int n = is.read(buffer);
+                        while (n != -1)
+                            n = is.read(buffer);
+                    }
+                    decompressTime = Math.min(decompressTime, System.nanoTime() - start);
+                }
+                double ratio = (double)data.length / tmpFile.length();
+                System.out.printf("   %-16s ratio: %6.2f   compression: %8.1f MB/s   decompression: %8.1f MB/s%n", labels.get(i), ratio, throughput(data.length, compressTime),
+                        throughput(data.length, decompressTime));
+            }
+        }
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return (bytes / 1024.0 / 1024.0) / (nanos / 1000000000.0);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package lab;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.entity.dictionary.NaaccrDictionary;
+import com.imsweb.naaccrxml.runtime.RuntimeNaaccrDictionary;
+
+/**
+ * Compares the cold load time (in a brand new JVM) of a runtime dictionary created from the XML dictionaries and from the pre-compiled binary ones.
+ * <br/><br/>
+ * The pre-compiled dictionaries are created by the "generateBinaryDictionaries" Gradle task, they need to be on the classpath.
+ */
+public class DictionaryStartupBenchmark {
+
+    private static final int _NUM_RUNS = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2) {
+            runSingleLoad(args[0], args[1]);
+            return;
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+        for (String version : new String[] {NaaccrFormat.NAACCR_VERSION_180, NaaccrFormat.NAACCR_VERSION_210, NaaccrFormat.NAACCR_VERSION_220}) {
+            for (String mode : new String[] {"xml", "binary"}) {
+                List<Long> times = new ArrayList<>();
+                for (int i = 0; i < _NUM_RUNS; i++) {
+                    Process process = new ProcessBuilder(java, "-cp", classpath, DictionaryStartupBenchmark.class.getName(), mode, version).redirectErrorStream(true).start();
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                        String line = reader.readLine();
+                        if (process.waitFor() != 0 || line == null)
+                            throw new IllegalStateException("Child process failed: " + line);
+                        times.add(Long.parseLong(line.trim()));
+                    }
+                }
+                Collections.sort(times);
+                System.out.printf("NAACCR %s, %-6s  median: %6.1f ms   min: %6.1f ms%n", version, mode, times.get(times.size() / 2) / 1000000.0, times.get(0) / 1000000.0);
+            }
+        }
+    }
+
+    // runs in the child JVM, prints the time (in nanoseconds) needed to get a runtime dictionary
+    private static void runSingleLoad(String mode, String version) throws IOException {
+        long start = System.nanoTime();
+        if ("xml".equals(mode)) {
+            NaaccrDictionary baseDictionary;
+            try (InputStreamReader reader = new InputStreamReader(Thread.currentThread().getContextClassLoader().getResourceAsStream("naaccr-dictionary-" + version + ".xml"),
+                    StandardCharsets.UTF_8)) {
+                baseDictionary = NaaccrXmlDictionaryUtils.readDictionary(reader);
+            }
+            List<NaaccrDictionary> userDictionaries = new ArrayList<>();
+            if (Integer.parseInt(version) < 220) {
+                try (InputStreamReader reader = new InputStreamReader(Thread.currentThread().getContextClassLoader().getResourceAsStream("user-defined-naaccr-dictionary-" + version + ".xml"),
+                        StandardCharsets.UTF_8)) {
+                    userDictionaries.add(NaaccrXmlDictionaryUtils.readDictionary(reader));
+                }
+            }
+            new RuntimeNaaccrDictionary(NaaccrFormat.NAACCR_REC_TYPE_INCIDENCE, baseDictionary, userDictionaries);
+        }
+        else
+            RuntimeNaaccrDictionary.create(NaaccrFormat.NAACCR_REC_TYPE_INCIDENCE, NaaccrXmlDictionaryUtils.getBaseDictionaryByVersion(version), null);
+        System.out.println(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package lab;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.runtime.NaaccrStreamConfiguration;
+
+/**
+ * Reports the per-call latency of getting the root attributes of a data file, using the header sniffer (current implementation) and using a new
+ * XStream configuration (previous implementation).
+ */
+public class HeaderSnifferBenchmark {
+
+    private static final int _NUM_WARMUP_CALLS = 200;
+
+    private static final int _NUM_CALLS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        File[] samples = {
+                new File("src/test/resources/data/standard-file.xml"),
+                new File("docs/samples/naaccr-xml-sample-v210-abstract-1000.xml.gz")
+        };
+
+        for (File sample : samples) {
+            if (!sample.exists()) {
+                System.out.println("Skipping missing sample " + sample.getPath());
+                continue;
+            }
+
+            if (!NaaccrXmlUtils.getAttributesFromXmlFile(sample).equals(getAttributesUsingXStream(sample)))
+                throw new IllegalStateException("Different attributes for " + sample.getName());
+
+            for (int i = 0; i < _NUM_WARMUP_CALLS; i++) {
+                NaaccrXmlUtils.getAttributesFromXmlFile(sample);
+                getAttributesUsingXStream(sample);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < _NUM_CALLS; i++)
+                NaaccrXmlUtils.getAttributesFromXmlFile(sample);
+            long snifferTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < _NUM_CALLS; i++)
+                getAttributesUsingXStream(sample);
+            long xstreamTime = System.nanoTime() - start;
+
+            System.out.println(sample.getName());
+            System.out.printf("   header sniffer: %8.1f us/call%n", snifferTime / 1000.0 / _NUM_CALLS);
+            System.out.printf("   XStream:        %8.1f us/call%n", xstreamTime / 1000.0 / _NUM_CALLS);
+        }
+    }
+
+    // this is how the attributes used to be read
+    private static Map<String, String> getAttributesUsingXStream(File file) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        try (Reader reader = NaaccrXmlUtils.createReader(file)) {
+            HierarchicalStreamReader xstreamReader = new NaaccrStreamConfiguration().getDriver().createReader(reader);
+            if (removeNameSpacePrefix(xstreamReader.getNodeName()).equals(NaaccrXmlUtils.NAACCR_XML_TAG_ROOT))
+                for (int i = 0; i < xstreamReader.getAttributeCount(); i++)
+                    result.put(removeNameSpacePrefix(xstreamReader.getAttributeName(i)), xstreamReader.getAttribute(i));
+        }
+        return result;
+    }
+
+    private static String removeNameSpacePrefix(String tag) {
+        int idx = tag.indexOf(':');
+        return idx == -1 ? tag : tag.substring(idx + 1);
+    }
+}
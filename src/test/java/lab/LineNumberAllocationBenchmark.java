@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package lab;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.PatientXmlReader;
+import com.imsweb.naaccrxml.entity.Patient;
+
+/**
+ * Reports the bytes allocated and the time spent reading an XML data file, with and without the item line numbers.
+ */
+public class LineNumberAllocationBenchmark {
+
+    private static final int _NUM_WARMUP_RUNS = 3;
+
+    private static final int _NUM_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        File sample = new File(args.length > 0 ? args[0] : "docs/samples/naaccr-xml-sample-v210-abstract-1000.xml.gz");
+        if (!sample.exists()) {
+            System.out.println("Missing sample " + sample.getPath());
+            return;
+        }
+
+        for (boolean readItemLineNumbers : new boolean[] {true, false}) {
+            NaaccrOptions options = NaaccrOptions.getDefault();
+            options.setReadItemLineNumbers(readItemLineNumbers);
+
+            for (int i = 0; i < _NUM_WARMUP_RUNS; i++)
+                read(sample, options);
+
+            long allocated = 0, time = 0, items = 0;
+            for (int i = 0; i < _NUM_RUNS; i++) {
+                long allocatedBefore = getAllocatedBytes(), timeBefore = System.nanoTime();
+                items = read(sample, options);
+                time += System.nanoTime() - timeBefore;
+                allocated += getAllocatedBytes() - allocatedBefore;
+            }
+            System.out.println("readItemLineNumbers=" + readItemLineNumbers);
+            System.out.println("   allocated per item: " + (allocated / _NUM_RUNS / items) + " bytes");
+            System.out.println("   time per run: " + (time / _NUM_RUNS / 1000000) + " ms");
+        }
+    }
+
+    private static long read(File file, NaaccrOptions options) throws IOException {
+        long items = 0;
+        try (PatientXmlReader reader = new PatientXmlReader(NaaccrXmlUtils.createReader(file, options), options)) {
+            Patient patient = reader.readPatient();
+            while (patient != null) {
+                items += patient.getItems().size() + patient.getTumors().stream().mapToInt(t -> t.getItems().size()).sum();
+                patient = reader.readPatient();
+            }
+        }
+        return items;
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
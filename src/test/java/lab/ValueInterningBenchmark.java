@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package lab;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.imsweb.naaccrxml.NaaccrOptions;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+
+/**
+ * Reports the heap retained by a full-file load, with and without the value interning.
+ */
+public class ValueInterningBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File[] samples = {
+                new File("src/test/resources/data/fake-naaccr14inc-10000-rec.txt.gz"),
+                new File("docs/samples/naaccr-xml-sample-v210-abstract-1000.xml.gz")
+        };
+
+        for (File sample : samples) {
+            if (!sample.exists()) {
+                System.out.println("Skipping missing sample " + sample.getPath());
+                continue;
+            }
+
+            long regular = measureRetainedHeap(sample, false);
+            long interned = measureRetainedHeap(sample, true);
+            System.out.println(sample.getName());
+            System.out.println("   regular:  " + regular / 1024 + " KB");
+            System.out.println("   interned: " + interned / 1024 + " KB (" + Math.round(100.0 * (regular - interned) / regular) + "% less)");
+        }
+    }
+
+    private static long measureRetainedHeap(File file, boolean useValueInterning) throws IOException {
+        NaaccrOptions options = NaaccrOptions.getDefault();
+        options.setUseValueInterning(useValueInterning);
+
+        // load the file once to make sure all the classes and dictionaries are loaded
+        load(file, options);
+
+        long before = getUsedHeap();
+        NaaccrData data = load(file, options);
+        long after = getUsedHeap();
+        if (data.getPatients().isEmpty())
+            throw new IllegalStateException("No patients read from " + file.getName());
+        return after - before;
+    }
+
+    private static NaaccrData load(File file, NaaccrOptions options) throws IOException {
+        if (file.getName().contains(".xml"))
+            return NaaccrXmlUtils.readXmlFile(file, options, null, null);
+        return NaaccrXmlUtils.readFlatFile(file, options, null, null);
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.internal;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.imsweb.naaccrxml.NaaccrFormat;
+import com.imsweb.naaccrxml.NaaccrIOException;
+import com.imsweb.naaccrxml.NaaccrXmlDictionaryUtils;
+import com.imsweb.naaccrxml.NaaccrXmlUtils;
+import com.imsweb.naaccrxml.TestingUtils;
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+import com.imsweb.naaccrxml.entity.Tumor;
+
+public class JfrNaaccrFlightRecorderTest {
+
+    @Test
+    public void testEvents() throws IOException {
+        Assert.assertTrue(NaaccrFlightRecorder.getInstance() instanceof JfrNaaccrFlightRecorder);
+
+        NaaccrData data = new NaaccrData(NaaccrFormat.NAACCR_FORMAT_18_INCIDENCE);
+        for (int i = 1; i <= 3; i++) {
+            Patient patient = new Patient();
+            patient.addItem(new Item("patientIdNumber", "0000000" + i));
+            Tumor tumor = new Tumor();
+            tumor.addItem(new Item("primarySite", "C123"));
+            patient.addTumor(tumor);
+            data.addPatient(patient);
+        }
+        File flatFile = new File(TestingUtils.getBuildDirectory(), "jfr-test.txt");
+        File xmlFile = new File(TestingUtils.getBuildDirectory(), "jfr-test.xml");
+        File badFile = new File(TestingUtils.getBuildDirectory(), "jfr-test-bad.xml");
+        Files.write(badFile.toPath(), "this is not XML".getBytes(StandardCharsets.UTF_8));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"Stream", "PatientRead", "PatientWrite", "File", "DictionaryLoading", "RuntimeDictionary"})
+                recording.enable("com.imsweb.naaccrxml." + name).withThreshold(Duration.ZERO);
+            recording.start();
+
+            NaaccrXmlUtils.writeFlatFile(data, flatFile, null, null, null);
+            NaaccrXmlUtils.flatToXml(flatFile, xmlFile, null, null, null);
+            NaaccrXmlDictionaryUtils.readDictionary(new FileReader(TestingUtils.getDataFile("dictionary/testing-user-dictionary.xml")));
+            try {
+                NaaccrXmlUtils.readXmlFile(badFile, null, null, null);
+                Assert.fail("Reading an invalid file should have failed");
+            }
+            catch (NaaccrIOException e) {
+                // expected
+            }
+
+            recording.stop();
+            Path dump = new File(TestingUtils.getBuildDirectory(), "naaccr-xml.jfr").toPath();
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump);
+        }
+
+        Map<String, List<RecordedEvent>> eventsByName = events.stream().collect(Collectors.groupingBy(e -> e.getEventType().getName(), HashMap::new, Collectors.toList()));
+
+        // the flat writer, then the flat reader and XML writer of the translation
+        List<RecordedEvent> streamEvents = eventsByName.get("com.imsweb.naaccrxml.Stream");
+        Assert.assertNotNull(streamEvents);
+        Assert.assertEquals(3, streamEvents.size());
+        for (RecordedEvent event : streamEvents) {
+            Assert.assertEquals(3, event.getLong("patients"));
+            Assert.assertEquals(NaaccrFormat.NAACCR_FORMAT_18_INCIDENCE, event.getString("format"));
+        }
+
+        Assert.assertEquals(3, eventsByName.get("com.imsweb.naaccrxml.PatientRead").size());
+        Assert.assertEquals(6, eventsByName.get("com.imsweb.naaccrxml.PatientWrite").size());
+        RecordedEvent patientEvent = eventsByName.get("com.imsweb.naaccrxml.PatientRead").get(0);
+        Assert.assertEquals(1, patientEvent.getInt("tumors"));
+        Assert.assertEquals(2, patientEvent.getInt("items"));
+
+        List<RecordedEvent> fileEvents = eventsByName.get("com.imsweb.naaccrxml.File");
+        Assert.assertEquals(3, fileEvents.size());
+        RecordedEvent translation = fileEvents.stream().filter(e -> "flatToXml".equals(e.getString("operation"))).findFirst().orElse(null);
+        Assert.assertNotNull(translation);
+        Assert.assertEquals(flatFile.getPath(), translation.getString("sourceFile"));
+        Assert.assertEquals(flatFile.length(), translation.getLong("sourceFileSize"));
+        Assert.assertEquals(xmlFile.length(), translation.getLong("targetFileSize"));
+        Assert.assertEquals(3, translation.getLong("patients"));
+
+        // the failed operations are recorded too
+        RecordedEvent failedRead = fileEvents.stream().filter(e -> "readXmlFile".equals(e.getString("operation"))).findFirst().orElse(null);
+        Assert.assertNotNull(failedRead);
+        Assert.assertEquals(badFile.getPath(), failedRead.getString("sourceFile"));
+        Assert.assertEquals(0, failedRead.getLong("patients"));
+
+        Assert.assertTrue(eventsByName.get("com.imsweb.naaccrxml.DictionaryLoading").stream().anyMatch(e -> "xml".equals(e.getString("source"))));
+        Assert.assertNotNull(eventsByName.get("com.imsweb.naaccrxml.RuntimeDictionary"));
+    }
+}
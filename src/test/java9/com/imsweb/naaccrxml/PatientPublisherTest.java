@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.entity.Item;
+import com.imsweb.naaccrxml.entity.NaaccrData;
+import com.imsweb.naaccrxml.entity.Patient;
+
+public class PatientPublisherTest {
+
+    @Test
+    public void testDemand() {
+        FakeReader reader = new FakeReader(10, -1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new PatientPublisher(reader, Runnable::run).subscribe(subscriber);
+
+        // only the requested patients are read
+        Assert.assertEquals(0, reader._numRead);
+        subscriber._subscription.request(3);
+        Assert.assertEquals(3, reader._numRead);
+        Assert.assertEquals(3, subscriber._ids.size());
+        subscriber._subscription.request(2);
+        Assert.assertEquals(5, reader._numRead);
+        Assert.assertEquals("00000004", subscriber._ids.get(4));
+
+        // cancelling closes the reader
+        subscriber._subscription.cancel();
+        Assert.assertTrue(reader._closed);
+        subscriber._subscription.request(2);
+        Assert.assertEquals(5, reader._numRead);
+        Assert.assertFalse(subscriber._completed);
+        Assert.assertNull(subscriber._error);
+
+        // requesting more than available completes the subscriber
+        reader = new FakeReader(10, -1);
+        subscriber = new RecordingSubscriber();
+        new PatientPublisher(reader, Runnable::run).subscribe(subscriber);
+        subscriber._subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(10, subscriber._ids.size());
+        Assert.assertTrue(subscriber._completed);
+        Assert.assertTrue(reader._closed);
+    }
+
+    @Test
+    public void testErrors() {
+        // reading error
+        FakeReader reader = new FakeReader(10, 5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        PatientPublisher publisher = new PatientPublisher(reader, Runnable::run);
+        publisher.subscribe(subscriber);
+        subscriber._subscription.request(10);
+        Assert.assertEquals(5, subscriber._ids.size());
+        Assert.assertTrue(subscriber._error instanceof NaaccrIOException);
+        Assert.assertTrue(reader._closed);
+
+        // only one subscriber is allowed
+        RecordingSubscriber subscriber2 = new RecordingSubscriber();
+        publisher.subscribe(subscriber2);
+        Assert.assertTrue(subscriber2._error instanceof IllegalStateException);
+
+        // invalid request
+        reader = new FakeReader(10, -1);
+        subscriber = new RecordingSubscriber();
+        new PatientPublisher(reader, Runnable::run).subscribe(subscriber);
+        subscriber._subscription.request(0);
+        Assert.assertTrue(subscriber._error instanceof IllegalArgumentException);
+        Assert.assertTrue(reader._closed);
+    }
+
+    @Test
+    public void testWriterSubscriber() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        File source = new File(TestingUtils.getWorkingDirectory() + "/src/test/resources/data/standard-file.xml");
+        File target = TestingUtils.createFile("patient-publisher-test.xml");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (PatientXmlReader reader = new PatientXmlReader(new FileReader(source))) {
+            PatientWriterSubscriber subscriber = new PatientWriterSubscriber(new PatientXmlWriter(new FileWriter(target), reader.getRootData()), 1);
+            new PatientPublisher(reader, executor).subscribe(subscriber);
+            Assert.assertEquals(Long.valueOf(2), subscriber.getResult().get(10, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(2, NaaccrXmlUtils.readXmlFile(target, null, null, null).getPatients().size());
+
+        // a reading error fails the result
+        FakeReader reader = new FakeReader(10, 5);
+        PatientWriterSubscriber subscriber = new PatientWriterSubscriber(new PatientXmlWriter(new FileWriter(target), new NaaccrData(NaaccrFormat.NAACCR_FORMAT_16_ABSTRACT)));
+        new PatientPublisher(reader, Runnable::run).subscribe(subscriber);
+        Assert.assertTrue(subscriber.getResult().isCompletedExceptionally());
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Patient> {
+
+        private final List<String> _ids = new ArrayList<>();
+
+        private Flow.Subscription _subscription;
+
+        private boolean _completed;
+
+        private Throwable _error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Patient item) {
+            _ids.add(item.getItemValue("patientIdNumber"));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            _error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            _completed = true;
+        }
+    }
+
+    private static class FakeReader implements PatientReader {
+
+        private final int _numPatients;
+
+        private final int _failingPatient;
+
+        private int _numRead;
+
+        private boolean _closed;
+
+        private FakeReader(int numPatients, int failingPatient) {
+            _numPatients = numPatients;
+            _failingPatient = failingPatient;
+        }
+
+        @Override
+        public Patient readPatient() throws NaaccrIOException {
+            if (_numRead == _failingPatient)
+                throw new NaaccrIOException("bad patient", _numRead + 1);
+            if (_numRead >= _numPatients)
+                return null;
+            Patient patient = new Patient();
+            patient.addItem(new Item("patientIdNumber", String.format("%08d", _numRead++)));
+            return patient;
+        }
+
+        @Override
+        public NaaccrData getRootData() {
+            return new NaaccrData();
+        }
+
+        @Override
+        public void closeAndKeepAlive() {
+            // nothing to do
+        }
+
+        @Override
+        public void close() {
+            _closed = true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 Information Management Services, Inc.
+ */
+package com.imsweb.naaccrxml.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.imsweb.naaccrxml.benchmark.RegressionGate.Baseline;
+import com.imsweb.naaccrxml.benchmark.RegressionGate.Measure;
+
+public class RegressionGateTest {
+
+    // the baseline can be formatted in any way, the member order doesn't matter and unknown members are ignored
+    private static final String _BASELINE = "{\"benchmarks\" : {\n"
+            + "  \"ReadingBenchmark.readFlat:180\": {\"tumorsPerSecond\": 4048.6, \"allocatedBytesPerTumor\": 1.5E3, \"note\": [\"a \\\"quoted\\\" {value}\", null]},\n"
+            + "  \"WritingBenchmark.writeXml:180\":\n"
+            + "     {\"allocatedBytesPerTumor\": 2000, \"tumorsPerSecond\": 1000.0}},\n"
+            + " \"jvmVersion\": \"11.0.21\"}";
+
+    @Test
+    public void testReadBaseline() throws IOException {
+        Baseline baseline = RegressionGate.readBaseline(_BASELINE);
+        Assert.assertEquals("11.0.21", baseline.getJvmVersion());
+        Assert.assertEquals(Arrays.asList("ReadingBenchmark.readFlat:180", "WritingBenchmark.writeXml:180"), Arrays.asList(baseline.getMeasures().keySet().toArray()));
+        Assert.assertEquals(1500, baseline.getMeasures().get("ReadingBenchmark.readFlat:180").getBytesPerTumor(), 0);
+        Assert.assertEquals(4048.6, baseline.getMeasures().get("ReadingBenchmark.readFlat:180").getTumorsPerSecond(), 0);
+        Assert.assertEquals(2000, baseline.getMeasures().get("WritingBenchmark.writeXml:180").getBytesPerTumor(), 0);
+
+        // a baseline written by the gate can be read back
+        Map<String, Measure> measures = new TreeMap<>();
+        measures.put("ReadingBenchmark.readXml:\"210\"", new Measure(123.4, 567.8));
+        baseline = RegressionGate.readBaseline(RegressionGate.createBaseline("1.8.0_392", measures));
+        Assert.assertEquals("1.8.0_392", baseline.getJvmVersion());
+        Assert.assertEquals(123.4, baseline.getMeasures().get("ReadingBenchmark.readXml:\"210\"").getBytesPerTumor(), 0);
+        Assert.assertEquals(567.8, baseline.getMeasures().get("ReadingBenchmark.readXml:\"210\"").getTumorsPerSecond(), 0);
+
+        // the baseline used by the build is valid
+        File file = new File(System.getProperty("user.dir"), "config/jmh/regression-baseline.json");
+        Assert.assertFalse(RegressionGate.readBaseline(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).getMeasures().isEmpty());
+
+        for (String invalid : Arrays.asList("", "[]", "{\"benchmarks\": {\"a\": {\"allocatedBytesPerTumor\": \"1\", \"tumorsPerSecond\": 2}}}",
+                "{\"benchmarks\": {\"a\": {\"tumorsPerSecond\": 2}}}", "{\"benchmarks\": {\"a\": {\"allocatedBytesPerTumor\": 1, \"tumorsPerSecond\": 2}}", "{\"benchmarks\": []}",
+                "{\"benchmarks\": {}} x", "{\"benchmarks\": {\"a\": {\"allocatedBytesPerTumor\": 01, \"tumorsPerSecond\": 2}}}")) {
+            try {
+                RegressionGate.readBaseline(invalid);
+                Assert.fail("Should have failed: " + invalid);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCompare() throws UnsupportedEncodingException {
+        Map<String, Measure> baseline = RegressionGate.readBaseline(_BASELINE).getMeasures();
+
+        // passing: the allocations are within the threshold (a lower throughput is only reported), a new benchmark is ignored
+        Map<String, Measure> current = new TreeMap<>();
+        current.put("ReadingBenchmark.readFlat:180", new Measure(1600, 100));
+        current.put("WritingBenchmark.writeXml:180", new Measure(1500, 1200));
+        current.put("WritingBenchmark.writeFlat:180", new Measure(999999, 1));
+        List<String> lines = new ArrayList<>();
+        Assert.assertEquals(0, compare(baseline, current, 0.10, lines));
+        Assert.assertFalse(String.join("\n", lines).contains("REGRESSION"));
+
+        // regressing: one benchmark allocates 20% more
+        current.put("WritingBenchmark.writeXml:180", new Measure(2400, 1000));
+        Assert.assertEquals(1, compare(baseline, current, 0.10, lines));
+        Assert.assertTrue(lines.stream().anyMatch(l -> l.startsWith("WritingBenchmark.writeXml:180") && l.endsWith("<-- ALLOCATION REGRESSION")));
+        Assert.assertTrue(lines.stream().noneMatch(l -> l.startsWith("ReadingBenchmark.readFlat:180") && l.endsWith("<-- ALLOCATION REGRESSION")));
+
+        // ... unless the threshold allows it
+        Assert.assertEquals(0, compare(baseline, current, 0.25, lines));
+
+        // a benchmark of the baseline that wasn't run is reported but doesn't fail
+        Assert.assertEquals(0, compare(baseline, Collections.singletonMap("ReadingBenchmark.readFlat:180", new Measure(1500, 4000)), 0.10, lines));
+        Assert.assertTrue(lines.contains("WARNING: WritingBenchmark.writeXml:180 is in the baseline but wasn't run"));
+    }
+
+    private static int compare(Map<String, Measure> baseline, Map<String, Measure> current, double threshold, List<String> lines) throws UnsupportedEncodingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int result = RegressionGate.compare(baseline, current, threshold, new PrintStream(out, true, "UTF-8"));
+        lines.clear();
+        lines.addAll(Arrays.asList(out.toString("UTF-8").split("\\r?\\n")));
+        return result;
+    }
+}